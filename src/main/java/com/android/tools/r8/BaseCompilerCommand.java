@@ -35,6 +35,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
   private final boolean optimizeMultidexForLinearAlloc;
   private String specialLibraryConfiguration;
   private final BiPredicate<String, Long> dexClassChecksumFilter;
+  private final Path traceOutputPath;
+  private final TraceGranularity traceGranularity;
 
   BaseCompilerCommand(boolean printHelp, boolean printVersion) {
     super(printHelp, printVersion);
@@ -47,6 +49,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     includeClassesChecksum = false;
     optimizeMultidexForLinearAlloc = false;
     dexClassChecksumFilter = (name, checksum) -> true;
+    traceOutputPath = null;
+    traceGranularity = TraceGranularity.PHASE;
   }
 
   BaseCompilerCommand(
@@ -60,7 +64,9 @@ public abstract class BaseCompilerCommand extends BaseCommand {
       boolean optimizeMultidexForLinearAlloc,
       String specialLibraryConfiguration,
       boolean includeClassesChecksum,
-      BiPredicate<String, Long> dexClassChecksumFilter) {
+      BiPredicate<String, Long> dexClassChecksumFilter,
+      Path traceOutputPath,
+      TraceGranularity traceGranularity) {
     super(app);
     assert minApiLevel > 0;
     assert mode != null;
@@ -74,6 +80,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     this.specialLibraryConfiguration = specialLibraryConfiguration;
     this.includeClassesChecksum = includeClassesChecksum;
     this.dexClassChecksumFilter = dexClassChecksumFilter;
+    this.traceOutputPath = traceOutputPath;
+    this.traceGranularity = traceGranularity;
   }
 
   /**
@@ -128,6 +136,16 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     return optimizeMultidexForLinearAlloc;
   }
 
+  /** Get the path the trace of the compilation is written to, or null if tracing is disabled. */
+  public Path getTraceOutputPath() {
+    return traceOutputPath;
+  }
+
+  /** Get the granularity of the trace of the compilation. */
+  public TraceGranularity getTraceGranularity() {
+    return traceGranularity;
+  }
+
   Reporter getReporter() {
     return reporter;
   }
@@ -161,6 +179,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     private boolean lookupLibraryBeforeProgram = true;
     private boolean optimizeMultidexForLinearAlloc = false;
     private BiPredicate<String, Long> dexClassChecksumFilter = (name, checksum) -> true;
+    private Path traceOutputPath = null;
+    private TraceGranularity traceGranularity = TraceGranularity.PHASE;
 
     abstract CompilationMode defaultCompilationMode();
 
@@ -450,6 +470,41 @@ public abstract class BaseCompilerCommand extends BaseCommand {
       return includeClassesChecksum;
     }
 
+    /**
+     * Set a path to which a trace of the compilation should be written.
+     *
+     * <p>The trace records the time spent and the memory allocated in the phases of the compiler,
+     * including the work performed on other threads, in the Chrome trace event format. The trace
+     * can be loaded into chrome://tracing or Perfetto.
+     *
+     * @param traceOutputPath File-system path to write the trace to. A null argument disables
+     *     tracing.
+     */
+    public B setTraceOutputPath(Path traceOutputPath) {
+      this.traceOutputPath = traceOutputPath;
+      return self();
+    }
+
+    /** Get the path to which a trace of the compilation is written, null if not set. */
+    public Path getTraceOutputPath() {
+      return traceOutputPath;
+    }
+
+    /**
+     * Set the granularity of the trace of the compilation. Defaults to {@link
+     * TraceGranularity#PHASE}. Has no effect unless a trace output path is set.
+     */
+    public B setTraceGranularity(TraceGranularity traceGranularity) {
+      assert traceGranularity != null;
+      this.traceGranularity = traceGranularity;
+      return self();
+    }
+
+    /** Get the granularity of the trace of the compilation. */
+    public TraceGranularity getTraceGranularity() {
+      return traceGranularity;
+    }
+
     @Override
     void validate() {
       Reporter reporter = getReporter();
@@ -457,6 +512,9 @@ public abstract class BaseCompilerCommand extends BaseCommand {
         reporter.error("Expected valid compilation mode, was null");
       }
       FileUtils.validateOutputFile(outputPath, reporter);
+      if (traceGranularity == null) {
+        reporter.error("Expected valid trace granularity, was null");
+      }
       if (getProgramConsumer() == null) {
         // This is never the case for a command-line parse, so we report using API references.
         reporter.error("A ProgramConsumer or Output is required for compilation");
@@ -21,11 +21,13 @@ import com.android.tools.r8.naming.PrefixRewritingNamingLens;
 import com.android.tools.r8.origin.CommandLineOrigin;
 import com.android.tools.r8.utils.AndroidApp;
 import com.android.tools.r8.utils.CfgPrinter;
+import com.android.tools.r8.utils.ChromeTraceWriter;
 import com.android.tools.r8.utils.ExceptionUtils;
 import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.InternalOptions.AssertionProcessing;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.Timing;
+import com.android.tools.r8.utils.Tracer;
 import com.google.common.collect.ImmutableList;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -145,7 +147,7 @@ public final class D8 {
 
   private static void run(AndroidApp inputApp, InternalOptions options, ExecutorService executor)
       throws IOException {
-    Timing timing = new Timing("D8");
+    Timing timing = new Timing("D8", false, Tracer.create(options));
     try {
       // Disable global optimizations.
       options.disableGlobalOptimizations();
@@ -227,6 +229,9 @@ public final class D8 {
       if (options.printTimes) {
         timing.report();
       }
+      if (options.traceOutputPath != null) {
+        ChromeTraceWriter.write(timing.getTracer(), options.traceOutputPath, options.reporter);
+      }
     }
   }
 
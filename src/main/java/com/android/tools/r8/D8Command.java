@@ -202,6 +202,8 @@ public final class D8Command extends BaseCompilerCommand {
           getSpecialLibraryConfiguration(),
           getIncludeClassesChecksum(),
           getDexClassChecksumFilter(),
+          getTraceOutputPath(),
+          getTraceGranularity(),
           getDesugarGraphConsumer(),
           desugaredLibraryKeepRuleConsumer);
     }
@@ -266,6 +268,8 @@ public final class D8Command extends BaseCompilerCommand {
       String specialLibraryConfiguration,
       boolean encodeChecksum,
       BiPredicate<String, Long> dexClassChecksumFilter,
+      Path traceOutputPath,
+      TraceGranularity traceGranularity,
       DesugarGraphConsumer desugarGraphConsumer,
       StringConsumer desugaredLibraryKeepRuleConsumer) {
     super(
@@ -279,7 +283,9 @@ public final class D8Command extends BaseCompilerCommand {
         optimizeMultidexForLinearAlloc,
         specialLibraryConfiguration,
         encodeChecksum,
-        dexClassChecksumFilter);
+        dexClassChecksumFilter,
+        traceOutputPath,
+        traceGranularity);
     this.intermediate = intermediate;
     this.desugarGraphConsumer = desugarGraphConsumer;
     this.desugaredLibraryKeepRuleConsumer = desugaredLibraryKeepRuleConsumer;
@@ -335,6 +341,8 @@ public final class D8Command extends BaseCompilerCommand {
     internal.encodeChecksums = getIncludeClassesChecksum();
     internal.dexClassChecksumFilter = getDexClassChecksumFilter();
     internal.enableInheritanceClassInDexDistributor = isOptimizeMultidexForLinearAlloc();
+    internal.traceOutputPath = getTraceOutputPath();
+    internal.traceGranularity = getTraceGranularity();
 
     // TODO(134732760): This is still work in progress.
     assert internal.rewritePrefix.isEmpty();
@@ -6,6 +6,7 @@ package com.android.tools.r8;
 import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.origin.PathOrigin;
 import com.android.tools.r8.utils.ArchiveBuilder;
+import com.android.tools.r8.utils.ByteBufferPool;
 import com.android.tools.r8.utils.DirectoryBuilder;
 import com.android.tools.r8.utils.ExceptionDiagnostic;
 import com.android.tools.r8.utils.FileUtils;
@@ -15,6 +16,7 @@ import com.android.tools.r8.utils.ZipUtils;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
@@ -124,6 +126,7 @@ public interface DexIndexedConsumer extends ProgramConsumer, ByteBufferProvider
       implements DataResourceConsumer, InternalProgramOutputPathConsumer {
     protected final OutputBuilder outputBuilder;
     protected final boolean consumeDataResources;
+    private final ByteBufferPool byteBufferPool = new ByteBufferPool();
 
     public ArchiveConsumer(Path archive) {
       this(archive, null, false);
@@ -139,7 +142,7 @@ public interface DexIndexedConsumer extends ProgramConsumer, ByteBufferProvider
 
     public ArchiveConsumer(Path archive, DexIndexedConsumer consumer, boolean consumeDataResouces) {
       super(consumer);
-      this.outputBuilder = new ArchiveBuilder(archive);
+      this.outputBuilder = new ArchiveBuilder(archive, byteBufferPool);
       this.consumeDataResources = consumeDataResouces;
       this.outputBuilder.open();
       if (getDataResourceConsumer() != null) {
@@ -156,6 +159,16 @@ public interface DexIndexedConsumer extends ProgramConsumer, ByteBufferProvider
       return consumeDataResources ? this : null;
     }
 
+    @Override
+    public ByteBuffer acquireByteBuffer(int capacity) {
+      return byteBufferPool.acquireByteBuffer(capacity);
+    }
+
+    @Override
+    public void releaseByteBuffer(ByteBuffer buffer) {
+      byteBufferPool.releaseByteBuffer(buffer);
+    }
+
     @Override
     public void accept(
         int fileIndex, ByteDataView data, Set<String> descriptors, DiagnosticsHandler handler) {
@@ -177,6 +190,7 @@ public interface DexIndexedConsumer extends ProgramConsumer, ByteBufferProvider
     public void finished(DiagnosticsHandler handler) {
       super.finished(handler);
       outputBuilder.close(handler);
+      byteBufferPool.clear();
     }
 
     public static void writeResources(
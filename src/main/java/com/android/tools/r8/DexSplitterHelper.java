@@ -27,12 +27,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 @Keep
 public final class DexSplitterHelper {
@@ -57,7 +62,17 @@ public final class DexSplitterHelper {
       String proguardMap,
       ExecutorService executor)
       throws IOException {
-    InternalOptions options = command.getInternalOptions();
+    run(command, command.getInternalOptions(), featureClassMapping, output, proguardMap, executor);
+  }
+
+  private static void run(
+      D8Command command,
+      InternalOptions options,
+      FeatureClassMapping featureClassMapping,
+      String output,
+      String proguardMap,
+      ExecutorService executor)
+      throws IOException {
     options.enableDesugaring = false;
     options.enableMainDexListCheck = false;
     options.ignoreMainDexMissingClasses = true;
@@ -79,39 +94,60 @@ public final class DexSplitterHelper {
       }
       Map<String, LazyLoadedDexApplication.Builder> applications =
           getDistribution(app, featureClassMapping, mapper);
-      for (Entry<String, LazyLoadedDexApplication.Builder> entry : applications.entrySet()) {
-        DexApplication featureApp = entry.getValue().build();
-        // We use the same factory, reset sorting.
-        featureApp.dexItemFactory.resetSortedIndices();
-        assert !options.hasMethodsFilter();
-
-        // Run d8 optimize to ensure jumbo strings are handled.
-        AppInfo appInfo = new AppInfo(featureApp);
-        featureApp = D8.optimize(featureApp, appInfo, options, timing, executor);
-        // We create a specific consumer for each split.
-        Path outputDir = Paths.get(output).resolve(entry.getKey());
-        if (!Files.exists(outputDir)) {
-          Files.createDirectory(outputDir);
+      assert !options.hasMethodsFilter();
+
+      // The features are processed concurrently. Each feature task waits for the work it submits
+      // to the executor, so the feature tasks run on a separate executor to avoid exhausting the
+      // threads of the executor.
+      // The consumers are collected as soon as they are created, such that the consumers of all
+      // features are finished, even if some features fail.
+      Queue<DexIndexedConsumer> consumers = new ConcurrentLinkedQueue<>();
+      ExecutorService featureExecutor = ThreadUtils.getExecutorService(options);
+      try {
+        List<Future<ApplicationWriter>> futures = new ArrayList<>(applications.size());
+        for (Entry<String, LazyLoadedDexApplication.Builder> entry : applications.entrySet()) {
+          futures.add(
+              featureExecutor.submit(
+                  () ->
+                      optimizeAndPrepare(
+                          entry.getKey(),
+                          entry.getValue(),
+                          markers,
+                          output,
+                          options,
+                          consumers,
+                          executor)));
+        }
+        // Waits for all features, also if one of them fails.
+        ThreadUtils.awaitFutures(futures);
+        List<ApplicationWriter> writers = new ArrayList<>(futures.size());
+        for (Future<ApplicationWriter> future : futures) {
+          writers.add(future.get());
+        }
+
+        // The features share the item factory. Sort its items once all features have been
+        // prepared, which gives all features the same order as sorting for each feature separately.
+        app.dexItemFactory.sort(NamingLens.getIdentityLens());
+
+        List<Future<?>> writeFutures = new ArrayList<>(writers.size());
+        for (ApplicationWriter writer : writers) {
+          writeFutures.add(
+              featureExecutor.submit(
+                  () -> {
+                    writer.writePrepared(executor);
+                    return null; // we want a Callable not a Runnable to be able to throw
+                  }));
         }
-        DexIndexedConsumer consumer = new DirectoryConsumer(outputDir);
-
-        try {
-          new ApplicationWriter(
-                  featureApp,
-                  null,
-                  options,
-                  markers,
-                  null,
-                  GraphLense.getIdentityLense(),
-                  NamingLens.getIdentityLens(),
-                  null,
-                  consumer)
-              .write(executor);
-          options.printWarnings();
-        } finally {
+        ThreadUtils.awaitFutures(writeFutures);
+      } catch (InterruptedException e) {
+        throw new RuntimeException("Interrupted while waiting for future.", e);
+      } finally {
+        featureExecutor.shutdown();
+        for (DexIndexedConsumer consumer : consumers) {
           consumer.finished(options.reporter);
         }
       }
+      options.printWarnings();
     } catch (ExecutionException e) {
       throw unwrapExecutionException(e);
     } catch (FeatureMappingException e) {
@@ -121,6 +157,42 @@ public final class DexSplitterHelper {
     }
   }
 
+  private static ApplicationWriter optimizeAndPrepare(
+      String feature,
+      LazyLoadedDexApplication.Builder builder,
+      List<Marker> markers,
+      String output,
+      InternalOptions options,
+      Queue<DexIndexedConsumer> consumers,
+      ExecutorService executor)
+      throws ExecutionException, IOException {
+    DexApplication featureApp = builder.build();
+
+    // Run d8 optimize to ensure jumbo strings are handled.
+    AppInfo appInfo = new AppInfo(featureApp);
+    featureApp = D8.optimize(featureApp, appInfo, options, featureApp.timing, executor);
+    // We create a specific consumer for each split.
+    Path outputDir = Paths.get(output).resolve(feature);
+    if (!Files.exists(outputDir)) {
+      Files.createDirectory(outputDir);
+    }
+    DexIndexedConsumer consumer = new DirectoryConsumer(outputDir);
+    consumers.add(consumer);
+    ApplicationWriter writer =
+        new ApplicationWriter(
+            featureApp,
+            null,
+            options,
+            markers,
+            null,
+            GraphLense.getIdentityLense(),
+            NamingLens.getIdentityLens(),
+            null,
+            consumer);
+    writer.prepare(executor);
+    return writer;
+  }
+
   private static Map<String, LazyLoadedDexApplication.Builder> getDistribution(
       DexApplication app, FeatureClassMapping featureClassMapping, ClassNameMapper mapper)
       throws FeatureMappingException {
@@ -131,7 +203,9 @@ public final class DexSplitterHelper {
       String feature = featureClassMapping.featureForClass(clazzName);
       LazyLoadedDexApplication.Builder featureApplication = applications.get(feature);
       if (featureApplication == null) {
-        featureApplication = DexApplication.builder(app.options, app.timing);
+        // Features are processed concurrently, so each feature has its own timing.
+        featureApplication =
+            DexApplication.builder(app.options, new Timing("DexSplitter " + feature));
         // If this is the base, we add the main dex list.
         if (feature.equals(featureClassMapping.getBaseName())) {
           featureApplication.addToMainDexList(app.mainDexList);
@@ -143,6 +217,24 @@ public final class DexSplitterHelper {
     return applications;
   }
 
+  public static void runForTesting(
+      D8Command command,
+      FeatureClassMapping featureClassMapping,
+      String output,
+      Consumer<InternalOptions> optionsConsumer)
+      throws CompilationFailedException {
+    InternalOptions options = command.getInternalOptions();
+    optionsConsumer.accept(options);
+    ExecutorService executor = ThreadUtils.getExecutorService(options);
+    try {
+      ExceptionUtils.withCompilationHandler(
+          command.getReporter(),
+          () -> run(command, options, featureClassMapping, output, null, executor));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   public static void runD8ForTesting(D8Command command, boolean dontCreateMarkerInD8)
       throws CompilationFailedException {
     InternalOptions options = command.getInternalOptions();
@@ -57,7 +57,9 @@ public final class L8Command extends BaseCompilerCommand {
         false,
         specialLibraryConfiguration,
         false,
-        (name, checksum) -> true);
+        (name, checksum) -> true,
+        null,
+        TraceGranularity.PHASE);
     this.d8Command = d8Command;
     this.r8Command = r8Command;
   }
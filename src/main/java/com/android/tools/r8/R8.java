@@ -19,6 +19,7 @@ import com.android.tools.r8.graph.AppliedGraphLens;
 import com.android.tools.r8.graph.DexApplication;
 import com.android.tools.r8.graph.DexCallSite;
 import com.android.tools.r8.graph.DexClass;
+import com.android.tools.r8.graph.DexCodeStorage;
 import com.android.tools.r8.graph.DexDefinition;
 import com.android.tools.r8.graph.DexMethod;
 import com.android.tools.r8.graph.DexProgramClass;
@@ -32,11 +33,13 @@ import com.android.tools.r8.ir.conversion.IRConverter;
 import com.android.tools.r8.ir.conversion.OptimizationFeedbackSimple;
 import com.android.tools.r8.ir.desugar.R8NestBasedAccessDesugaring;
 import com.android.tools.r8.ir.optimize.EnumInfoMapCollector;
+import com.android.tools.r8.ir.optimize.ExecutionProfile;
 import com.android.tools.r8.ir.optimize.MethodPoolCollection;
 import com.android.tools.r8.ir.optimize.NestReducer;
 import com.android.tools.r8.ir.optimize.SwitchMapCollector;
 import com.android.tools.r8.ir.optimize.UninstantiatedTypeOptimization;
 import com.android.tools.r8.ir.optimize.UnusedArgumentsCollector;
+import com.android.tools.r8.ir.optimize.enums.EnumUnboxer;
 import com.android.tools.r8.jar.CfApplicationWriter;
 import com.android.tools.r8.kotlin.Kotlin;
 import com.android.tools.r8.logging.Log;
@@ -74,6 +77,7 @@ import com.android.tools.r8.shaking.WhyAreYouKeepingConsumer;
 import com.android.tools.r8.utils.AndroidApiLevel;
 import com.android.tools.r8.utils.AndroidApp;
 import com.android.tools.r8.utils.CfgPrinter;
+import com.android.tools.r8.utils.ChromeTraceWriter;
 import com.android.tools.r8.utils.CollectionUtils;
 import com.android.tools.r8.utils.ExceptionUtils;
 import com.android.tools.r8.utils.FileUtils;
@@ -85,6 +89,7 @@ import com.android.tools.r8.utils.SelfRetraceTest;
 import com.android.tools.r8.utils.StringDiagnostic;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.Timing;
+import com.android.tools.r8.utils.Tracer;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteStreams;
@@ -147,7 +152,7 @@ public class R8 {
     if (options.printMemory) {
       System.gc();
     }
-    this.timing = new Timing("R8", options.printMemory);
+    this.timing = new Timing("R8", options.printMemory, Tracer.create(options));
     options.itemFactory.resetSortedIndices();
   }
 
@@ -255,6 +260,7 @@ public class R8 {
     if (options.quiet) {
       System.setOut(new PrintStream(ByteStreams.nullOutputStream()));
     }
+    DexCodeStorage codeStorage = null;
     try {
       DexApplication application =
           new ApplicationReader(inputApp, options, timing).read(executorService).toDirect();
@@ -265,6 +271,11 @@ public class R8 {
       AppView<AppInfoWithSubtyping> appView =
           AppView.createForR8(new AppInfoWithSubtyping(application), options);
       appView.setAppServices(AppServices.builder(appView).build());
+      if (options.executionProfilePath != null) {
+        appView.setExecutionProfile(
+            ExecutionProfile.parse(
+                options.executionProfilePath, appView.dexItemFactory(), options.reporter));
+      }
 
       List<ProguardConfigurationRule> synthesizedProguardRules = new ArrayList<>();
       timing.begin("Strip unused code");
@@ -530,10 +541,28 @@ public class R8 {
       if (options.enableEnumValueOptimization) {
         appViewWithLiveness.setAppInfo(new SwitchMapCollector(appViewWithLiveness).run());
         appViewWithLiveness.setAppInfo(new EnumInfoMapCollector(appViewWithLiveness).run());
+        if (options.enableEnumUnboxing) {
+          timing.begin("EnumUnboxing");
+          boolean changed =
+              appView.setGraphLense(new EnumUnboxer(appViewWithLiveness).run(executorService));
+          if (changed) {
+            application = application.asDirect().rewrittenWithLense(appView.graphLense());
+            appViewWithLiveness.setAppInfo(
+                appViewWithLiveness
+                    .appInfo()
+                    .rewrittenWithLense(application.asDirect(), appView.graphLense()));
+          }
+          timing.end();
+        }
       }
 
       appView.setAppServices(appView.appServices().rewrittenWithLens(appView.graphLense()));
 
+      if (options.codeStorageHeapBudget > 0 && options.isGeneratingDex()) {
+        codeStorage = DexCodeStorage.create(options.codeStorageHeapBudget);
+        appView.setCodeStorage(codeStorage);
+      }
+
       timing.begin("Create IR");
       Map<String, String> additionalRewritePrefix;
       Set<DexCallSite> desugaredCallSites;
@@ -548,6 +577,7 @@ public class R8 {
       }
 
       // Clear the reference type lattice element cache to reduce memory pressure.
+      appView.dexItemFactory().leastUpperBoundCache.recordStatistics(timing);
       appView.dexItemFactory().clearTypeLatticeElementsCache();
 
       // At this point all code has been mapped according to the graph lens. We cannot remove the
@@ -814,15 +844,26 @@ public class R8 {
           options,
           proguardMapSupplier);
 
+      if (codeStorage != null) {
+        codeStorage.recordStatistics(timing);
+      }
+
       options.printWarnings();
     } catch (ExecutionException e) {
       throw unwrapExecutionException(e);
     } finally {
+      if (codeStorage != null) {
+        // Closing the storage also deletes the file with the spilled code.
+        codeStorage.close();
+      }
       options.signalFinishedToConsumers();
       // Dump timings.
       if (options.printTimes) {
         timing.report();
       }
+      if (options.traceOutputPath != null) {
+        ChromeTraceWriter.write(timing.getTracer(), options.traceOutputPath, options.reporter);
+      }
     }
   }
 
@@ -95,6 +95,8 @@ public final class R8Command extends BaseCompilerCommand {
     private GraphConsumer keptGraphConsumer = null;
     private GraphConsumer mainDexKeptGraphConsumer = null;
     private BiFunction<String, Long, Boolean> dexClassChecksumFilter = (name, checksum) -> true;
+    private Path executionProfilePath = null;
+    private long codeStorageHeapBudget = 0;
 
     // Internal compatibility mode for use from CompatProguard tool.
     Path proguardCompatibilityRulesOutput = null;
@@ -290,6 +292,41 @@ public final class R8Command extends BaseCompilerCommand {
       return self();
     }
 
+    /**
+     * Set the path of an execution profile of the hot methods and hot call sites of the program.
+     *
+     * <p>When a profile is given, inlining favors the hot code and outlining is restricted to the
+     * cold code. Each line of the profile is either a method in smali syntax, such as {@code
+     * Lcom/example/Foo;->bar(I)V}, optionally prefixed by the ART profile flags 'H', 'S' and 'P',
+     * or a pair of such methods separated by whitespace, which marks the call sites of the second
+     * method in the first method as hot. Only entries with the 'H' flag or without flags are
+     * considered hot. Lines starting with '#' are ignored.
+     *
+     * @param executionProfilePath File-system path of the execution profile.
+     */
+    public Builder setExecutionProfilePath(Path executionProfilePath) {
+      this.executionProfilePath = executionProfilePath;
+      return self();
+    }
+
+    /**
+     * Set the approximate number of bytes of compiled DEX code that is kept on the heap.
+     *
+     * <p>When a budget is given, compiled code beyond the budget is written to a temporary file and
+     * read back when it is needed, which reduces the peak heap usage of the compilation at the cost
+     * of additional I/O. The budget only applies when generating DEX.
+     *
+     * @param codeStorageHeapBudget Budget in bytes, or zero to keep all code on the heap.
+     */
+    public Builder setCodeStorageHeapBudget(long codeStorageHeapBudget) {
+      if (codeStorageHeapBudget < 0) {
+        getReporter().error("Invalid code storage heap budget: " + codeStorageHeapBudget);
+      } else {
+        this.codeStorageHeapBudget = codeStorageHeapBudget;
+      }
+      return self();
+    }
+
     /**
      * Set a consumer for receiving kept-graph events.
      *
@@ -523,7 +560,11 @@ public final class R8Command extends BaseCompilerCommand {
               getSpecialLibraryConfiguration(),
               getIncludeClassesChecksum(),
               getDexClassChecksumFilter(),
-              desugaredLibraryKeepRuleConsumer);
+              getTraceOutputPath(),
+              getTraceGranularity(),
+              desugaredLibraryKeepRuleConsumer,
+              executionProfilePath,
+              codeStorageHeapBudget);
 
       return command;
     }
@@ -604,6 +645,8 @@ public final class R8Command extends BaseCompilerCommand {
   private final GraphConsumer mainDexKeptGraphConsumer;
   private final Consumer<List<ProguardConfigurationRule>> syntheticProguardRulesConsumer;
   private final StringConsumer desugaredLibraryKeepRuleConsumer;
+  private final Path executionProfilePath;
+  private final long codeStorageHeapBudget;
 
   /** Get a new {@link R8Command.Builder}. */
   public static Builder builder() {
@@ -678,7 +721,11 @@ public final class R8Command extends BaseCompilerCommand {
       String specialLibraryConfiguration,
       boolean encodeChecksum,
       BiPredicate<String, Long> dexClassChecksumFilter,
-      StringConsumer desugaredLibraryKeepRuleConsumer) {
+      Path traceOutputPath,
+      TraceGranularity traceGranularity,
+      StringConsumer desugaredLibraryKeepRuleConsumer,
+      Path executionProfilePath,
+      long codeStorageHeapBudget) {
     super(
         inputApp,
         mode,
@@ -690,7 +737,9 @@ public final class R8Command extends BaseCompilerCommand {
         optimizeMultidexForLinearAlloc,
         specialLibraryConfiguration,
         encodeChecksum,
-        dexClassChecksumFilter);
+        dexClassChecksumFilter,
+        traceOutputPath,
+        traceGranularity);
     assert proguardConfiguration != null;
     assert mainDexKeepRules != null;
     this.mainDexKeepRules = mainDexKeepRules;
@@ -708,6 +757,8 @@ public final class R8Command extends BaseCompilerCommand {
     this.mainDexKeptGraphConsumer = mainDexKeptGraphConsumer;
     this.syntheticProguardRulesConsumer = syntheticProguardRulesConsumer;
     this.desugaredLibraryKeepRuleConsumer = desugaredLibraryKeepRuleConsumer;
+    this.executionProfilePath = executionProfilePath;
+    this.codeStorageHeapBudget = codeStorageHeapBudget;
   }
 
   private R8Command(boolean printHelp, boolean printVersion) {
@@ -727,6 +778,8 @@ public final class R8Command extends BaseCompilerCommand {
     mainDexKeptGraphConsumer = null;
     syntheticProguardRulesConsumer = null;
     desugaredLibraryKeepRuleConsumer = null;
+    executionProfilePath = null;
+    codeStorageHeapBudget = 0;
   }
 
   /** Get the enable-tree-shaking state. */
@@ -839,6 +892,8 @@ public final class R8Command extends BaseCompilerCommand {
     }
 
     internal.enableInheritanceClassInDexDistributor = isOptimizeMultidexForLinearAlloc();
+    internal.traceOutputPath = getTraceOutputPath();
+    internal.traceGranularity = getTraceGranularity();
 
     // TODO(134732760): This is still work in progress.
     assert internal.rewritePrefix.isEmpty();
@@ -852,6 +907,13 @@ public final class R8Command extends BaseCompilerCommand {
 
     internal.desugaredLibraryKeepRuleConsumer = desugaredLibraryKeepRuleConsumer;
 
+    if (executionProfilePath != null) {
+      internal.executionProfilePath = executionProfilePath;
+    }
+    if (codeStorageHeapBudget > 0) {
+      internal.codeStorageHeapBudget = codeStorageHeapBudget;
+    }
+
     return internal;
   }
 
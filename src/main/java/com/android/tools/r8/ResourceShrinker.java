@@ -3,6 +3,7 @@
 // BSD-style license that can be found in the LICENSE file.
 package com.android.tools.r8;
 
+import com.android.tools.r8.ProgramResource.Kind;
 import com.android.tools.r8.code.Const;
 import com.android.tools.r8.code.Const16;
 import com.android.tools.r8.code.Const4;
@@ -35,6 +36,9 @@ import com.android.tools.r8.code.SgetObject;
 import com.android.tools.r8.code.SgetShort;
 import com.android.tools.r8.code.SgetWide;
 import com.android.tools.r8.dex.ApplicationReader;
+import com.android.tools.r8.dex.DexParser;
+import com.android.tools.r8.dex.DexReader;
+import com.android.tools.r8.graph.ClassKind;
 import com.android.tools.r8.graph.Code;
 import com.android.tools.r8.graph.DexAnnotation;
 import com.android.tools.r8.graph.DexAnnotationElement;
@@ -49,16 +53,21 @@ import com.android.tools.r8.ir.code.SingleConstant;
 import com.android.tools.r8.ir.code.WideConstant;
 import com.android.tools.r8.utils.AndroidApp;
 import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.StringDiagnostic;
+import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.Timing;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
 /**
@@ -124,6 +133,12 @@ final public class ResourceShrinker {
   /**
    * Classes that would like to process data relevant to resource shrinking should implement this
    * interface.
+   *
+   * <p>When used with {@link #run(Command, ReferenceChecker)}, all methods are invoked on the
+   * thread that calls {@code run}. When used with {@link #run(Command, ReferenceChecker,
+   * ExecutorService)}, the methods are invoked concurrently from the threads of the executor
+   * service, so the implementation must be thread safe. In both cases, the callbacks for a single
+   * class are invoked on a single thread, after {@link #shouldProcess} returned true for the class.
    */
   @KeepForSubclassing
   public interface ReferenceChecker {
@@ -457,12 +472,93 @@ final public class ResourceShrinker {
     }
   }
 
+  /**
+   * Analyzes the dex files of the command one at a time. The callback is only invoked on the
+   * calling thread.
+   */
   public static void run(Command command, ReferenceChecker callback)
       throws IOException, ExecutionException {
     AndroidApp inputApp = command.getInputApp();
+    InternalOptions options = command.getInternalOptions();
+    List<ProgramResource> dexResources = getDexResourcesOrNull(inputApp, options);
+    if (dexResources == null) {
+      runOnApplication(inputApp, options, callback);
+      return;
+    }
+    for (ProgramResource dexResource : dexResources) {
+      visitDexResource(dexResource, options, callback);
+    }
+  }
+
+  /**
+   * Analyzes the dex files of the command in parallel, using one task per dex file. The callback is
+   * invoked concurrently from the threads of the executor service and must therefore be thread
+   * safe.
+   */
+  public static void run(
+      Command command, ReferenceChecker callback, ExecutorService executorService)
+      throws IOException, ExecutionException {
+    AndroidApp inputApp = command.getInputApp();
+    InternalOptions options = command.getInternalOptions();
+    List<ProgramResource> dexResources = getDexResourcesOrNull(inputApp, options);
+    if (dexResources == null) {
+      runOnApplication(inputApp, options, callback);
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<>(dexResources.size());
+    for (ProgramResource dexResource : dexResources) {
+      futures.add(
+          executorService.submit(
+              () -> {
+                visitDexResource(dexResource, options, callback);
+                return null; // we want a Callable not a Runnable to be able to throw
+              }));
+    }
+    ThreadUtils.awaitFutures(futures);
+  }
+
+  /**
+   * Returns the dex program resources of the app, or null if the app also has class file program
+   * resources, which are only supported by reading the full application.
+   */
+  private static List<ProgramResource> getDexResourcesOrNull(
+      AndroidApp inputApp, InternalOptions options) {
+    try {
+      List<ProgramResource> dexResources = new ArrayList<>();
+      for (ProgramResource resource : inputApp.computeAllProgramResources()) {
+        if (resource.getKind() != Kind.DEX) {
+          return null;
+        }
+        dexResources.add(resource);
+      }
+      return dexResources;
+    } catch (ResourceException e) {
+      throw options.reporter.fatalError(new StringDiagnostic(e.getMessage(), e.getOrigin()));
+    }
+  }
+
+  /**
+   * Visits the classes of a single dex file as they are parsed, such that only the classes that are
+   * being visited are kept in memory.
+   */
+  private static void visitDexResource(
+      ProgramResource dexResource, InternalOptions options, ReferenceChecker callback)
+      throws IOException {
+    DexParser dexParser;
+    try {
+      dexParser = new DexParser(new DexReader(dexResource), ClassKind.PROGRAM, options);
+    } catch (ResourceException e) {
+      throw options.reporter.fatalError(new StringDiagnostic(e.getMessage(), e.getOrigin()));
+    }
+    dexParser.forEachClassDef(
+        clazz -> new DexClassUsageVisitor(clazz.asProgramClass(), callback).visit());
+  }
+
+  private static void runOnApplication(
+      AndroidApp inputApp, InternalOptions options, ReferenceChecker callback)
+      throws IOException, ExecutionException {
     Timing timing = new Timing("resource shrinker analyzer");
-    DexApplication dexApplication =
-        new ApplicationReader(inputApp, command.getInternalOptions(), timing).read();
+    DexApplication dexApplication = new ApplicationReader(inputApp, options, timing).read();
     for (DexProgramClass programClass : dexApplication.classes()) {
       new DexClassUsageVisitor(programClass, callback).visit();
     }
@@ -0,0 +1,19 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8;
+
+/**
+ * Granularity of the spans recorded when tracing a compilation.
+ *
+ * <p>Each granularity includes the spans of the coarser granularities.
+ */
+@Keep
+public enum TraceGranularity {
+  /** Records the phases of the compiler, e.g., reading, tree shaking, optimization and writing. */
+  PHASE,
+  /** Additionally records the processing of individual classes, subject to sampling. */
+  CLASS,
+  /** Additionally records the processing of individual methods, subject to sampling. */
+  METHOD
+}
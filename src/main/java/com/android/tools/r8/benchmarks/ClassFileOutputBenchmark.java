@@ -0,0 +1,127 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.benchmarks;
+
+import static com.android.tools.r8.benchmarks.BenchmarkUtils.printRuntimeNanoseconds;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.ProgramConsumer;
+import com.android.tools.r8.R8;
+import com.android.tools.r8.R8Command;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Compares the throughput of R8 when writing class files to the throughput when writing DEX.
+ *
+ * <p>Shrinking, minification and optimization are disabled, such that the difference between the
+ * two runs is dominated by the backends. Usage:
+ *
+ * <pre>
+ *   ClassFileOutputBenchmark [program.jar [library.jar [iterations]]]
+ * </pre>
+ */
+public class ClassFileOutputBenchmark {
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int ITERATIONS = 10;
+  private static final Path PROGRAM = Paths.get("build", "libs", "r8.jar");
+  private static final Path LIB = Paths.get("third_party", "openjdk", "openjdk-rt-1.8", "rt.jar");
+
+  private static class ClassFileCounter extends ClassFileConsumer.ForwardingConsumer {
+    private long bytes = 0;
+
+    ClassFileCounter() {
+      super(null);
+    }
+
+    @Override
+    public synchronized void accept(
+        ByteDataView data, String descriptor, DiagnosticsHandler handler) {
+      bytes += data.getLength();
+    }
+  }
+
+  private static class DexCounter extends DexIndexedConsumer.ForwardingConsumer {
+    private long bytes = 0;
+
+    DexCounter() {
+      super(null);
+    }
+
+    @Override
+    public synchronized void accept(
+        int fileIndex, ByteDataView data, Set<String> descriptors, DiagnosticsHandler handler) {
+      bytes += data.getLength();
+    }
+  }
+
+  private static void compile(
+      Path program, Path library, ProgramConsumer consumer, ExecutorService executor)
+      throws CompilationFailedException {
+    R8.run(
+        R8Command.builder()
+            .addProgramFiles(program)
+            .addLibraryFiles(library)
+            .addProguardConfiguration(
+                ImmutableList.of(
+                    "-dontshrink", "-dontobfuscate", "-dontoptimize", "-ignorewarnings"),
+                Origin.unknown())
+            .setProgramConsumer(consumer)
+            .build(),
+        executor);
+  }
+
+  private static long run(
+      String name,
+      boolean classFiles,
+      Path program,
+      Path library,
+      int iterations,
+      ExecutorService executor)
+      throws CompilationFailedException {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      compile(program, library, createConsumer(classFiles), executor);
+    }
+    ProgramConsumer consumer = null;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      consumer = createConsumer(classFiles);
+      compile(program, library, consumer, executor);
+    }
+    long elapsed = (System.nanoTime() - start) / iterations;
+    long bytes =
+        classFiles ? ((ClassFileCounter) consumer).bytes : ((DexCounter) consumer).bytes;
+    printRuntimeNanoseconds(name, elapsed);
+    System.out.println(name + "(CodeSize): " + bytes);
+    return elapsed;
+  }
+
+  private static ProgramConsumer createConsumer(boolean classFiles) {
+    return classFiles ? new ClassFileCounter() : new DexCounter();
+  }
+
+  public static void main(String[] args) throws CompilationFailedException {
+    Path program = args.length > 0 ? Paths.get(args[0]) : PROGRAM;
+    Path library = args.length > 1 ? Paths.get(args[1]) : LIB;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : ITERATIONS;
+    ExecutorService executor = ThreadUtils.getExecutorService(ThreadUtils.NOT_SPECIFIED);
+    try {
+      long classFileTime = run("ClassFileOutput", true, program, library, iterations, executor);
+      long dexTime = run("DexOutput", false, program, library, iterations, executor);
+      System.out.println(
+          "ClassFileOutput/DexOutput(Ratio): " + ((double) classFileTime / dexTime));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -249,10 +249,9 @@ public class ApplicationReader {
         // Read the DexCode items and DexProgramClass items in parallel.
         if (!options.skipReadingDexCode) {
           for (DexParser dexParser : dexParsers) {
-            futures.add(executorService.submit(() -> {
-              dexParser.addClassDefsTo(
-                  classKind.bridgeConsumer(classes::add)); // Depends on Methods, Code items etc.
-            }));
+            // Depends on Methods, Code items etc.
+            dexParser.addClassDefsTo(
+                classKind.bridgeConsumer(classes::add), executorService, futures);
           }
         }
       }
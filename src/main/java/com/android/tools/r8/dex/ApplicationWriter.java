@@ -25,6 +25,7 @@ import com.android.tools.r8.graph.DexCode;
 import com.android.tools.r8.graph.DexDebugInfo;
 import com.android.tools.r8.graph.DexEncodedArray;
 import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexItemFactory;
 import com.android.tools.r8.graph.DexProgramClass;
 import com.android.tools.r8.graph.DexString;
 import com.android.tools.r8.graph.DexType;
@@ -75,6 +76,10 @@ public class ApplicationWriter {
   public DexIndexedConsumer programConsumer;
   public final ProguardMapSupplier proguardMapSupplier;
 
+  // Set by prepare().
+  private ProguardMapSupplier.ProguardMapAndId proguardMapAndId = null;
+  private Iterable<VirtualFile> virtualFiles = null;
+
   private static class SortAnnotations extends MixedSectionCollection {
 
     @Override
@@ -251,7 +256,24 @@ public class ApplicationWriter {
 
   public void write(ExecutorService executorService) throws IOException, ExecutionException {
     application.timing.begin("DexApplication.write");
-    ProguardMapSupplier.ProguardMapAndId proguardMapAndId = null;
+    try {
+      prepare(executorService);
+      application.dexItemFactory.sort(namingLens);
+      writePrepared(executorService);
+    } finally {
+      application.timing.end();
+    }
+  }
+
+  /**
+   * Distributes the classes over dex files without writing them.
+   *
+   * <p>Applications that share a {@link DexItemFactory} can be prepared concurrently. Once all
+   * applications are prepared, the items of the factory must be sorted, after which the
+   * applications can be written concurrently with {@link #writePrepared}.
+   */
+  public void prepare(ExecutorService executorService) throws ExecutionException, IOException {
+    assert virtualFiles == null;
     if (proguardMapSupplier != null && options.proguardMapConsumer != null) {
       proguardMapAndId = proguardMapSupplier.getProguardMapAndId();
     }
@@ -268,88 +290,91 @@ public class ApplicationWriter {
         markerStrings.add(application.dexItemFactory.createString(marker.toString()));
       }
     }
-    try {
-      insertAttributeAnnotations();
 
-      // Generate the dex file contents.
-      List<Future<Boolean>> dexDataFutures = new ArrayList<>();
-      Iterable<VirtualFile> virtualFiles = distribute(executorService);
-      if (options.encodeChecksums) {
-        encodeChecksums(virtualFiles);
-      }
+    insertAttributeAnnotations();
 
-      application.dexItemFactory.sort(namingLens);
-      assert markers == null
-          || markers.isEmpty()
-          || application.dexItemFactory.extractMarker() != null;
+    // Generate the dex file contents.
+    virtualFiles = distribute(executorService);
+    if (options.encodeChecksums) {
+      encodeChecksums(virtualFiles);
+    }
+  }
+
+  /**
+   * Writes the dex files computed by {@link #prepare}. The items of the factory must be sorted and
+   * no new items may be created until the application has been written.
+   */
+  public void writePrepared(ExecutorService executorService)
+      throws ExecutionException, IOException {
+    assert virtualFiles != null;
+    assert markers == null
+        || markers.isEmpty()
+        || application.dexItemFactory.extractMarker() != null;
 
-      SortAnnotations sortAnnotations = new SortAnnotations();
-      application.classes().forEach((clazz) -> clazz.addDependencies(sortAnnotations));
+    SortAnnotations sortAnnotations = new SortAnnotations();
+    application.classes().forEach((clazz) -> clazz.addDependencies(sortAnnotations));
 
-      for (VirtualFile virtualFile : virtualFiles) {
-        if (virtualFile.isEmpty()) {
-          continue;
-        }
-        dexDataFutures.add(
-            executorService.submit(
-                () -> {
-                  ProgramConsumer consumer;
-                  ByteBufferProvider byteBufferProvider;
-                  if (programConsumer != null) {
-                    consumer = programConsumer;
-                    byteBufferProvider = programConsumer;
-                  } else if (virtualFile.getPrimaryClassDescriptor() != null) {
-                    consumer = options.getDexFilePerClassFileConsumer();
-                    byteBufferProvider = options.getDexFilePerClassFileConsumer();
-                  } else {
-                    consumer = options.getDexIndexedConsumer();
-                    byteBufferProvider = options.getDexIndexedConsumer();
-                  }
-                  ObjectToOffsetMapping objectMapping = virtualFile.computeMapping(application);
-                  MethodToCodeObjectMapping codeMapping =
-                      rewriteCodeWithJumboStrings(
-                          objectMapping, virtualFile.classes(), application);
-                  ByteBufferResult result =
-                      writeDexFile(objectMapping, codeMapping, byteBufferProvider);
-                  ByteDataView data =
-                      new ByteDataView(
-                          result.buffer.array(), result.buffer.arrayOffset(), result.length);
-                  if (consumer instanceof DexFilePerClassFileConsumer) {
-                    ((DexFilePerClassFileConsumer) consumer)
-                        .accept(
-                            virtualFile.getPrimaryClassDescriptor(),
-                            data,
-                            virtualFile.getClassDescriptors(),
-                            options.reporter);
-                  } else {
-                    ((DexIndexedConsumer) consumer)
-                        .accept(
-                            virtualFile.getId(),
-                            data,
-                            virtualFile.getClassDescriptors(),
-                            options.reporter);
-                  }
-                  // Release use of the backing buffer now that accept has returned.
-                  data.invalidate();
-                  byteBufferProvider.releaseByteBuffer(result.buffer.asByteBuffer());
-                  return true;
-                }));
+    List<Future<Boolean>> dexDataFutures = new ArrayList<>();
+    for (VirtualFile virtualFile : virtualFiles) {
+      if (virtualFile.isEmpty()) {
+        continue;
       }
-      // Wait for all files to be processed before moving on.
-      ThreadUtils.awaitFutures(dexDataFutures);
-      // Fail if there are pending errors, e.g., the program consumers may have reported errors.
-      options.reporter.failIfPendingErrors();
-      // Supply info to all additional resource consumers.
-      supplyAdditionalConsumers(
-          application,
-          appView,
-          graphLense,
-          namingLens,
-          options,
-          proguardMapAndId == null ? null : proguardMapAndId.map);
-    } finally {
-      application.timing.end();
+      dexDataFutures.add(
+          executorService.submit(
+              () -> {
+                ProgramConsumer consumer;
+                ByteBufferProvider byteBufferProvider;
+                if (programConsumer != null) {
+                  consumer = programConsumer;
+                  byteBufferProvider = programConsumer;
+                } else if (virtualFile.getPrimaryClassDescriptor() != null) {
+                  consumer = options.getDexFilePerClassFileConsumer();
+                  byteBufferProvider = options.getDexFilePerClassFileConsumer();
+                } else {
+                  consumer = options.getDexIndexedConsumer();
+                  byteBufferProvider = options.getDexIndexedConsumer();
+                }
+                ObjectToOffsetMapping objectMapping = virtualFile.computeMapping(application);
+                MethodToCodeObjectMapping codeMapping =
+                    rewriteCodeWithJumboStrings(objectMapping, virtualFile.classes(), application);
+                ByteBufferResult result =
+                    writeDexFile(objectMapping, codeMapping, byteBufferProvider);
+                ByteDataView data =
+                    new ByteDataView(
+                        result.buffer.array(), result.buffer.arrayOffset(), result.length);
+                if (consumer instanceof DexFilePerClassFileConsumer) {
+                  ((DexFilePerClassFileConsumer) consumer)
+                      .accept(
+                          virtualFile.getPrimaryClassDescriptor(),
+                          data,
+                          virtualFile.getClassDescriptors(),
+                          options.reporter);
+                } else {
+                  ((DexIndexedConsumer) consumer)
+                      .accept(
+                          virtualFile.getId(),
+                          data,
+                          virtualFile.getClassDescriptors(),
+                          options.reporter);
+                }
+                // Release use of the backing buffer now that accept has returned.
+                data.invalidate();
+                byteBufferProvider.releaseByteBuffer(result.buffer.asByteBuffer());
+                return true;
+              }));
     }
+    // Wait for all files to be processed before moving on.
+    ThreadUtils.awaitFutures(dexDataFutures);
+    // Fail if there are pending errors, e.g., the program consumers may have reported errors.
+    options.reporter.failIfPendingErrors();
+    // Supply info to all additional resource consumers.
+    supplyAdditionalConsumers(
+        application,
+        appView,
+        graphLense,
+        namingLens,
+        options,
+        proguardMapAndId == null ? null : proguardMapAndId.map);
   }
 
   public static void supplyAdditionalConsumers(
@@ -513,8 +538,10 @@ public class ApplicationWriter {
       ObjectToOffsetMapping mapping,
       Collection<DexProgramClass> classes,
       DexApplication application) {
-    // Do not bail out early if forcing jumbo string processing.
-    if (!options.testing.forceJumboStringProcessing) {
+    // Do not bail out early if forcing jumbo string processing, or if code may be spilled, in which
+    // case the code objects must be reloaded once and kept in the thread local mapping.
+    if (!options.testing.forceJumboStringProcessing
+        && (appView == null || appView.codeStorage() == null)) {
       // If there are no strings with jumbo indices at all this is a no-op.
       if (!mapping.hasJumboStrings()) {
         return MethodToCodeObjectMapping.fromMethodBacking();
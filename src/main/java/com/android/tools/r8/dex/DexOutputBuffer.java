@@ -32,8 +32,16 @@ public class DexOutputBuffer {
   }
 
   public DexOutputBuffer(ByteBufferProvider byteBufferProvider) {
+    this(byteBufferProvider, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates an output buffer with the given initial capacity. If the final size of the output is
+   * known or can be estimated up front, this avoids growing (and copying) the buffer while writing.
+   */
+  public DexOutputBuffer(ByteBufferProvider byteBufferProvider, int initialCapacity) {
     this.byteBufferProvider = byteBufferProvider;
-    byteBuffer = allocateByteBuffer(DEFAULT_BUFFER_SIZE);
+    byteBuffer = allocateByteBuffer(Math.max(initialCapacity, 1));
   }
 
   private void ensureSpaceFor(int bytes) {
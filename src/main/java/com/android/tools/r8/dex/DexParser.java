@@ -63,7 +63,6 @@ import com.android.tools.r8.utils.Pair;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
 import it.unimi.dsi.fastutil.ints.Int2IntArrayMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -75,12 +74,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class DexParser {
 
-  private final int NO_INDEX = -1;
+  private static final int NO_INDEX = -1;
   private final Origin origin;
   private DexReader dexReader;
   private final DexSection[] dexSections;
@@ -115,14 +119,17 @@ public class DexParser {
   private OffsetToObjectMapping indexedItems = new OffsetToObjectMapping();
 
   // Mapping from offset to code item;
-  private Int2ObjectMap<DexCode> codes = new Int2ObjectOpenHashMap<>();
+  private Map<Integer, DexCode> codes = new Int2ObjectOpenHashMap<>();
 
   // Mapping from offset to dex item;
-  private Int2ObjectMap<Object> offsetMap = new Int2ObjectOpenHashMap<>();
+  private Map<Integer, Object> offsetMap = new Int2ObjectOpenHashMap<>();
 
   // Factory to canonicalize certain dexitems.
   private final DexItemFactory dexItemFactory;
 
+  // Decoder for the debug info items, which are decoded on first access.
+  private DebugInfoDecoder debugInfoDecoder = null;
+
   public DexParser(DexReader dexReader, ClassKind classKind, InternalOptions options) {
     assert dexReader.getOrigin() != null;
     this.origin = dexReader.getOrigin();
@@ -135,6 +142,27 @@ public class DexParser {
     this.options = options;
   }
 
+  // Creates a parser for a range of the class definitions of the given parser, which reads the
+  // file with its own reader and uses the given caches, see addClassDefsTo.
+  private DexParser(
+      DexParser parser,
+      Map<Integer, DexCode> codes,
+      Map<Integer, Object> offsetMap,
+      DebugInfoDecoder debugInfoDecoder) {
+    this.origin = parser.origin;
+    this.dexReader = parser.dexReader.duplicate();
+    this.dexItemFactory = parser.dexItemFactory;
+    this.dexSections = parser.dexSections;
+    this.stringIDs = parser.stringIDs;
+    this.classKind = parser.classKind;
+    this.options = parser.options;
+    this.checksums = parser.checksums;
+    this.indexedItems = parser.indexedItems;
+    this.codes = codes;
+    this.offsetMap = offsetMap;
+    this.debugInfoDecoder = debugInfoDecoder;
+  }
+
   private void ensureCodesInited(int offset) {
     if (offset == 0) {
       return;
@@ -158,7 +186,9 @@ public class DexParser {
       dexReader.position(offset);
       dexReader.align(4);
       DexCode code = parseCodeItem();
-      codes.put(offset, code);  // Update the file local offset to code mapping.
+      // Update the file local offset to code mapping. The code item may have been parsed
+      // concurrently by another range parser, in which case that code is used.
+      codes.putIfAbsent(offset, code);
       dexReader.position(currentPos);
     }
   }
@@ -403,10 +433,9 @@ public class DexParser {
     // Cache is empty so parse the structure.
     dexReader.position(offset);
     result = function.get();
-    // Update the map.
-    offsetMap.put(offset, result);
-    assert offsetMap.get(offset) == result;
-    return result;
+    // Update the map, unless the structure has been parsed concurrently by another range parser.
+    Object existing = offsetMap.putIfAbsent(offset, result);
+    return existing != null ? existing : result;
   }
 
   private DexAnnotation parseAnnotation() {
@@ -433,9 +462,8 @@ public class DexParser {
     DexAnnotation[] result = new DexAnnotation[size];
     int actualSize = 0;
     for (int i = 0; i < size; i++) {
-      DexAnnotation dexAnnotation = annotationAt(annotationOffsets[i]);
-      if (retainAnnotation(dexAnnotation)) {
-        result[actualSize++] = dexAnnotation;
+      if (retainAnnotationAt(annotationOffsets[i])) {
+        result[actualSize++] = annotationAt(annotationOffsets[i]);
       }
     }
     if (actualSize < size) {
@@ -451,9 +479,16 @@ public class DexParser {
     return new DexAnnotationSet(result);
   }
 
-  private boolean retainAnnotation(DexAnnotation annotation) {
-    return annotation.visibility != DexAnnotation.VISIBILITY_BUILD
-        || DexAnnotation.retainCompileTimeAnnotation(annotation.annotation.type, options);
+  // Only reads the visibility and the type of the annotation, such that the annotations that are
+  // not retained are not decoded.
+  private boolean retainAnnotationAt(int offset) {
+    dexReader.position(offset);
+    int visibility = dexReader.get();
+    if (visibility != DexAnnotation.VISIBILITY_BUILD) {
+      return true;
+    }
+    DexType type = indexedItems.getType(dexReader.getUleb128());
+    return DexAnnotation.retainCompileTimeAnnotation(type, options);
   }
 
   private DexAnnotationSet annotationSetAt(int offset) {
@@ -480,11 +515,67 @@ public class DexParser {
         parameters);
   }
 
-  private DexDebugInfo debugInfoAt(int offset) {
-    return (DexDebugInfo) cacheAt(offset, this::parseDebugInfo);
+  private LazyDebugInfo lazyDebugInfoAt(int offset) {
+    return (LazyDebugInfo) cacheAt(offset, () -> new LazyDebugInfo(getDebugInfoDecoder(), offset));
+  }
+
+  private DebugInfoDecoder getDebugInfoDecoder() {
+    if (debugInfoDecoder == null) {
+      debugInfoDecoder = new DebugInfoDecoder(dexReader, indexedItems, dexItemFactory);
+    }
+    return debugInfoDecoder;
+  }
+
+  /**
+   * Decodes debug info items of a dex file after the parser has been closed. It keeps the content
+   * of the file and the index tables alive until all debug info of the file has been decoded or
+   * released.
+   */
+  private static class DebugInfoDecoder {
+
+    private final DexReader dexReader;
+    private final OffsetToObjectMapping indexedItems;
+    private final DexItemFactory dexItemFactory;
+
+    private DebugInfoDecoder(
+        DexReader dexReader, OffsetToObjectMapping indexedItems, DexItemFactory dexItemFactory) {
+      this.dexReader = dexReader;
+      this.indexedItems = indexedItems;
+      this.dexItemFactory = dexItemFactory;
+    }
+
+    private DexDebugInfo decode(int offset) {
+      // Use a separate reader, since debug info may be decoded concurrently.
+      DexReader reader = dexReader.duplicate();
+      reader.position(offset);
+      return parseDebugInfo(reader, indexedItems, dexItemFactory);
+    }
   }
 
-  private DexDebugInfo parseDebugInfo() {
+  /** Debug info item at a given offset, which is decoded on first access. */
+  private static class LazyDebugInfo implements Supplier<DexDebugInfo> {
+
+    private DebugInfoDecoder decoder;
+    private final int offset;
+    private DexDebugInfo debugInfo;
+
+    private LazyDebugInfo(DebugInfoDecoder decoder, int offset) {
+      this.decoder = decoder;
+      this.offset = offset;
+    }
+
+    @Override
+    public synchronized DexDebugInfo get() {
+      if (decoder != null) {
+        debugInfo = decoder.decode(offset);
+        decoder = null;
+      }
+      return debugInfo;
+    }
+  }
+
+  private static DexDebugInfo parseDebugInfo(
+      DexReader dexReader, OffsetToObjectMapping indexedItems, DexItemFactory dexItemFactory) {
     int start = dexReader.getUleb128();
     int parametersSize = dexReader.getUleb128();
     DexString[] parameters = new DexString[parametersSize];
@@ -650,39 +741,142 @@ public class DexParser {
     return methods;
   }
 
+  /**
+   * Parses the classes of the dex file one at a time and passes each of them to the consumer.
+   *
+   * <p>In contrast to {@link #addClassDefsTo}, the code items and other items that are cached by
+   * offset are released once the consumer has returned, and the parser is closed when all classes
+   * have been visited. This bounds the memory used to the classes that are being visited, at the
+   * cost of parsing items that are shared between classes again for each class. It is therefore
+   * only intended for clients that inspect each class once and do not retain it.
+   */
+  public void forEachClassDef(Consumer<DexClass> consumer) {
+    populateIndexTables();
+    addClassDefsTo(
+        clazz -> {
+          consumer.accept(clazz);
+          codes.clear();
+          offsetMap.clear();
+        });
+    close();
+  }
+
   void addClassDefsTo(Consumer<DexClass> classCollection) {
+    ClassDefs classDefs = readClassDefs();
+    addClassDefsTo(classDefs, 0, classDefs.length, classCollection);
+  }
+
+  /**
+   * Parses the classes of the dex file in ranges of class definitions, which are parsed
+   * concurrently by tasks that are added to {@code futures}.
+   *
+   * <p>The index tables must be populated before, see {@link #populateIndexTables}, and are only
+   * read by the tasks. Each task reads the file with its own reader, and the caches of items by
+   * offset are shared between the tasks, such that shared items are still parsed once. The
+   * classes are passed to the consumer in the order of the class definitions when all ranges have
+   * been parsed.
+   */
+  void addClassDefsTo(
+      Consumer<DexClass> classCollection,
+      ExecutorService executorService,
+      List<Future<?>> futures) {
+    ClassDefs classDefs = readClassDefs();
+    int rangeSize = Math.max(options.dexClassDefsPerParsingTask, 1);
+    if (classDefs.length <= rangeSize) {
+      futures.add(
+          executorService.submit(
+              () -> addClassDefsTo(classDefs, 0, classDefs.length, classCollection)));
+      return;
+    }
+    int rangeCount = (classDefs.length + rangeSize - 1) / rangeSize;
+    Map<Integer, DexCode> sharedCodes = new ConcurrentHashMap<>();
+    Map<Integer, Object> sharedOffsetMap = new ConcurrentHashMap<>();
+    DebugInfoDecoder sharedDebugInfoDecoder = getDebugInfoDecoder();
+    List<List<DexClass>> classesPerRange = new ArrayList<>(rangeCount);
+    AtomicInteger remainingRanges = new AtomicInteger(rangeCount);
+    for (int range = 0; range < rangeCount; range++) {
+      int start = range * rangeSize;
+      int end = Math.min(start + rangeSize, classDefs.length);
+      List<DexClass> classes = new ArrayList<>(end - start);
+      classesPerRange.add(classes);
+      DexParser rangeParser =
+          new DexParser(this, sharedCodes, sharedOffsetMap, sharedDebugInfoDecoder);
+      futures.add(
+          executorService.submit(
+              () -> {
+                rangeParser.addClassDefsTo(classDefs, start, end, classes::add);
+                // The last task to finish passes the classes of all ranges on, in order.
+                if (remainingRanges.decrementAndGet() == 0) {
+                  for (List<DexClass> classesInRange : classesPerRange) {
+                    classesInRange.forEach(classCollection);
+                  }
+                }
+              }));
+    }
+  }
+
+  private static class ClassDefs {
+
+    private final int length;
+    private final int[] classIndices;
+    private final int[] accessFlags;
+    private final int[] superclassIndices;
+    private final int[] interfacesOffsets;
+    private final int[] sourceFileIndices;
+    private final int[] annotationsOffsets;
+    private final int[] classDataOffsets;
+    private final int[] staticValuesOffsets;
+
+    private ClassDefs(int length) {
+      this.length = length;
+      classIndices = new int[length];
+      accessFlags = new int[length];
+      superclassIndices = new int[length];
+      interfacesOffsets = new int[length];
+      sourceFileIndices = new int[length];
+      annotationsOffsets = new int[length];
+      classDataOffsets = new int[length];
+      staticValuesOffsets = new int[length];
+    }
+  }
+
+  private ClassDefs readClassDefs() {
     final DexSection dexSection = lookupSection(Constants.TYPE_CLASS_DEF_ITEM);
     final int length = dexSection.length;
     indexedItems.initializeClasses(length);
+    ClassDefs classDefs = new ClassDefs(length);
     if (length == 0) {
-      return;
+      return classDefs;
     }
     dexReader.position(dexSection.offset);
 
-    int[] classIndices = new int[length];
-    int[] accessFlags = new int[length];
-    int[] superclassIndices = new int[length];
-    int[] interfacesOffsets = new int[length];
-    int[] sourceFileIndices = new int[length];
-    int[] annotationsOffsets = new int[length];
-    int[] classDataOffsets = new int[length];
-    int[] staticValuesOffsets = new int[length];
-
     for (int i = 0; i < length; i++) {
       if (Log.ENABLED) {
         Log.verbose(getClass(), "Reading ClassDef @ 0x%08x.", dexReader.position());
       }
-      classIndices[i] = dexReader.getUint();
-      accessFlags[i] = dexReader.getUint();
-      superclassIndices[i] = dexReader.getInt();
-      interfacesOffsets[i] = dexReader.getUint();
-      sourceFileIndices[i] = dexReader.getInt();
-      annotationsOffsets[i] = dexReader.getUint();
-      classDataOffsets[i] = dexReader.getUint();
-      staticValuesOffsets[i] = dexReader.getUint();
-    }
+      classDefs.classIndices[i] = dexReader.getUint();
+      classDefs.accessFlags[i] = dexReader.getUint();
+      classDefs.superclassIndices[i] = dexReader.getInt();
+      classDefs.interfacesOffsets[i] = dexReader.getUint();
+      classDefs.sourceFileIndices[i] = dexReader.getInt();
+      classDefs.annotationsOffsets[i] = dexReader.getUint();
+      classDefs.classDataOffsets[i] = dexReader.getUint();
+      classDefs.staticValuesOffsets[i] = dexReader.getUint();
+    }
+    return classDefs;
+  }
 
-    for (int i = 0; i < length; i++) {
+  private void addClassDefsTo(
+      ClassDefs classDefs, int start, int end, Consumer<DexClass> classCollection) {
+    int[] classIndices = classDefs.classIndices;
+    int[] accessFlags = classDefs.accessFlags;
+    int[] superclassIndices = classDefs.superclassIndices;
+    int[] interfacesOffsets = classDefs.interfacesOffsets;
+    int[] sourceFileIndices = classDefs.sourceFileIndices;
+    int[] annotationsOffsets = classDefs.annotationsOffsets;
+    int[] classDataOffsets = classDefs.classDataOffsets;
+    int[] staticValuesOffsets = classDefs.staticValuesOffsets;
+    for (int i = start; i < end; i++) {
       int superclassIdx = superclassIndices[i];
       DexType superclass = superclassIdx == NO_INDEX ? null : indexedItems.getType(superclassIdx);
       int srcIdx = sourceFileIndices[i];
@@ -873,14 +1067,19 @@ public class DexParser {
         }
       }
     }
-    // Store and restore offset information around reading debug info.
+    // The debug info is decoded on first access, since it is often not needed or discarded.
     int saved = dexReader.position();
-    DexDebugInfo debugInfo = debugInfoAt(debugInfoOff);
+    LazyDebugInfo lazyDebugInfo = lazyDebugInfoAt(debugInfoOff);
     dexReader.position(saved);
     InstructionFactory factory = new InstructionFactory();
     Instruction[] instructions =
         factory.readSequenceFrom(ShortBuffer.wrap(code), 0, code.length, indexedItems);
-    return new DexCode(registerSize, insSize, outsSize, instructions, tries, handlers, debugInfo);
+    DexCode dexCode =
+        new DexCode(registerSize, insSize, outsSize, instructions, tries, handlers, null);
+    if (lazyDebugInfo != null) {
+      dexCode.setLazyDebugInfo(lazyDebugInfo);
+    }
+    return dexCode;
   }
 
   void populateIndexTables() {
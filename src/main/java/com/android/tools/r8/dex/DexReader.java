@@ -85,6 +85,13 @@ public class DexReader extends BinaryReader {
     }
   }
 
+  /** Returns a reader over the same content, which has its own position. */
+  DexReader duplicate() {
+    DexReader reader = new DexReader(origin, buffer.array());
+    reader.setByteOrder();
+    return reader;
+  }
+
   DexVersion getDexVersion() {
     return version;
   }
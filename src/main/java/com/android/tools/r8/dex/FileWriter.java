@@ -86,12 +86,21 @@ public class FileWriter {
     }
   }
 
+  // Estimated sizes of the items for which the size is not computed exactly when estimating the
+  // size of the output, see estimateFileSize().
+  private static final int ESTIMATED_ANNOTATION_ITEM_SIZE = 16;
+  private static final int ESTIMATED_DEBUG_INFO_ITEM_SIZE = 24;
+  private static final int ESTIMATED_ENCODED_ARRAY_ITEM_SIZE = 16;
+  private static final int ESTIMATED_ENCODED_MEMBER_SIZE = 6;
+
+  private final ByteBufferProvider provider;
   private final ObjectToOffsetMapping mapping;
   private final MethodToCodeObjectMapping codeMapping;
   private final DexApplication application;
   private final InternalOptions options;
   private final NamingLens namingLens;
-  private final DexOutputBuffer dest;
+  // The output buffer is allocated by generate(), once the size of the output can be estimated.
+  private DexOutputBuffer dest;
   private final MixedSectionOffsets mixedSectionOffsets;
   private final CodeToKeep desugaredLibraryCodeToKeep;
 
@@ -102,12 +111,12 @@ public class FileWriter {
       DexApplication application,
       InternalOptions options,
       NamingLens namingLens) {
+    this.provider = provider;
     this.mapping = mapping;
     this.codeMapping = codeMapping;
     this.application = application;
     this.options = options;
     this.namingLens = namingLens;
-    this.dest = new DexOutputBuffer(provider);
     this.mixedSectionOffsets = new MixedSectionOffsets(options, codeMapping);
     this.desugaredLibraryCodeToKeep = CodeToKeep.createCodeToKeep(options, namingLens);
   }
@@ -166,6 +175,10 @@ public class FileWriter {
     // Sort the codes first, as their order might impact size due to alignment constraints.
     List<DexCode> codes = sortDexCodesByClassName();
 
+    // Allocate the output buffer such that it does not need to grow while writing.
+    assert dest == null;
+    dest = new DexOutputBuffer(provider, estimateFileSize(layout, codes));
+
     // Output the debug_info_items first, as they have no dependencies.
     dest.moveTo(layout.getCodesOffset() + sizeOfCodeItems(codes));
     writeItems(mixedSectionOffsets.getDebugInfos(), layout::setDebugInfosOffset,
@@ -358,6 +371,53 @@ public class FileWriter {
     }
   }
 
+  /**
+   * Estimates the size of the dex file. The sizes of the fixed sections, the code items, the string
+   * data, the type lists and the annotation sets are exact, whereas the sizes of the remaining
+   * items in the data section are estimated.
+   */
+  private int estimateFileSize(Layout layout, List<DexCode> codes) {
+    long size = layout.dataSectionOffset + sizeOfCodeItems(codes);
+    size += (long) mixedSectionOffsets.getDebugInfos().size() * ESTIMATED_DEBUG_INFO_ITEM_SIZE;
+    for (DexTypeList list : mixedSectionOffsets.getTypeLists()) {
+      size = alignSize(4, size) + Integer.BYTES + list.values.length * Short.BYTES;
+    }
+    for (DexString string : mixedSectionOffsets.getStringData()) {
+      size += sizeAsUleb128(string.size) + string.content.length;
+    }
+    size += (long) mixedSectionOffsets.getAnnotations().size() * ESTIMATED_ANNOTATION_ITEM_SIZE;
+    for (DexProgramClass clazz : mixedSectionOffsets.getClassesWithData()) {
+      size +=
+          4
+              + ESTIMATED_ENCODED_MEMBER_SIZE
+                  * (clazz.staticFields().size()
+                      + clazz.instanceFields().size()
+                      + clazz.directMethods().size()
+                      + clazz.virtualMethods().size());
+    }
+    size +=
+        (long) mixedSectionOffsets.getEncodedArrays().size() * ESTIMATED_ENCODED_ARRAY_ITEM_SIZE;
+    for (DexAnnotationSet set : mixedSectionOffsets.getAnnotationSets()) {
+      size = alignSize(4, size) + Integer.BYTES + set.annotations.length * Integer.BYTES;
+    }
+    for (ParameterAnnotationsList list : mixedSectionOffsets.getAnnotationSetRefLists()) {
+      size = alignSize(4, size) + Integer.BYTES + list.size() * Integer.BYTES;
+    }
+    for (DexAnnotationDirectory directory : mixedSectionOffsets.getAnnotationDirectories()) {
+      size =
+          alignSize(4, size)
+              + 4 * Integer.BYTES
+              + 2
+                  * Integer.BYTES
+                  * (directory.getFieldAnnotations().size()
+                      + directory.getMethodAnnotations().size()
+                      + directory.getParameterAnnotations().size());
+    }
+    // The map list has one entry per item type.
+    size = alignSize(4, size) + Integer.BYTES + 20 * Constants.TYPE_MAP_LIST_ITEM_SIZE;
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
   private int sizeOfCodeItems(Iterable<DexCode> codes) {
     int size = 0;
     for (DexCode code : codes) {
@@ -818,6 +878,11 @@ public class FileWriter {
     return (value + mask) & ~mask;
   }
 
+  private long alignSize(int bytes, long value) {
+    long mask = bytes - 1;
+    return (value + mask) & ~mask;
+  }
+
   private static class Layout {
 
     private static final int NOT_SET = -1;
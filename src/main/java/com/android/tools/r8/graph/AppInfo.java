@@ -6,13 +6,10 @@ package com.android.tools.r8.graph;
 import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.shaking.AppInfoWithLiveness;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.ImmutableSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
@@ -20,8 +17,6 @@ public class AppInfo implements DexDefinitionSupplier {
 
   private final DexApplication app;
   private final DexItemFactory dexItemFactory;
-  private final ConcurrentHashMap<DexType, Map<Descriptor<?,?>, KeyedDexItem<?>>> definitions =
-      new ConcurrentHashMap<>();
   // For some optimizations, e.g. optimizing synthetic classes, we may need to resolve the current
   // class being optimized.
   private final ConcurrentHashMap<DexType, DexProgramClass> synthesizedClasses =
@@ -40,7 +35,6 @@ public class AppInfo implements DexDefinitionSupplier {
     assert !previous.isObsolete();
     this.app = previous.app;
     this.dexItemFactory = app.dexItemFactory;
-    this.definitions.putAll(previous.definitions);
     copyMetadataFromPrevious(previous);
   }
 
@@ -88,16 +82,6 @@ public class AppInfo implements DexDefinitionSupplier {
     return Collections.unmodifiableCollection(synthesizedClasses.values());
   }
 
-  private Map<Descriptor<?,?>, KeyedDexItem<?>> computeDefinitions(DexType type) {
-    Builder<Descriptor<?,?>, KeyedDexItem<?>> builder = ImmutableMap.builder();
-    DexClass clazz = app.definitionFor(type);
-    if (clazz != null) {
-      clazz.forEachMethod(method -> builder.put(method.getKey(), method));
-      clazz.forEachField(field -> builder.put(field.getKey(), field));
-    }
-    return builder.build();
-  }
-
   public Iterable<DexProgramClass> classes() {
     assert checkIfObsolete();
     return app.classes();
@@ -141,30 +125,15 @@ public class AppInfo implements DexDefinitionSupplier {
   @Override
   public DexEncodedMethod definitionFor(DexMethod method) {
     assert checkIfObsolete();
-    DexType holderType = method.holder;
-    DexEncodedMethod cached = (DexEncodedMethod) getDefinitions(holderType).get(method);
-    if (cached != null && cached.isObsolete()) {
-      definitions.remove(holderType);
-      cached = (DexEncodedMethod) getDefinitions(holderType).get(method);
-    }
-    return cached;
+    DexClass clazz = app.definitionFor(method.holder);
+    return clazz == null ? null : clazz.lookupMethod(method);
   }
 
   @Override
   public DexEncodedField definitionFor(DexField field) {
     assert checkIfObsolete();
-    return (DexEncodedField) getDefinitions(field.holder).get(field);
-  }
-
-  private Map<Descriptor<?,?>, KeyedDexItem<?>> getDefinitions(DexType type) {
-    Map<Descriptor<?,?>, KeyedDexItem<?>> typeDefinitions = definitions.get(type);
-    if (typeDefinitions != null) {
-      return typeDefinitions;
-    }
-
-    typeDefinitions = computeDefinitions(type);
-    Map<Descriptor<?,?>, KeyedDexItem<?>> existing = definitions.putIfAbsent(type, typeDefinitions);
-    return existing != null ? existing : typeDefinitions;
+    DexClass clazz = app.definitionFor(field.holder);
+    return clazz == null ? null : clazz.lookupField(field);
   }
 
   /**
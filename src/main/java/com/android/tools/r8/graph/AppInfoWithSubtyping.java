@@ -4,6 +4,7 @@
 package com.android.tools.r8.graph;
 
 import com.android.tools.r8.errors.CompilationError;
+import com.android.tools.r8.ir.analysis.type.LeastUpperBoundCache;
 import com.android.tools.r8.ir.desugar.LambdaDescriptor;
 import com.android.tools.r8.origin.Origin;
 import com.google.common.collect.ImmutableList;
@@ -705,6 +706,15 @@ public class AppInfoWithSubtyping extends AppInfo implements ClassHierarchy {
 
   // TODO(b/130636783): inconsistent location
   public DexType computeLeastUpperBoundOfClasses(DexType subtype, DexType other) {
+    return computeLeastUpperBoundOfClasses(subtype, other, null);
+  }
+
+  /**
+   * Computes the least upper bound of the given classes. If a cache is given, the result is looked
+   * up in and added to the cache, unless one of the classes is not in the hierarchy.
+   */
+  public DexType computeLeastUpperBoundOfClasses(
+      DexType subtype, DexType other, LeastUpperBoundCache cache) {
     if (subtype == other) {
       return subtype;
     }
@@ -718,6 +728,15 @@ public class AppInfoWithSubtyping extends AppInfo implements ClassHierarchy {
     if (subtype == objectType || other == objectType) {
       return objectType;
     }
+    if (cache != null) {
+      return cache.getOrComputeClasses(
+          subtype, other, () -> computeLeastUpperBoundOfClasses(subInfo, superInfo));
+    }
+    return computeLeastUpperBoundOfClasses(subInfo, superInfo);
+  }
+
+  private DexType computeLeastUpperBoundOfClasses(TypeInfo subInfo, TypeInfo superInfo) {
+    DexType objectType = dexItemFactory().objectType;
     TypeInfo t1;
     TypeInfo t2;
     if (superInfo.hierarchyLevel < subInfo.hierarchyLevel) {
@@ -9,6 +9,8 @@ import com.android.tools.r8.graph.analysis.InitializedClassesInInstanceMethodsAn
 import com.android.tools.r8.ir.analysis.proto.GeneratedExtensionRegistryShrinker;
 import com.android.tools.r8.ir.analysis.proto.GeneratedMessageLiteShrinker;
 import com.android.tools.r8.ir.analysis.proto.ProtoShrinker;
+import com.android.tools.r8.ir.optimize.ExecutionProfile;
+import com.android.tools.r8.ir.optimize.enums.UnboxedEnums;
 import com.android.tools.r8.shaking.AppInfoWithLiveness;
 import com.android.tools.r8.shaking.RootSetBuilder.RootSet;
 import com.android.tools.r8.shaking.VerticalClassMerger.VerticallyMergedClasses;
@@ -37,12 +39,21 @@ public class AppView<T extends AppInfo> implements DexDefinitionSupplier {
 
   // Optimizations.
   private final ProtoShrinker protoShrinker;
+  private ExecutionProfile executionProfile = ExecutionProfile.empty();
 
   // Optimization results.
   private Predicate<DexType> classesEscapingIntoLibrary = Predicates.alwaysTrue();
   private InitializedClassesInInstanceMethods initializedClassesInInstanceMethods;
   private Set<DexMethod> unneededVisibilityBridgeMethods = ImmutableSet.of();
   private VerticallyMergedClasses verticallyMergedClasses;
+  private UnboxedEnums unboxedEnums = UnboxedEnums.empty();
+
+  // Storage for finalized code, if the amount of code on the heap is bounded.
+  private DexCodeStorage codeStorage;
+
+  // Shared instances of method optimization info for this compilation.
+  private final MethodOptimizationInfoCanonicalizer methodOptimizationInfoCanonicalizer =
+      new MethodOptimizationInfoCanonicalizer();
 
   private AppView(
       T appInfo, WholeProgramOptimizations wholeProgramOptimizations, InternalOptions options) {
@@ -230,6 +241,34 @@ public class AppView<T extends AppInfo> implements DexDefinitionSupplier {
     this.verticallyMergedClasses = verticallyMergedClasses;
   }
 
+  public ExecutionProfile executionProfile() {
+    return executionProfile;
+  }
+
+  public void setExecutionProfile(ExecutionProfile executionProfile) {
+    this.executionProfile = executionProfile;
+  }
+
+  public UnboxedEnums unboxedEnums() {
+    return unboxedEnums;
+  }
+
+  public void setUnboxedEnums(UnboxedEnums unboxedEnums) {
+    this.unboxedEnums = unboxedEnums;
+  }
+
+  public MethodOptimizationInfoCanonicalizer methodOptimizationInfoCanonicalizer() {
+    return methodOptimizationInfoCanonicalizer;
+  }
+
+  public DexCodeStorage codeStorage() {
+    return codeStorage;
+  }
+
+  public void setCodeStorage(DexCodeStorage codeStorage) {
+    this.codeStorage = codeStorage;
+  }
+
   @SuppressWarnings("unchecked")
   public AppView<AppInfoWithSubtyping> withSubtyping() {
     return appInfo.hasSubtyping()
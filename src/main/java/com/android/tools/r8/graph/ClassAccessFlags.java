@@ -165,6 +165,10 @@ public class ClassAccessFlags extends AccessFlags<ClassAccessFlags> {
     set(Constants.ACC_ENUM);
   }
 
+  public void unsetEnum() {
+    unset(Constants.ACC_ENUM);
+  }
+
   public boolean isSuper() {
     return isSet(Constants.ACC_SUPER);
   }
@@ -57,6 +57,10 @@ public abstract class Code extends CachedHashValueDexItem {
     return false;
   }
 
+  public boolean isSpilledDexCode() {
+    return false;
+  }
+
   /** Estimate the number of IR instructions emitted by buildIR(). */
   public int estimatedSizeForInlining() {
     return Integer.MAX_VALUE;
@@ -83,6 +87,10 @@ public abstract class Code extends CachedHashValueDexItem {
     throw new Unreachable(getClass().getCanonicalName() + ".asOutlineCode()");
   }
 
+  public SpilledDexCode asSpilledDexCode() {
+    throw new Unreachable(getClass().getCanonicalName() + ".asSpilledDexCode()");
+  }
+
   @Override
   void collectIndexedItems(IndexedItemCollection collection,
       DexMethod method, int instructionOffset) {
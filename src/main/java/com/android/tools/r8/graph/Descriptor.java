@@ -10,6 +10,9 @@ public abstract class Descriptor<T extends DexItem, S extends Descriptor<T,S>>
 
   public abstract boolean match(T entry);
 
+  /** Returns a hash code that is consistent with {@link #match}, i.e., ignores the holder. */
+  public abstract int matchHashCode();
+
   @Override
   public boolean isDescriptor() {
     return true;
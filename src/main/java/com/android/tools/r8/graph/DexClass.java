@@ -60,6 +60,14 @@ public abstract class DexClass extends DexDefinition {
   /** Access has to be synchronized during concurrent collection/writing phase. */
   protected DexEncodedMethod[] virtualMethods = DexEncodedMethod.EMPTY_ARRAY;
 
+  // Lookup tables for the members above, which are created lazily for classes with many members.
+  // A table is rebuilt when the array it was built for is replaced, and must be cleared when an
+  // element of the array is replaced.
+  private MemberLookupTable<DexEncodedField, DexField> staticFieldTable;
+  private MemberLookupTable<DexEncodedField, DexField> instanceFieldTable;
+  private MemberLookupTable<DexEncodedMethod, DexMethod> directMethodTable;
+  private MemberLookupTable<DexEncodedMethod, DexMethod> virtualMethodTable;
+
   /** Enclosing context of this class if it is an inner class, null otherwise. */
   private EnclosingMethodAttribute enclosingMethod;
 
@@ -189,6 +197,7 @@ public abstract class DexClass extends DexDefinition {
   public void setDirectMethod(int index, DexEncodedMethod method) {
     cachedClassInitializer = null;
     directMethods[index] = method;
+    directMethodTable = null;
     assert verifyCorrectnessOfMethodHolder(method);
     assert verifyNoDuplicateMethods();
   }
@@ -240,6 +249,7 @@ public abstract class DexClass extends DexDefinition {
 
   public void setVirtualMethod(int index, DexEncodedMethod method) {
     virtualMethods[index] = method;
+    virtualMethodTable = null;
     assert verifyCorrectnessOfMethodHolder(method);
     assert verifyNoDuplicateMethods();
   }
@@ -431,6 +441,7 @@ public abstract class DexClass extends DexDefinition {
 
   public void setStaticField(int index, DexEncodedField field) {
     staticFields[index] = field;
+    staticFieldTable = null;
     assert verifyCorrectnessOfFieldHolder(field);
     assert verifyNoDuplicateFields();
   }
@@ -490,6 +501,7 @@ public abstract class DexClass extends DexDefinition {
 
   public void setInstanceField(int index, DexEncodedField field) {
     instanceFields[index] = field;
+    instanceFieldTable = null;
     assert verifyCorrectnessOfFieldHolder(field);
     assert verifyNoDuplicateFields();
   }
@@ -528,12 +540,26 @@ public abstract class DexClass extends DexDefinition {
 
   /** Find static field in this class matching {@param field}. */
   public DexEncodedField lookupStaticField(DexField field) {
-    return lookupTarget(staticFields, field);
+    DexEncodedField[] fields = staticFields;
+    MemberLookupTable<DexEncodedField, DexField> table =
+        MemberLookupTable.getOrCreate(fields, staticFieldTable);
+    if (table == null) {
+      return lookupTarget(fields, field);
+    }
+    staticFieldTable = table;
+    return table.lookup(field);
   }
 
   /** Find instance field in this class matching {@param field}. */
   public DexEncodedField lookupInstanceField(DexField field) {
-    return lookupTarget(instanceFields, field);
+    DexEncodedField[] fields = instanceFields;
+    MemberLookupTable<DexEncodedField, DexField> table =
+        MemberLookupTable.getOrCreate(fields, instanceFieldTable);
+    if (table == null) {
+      return lookupTarget(fields, field);
+    }
+    instanceFieldTable = table;
+    return table.lookup(field);
   }
 
   public DexField lookupUniqueInstanceFieldWithName(DexString name) {
@@ -557,12 +583,26 @@ public abstract class DexClass extends DexDefinition {
 
   /** Find direct method in this class matching {@param method}. */
   public DexEncodedMethod lookupDirectMethod(DexMethod method) {
-    return lookupTarget(directMethods, method);
+    DexEncodedMethod[] methods = directMethods;
+    MemberLookupTable<DexEncodedMethod, DexMethod> table =
+        MemberLookupTable.getOrCreate(methods, directMethodTable);
+    if (table == null) {
+      return lookupTarget(methods, method);
+    }
+    directMethodTable = table;
+    return table.lookup(method);
   }
 
   /** Find virtual method in this class matching {@param method}. */
   public DexEncodedMethod lookupVirtualMethod(DexMethod method) {
-    return lookupTarget(virtualMethods, method);
+    DexEncodedMethod[] methods = virtualMethods;
+    MemberLookupTable<DexEncodedMethod, DexMethod> table =
+        MemberLookupTable.getOrCreate(methods, virtualMethodTable);
+    if (table == null) {
+      return lookupTarget(methods, method);
+    }
+    virtualMethodTable = table;
+    return table.lookup(method);
   }
 
   /** Find virtual method in this class matching {@param predicate}. */
@@ -27,7 +27,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 // DexCode corresponds to code item in dalvik/dex-format.html
 public class DexCode extends Code {
@@ -44,6 +46,8 @@ public class DexCode extends Code {
 
   public DexString highestSortingString;
   private DexDebugInfo debugInfo;
+  // Decodes the debug info on first access, see getDebugInfo(). Null when the debug info is known.
+  private volatile Supplier<DexDebugInfo> lazyDebugInfo;
   private DexDebugInfoForWriting debugInfoForWriting;
 
   public DexCode(
@@ -97,17 +101,35 @@ public class DexCode extends Code {
   }
 
   public DexDebugInfo getDebugInfo() {
+    Supplier<DexDebugInfo> lazyDebugInfo = this.lazyDebugInfo;
+    if (lazyDebugInfo != null) {
+      // The debug info is written before the supplier is released, such that threads that see the
+      // released supplier also see the debug info.
+      debugInfo = lazyDebugInfo.get();
+      this.lazyDebugInfo = null;
+    }
     return debugInfo;
   }
 
+  /**
+   * Sets a supplier that decodes the debug info on first access, instead of the debug info itself.
+   * The supplier must be thread safe, since the debug info may be accessed concurrently.
+   */
+  public void setLazyDebugInfo(Supplier<DexDebugInfo> lazyDebugInfo) {
+    assert debugInfo == null;
+    this.lazyDebugInfo = lazyDebugInfo;
+  }
+
   public void setDebugInfo(DexDebugInfo debugInfo) {
     this.debugInfo = debugInfo;
+    lazyDebugInfo = null;
     if (debugInfoForWriting != null) {
       debugInfoForWriting = null;
     }
   }
 
   public DexDebugInfo debugInfoWithFakeThisParameter(DexItemFactory factory) {
+    DexDebugInfo debugInfo = getDebugInfo();
     if (debugInfo == null) {
       return null;
     }
@@ -145,6 +167,7 @@ public class DexCode extends Code {
   }
 
   public DexDebugInfo debugInfoWithoutFirstParameter() {
+    DexDebugInfo debugInfo = getDebugInfo();
     if (debugInfo == null) {
       return null;
     }
@@ -168,7 +191,6 @@ public class DexCode extends Code {
         + registerSize * 3
         + outgoingRegisterSize * 5
         + Arrays.hashCode(instructions) * 7
-        + ((debugInfo == null) ? 0 : debugInfo.hashCode()) * 11
         + Arrays.hashCode(tries) * 13
         + Arrays.hashCode(handlers) * 17;
   }
@@ -186,14 +208,8 @@ public class DexCode extends Code {
       if (outgoingRegisterSize != o.outgoingRegisterSize) {
         return false;
       }
-      if (debugInfo == null) {
-        if (o.debugInfo != null) {
-          return false;
-        }
-      } else {
-        if (!debugInfo.equals(o.debugInfo)) {
-          return false;
-        }
+      if (!Objects.equals(getDebugInfo(), o.getDebugInfo())) {
+        return false;
       }
       if (!Arrays.equals(tries, o.tries)) {
         return false;
@@ -403,7 +419,7 @@ public class DexCode extends Code {
         updateHighestSortingString(insn.asConstStringJumbo().getString());
       }
     }
-    if (debugInfo != null) {
+    if (getDebugInfo() != null) {
       getDebugInfoForWriting().collectIndexedItems(indexedItems);
     }
     if (handlers != null) {
@@ -414,6 +430,7 @@ public class DexCode extends Code {
   }
 
   public DexDebugInfoForWriting getDebugInfoForWriting() {
+    DexDebugInfo debugInfo = getDebugInfo();
     if (debugInfo == null) {
       return null;
     }
@@ -438,7 +455,7 @@ public class DexCode extends Code {
   @Override
   void collectMixedSectionItems(MixedSectionCollection mixedItems) {
     if (mixedItems.add(this)) {
-      if (debugInfo != null) {
+      if (getDebugInfo() != null) {
         getDebugInfoForWriting().collectMixedSectionItems(mixedItems);
       }
     }
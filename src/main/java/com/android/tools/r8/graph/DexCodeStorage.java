@@ -0,0 +1,316 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import com.android.tools.r8.code.Instruction;
+import com.android.tools.r8.errors.CompilationError;
+import com.android.tools.r8.utils.Timing;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Storage that bounds the amount of finalized {@link DexCode} that is kept on the heap.
+ *
+ * <p>Methods are added to the storage once their code has been finalized. When the estimated heap
+ * size of the added code exceeds the budget, the instructions of the code that was added first are
+ * written to a temporary file and the code of the method is replaced by a {@link SpilledDexCode}.
+ * The code is reloaded by {@link DexEncodedMethod#getCode()} when it is needed again, e.g., for
+ * outlining, tracing and writing, after which it is added to the storage again.
+ *
+ * <p>Only the instructions are spilled, since they make up the bulk of the code. Code that
+ * references call sites or method handles, or that contains instructions that cannot be written
+ * yet, stays on the heap. Since the code that was added last is never spilled, a client can modify
+ * the code it just retrieved from a method, as long as it does not retrieve the code of other
+ * methods in the meantime.
+ */
+public class DexCodeStorage implements Closeable {
+
+  // Rough heap size of an instruction object including its slot in the instruction array.
+  private static final int ESTIMATED_INSTRUCTION_SIZE = 32;
+
+  private static class ResidentCode {
+
+    private final DexEncodedMethod method;
+    // Cleared when the code is replaced, such that the queue does not retain the old code.
+    private volatile DexCode code;
+    private final long size;
+
+    private ResidentCode(DexEncodedMethod method, DexCode code) {
+      this.method = method;
+      this.code = code;
+      this.size = (long) code.instructions.length * ESTIMATED_INSTRUCTION_SIZE;
+    }
+  }
+
+  private final long heapBudget;
+  private final Path file;
+  private final FileChannel channel;
+  private final AtomicLong fileSize = new AtomicLong();
+
+  // The resident code in the order it was added. Entries whose code has been replaced remain in
+  // the queue until they are polled, but no longer count towards the resident size.
+  private final ConcurrentLinkedQueue<ResidentCode> residentCodes = new ConcurrentLinkedQueue<>();
+  private final Map<DexEncodedMethod, ResidentCode> residentCodeByMethod =
+      new ConcurrentHashMap<>();
+  private final AtomicLong residentSize = new AtomicLong();
+
+  // Statistics.
+  private final AtomicLong spilledMethods = new AtomicLong();
+  private final AtomicLong spilledBytes = new AtomicLong();
+  private final AtomicLong reloadedMethods = new AtomicLong();
+  private final AtomicLong reloadedBytes = new AtomicLong();
+
+  private DexCodeStorage(long heapBudget, Path file) throws IOException {
+    this.heapBudget = heapBudget;
+    this.file = file;
+    this.channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+  }
+
+  public static DexCodeStorage create(long heapBudget) throws IOException {
+    assert heapBudget > 0;
+    // The file is deleted when the storage is closed (see StandardOpenOption.DELETE_ON_CLOSE).
+    Path file = Files.createTempFile("r8-code", ".bin");
+    try {
+      return new DexCodeStorage(heapBudget, file);
+    } catch (IOException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+  }
+
+  /**
+   * Adds the finalized code of the given method to the storage, and spills code if the heap budget
+   * is exceeded.
+   */
+  public void add(DexEncodedMethod method) {
+    Code code = method.getCode();
+    if (code != null && code.isDexCode()) {
+      addAndSpillIfOverBudget(method, code.asDexCode());
+    }
+  }
+
+  /**
+   * Adds the given code to the resident code and spills the code that was added first until the
+   * heap budget is met. The given code itself is not spilled, since the caller is about to use it.
+   */
+  void addAndSpillIfOverBudget(DexEncodedMethod method, DexCode code) {
+    ResidentCode addedCode = new ResidentCode(method, code);
+    residentSize.addAndGet(addedCode.size);
+    ResidentCode previousCode = residentCodeByMethod.put(method, addedCode);
+    if (previousCode != null) {
+      release(previousCode);
+    }
+    residentCodes.add(addedCode);
+    while (residentSize.get() > heapBudget) {
+      ResidentCode residentCode = residentCodes.poll();
+      if (residentCode == null) {
+        return;
+      }
+      if (residentCode == addedCode) {
+        residentCodes.add(addedCode);
+        return;
+      }
+      DexCode codeToSpill = residentCode.code;
+      if (residentCodeByMethod.remove(residentCode.method, residentCode)) {
+        release(residentCode);
+        residentCode.method.spillCode(codeToSpill, this);
+      }
+    }
+  }
+
+  /**
+   * Notifies the storage that the given code of the given method has been replaced, such that it
+   * no longer counts towards the resident code.
+   */
+  void remove(DexEncodedMethod method, DexCode code) {
+    ResidentCode residentCode = residentCodeByMethod.get(method);
+    if (residentCode != null
+        && residentCode.code == code
+        && residentCodeByMethod.remove(method, residentCode)) {
+      release(residentCode);
+    }
+  }
+
+  private void release(ResidentCode residentCode) {
+    residentSize.addAndGet(-residentCode.size);
+    residentCode.code = null;
+  }
+
+  /** Writes the instructions of the given code to disk, or returns null if that is not possible. */
+  SpilledDexCode spill(DexCode code) {
+    int codeUnits = 0;
+    for (Instruction instruction : code.instructions) {
+      if (instruction.isDexItemBasedConstString()) {
+        return null;
+      }
+      codeUnits += instruction.getSize();
+    }
+    SpillingOffsetMapping mapping = new SpillingOffsetMapping();
+    ByteBuffer bytes = ByteBuffer.allocate(codeUnits * Short.BYTES);
+    ShortBuffer shorts = bytes.asShortBuffer();
+    for (Instruction instruction : code.instructions) {
+      instruction.write(shorts, mapping);
+    }
+    if (mapping.hasUnsupportedItems) {
+      return null;
+    }
+    long position = fileSize.getAndAdd(bytes.capacity());
+    try {
+      while (bytes.hasRemaining()) {
+        channel.write(bytes, position + bytes.position());
+      }
+    } catch (IOException e) {
+      throw new CompilationError("Failed to spill code to " + file, e);
+    }
+    spilledMethods.incrementAndGet();
+    spilledBytes.addAndGet(bytes.capacity());
+    return new SpilledDexCode(
+        this,
+        position,
+        codeUnits,
+        code,
+        mapping.methods.toArray(DexMethod[]::new),
+        mapping.fields.toArray(DexField[]::new),
+        mapping.types.toArray(DexType[]::new),
+        mapping.strings.toArray(DexString[]::new),
+        mapping.protos.toArray(DexProto[]::new));
+  }
+
+  ShortBuffer read(long position, int codeUnits) {
+    ByteBuffer bytes = ByteBuffer.allocate(codeUnits * Short.BYTES);
+    try {
+      while (bytes.hasRemaining()) {
+        if (channel.read(bytes, position + bytes.position()) < 0) {
+          throw new IOException("Unexpected end of file");
+        }
+      }
+    } catch (IOException e) {
+      throw new CompilationError("Failed to reload code from " + file, e);
+    }
+    reloadedMethods.incrementAndGet();
+    reloadedBytes.addAndGet(bytes.capacity());
+    bytes.flip();
+    return bytes.asShortBuffer();
+  }
+
+  public long getSpilledMethods() {
+    return spilledMethods.get();
+  }
+
+  public long getSpilledBytes() {
+    return spilledBytes.get();
+  }
+
+  public long getReloadedMethods() {
+    return reloadedMethods.get();
+  }
+
+  public long getReloadedBytes() {
+    return reloadedBytes.get();
+  }
+
+  public void recordStatistics(Timing timing) {
+    timing.addStatistic("Spilled methods", getSpilledMethods());
+    timing.addStatistic("Spilled bytes", getSpilledBytes());
+    timing.addStatistic("Reloaded methods", getReloadedMethods());
+    timing.addStatistic("Reloaded bytes", getReloadedBytes());
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /** Assigns offsets to the items referenced by the instructions of a single code object. */
+  private static class SpillingOffsetMapping extends ObjectToOffsetMapping {
+
+    private final ItemIndex<DexMethod> methods = new ItemIndex<>();
+    private final ItemIndex<DexField> fields = new ItemIndex<>();
+    private final ItemIndex<DexType> types = new ItemIndex<>();
+    private final ItemIndex<DexString> strings = new ItemIndex<>();
+    private final ItemIndex<DexProto> protos = new ItemIndex<>();
+    private boolean hasUnsupportedItems = false;
+
+    @Override
+    public int getOffsetFor(DexProto proto) {
+      return protos.getOrAssign(proto);
+    }
+
+    @Override
+    public int getOffsetFor(DexField field) {
+      return fields.getOrAssign(field);
+    }
+
+    @Override
+    public int getOffsetFor(DexMethod method) {
+      return methods.getOrAssign(method);
+    }
+
+    @Override
+    public int getOffsetFor(DexString string) {
+      return strings.getOrAssign(string);
+    }
+
+    @Override
+    public int getOffsetFor(DexType type) {
+      return types.getOrAssign(type);
+    }
+
+    @Override
+    public int getOffsetFor(DexCallSite callSite) {
+      hasUnsupportedItems = true;
+      return 0;
+    }
+
+    @Override
+    public int getOffsetFor(DexMethodHandle methodHandle) {
+      hasUnsupportedItems = true;
+      return 0;
+    }
+  }
+
+  private static class ItemIndex<T> {
+
+    private final Reference2IntMap<T> indices = new Reference2IntOpenHashMap<>();
+    private final List<T> items = new ArrayList<>();
+
+    private ItemIndex() {
+      indices.defaultReturnValue(-1);
+    }
+
+    private int getOrAssign(T item) {
+      int index = indices.getInt(item);
+      if (index < 0) {
+        index = items.size();
+        indices.put(item, index);
+        items.add(item);
+      }
+      return index;
+    }
+
+    private T[] toArray(IntFunction<T[]> generator) {
+      return items.toArray(generator.apply(items.size()));
+    }
+  }
+}
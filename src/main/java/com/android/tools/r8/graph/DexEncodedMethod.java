@@ -129,7 +129,9 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
   public final MethodAccessFlags accessFlags;
   public DexAnnotationSet annotations;
   public ParameterAnnotationsList parameterAnnotationsList;
-  private Code code;
+  // Written while holding the lock on this method, such that code that is installed concurrently
+  // with spilling is never overwritten by the spilled code (see spillCode).
+  private volatile Code code;
   // TODO(b/128967328): towards finer-grained inlining constraints,
   //   we need to maintain a set of states with (potentially different) contexts.
   private CompilationState compilationState = CompilationState.NOT_PROCESSED;
@@ -173,7 +175,9 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     assert defaultInterfaceMethodImplementation == null;
     assert implementation != null;
     assert code != null;
-    assert code == implementation.getCode();
+    // Spilled code is reloaded into a new code object, hence the code objects can only be compared
+    // if the code of this method has not been spilled.
+    assert code.isSpilledDexCode() || code == implementation.code;
     accessFlags.setAbstract();
     removeCode();
     defaultInterfaceMethodImplementation = implementation;
@@ -418,6 +422,7 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
 
   public IRCode buildIR(AppView<?> appView, Origin origin) {
     checkIfObsolete();
+    Code code = getCode();
     return code == null ? null : code.buildIR(this, appView, origin);
   }
 
@@ -431,16 +436,22 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     if (accessFlags.isSynchronized()) {
       throw new Unreachable("Invalid attempt to build synchronized method for inlining");
     }
-    return code.buildInliningIR(
-        context, this, appView, valueNumberGenerator, callerPosition, origin);
+    return getCode()
+        .buildInliningIR(context, this, appView, valueNumberGenerator, callerPosition, origin);
   }
 
-  public void setCode(Code newCode, AppView<?> appView) {
+  public synchronized void setCode(Code newCode, AppView<?> appView) {
     checkIfObsolete();
     // If the locals are not kept, we might still need information to satisfy -keepparameternames.
     // The information needs to be retrieved on the original code object before replacing it.
-    if (code.isCfCode() && !hasParameterInfo() && !keepLocals(appView.options())) {
-      setParameterInfo(code.collectParameterInfo(this, appView));
+    // Spilled code is always DEX code, hence it does not need to be reloaded for this.
+    Code currentCode = code;
+    if (currentCode.isCfCode() && !hasParameterInfo() && !keepLocals(appView.options())) {
+      setParameterInfo(currentCode.collectParameterInfo(this, appView));
+    }
+    if (currentCode.isDexCode() && appView.codeStorage() != null) {
+      // The replaced code no longer counts towards the code that is kept on the heap.
+      appView.codeStorage().remove(this, currentCode.asDexCode());
     }
     code = newCode;
   }
@@ -482,8 +493,10 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
       DexMethod method, int instructionOffset) {
     checkIfObsolete();
     this.method.collectIndexedItems(indexedItems);
-    if (code != null) {
-      code.collectIndexedItems(indexedItems, this.method);
+    // Spilled code collects the items referenced by its instructions without being reloaded.
+    Code currentCode = code;
+    if (currentCode != null) {
+      currentCode.collectIndexedItems(indexedItems, this.method);
     }
     annotations.collectIndexedItems(indexedItems);
     parameterAnnotationsList.collectIndexedItems(indexedItems);
@@ -514,10 +527,43 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
 
   public Code getCode() {
     checkIfObsolete();
-    return code;
+    Code current = code;
+    if (current != null && current.isSpilledDexCode()) {
+      return reloadCode(current.asSpilledDexCode());
+    }
+    return current;
+  }
+
+  private Code reloadCode(SpilledDexCode spilledCode) {
+    DexCode reloadedCode;
+    synchronized (this) {
+      if (code != spilledCode) {
+        // Reloaded by another thread.
+        return code;
+      }
+      reloadedCode = spilledCode.reload();
+      code = reloadedCode;
+    }
+    // Spill other code, if needed, after releasing the lock on this method.
+    spilledCode.getStorage().addAndSpillIfOverBudget(this, reloadedCode);
+    return reloadedCode;
+  }
+
+  /**
+   * Replaces the code of this method by a {@link SpilledDexCode}, unless it has changed. Since the
+   * code is only replaced while holding the lock on this method, code that is installed by {@link
+   * #setCode} or removed by {@link #removeCode} while the code is being spilled is not lost.
+   */
+  synchronized void spillCode(DexCode expectedCode, DexCodeStorage storage) {
+    if (code == expectedCode) {
+      SpilledDexCode spilledCode = storage.spill(expectedCode);
+      if (spilledCode != null) {
+        code = spilledCode;
+      }
+    }
   }
 
-  public void removeCode() {
+  public synchronized void removeCode() {
     checkIfObsolete();
     code = null;
   }
@@ -571,8 +617,9 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     builder.append(method.name.toSmaliString());
     builder.append(method.proto.toSmaliString());
     builder.append("\n");
-    if (code != null) {
-      DexCode dexCode = code.asDexCode();
+    Code currentCode = getCode();
+    if (currentCode != null) {
+      DexCode dexCode = currentCode.asDexCode();
       builder.append("    .registers ");
       builder.append(dexCode.registerSize);
       builder.append("\n\n");
@@ -588,7 +635,7 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     return method.toSourceString();
   }
 
-  public DexEncodedMethod toAbstractMethod() {
+  public synchronized DexEncodedMethod toAbstractMethod() {
     checkIfObsolete();
     // 'final' wants this to be *not* overridden, while 'abstract' wants this to be implemented in
     // a subtype, i.e., self contradict.
@@ -1005,11 +1052,12 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
   public DexCode rewriteCodeWithJumboStrings(
       ObjectToOffsetMapping mapping, DexItemFactory factory, boolean force) {
     checkIfObsolete();
-    assert code == null || code.isDexCode();
-    if (code == null) {
+    Code currentCode = getCode();
+    assert currentCode == null || currentCode.isDexCode();
+    if (currentCode == null) {
       return null;
     }
-    DexCode code = this.code.asDexCode();
+    DexCode code = currentCode.asDexCode();
     DexString firstJumboString = null;
     if (force) {
       firstJumboString = mapping.getFirstString();
@@ -1031,6 +1079,7 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
 
   public String codeToString() {
     checkIfObsolete();
+    Code code = getCode();
     return code == null ? "<no code>" : code.toString(this, null);
   }
 
@@ -1066,11 +1115,12 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
 
   public void registerCodeReferences(UseRegistry registry) {
     checkIfObsolete();
-    if (code != null) {
+    Code currentCode = getCode();
+    if (currentCode != null) {
       if (Log.ENABLED) {
         Log.verbose(getClass(), "Registering definitions reachable from `%s`.", method);
       }
-      code.registerCodeReferences(this, registry);
+      currentCode.registerCodeReferences(this, registry);
     }
   }
 
@@ -1136,6 +1186,7 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     public static boolean UNKNOWN_RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS = false;
     public static BitSet NO_NULL_PARAMETER_OR_THROW_FACTS = null;
     public static BitSet NO_NULL_PARAMETER_ON_NORMAL_EXITS_FACTS = null;
+    public static BitSet NO_NULL_PARAMETER_ON_ALL_CALL_SITES_FACTS = null;
 
     private DefaultMethodOptimizationInfoImpl() {}
 
@@ -1180,6 +1231,11 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
       return NO_NULL_PARAMETER_ON_NORMAL_EXITS_FACTS;
     }
 
+    @Override
+    public BitSet getNonNullParamOnAllCallSites() {
+      return NO_NULL_PARAMETER_ON_ALL_CALL_SITES_FACTS;
+    }
+
     @Override
     public boolean hasBeenInlinedIntoSingleCallSite() {
       return false;
@@ -1294,45 +1350,104 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     }
   }
 
+  /**
+   * Mutable optimization info of a method.
+   *
+   * <p>Since there is an instance for each method that has been optimized, the representation is
+   * kept compact: all boolean facts and the inlining preference are packed into a single int, and
+   * facts that only hold for few methods, such as returned constants and class inliner info, are
+   * stored in a separate {@link RareFacts} object that is only allocated when needed.
+   *
+   * <p>Instances that only hold boolean facts and parameter nullability facts are replaced by an
+   * immutable {@link SharedMethodOptimizationInfoImpl} when they are installed on a method, see
+   * {@link MethodOptimizationInfoCanonicalizer}.
+   */
   public static class MethodOptimizationInfoImpl implements UpdatableMethodOptimizationInfo {
 
-    private boolean cannotBeKept = false;
-    private boolean classInitializerMayBePostponed = false;
-    private boolean hasBeenInlinedIntoSingleCallSite = false;
-    private Set<DexType> initializedClassesOnNormalExit =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_INITIALIZED_CLASSES_ON_NORMAL_EXIT;
-    private int returnedArgument = DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNED_ARGUMENT;
-    private boolean mayHaveSideEffects =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_MAY_HAVE_SIDE_EFFECTS;
-    private boolean returnValueOnlyDependsOnArguments =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS;
-    private boolean neverReturnsNull = DefaultMethodOptimizationInfoImpl.UNKNOWN_NEVER_RETURNS_NULL;
-    private boolean neverReturnsNormally =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_NEVER_RETURNS_NORMALLY;
-    private boolean returnsConstantNumber =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNS_CONSTANT;
-    private long returnedConstantNumber =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNED_CONSTANT_NUMBER;
-    private boolean returnsConstantString =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNS_CONSTANT;
-    private DexString returnedConstantString =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNED_CONSTANT_STRING;
+    private static final int CANNOT_BE_KEPT = 1 << 0;
+    private static final int CLASS_INITIALIZER_MAY_BE_POSTPONED = 1 << 1;
+    private static final int HAS_BEEN_INLINED_INTO_SINGLE_CALL_SITE = 1 << 2;
+    private static final int MAY_HAVE_SIDE_EFFECTS = 1 << 3;
+    private static final int RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS = 1 << 4;
+    private static final int NEVER_RETURNS_NULL = 1 << 5;
+    private static final int NEVER_RETURNS_NORMALLY = 1 << 6;
+    private static final int RETURNS_CONSTANT_NUMBER = 1 << 7;
+    private static final int RETURNS_CONSTANT_STRING = 1 << 8;
+    private static final int FORCE_INLINE = 1 << 9;
+    private static final int NEVER_INLINE = 1 << 10;
+    private static final int USE_IDENTIFIER_NAME_STRING = 1 << 11;
+    private static final int CHECKS_NULL_RECEIVER_BEFORE_ANY_SIDE_EFFECT = 1 << 12;
+    private static final int TRIGGERS_CLASS_INIT_BEFORE_ANY_SIDE_EFFECT = 1 << 13;
+    private static final int INITIALIZER_ENABLING_JAVA_ASSERTIONS = 1 << 14;
+    private static final int REACHABILITY_SENSITIVE = 1 << 15;
+    private static final int RETURN_VALUE_HAS_BEEN_PROPAGATED = 1 << 16;
+
+    private static final int DEFAULT_FLAGS =
+        (DefaultMethodOptimizationInfoImpl.UNKNOWN_MAY_HAVE_SIDE_EFFECTS
+                ? MAY_HAVE_SIDE_EFFECTS
+                : 0)
+            | (DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS
+                ? RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS
+                : 0);
+
+    // The flags that are carried over by mutableCopy(). The remaining flags are reset to their
+    // default value in the copy.
+    private static final int FLAGS_PRESERVED_BY_MUTABLE_COPY =
+        CANNOT_BE_KEPT
+            | NEVER_RETURNS_NULL
+            | NEVER_RETURNS_NORMALLY
+            | RETURNS_CONSTANT_NUMBER
+            | RETURNS_CONSTANT_STRING
+            | FORCE_INLINE
+            | NEVER_INLINE
+            | USE_IDENTIFIER_NAME_STRING
+            | CHECKS_NULL_RECEIVER_BEFORE_ANY_SIDE_EFFECT
+            | TRIGGERS_CLASS_INIT_BEFORE_ANY_SIDE_EFFECT
+            | INITIALIZER_ENABLING_JAVA_ASSERTIONS
+            | REACHABILITY_SENSITIVE;
+
+    /** Facts that only hold for few methods. */
+    private static class RareFacts {
+
+      private Set<DexType> initializedClassesOnNormalExit =
+          DefaultMethodOptimizationInfoImpl.UNKNOWN_INITIALIZED_CLASSES_ON_NORMAL_EXIT;
+      private int returnedArgument = DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNED_ARGUMENT;
+      private long returnedConstantNumber =
+          DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNED_CONSTANT_NUMBER;
+      private DexString returnedConstantString =
+          DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNED_CONSTANT_STRING;
+      // Stores information about instance methods and constructors for
+      // class inliner, null value indicates that the method is not eligible.
+      private ClassInlinerEligibility classInlinerEligibility =
+          DefaultMethodOptimizationInfoImpl.UNKNOWN_CLASS_INLINER_ELIGIBILITY;
+      private TrivialInitializer trivialInitializerInfo =
+          DefaultMethodOptimizationInfoImpl.UNKNOWN_TRIVIAL_INITIALIZER;
+      // Stores the parameters that are known to be non-null at all call sites of the method, as
+      // computed by {@link NonNullParameterPropagation} from the arguments at all call sites.
+      // Note that this bit set takes into account the receiver for instance methods.
+      private BitSet nonNullParamOnAllCallSites =
+          DefaultMethodOptimizationInfoImpl.NO_NULL_PARAMETER_ON_ALL_CALL_SITES_FACTS;
+
+      private static RareFacts copyOf(RareFacts template, boolean preserveAll) {
+        if (template == null) {
+          return null;
+        }
+        RareFacts copy = new RareFacts();
+        if (preserveAll) {
+          copy.initializedClassesOnNormalExit = template.initializedClassesOnNormalExit;
+        }
+        copy.returnedArgument = template.returnedArgument;
+        copy.returnedConstantNumber = template.returnedConstantNumber;
+        copy.returnedConstantString = template.returnedConstantString;
+        copy.classInlinerEligibility = template.classInlinerEligibility;
+        copy.trivialInitializerInfo = template.trivialInitializerInfo;
+        copy.nonNullParamOnAllCallSites = template.nonNullParamOnAllCallSites;
+        return copy;
+      }
+    }
+
+    private int flags = DEFAULT_FLAGS;
     private TypeLatticeElement returnsObjectOfType = UNKNOWN_TYPE;
-    private InlinePreference inlining = InlinePreference.Default;
-    private boolean useIdentifierNameString =
-        DefaultMethodOptimizationInfoImpl.DOES_NOT_USE_IDNETIFIER_NAME_STRING;
-    private boolean checksNullReceiverBeforeAnySideEffect =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_CHECKS_NULL_RECEIVER_BEFORE_ANY_SIDE_EFFECT;
-    private boolean triggersClassInitBeforeAnySideEffect =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_TRIGGERS_CLASS_INIT_BEFORE_ANY_SIDE_EFFECT;
-    // Stores information about instance methods and constructors for
-    // class inliner, null value indicates that the method is not eligible.
-    private ClassInlinerEligibility classInlinerEligibility =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_CLASS_INLINER_ELIGIBILITY;
-    private TrivialInitializer trivialInitializerInfo =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_TRIVIAL_INITIALIZER;
-    private boolean initializerEnablingJavaAssertions =
-        DefaultMethodOptimizationInfoImpl.UNKNOWN_INITIALIZER_ENABLING_JAVA_ASSERTIONS;
     private ParameterUsagesInfo parametersUsages =
         DefaultMethodOptimizationInfoImpl.UNKNOWN_PARAMETER_USAGE_INFO;
     // Stores information about nullability hint per parameter. If set, that means, the method
@@ -1351,53 +1466,79 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     // non-null information through {@link NonNullTracker}.
     // Note that this bit set takes into account the receiver for instance methods.
     private BitSet nonNullParamOnNormalExits = null;
-    private boolean reachabilitySensitive = false;
-    private boolean returnValueHasBeenPropagated = false;
+    // Null if none of the rare facts are known.
+    private RareFacts rareFacts = null;
 
     private MethodOptimizationInfoImpl() {
       // Intentionally left empty, just use the default values.
     }
 
-    private MethodOptimizationInfoImpl(MethodOptimizationInfoImpl template) {
-      cannotBeKept = template.cannotBeKept;
-      returnedArgument = template.returnedArgument;
-      neverReturnsNull = template.neverReturnsNull;
-      neverReturnsNormally = template.neverReturnsNormally;
-      returnsConstantNumber = template.returnsConstantNumber;
-      returnedConstantNumber = template.returnedConstantNumber;
-      returnsConstantString = template.returnsConstantString;
-      returnedConstantString = template.returnedConstantString;
-      inlining = template.inlining;
-      useIdentifierNameString = template.useIdentifierNameString;
-      checksNullReceiverBeforeAnySideEffect = template.checksNullReceiverBeforeAnySideEffect;
-      triggersClassInitBeforeAnySideEffect = template.triggersClassInitBeforeAnySideEffect;
-      classInlinerEligibility = template.classInlinerEligibility;
-      trivialInitializerInfo = template.trivialInitializerInfo;
-      initializerEnablingJavaAssertions = template.initializerEnablingJavaAssertions;
+    private MethodOptimizationInfoImpl(MethodOptimizationInfoImpl template, boolean preserveAll) {
+      if (preserveAll) {
+        flags = template.flags;
+        returnsObjectOfType = template.returnsObjectOfType;
+      } else {
+        flags =
+            (template.flags & FLAGS_PRESERVED_BY_MUTABLE_COPY)
+                | (DEFAULT_FLAGS & ~FLAGS_PRESERVED_BY_MUTABLE_COPY);
+      }
       parametersUsages = template.parametersUsages;
       nonNullParamOrThrow = template.nonNullParamOrThrow;
       nonNullParamOnNormalExits = template.nonNullParamOnNormalExits;
-      reachabilitySensitive = template.reachabilitySensitive;
+      rareFacts = RareFacts.copyOf(template.rareFacts, preserveAll);
+    }
+
+    private MethodOptimizationInfoImpl(
+        SharedMethodOptimizationInfoImpl template, boolean preserveAll) {
+      flags =
+          preserveAll
+              ? template.flags
+              : (template.flags & FLAGS_PRESERVED_BY_MUTABLE_COPY)
+                  | (DEFAULT_FLAGS & ~FLAGS_PRESERVED_BY_MUTABLE_COPY);
+      nonNullParamOrThrow = template.nonNullParamOrThrow;
+      nonNullParamOnNormalExits = template.nonNullParamOnNormalExits;
+    }
+
+    /** Returns true if this info only holds boolean facts and parameter nullability facts. */
+    boolean isSharable() {
+      return returnsObjectOfType == UNKNOWN_TYPE
+          && parametersUsages == DefaultMethodOptimizationInfoImpl.UNKNOWN_PARAMETER_USAGE_INFO
+          && rareFacts == null;
+    }
+
+    private boolean isSet(int flag) {
+      return (flags & flag) != 0;
+    }
+
+    private void set(int flag, boolean value) {
+      flags = value ? flags | flag : flags & ~flag;
+    }
+
+    private RareFacts getRareFactsForUpdating() {
+      if (rareFacts == null) {
+        rareFacts = new RareFacts();
+      }
+      return rareFacts;
     }
 
     @Override
     public boolean cannotBeKept() {
-      return cannotBeKept;
+      return isSet(CANNOT_BE_KEPT);
     }
 
     @Override
     public void markCannotBeKept() {
-      cannotBeKept = true;
+      set(CANNOT_BE_KEPT, true);
     }
 
     @Override
     public boolean classInitializerMayBePostponed() {
-      return classInitializerMayBePostponed;
+      return isSet(CLASS_INITIALIZER_MAY_BE_POSTPONED);
     }
 
     @Override
     public void markClassInitializerMayBePostponed() {
-      classInitializerMayBePostponed = true;
+      set(CLASS_INITIALIZER_MAY_BE_POSTPONED, true);
     }
 
     @Override
@@ -1407,12 +1548,16 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
 
     @Override
     public Set<DexType> getInitializedClassesOnNormalExit() {
-      return initializedClassesOnNormalExit;
+      return rareFacts == null
+          ? DefaultMethodOptimizationInfoImpl.UNKNOWN_INITIALIZED_CLASSES_ON_NORMAL_EXIT
+          : rareFacts.initializedClassesOnNormalExit;
     }
 
     @Override
     public TrivialInitializer getTrivialInitializerInfo() {
-      return trivialInitializerInfo;
+      return rareFacts == null
+          ? DefaultMethodOptimizationInfoImpl.UNKNOWN_TRIVIAL_INITIALIZER
+          : rareFacts.trivialInitializerInfo;
     }
 
     @Override
@@ -1430,113 +1575,128 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
       return nonNullParamOnNormalExits;
     }
 
+    @Override
+    public BitSet getNonNullParamOnAllCallSites() {
+      return rareFacts == null
+          ? DefaultMethodOptimizationInfoImpl.NO_NULL_PARAMETER_ON_ALL_CALL_SITES_FACTS
+          : rareFacts.nonNullParamOnAllCallSites;
+    }
+
     @Override
     public boolean hasBeenInlinedIntoSingleCallSite() {
-      return hasBeenInlinedIntoSingleCallSite;
+      return isSet(HAS_BEEN_INLINED_INTO_SINGLE_CALL_SITE);
     }
 
     @Override
     public void markInlinedIntoSingleCallSite() {
-      hasBeenInlinedIntoSingleCallSite = true;
+      set(HAS_BEEN_INLINED_INTO_SINGLE_CALL_SITE, true);
     }
 
     @Override
     public boolean isReachabilitySensitive() {
-      return reachabilitySensitive;
+      return isSet(REACHABILITY_SENSITIVE);
     }
 
     @Override
     public boolean returnsArgument() {
-      return returnedArgument != -1;
+      return getReturnedArgumentOrUnknown() != -1;
     }
 
     @Override
     public int getReturnedArgument() {
       assert returnsArgument();
-      return returnedArgument;
+      return rareFacts.returnedArgument;
+    }
+
+    private int getReturnedArgumentOrUnknown() {
+      return rareFacts == null
+          ? DefaultMethodOptimizationInfoImpl.UNKNOWN_RETURNED_ARGUMENT
+          : rareFacts.returnedArgument;
     }
 
     @Override
     public boolean neverReturnsNull() {
-      return neverReturnsNull;
+      return isSet(NEVER_RETURNS_NULL);
     }
 
     @Override
     public boolean neverReturnsNormally() {
-      return neverReturnsNormally;
+      return isSet(NEVER_RETURNS_NORMALLY);
     }
 
     @Override
     public boolean returnsConstant() {
-      assert !(returnsConstantNumber && returnsConstantString);
-      return returnsConstantNumber || returnsConstantString;
+      assert !(returnsConstantNumber() && returnsConstantString());
+      return returnsConstantNumber() || returnsConstantString();
     }
 
     @Override
     public boolean returnsConstantNumber() {
-      return returnsConstantNumber;
+      return isSet(RETURNS_CONSTANT_NUMBER);
     }
 
     @Override
     public boolean returnsConstantString() {
-      return returnsConstantString;
+      return isSet(RETURNS_CONSTANT_STRING);
     }
 
     @Override
     public ClassInlinerEligibility getClassInlinerEligibility() {
-      return classInlinerEligibility;
+      return rareFacts == null
+          ? DefaultMethodOptimizationInfoImpl.UNKNOWN_CLASS_INLINER_ELIGIBILITY
+          : rareFacts.classInlinerEligibility;
     }
 
     @Override
     public long getReturnedConstantNumber() {
       assert returnsConstant();
-      return returnedConstantNumber;
+      return rareFacts.returnedConstantNumber;
     }
 
     @Override
     public DexString getReturnedConstantString() {
       assert returnsConstant();
-      return returnedConstantString;
+      return rareFacts.returnedConstantString;
     }
 
     @Override
     public boolean isInitializerEnablingJavaAssertions() {
-      return initializerEnablingJavaAssertions;
+      return isSet(INITIALIZER_ENABLING_JAVA_ASSERTIONS);
     }
 
     @Override
     public boolean useIdentifierNameString() {
-      return useIdentifierNameString;
+      return isSet(USE_IDENTIFIER_NAME_STRING);
     }
 
     @Override
     public boolean forceInline() {
-      return inlining == InlinePreference.ForceInline;
+      return isSet(FORCE_INLINE);
     }
 
     @Override
     public boolean neverInline() {
-      return inlining == InlinePreference.NeverInline;
+      return isSet(NEVER_INLINE);
     }
 
     @Override
     public boolean checksNullReceiverBeforeAnySideEffect() {
-      return checksNullReceiverBeforeAnySideEffect;
+      return isSet(CHECKS_NULL_RECEIVER_BEFORE_ANY_SIDE_EFFECT);
     }
 
     @Override
     public boolean triggersClassInitBeforeAnySideEffect() {
-      return triggersClassInitBeforeAnySideEffect;
+      return isSet(TRIGGERS_CLASS_INIT_BEFORE_ANY_SIDE_EFFECT);
     }
 
     @Override
     public boolean mayHaveSideEffects() {
-      return mayHaveSideEffects;
+      return isSet(MAY_HAVE_SIDE_EFFECTS);
     }
 
     @Override
     public boolean returnValueOnlyDependsOnArguments() {
-      return returnValueOnlyDependsOnArguments;
+      return isSet(RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS);
     }
 
     @Override
@@ -1554,72 +1714,86 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
       this.nonNullParamOnNormalExits = facts;
     }
 
+    @Override
+    public void setNonNullParamOnAllCallSites(BitSet facts) {
+      if (facts != DefaultMethodOptimizationInfoImpl.NO_NULL_PARAMETER_ON_ALL_CALL_SITES_FACTS
+          || rareFacts != null) {
+        getRareFactsForUpdating().nonNullParamOnAllCallSites = facts;
+      }
+    }
+
     @Override
     public void setReachabilitySensitive(boolean reachabilitySensitive) {
-      this.reachabilitySensitive = reachabilitySensitive;
+      set(REACHABILITY_SENSITIVE, reachabilitySensitive);
     }
 
     @Override
     public void setClassInlinerEligibility(ClassInlinerEligibility eligibility) {
-      this.classInlinerEligibility = eligibility;
+      if (eligibility != DefaultMethodOptimizationInfoImpl.UNKNOWN_CLASS_INLINER_ELIGIBILITY
+          || rareFacts != null) {
+        getRareFactsForUpdating().classInlinerEligibility = eligibility;
+      }
     }
 
     @Override
     public void setTrivialInitializer(TrivialInitializer info) {
-      this.trivialInitializerInfo = info;
+      if (info != DefaultMethodOptimizationInfoImpl.UNKNOWN_TRIVIAL_INITIALIZER
+          || rareFacts != null) {
+        getRareFactsForUpdating().trivialInitializerInfo = info;
+      }
     }
 
     @Override
     public void setInitializerEnablingJavaAssertions() {
-      this.initializerEnablingJavaAssertions = true;
+      set(INITIALIZER_ENABLING_JAVA_ASSERTIONS, true);
     }
 
     @Override
     public void markInitializesClassesOnNormalExit(Set<DexType> initializedClassesOnNormalExit) {
-      this.initializedClassesOnNormalExit = initializedClassesOnNormalExit;
+      getRareFactsForUpdating().initializedClassesOnNormalExit = initializedClassesOnNormalExit;
     }
 
     @Override
     public void markReturnsArgument(int argument) {
       assert argument >= 0;
-      assert returnedArgument == -1 || returnedArgument == argument;
-      returnedArgument = argument;
+      assert getReturnedArgumentOrUnknown() == -1 || getReturnedArgumentOrUnknown() == argument;
+      getRareFactsForUpdating().returnedArgument = argument;
     }
 
     @Override
     public void markMayNotHaveSideEffects() {
-      mayHaveSideEffects = false;
+      set(MAY_HAVE_SIDE_EFFECTS, false);
     }
 
     @Override
     public void markReturnValueOnlyDependsOnArguments() {
-      returnValueOnlyDependsOnArguments = true;
+      set(RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS, true);
     }
 
     @Override
     public void markNeverReturnsNull() {
-      neverReturnsNull = true;
+      set(NEVER_RETURNS_NULL, true);
     }
 
     @Override
     public void markNeverReturnsNormally() {
-      neverReturnsNormally = true;
+      set(NEVER_RETURNS_NORMALLY, true);
     }
 
     @Override
     public void markReturnsConstantNumber(long value) {
-      assert !returnsConstantString;
-      assert !returnsConstantNumber || returnedConstantNumber == value;
-      returnsConstantNumber = true;
-      returnedConstantNumber = value;
+      assert !returnsConstantString();
+      assert !returnsConstantNumber() || rareFacts.returnedConstantNumber == value;
+      set(RETURNS_CONSTANT_NUMBER, true);
+      getRareFactsForUpdating().returnedConstantNumber = value;
     }
 
     @Override
     public void markReturnsConstantString(DexString value) {
-      assert !returnsConstantNumber;
-      assert !returnsConstantString || returnedConstantString == value;
-      returnsConstantString = true;
-      returnedConstantString = value;
+      assert !returnsConstantNumber();
+      assert !returnsConstantString() || rareFacts.returnedConstantString == value;
+      set(RETURNS_CONSTANT_STRING, true);
+      getRareFactsForUpdating().returnedConstantString = value;
     }
 
     @Override
@@ -1632,53 +1806,258 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     @Override
     public void markForceInline() {
       // For concurrent scenarios we should allow the flag to be already set
-      assert inlining == InlinePreference.Default || inlining == InlinePreference.ForceInline;
-      inlining = InlinePreference.ForceInline;
+      assert !neverInline();
+      set(FORCE_INLINE, true);
     }
 
     @Override
     public void unsetForceInline() {
       // For concurrent scenarios we should allow the flag to be already unset
-      assert inlining == InlinePreference.Default || inlining == InlinePreference.ForceInline;
-      inlining = InlinePreference.Default;
+      assert !neverInline();
+      set(FORCE_INLINE, false);
     }
 
     @Override
     public void markNeverInline() {
       // For concurrent scenarios we should allow the flag to be already set
-      assert inlining == InlinePreference.Default || inlining == InlinePreference.NeverInline;
-      inlining = InlinePreference.NeverInline;
+      assert !forceInline();
+      set(NEVER_INLINE, true);
     }
 
     @Override
     public void markUseIdentifierNameString() {
-      useIdentifierNameString = true;
+      set(USE_IDENTIFIER_NAME_STRING, true);
     }
 
     @Override
     public void markCheckNullReceiverBeforeAnySideEffect(boolean mark) {
-      checksNullReceiverBeforeAnySideEffect = mark;
+      set(CHECKS_NULL_RECEIVER_BEFORE_ANY_SIDE_EFFECT, mark);
     }
 
     @Override
     public void markTriggerClassInitBeforeAnySideEffect(boolean mark) {
-      triggersClassInitBeforeAnySideEffect = mark;
+      set(TRIGGERS_CLASS_INIT_BEFORE_ANY_SIDE_EFFECT, mark);
     }
 
     @Override
     public void markAsPropagated() {
-      returnValueHasBeenPropagated = true;
+      set(RETURN_VALUE_HAS_BEEN_PROPAGATED, true);
     }
 
     @Override
     public boolean returnValueHasBeenPropagated() {
-      return returnValueHasBeenPropagated;
+      return isSet(RETURN_VALUE_HAS_BEEN_PROPAGATED);
     }
 
     @Override
     public UpdatableMethodOptimizationInfo mutableCopy() {
       assert this != DefaultMethodOptimizationInfoImpl.DEFAULT_INSTANCE;
-      return new MethodOptimizationInfoImpl(this);
+      return new MethodOptimizationInfoImpl(this, false);
+    }
+  }
+
+  /**
+   * Immutable optimization info that only holds boolean facts and parameter nullability facts, and
+   * that is shared between the methods with equal facts. Instances are created by {@link
+   * MethodOptimizationInfoCanonicalizer} and copied by {@link #getMutableOptimizationInfo} before
+   * they are updated.
+   */
+  static final class SharedMethodOptimizationInfoImpl implements MethodOptimizationInfo {
+
+    private final int flags;
+    // The parameter facts are canonicalized and never modified, so they are compared by identity.
+    private final BitSet nonNullParamOrThrow;
+    private final BitSet nonNullParamOnNormalExits;
+
+    SharedMethodOptimizationInfoImpl(
+        MethodOptimizationInfoImpl info,
+        BitSet nonNullParamOrThrow,
+        BitSet nonNullParamOnNormalExits) {
+      assert info.isSharable();
+      this.flags = info.flags;
+      this.nonNullParamOrThrow = nonNullParamOrThrow;
+      this.nonNullParamOnNormalExits = nonNullParamOnNormalExits;
+    }
+
+    private boolean isSet(int flag) {
+      return (flags & flag) != 0;
+    }
+
+    @Override
+    public boolean cannotBeKept() {
+      return isSet(MethodOptimizationInfoImpl.CANNOT_BE_KEPT);
+    }
+
+    @Override
+    public boolean classInitializerMayBePostponed() {
+      return isSet(MethodOptimizationInfoImpl.CLASS_INITIALIZER_MAY_BE_POSTPONED);
+    }
+
+    @Override
+    public TypeLatticeElement getDynamicReturnType() {
+      return UNKNOWN_TYPE;
+    }
+
+    @Override
+    public ParameterUsage getParameterUsages(int parameter) {
+      return null;
+    }
+
+    @Override
+    public BitSet getNonNullParamOrThrow() {
+      return nonNullParamOrThrow;
+    }
+
+    @Override
+    public BitSet getNonNullParamOnNormalExits() {
+      return nonNullParamOnNormalExits;
+    }
+
+    @Override
+    public BitSet getNonNullParamOnAllCallSites() {
+      return DefaultMethodOptimizationInfoImpl.NO_NULL_PARAMETER_ON_ALL_CALL_SITES_FACTS;
+    }
+
+    @Override
+    public boolean hasBeenInlinedIntoSingleCallSite() {
+      return isSet(MethodOptimizationInfoImpl.HAS_BEEN_INLINED_INTO_SINGLE_CALL_SITE);
+    }
+
+    @Override
+    public boolean isReachabilitySensitive() {
+      return isSet(MethodOptimizationInfoImpl.REACHABILITY_SENSITIVE);
+    }
+
+    @Override
+    public boolean returnsArgument() {
+      return false;
+    }
+
+    @Override
+    public int getReturnedArgument() {
+      throw new Unreachable();
+    }
+
+    @Override
+    public boolean neverReturnsNull() {
+      return isSet(MethodOptimizationInfoImpl.NEVER_RETURNS_NULL);
+    }
+
+    @Override
+    public boolean neverReturnsNormally() {
+      return isSet(MethodOptimizationInfoImpl.NEVER_RETURNS_NORMALLY);
+    }
+
+    @Override
+    public boolean returnsConstant() {
+      return false;
+    }
+
+    @Override
+    public boolean returnsConstantNumber() {
+      return false;
+    }
+
+    @Override
+    public boolean returnsConstantString() {
+      return false;
+    }
+
+    @Override
+    public ClassInlinerEligibility getClassInlinerEligibility() {
+      return DefaultMethodOptimizationInfoImpl.UNKNOWN_CLASS_INLINER_ELIGIBILITY;
+    }
+
+    @Override
+    public Set<DexType> getInitializedClassesOnNormalExit() {
+      return DefaultMethodOptimizationInfoImpl.UNKNOWN_INITIALIZED_CLASSES_ON_NORMAL_EXIT;
+    }
+
+    @Override
+    public TrivialInitializer getTrivialInitializerInfo() {
+      return DefaultMethodOptimizationInfoImpl.UNKNOWN_TRIVIAL_INITIALIZER;
+    }
+
+    @Override
+    public boolean isInitializerEnablingJavaAssertions() {
+      return isSet(MethodOptimizationInfoImpl.INITIALIZER_ENABLING_JAVA_ASSERTIONS);
+    }
+
+    @Override
+    public long getReturnedConstantNumber() {
+      throw new Unreachable();
+    }
+
+    @Override
+    public DexString getReturnedConstantString() {
+      throw new Unreachable();
+    }
+
+    @Override
+    public boolean forceInline() {
+      return isSet(MethodOptimizationInfoImpl.FORCE_INLINE);
+    }
+
+    @Override
+    public boolean neverInline() {
+      return isSet(MethodOptimizationInfoImpl.NEVER_INLINE);
+    }
+
+    @Override
+    public boolean useIdentifierNameString() {
+      return isSet(MethodOptimizationInfoImpl.USE_IDENTIFIER_NAME_STRING);
+    }
+
+    @Override
+    public boolean checksNullReceiverBeforeAnySideEffect() {
+      return isSet(MethodOptimizationInfoImpl.CHECKS_NULL_RECEIVER_BEFORE_ANY_SIDE_EFFECT);
+    }
+
+    @Override
+    public boolean triggersClassInitBeforeAnySideEffect() {
+      return isSet(MethodOptimizationInfoImpl.TRIGGERS_CLASS_INIT_BEFORE_ANY_SIDE_EFFECT);
+    }
+
+    @Override
+    public boolean mayHaveSideEffects() {
+      return isSet(MethodOptimizationInfoImpl.MAY_HAVE_SIDE_EFFECTS);
+    }
+
+    @Override
+    public boolean returnValueOnlyDependsOnArguments() {
+      return isSet(MethodOptimizationInfoImpl.RETURN_VALUE_ONLY_DEPENDS_ON_ARGUMENTS);
+    }
+
+    @Override
+    public boolean returnValueHasBeenPropagated() {
+      return isSet(MethodOptimizationInfoImpl.RETURN_VALUE_HAS_BEEN_PROPAGATED);
+    }
+
+    @Override
+    public UpdatableMethodOptimizationInfo mutableCopy() {
+      return new MethodOptimizationInfoImpl(this, false);
+    }
+
+    /** Returns an updatable copy of this info, which has the same facts as this info. */
+    UpdatableMethodOptimizationInfo unsharedCopy() {
+      return new MethodOptimizationInfoImpl(this, true);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof SharedMethodOptimizationInfoImpl)) {
+        return false;
+      }
+      SharedMethodOptimizationInfoImpl other = (SharedMethodOptimizationInfoImpl) o;
+      return flags == other.flags
+          && nonNullParamOrThrow == other.nonNullParamOrThrow
+          && nonNullParamOnNormalExits == other.nonNullParamOnNormalExits;
+    }
+
+    @Override
+    public int hashCode() {
+      return (flags * 31 + System.identityHashCode(nonNullParamOrThrow)) * 31
+          + System.identityHashCode(nonNullParamOnNormalExits);
     }
   }
 
@@ -1691,11 +2070,13 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
     checkIfObsolete();
     if (optimizationInfo == DefaultMethodOptimizationInfoImpl.DEFAULT_INSTANCE) {
       optimizationInfo = optimizationInfo.mutableCopy();
+    } else if (optimizationInfo instanceof SharedMethodOptimizationInfoImpl) {
+      optimizationInfo = ((SharedMethodOptimizationInfoImpl) optimizationInfo).unsharedCopy();
     }
     return (UpdatableMethodOptimizationInfo) optimizationInfo;
   }
 
-  public void setOptimizationInfo(UpdatableMethodOptimizationInfo info) {
+  public void setOptimizationInfo(MethodOptimizationInfo info) {
     checkIfObsolete();
     optimizationInfo = info;
   }
@@ -1731,7 +2112,7 @@ public class DexEncodedMethod extends KeyedDexItem<DexMethod> implements Resolut
       method = from.method;
       accessFlags = from.accessFlags.copy();
       annotations = from.annotations;
-      code = from.code;
+      code = from.getCode();
       compilationState = from.compilationState;
       optimizationInfo = from.optimizationInfo.mutableCopy();
       classFileVersion = from.classFileVersion;
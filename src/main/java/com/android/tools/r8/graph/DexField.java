@@ -127,6 +127,11 @@ public class DexField extends Descriptor<DexEncodedField, DexField> implements
     return match(encodedField.field);
   }
 
+  @Override
+  public int matchHashCode() {
+    return name.hashCode() * 31 + type.hashCode();
+  }
+
   public String qualifiedName() {
     return holder + "." + name;
   }
@@ -21,6 +21,7 @@ import com.android.tools.r8.graph.DexDebugEvent.SetPrologueEnd;
 import com.android.tools.r8.graph.DexMethodHandle.MethodHandleType;
 import com.android.tools.r8.ir.analysis.type.ArrayTypeLatticeElement;
 import com.android.tools.r8.ir.analysis.type.ClassTypeLatticeElement;
+import com.android.tools.r8.ir.analysis.type.LeastUpperBoundCache;
 import com.android.tools.r8.ir.analysis.type.Nullability;
 import com.android.tools.r8.ir.analysis.type.ReferenceTypeLatticeElement;
 import com.android.tools.r8.ir.analysis.type.TypeLatticeElement;
@@ -30,7 +31,6 @@ import com.android.tools.r8.ir.code.Value;
 import com.android.tools.r8.kotlin.Kotlin;
 import com.android.tools.r8.naming.NamingLens;
 import com.android.tools.r8.utils.ArrayUtils;
-import com.android.tools.r8.utils.LRUCacheTable;
 import com.android.tools.r8.utils.Pair;
 import com.google.common.base.Strings;
 import com.google.common.collect.BiMap;
@@ -86,8 +86,7 @@ public class DexItemFactory {
       referenceTypeLatticeElements = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<DexType, Set<DexType>>
       classTypeLatticeInterfaces = new ConcurrentHashMap<>();
-  public final LRUCacheTable<Set<DexType>, Set<DexType>, Set<DexType>>
-      leastUpperBoundOfInterfacesTable = LRUCacheTable.create(8, 8);
+  public final LeastUpperBoundCache leastUpperBoundCache = new LeastUpperBoundCache();
 
   boolean sorted = false;
 
@@ -165,6 +164,7 @@ public class DexItemFactory {
   public final DexString finalizeMethodName = createString("finalize");
   public final DexString ordinalMethodName = createString("ordinal");
   public final DexString nameMethodName = createString("name");
+  public final DexString valuesMethodName = createString("values");
   public final DexString desiredAssertionStatusMethodName = createString("desiredAssertionStatus");
   public final DexString forNameMethodName = createString("forName");
   public final DexString getNameName = createString("getName");
@@ -1399,13 +1399,13 @@ public class DexItemFactory {
   public void clearTypeLatticeElementsCache() {
     referenceTypeLatticeElements.clear();
     classTypeLatticeInterfaces.clear();
-    leastUpperBoundOfInterfacesTable.clear();
+    leastUpperBoundCache.clear();
   }
 
   public boolean verifyNoCachedTypeLatticeElements() {
     assert referenceTypeLatticeElements.isEmpty();
     assert classTypeLatticeInterfaces.isEmpty();
-    assert leastUpperBoundOfInterfacesTable.isEmpty();
+    assert leastUpperBoundCache.isEmpty();
     return true;
   }
 
@@ -1470,7 +1470,8 @@ public class DexItemFactory {
             type,
             t -> {
               Set<DexType> itfs = appView.appInfo().implementedInterfaces(t);
-              return computeLeastUpperBoundOfInterfaces(appView, itfs, itfs);
+              return leastUpperBoundCache.intern(
+                  computeLeastUpperBoundOfInterfaces(appView, itfs, itfs));
             }
         );
   }
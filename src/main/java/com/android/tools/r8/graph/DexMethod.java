@@ -157,6 +157,11 @@ public class DexMethod extends Descriptor<DexEncodedMethod, DexMethod>
     return match(encodedMethod.method);
   }
 
+  @Override
+  public int matchHashCode() {
+    return name.hashCode() * 31 + proto.hashCode();
+  }
+
   public String qualifiedName() {
     return holder + "." + name;
   }
@@ -239,6 +239,10 @@ public abstract class GraphLense {
     private final boolean extraNullParameter;
     private final RemovedArgumentsInfo removedArgumentsInfo;
 
+    // The prototype of the method before enum unboxing changed the type of some of its parameters
+    // or its return value to int, or null if enum unboxing did not change the prototype.
+    private final DexProto protoBeforeEnumUnboxing;
+
     private RewrittenPrototypeDescription() {
       this(false, false, RemovedArgumentsInfo.empty());
     }
@@ -247,10 +251,19 @@ public abstract class GraphLense {
         boolean hasBeenChangedToReturnVoid,
         boolean extraNullParameter,
         RemovedArgumentsInfo removedArgumentsInfo) {
+      this(hasBeenChangedToReturnVoid, extraNullParameter, removedArgumentsInfo, null);
+    }
+
+    private RewrittenPrototypeDescription(
+        boolean hasBeenChangedToReturnVoid,
+        boolean extraNullParameter,
+        RemovedArgumentsInfo removedArgumentsInfo,
+        DexProto protoBeforeEnumUnboxing) {
       assert removedArgumentsInfo != null;
       this.extraNullParameter = extraNullParameter;
       this.hasBeenChangedToReturnVoid = hasBeenChangedToReturnVoid;
       this.removedArgumentsInfo = removedArgumentsInfo;
+      this.protoBeforeEnumUnboxing = protoBeforeEnumUnboxing;
     }
 
     public static RewrittenPrototypeDescription none() {
@@ -260,7 +273,8 @@ public abstract class GraphLense {
     public boolean isEmpty() {
       return !extraNullParameter
           && !hasBeenChangedToReturnVoid
-          && !getRemovedArgumentsInfo().hasRemovedArguments();
+          && !getRemovedArgumentsInfo().hasRemovedArguments()
+          && protoBeforeEnumUnboxing == null;
     }
 
     public boolean hasExtraNullParameter() {
@@ -275,6 +289,16 @@ public abstract class GraphLense {
       return removedArgumentsInfo;
     }
 
+    /**
+     * Returns the prototype that the code of a method with the given (rewritten) prototype has been
+     * written against. This only differs from the given prototype if enum unboxing has changed the
+     * type of a parameter or the return value to int, in which case the code still loads and
+     * returns the corresponding values as objects until it is processed.
+     */
+    public DexProto getProtoForCode(DexProto proto) {
+      return protoBeforeEnumUnboxing != null ? protoBeforeEnumUnboxing : proto;
+    }
+
     /**
      * Returns the {@link ConstInstruction} that should be used to materialize the result of
      * invocations to the method represented by this {@link RewrittenPrototypeDescription}.
@@ -320,21 +344,31 @@ public abstract class GraphLense {
 
     public RewrittenPrototypeDescription withConstantReturn() {
       return !hasBeenChangedToReturnVoid
-          ? new RewrittenPrototypeDescription(true, extraNullParameter, removedArgumentsInfo)
+          ? new RewrittenPrototypeDescription(
+              true, extraNullParameter, removedArgumentsInfo, protoBeforeEnumUnboxing)
           : this;
     }
 
     public RewrittenPrototypeDescription withRemovedArguments(RemovedArgumentsInfo other) {
       return new RewrittenPrototypeDescription(
-          hasBeenChangedToReturnVoid, extraNullParameter, removedArgumentsInfo.combine(other));
+          hasBeenChangedToReturnVoid,
+          extraNullParameter,
+          removedArgumentsInfo.combine(other),
+          protoBeforeEnumUnboxing);
     }
 
     public RewrittenPrototypeDescription withExtraNullParameter() {
       return !extraNullParameter
           ? new RewrittenPrototypeDescription(
-              hasBeenChangedToReturnVoid, true, removedArgumentsInfo)
+              hasBeenChangedToReturnVoid, true, removedArgumentsInfo, protoBeforeEnumUnboxing)
           : this;
     }
+
+    public RewrittenPrototypeDescription withProtoBeforeEnumUnboxing(DexProto proto) {
+      assert protoBeforeEnumUnboxing == null;
+      return new RewrittenPrototypeDescription(
+          hasBeenChangedToReturnVoid, extraNullParameter, removedArgumentsInfo, proto);
+    }
   }
 
   public static class Builder {
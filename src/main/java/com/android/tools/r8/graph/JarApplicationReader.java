@@ -6,7 +6,9 @@ package com.android.tools.r8.graph;
 import com.android.tools.r8.errors.Unreachable;
 import com.android.tools.r8.graph.DexMethodHandle.MethodHandleType;
 import com.android.tools.r8.utils.InternalOptions;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import org.objectweb.asm.Type;
 
@@ -15,17 +17,59 @@ import org.objectweb.asm.Type;
  *
  * The primary use of this class is to canonicalize dex items during read.
  * The addition of classes to the builder also takes place through this class.
- * It does not currently support multithreaded reading.
+ *
+ * The code of a class file is parsed through a reader obtained from {@link #forClassFile()},
+ * which in addition caches the items of the class by the identity of the strings that ASM reads
+ * from the constant pool of the class file.
  */
 public class JarApplicationReader {
 
   public final InternalOptions options;
-  private final ConcurrentHashMap<String, Type> asmObjectTypeCache = new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<String, Type> asmTypeCache = new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<String, DexString> stringCache = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Type> asmObjectTypeCache;
+  private final ConcurrentHashMap<String, Type> asmTypeCache;
+  private final ConcurrentHashMap<String, DexString> stringCache;
+
+  // Caches for the items of a single class file. ASM returns the same string instance for all
+  // uses of a constant pool entry, so repeated references to an entry are resolved without hashing
+  // or comparing the string. These are null for the application wide reader.
+  private final JarApplicationReader applicationReader;
+  private final Map<String, DexString> classStringCache;
+  private final Map<String, DexType> classTypeCache;
+  private final Map<String, DexProto> classProtoCache;
 
   public JarApplicationReader(InternalOptions options) {
     this.options = options;
+    this.asmObjectTypeCache = new ConcurrentHashMap<>();
+    this.asmTypeCache = new ConcurrentHashMap<>();
+    this.stringCache = new ConcurrentHashMap<>();
+    this.applicationReader = this;
+    this.classStringCache = null;
+    this.classTypeCache = null;
+    this.classProtoCache = null;
+  }
+
+  private JarApplicationReader(JarApplicationReader applicationReader) {
+    this.options = applicationReader.options;
+    this.asmObjectTypeCache = applicationReader.asmObjectTypeCache;
+    this.asmTypeCache = applicationReader.asmTypeCache;
+    this.stringCache = applicationReader.stringCache;
+    this.applicationReader = applicationReader;
+    this.classStringCache = new IdentityHashMap<>();
+    this.classTypeCache = new IdentityHashMap<>();
+    this.classProtoCache = new IdentityHashMap<>();
+  }
+
+  /**
+   * Returns a reader for reading a single class file. The returned reader must only be used by a
+   * single thread and only with strings read by a single ASM ClassReader.
+   */
+  public JarApplicationReader forClassFile() {
+    return new JarApplicationReader(applicationReader);
+  }
+
+  /** Returns the application wide reader, which does not retain any per-class caches. */
+  public JarApplicationReader getApplicationReader() {
+    return applicationReader;
   }
 
   public Type getAsmObjectType(String name) {
@@ -41,14 +85,59 @@ public class JarApplicationReader {
   }
 
   public DexString getString(String string) {
-    return stringCache.computeIfAbsent(string, options.itemFactory::createString);
+    if (classStringCache != null) {
+      DexString result = classStringCache.get(string);
+      if (result == null) {
+        result = getStringSlow(string);
+        classStringCache.put(string, result);
+      }
+      return result;
+    }
+    return getStringSlow(string);
+  }
+
+  /**
+   * Returns the string for a constant that only occurs in code, such as the value of a const-string
+   * instruction or the name of a local variable. These strings are rarely shared between classes,
+   * so they are only cached for the class and not added to the application wide string cache.
+   */
+  public DexString getCodeString(String string) {
+    if (classStringCache != null) {
+      DexString result = classStringCache.get(string);
+      if (result == null) {
+        result = options.itemFactory.createString(string);
+        classStringCache.put(string, result);
+      }
+      return result;
+    }
+    return options.itemFactory.createString(string);
+  }
+
+  private DexString getStringSlow(String string) {
+    DexString result = stringCache.get(string);
+    return result != null
+        ? result
+        : stringCache.computeIfAbsent(string, options.itemFactory::createString);
   }
 
   public DexType getType(Type type) {
-    return getTypeFromDescriptor(type.getDescriptor());
+    // The descriptor is a fresh string, so there is no point in caching it for the class.
+    return applicationReader.getTypeFromDescriptor(type.getDescriptor());
   }
 
   public DexType getTypeFromName(String name) {
+    if (classTypeCache != null) {
+      DexType result = classTypeCache.get(name);
+      if (result == null) {
+        result = getTypeFromNameSlow(name);
+        classTypeCache.put(name, result);
+      }
+      return result;
+    }
+    return getTypeFromNameSlow(name);
+  }
+
+  private DexType getTypeFromNameSlow(String name) {
     assert isValidInternalName(name);
     return getType(getAsmObjectType(name));
   }
@@ -110,6 +199,18 @@ public class JarApplicationReader {
   }
 
   public DexProto getProto(String desc) {
+    if (classProtoCache != null) {
+      DexProto result = classProtoCache.get(desc);
+      if (result == null) {
+        result = getProtoSlow(desc);
+        classProtoCache.put(desc, result);
+      }
+      return result;
+    }
+    return getProtoSlow(desc);
+  }
+
+  private DexProto getProtoSlow(String desc) {
     assert isValidDescriptor(desc);
     String returnTypeDescriptor = getReturnTypeDescriptor(desc);
     String[] argumentDescriptors = getArgumentTypeDescriptors(desc);
@@ -118,11 +219,12 @@ public class JarApplicationReader {
     for (int i = 0; i < argumentDescriptors.length; i++) {
       shortyDescriptor.append(getShortyDescriptor(argumentDescriptors[i]));
     }
+    // The descriptors computed from desc are fresh strings, so they are not cached for the class.
     DexProto proto =
         options.itemFactory.createProto(
-            getTypeFromDescriptor(returnTypeDescriptor),
-            getTypeListFromDescriptors(argumentDescriptors),
-            getString(shortyDescriptor.toString()));
+            applicationReader.getTypeFromDescriptor(returnTypeDescriptor),
+            applicationReader.getTypeListFromDescriptors(argumentDescriptors),
+            applicationReader.getString(shortyDescriptor.toString()));
     return proto;
   }
 
@@ -763,7 +763,7 @@ public class JarClassFileReader {
         parameterNames = new ArrayList<>(parameterCount);
         parameterFlags = new ArrayList<>(parameterCount);
       }
-      parameterNames.add(new DexValueString(parent.application.getFactory().createString(name)));
+      parameterNames.add(new DexValueString(parent.application.getString(name)));
       parameterFlags.add(DexValueInt.create(access));
       super.visitParameter(name, access);
     }
@@ -92,7 +92,7 @@ public class LazyCfCode extends Code {
       DexMethod method, Origin origin, ReparseContext context, JarApplicationReader application) {
     this.origin = origin;
     this.context = context;
-    this.application = application;
+    this.application = application.getApplicationReader();
     context.codeList.add(this);
   }
 
@@ -145,7 +145,8 @@ public class LazyCfCode extends Code {
   public void parseCode(ReparseContext context, boolean useJsrInliner) {
     int parsingOptions = getParsingOptions(application, reachabilitySensitive);
     ClassCodeVisitor classVisitor =
-        new ClassCodeVisitor(context.owner, createCodeLocator(context), application, useJsrInliner);
+        new ClassCodeVisitor(
+            context.owner, createCodeLocator(context), application.forClassFile(), useJsrInliner);
     new ClassReader(context.classCache).accept(classVisitor, parsingOptions);
   }
 
@@ -384,7 +385,7 @@ public class LazyCfCode extends Code {
 
     private DexType createTypeFromInternalType(String local) {
       assert local.indexOf('.') == -1;
-      return factory.createType(Type.getObjectType(local).getDescriptor());
+      return application.getTypeFromName(local);
     }
 
     @Override
@@ -662,7 +663,7 @@ public class LazyCfCode extends Code {
 
     @Override
     public void visitTypeInsn(int opcode, String typeName) {
-      DexType type = factory.createType(Type.getObjectType(typeName).getDescriptor());
+      DexType type = application.getTypeFromName(typeName);
       switch (opcode) {
         case Opcodes.NEW:
           instructions.add(new CfNew(type));
@@ -683,8 +684,7 @@ public class LazyCfCode extends Code {
 
     @Override
     public void visitFieldInsn(int opcode, String owner, String name, String desc) {
-      DexField field =
-          factory.createField(createTypeFromInternalType(owner), factory.createType(desc), name);
+      DexField field = application.getField(createTypeFromInternalType(owner), name, desc);
       // TODO(mathiasr): Don't require CfFieldInstruction::declaringField. It is needed for proper
       // renaming in the backend, but it is not available here in the frontend.
       instructions.add(new CfFieldInstruction(opcode, field, field));
@@ -780,10 +780,10 @@ public class LazyCfCode extends Code {
           DexProto proto = application.getProto(type.getDescriptor());
           instructions.add(new CfConstMethodType(proto));
         } else {
-          instructions.add(new CfConstClass(factory.createType(type.getDescriptor())));
+          instructions.add(new CfConstClass(application.getType(type)));
         }
       } else if (cst instanceof String) {
-        instructions.add(new CfConstString(factory.createString((String) cst)));
+        instructions.add(new CfConstString(application.getCodeString((String) cst)));
       } else if (cst instanceof Long) {
         instructions.add(new CfConstNumber((Long) cst, ValueType.LONG));
       } else if (cst instanceof Double) {
@@ -830,7 +830,7 @@ public class LazyCfCode extends Code {
     @Override
     public void visitMultiANewArrayInsn(String desc, int dims) {
       if (!application.options.isGeneratingDex()) {
-        instructions.add(new CfMultiANewArray(factory.createType(desc), dims));
+        instructions.add(new CfMultiANewArray(application.getTypeFromDescriptor(desc), dims));
         return;
       }
       // When generating DEX code a multianewarray is desugared to a reflective creation.
@@ -887,9 +887,9 @@ public class LazyCfCode extends Code {
       DebugLocalInfo debugLocalInfo =
           canonicalize(
               new DebugLocalInfo(
-                  factory.createString(name),
-                  factory.createType(desc),
-                  signature == null ? null : factory.createString(signature)));
+                  application.getCodeString(name),
+                  application.getTypeFromDescriptor(desc),
+                  signature == null ? null : application.getCodeString(signature)));
       localVariables.add(
           new LocalVariableInfo(index, debugLocalInfo, getLabel(start), getLabel(end)));
     }
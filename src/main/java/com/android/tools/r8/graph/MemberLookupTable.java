@@ -0,0 +1,70 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+/**
+ * Open-addressed hash table over an array of members of a class, which supports constant time
+ * lookup of the member that matches a given {@link Descriptor}.
+ *
+ * <p>Members are matched by {@link Descriptor#match}, i.e., by name and proto or type, independent
+ * of the holder. The table is immutable and remembers the array it was built for, such that a
+ * {@link DexClass} can detect that its members have changed and rebuild the table lazily.
+ */
+final class MemberLookupTable<T extends KeyedDexItem<S>, S extends Descriptor<T, S>> {
+
+  // Arrays of at most this many members are cheaper to scan linearly.
+  static final int MAX_LINEAR_SCAN_SIZE = 8;
+
+  private final T[] members;
+  private final Object[] table;
+  private final int mask;
+
+  private MemberLookupTable(T[] members) {
+    this.members = members;
+    // Keep the load factor at or below 1/2 to keep the probe sequences short.
+    int capacity = Integer.highestOneBit(members.length) << 2;
+    this.table = new Object[capacity];
+    this.mask = capacity - 1;
+    for (T member : members) {
+      int index = indexFor(member.getKey().matchHashCode());
+      while (table[index] != null) {
+        index = (index + 1) & mask;
+      }
+      table[index] = member;
+    }
+  }
+
+  /**
+   * Returns a lookup table for {@code members}, reusing {@code table} if it was built for the same
+   * array, or null if the array is small enough to be scanned linearly.
+   */
+  static <T extends KeyedDexItem<S>, S extends Descriptor<T, S>>
+      MemberLookupTable<T, S> getOrCreate(T[] members, MemberLookupTable<T, S> table) {
+    if (members.length <= MAX_LINEAR_SCAN_SIZE) {
+      return null;
+    }
+    if (table != null && table.members == members) {
+      return table;
+    }
+    return new MemberLookupTable<>(members);
+  }
+
+  @SuppressWarnings("unchecked")
+  T lookup(S descriptor) {
+    int index = indexFor(descriptor.matchHashCode());
+    Object entry;
+    while ((entry = table[index]) != null) {
+      if (descriptor.match((T) entry)) {
+        return (T) entry;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  private int indexFor(int hashCode) {
+    // Spread the high bits, since the table is indexed by the low bits.
+    return (hashCode ^ (hashCode >>> 16)) & mask;
+  }
+}
@@ -31,6 +31,8 @@ public interface MethodOptimizationInfo {
 
   BitSet getNonNullParamOnNormalExits();
 
+  BitSet getNonNullParamOnAllCallSites();
+
   boolean hasBeenInlinedIntoSingleCallSite();
 
   boolean isReachabilitySensitive();
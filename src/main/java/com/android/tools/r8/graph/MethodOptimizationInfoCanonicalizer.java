@@ -0,0 +1,66 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.graph;
+
+import com.android.tools.r8.graph.DexEncodedMethod.MethodOptimizationInfoImpl;
+import com.android.tools.r8.graph.DexEncodedMethod.SharedMethodOptimizationInfoImpl;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replaces the optimization info of methods that only hold boolean facts and parameter nullability
+ * facts by an immutable instance that is shared between all methods with the same facts.
+ *
+ * <p>There is an instance for each compilation, owned by the {@link AppView}, such that the shared
+ * instances are not retained after the compilation.
+ */
+public class MethodOptimizationInfoCanonicalizer {
+
+  private final ConcurrentHashMap<
+          SharedMethodOptimizationInfoImpl, SharedMethodOptimizationInfoImpl>
+      sharedInstances = new ConcurrentHashMap<>();
+  // Canonical copies of the parameter facts, which are never modified.
+  private final ConcurrentHashMap<BitSet, BitSet> sharedParameterFacts = new ConcurrentHashMap<>();
+
+  /**
+   * Returns a shared instance that is equal to the given info if the info only holds boolean facts
+   * and parameter nullability facts, and otherwise the given info. The given info is not modified.
+   */
+  public MethodOptimizationInfo canonicalize(UpdatableMethodOptimizationInfo info) {
+    if (!(info instanceof MethodOptimizationInfoImpl)) {
+      return info;
+    }
+    MethodOptimizationInfoImpl impl = (MethodOptimizationInfoImpl) info;
+    if (!impl.isSharable()) {
+      return info;
+    }
+    SharedMethodOptimizationInfoImpl shared =
+        new SharedMethodOptimizationInfoImpl(
+            impl,
+            canonicalizeParameterFacts(impl.getNonNullParamOrThrow()),
+            canonicalizeParameterFacts(impl.getNonNullParamOnNormalExits()));
+    SharedMethodOptimizationInfoImpl existing = sharedInstances.putIfAbsent(shared, shared);
+    return existing != null ? existing : shared;
+  }
+
+  private BitSet canonicalizeParameterFacts(BitSet facts) {
+    if (facts == null) {
+      return null;
+    }
+    BitSet existing = sharedParameterFacts.get(facts);
+    if (existing != null) {
+      return existing;
+    }
+    BitSet copy = (BitSet) facts.clone();
+    existing = sharedParameterFacts.putIfAbsent(copy, copy);
+    return existing != null ? existing : copy;
+  }
+
+  /** Drops the canonicalization tables. The installed shared instances remain valid. */
+  public void clear() {
+    sharedInstances.clear();
+    sharedParameterFacts.clear();
+  }
+}
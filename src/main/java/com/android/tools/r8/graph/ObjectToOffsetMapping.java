@@ -61,6 +61,21 @@ public class ObjectToOffsetMapping {
     this.methodHandles = createMap(methodHandles, this::failOnOverflow);
   }
 
+  /**
+   * Creates an empty mapping. Only intended for subclasses that override the computation of the
+   * offsets for items, e.g., to assign offsets on demand.
+   */
+  protected ObjectToOffsetMapping() {
+    this.classes = new DexProgramClass[0];
+    this.protos = null;
+    this.types = null;
+    this.methods = null;
+    this.fields = null;
+    this.strings = null;
+    this.callSites = null;
+    this.methodHandles = null;
+  }
+
   private void setFirstJumboString(DexString string) {
     assert firstJumboString == null;
     firstJumboString = string;
@@ -0,0 +1,200 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import com.android.tools.r8.code.Instruction;
+import com.android.tools.r8.code.InstructionFactory;
+import com.android.tools.r8.dex.IndexedItemCollection;
+import com.android.tools.r8.errors.Unreachable;
+import com.android.tools.r8.graph.DexCode.Try;
+import com.android.tools.r8.graph.DexCode.TryHandler;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.naming.ClassNameMapper;
+import com.android.tools.r8.origin.Origin;
+import java.nio.ShortBuffer;
+
+/**
+ * Placeholder for a {@link DexCode} object whose instructions have been spilled to a {@link
+ * DexCodeStorage}.
+ *
+ * <p>The placeholder retains everything but the instructions, as well as the items referenced by
+ * the instructions, which allows collecting the indexed items of the code without reloading it.
+ * All other uses of the code go through {@link DexEncodedMethod#getCode()}, which reloads the code.
+ */
+public class SpilledDexCode extends Code {
+
+  private final DexCodeStorage storage;
+  private final long position;
+  private final int codeUnits;
+
+  private final int registerSize;
+  private final int incomingRegisterSize;
+  private final int outgoingRegisterSize;
+  private final Try[] tries;
+  private final TryHandler[] handlers;
+  private final DexDebugInfo debugInfo;
+  private DexString highestSortingString;
+
+  // The items referenced by the instructions, indexed by their spilled offset.
+  private final DexMethod[] methods;
+  private final DexField[] fields;
+  private final DexType[] types;
+  private final DexString[] strings;
+  private final DexProto[] protos;
+
+  SpilledDexCode(
+      DexCodeStorage storage,
+      long position,
+      int codeUnits,
+      DexCode code,
+      DexMethod[] methods,
+      DexField[] fields,
+      DexType[] types,
+      DexString[] strings,
+      DexProto[] protos) {
+    this.storage = storage;
+    this.position = position;
+    this.codeUnits = codeUnits;
+    this.registerSize = code.registerSize;
+    this.incomingRegisterSize = code.incomingRegisterSize;
+    this.outgoingRegisterSize = code.outgoingRegisterSize;
+    this.tries = code.tries;
+    this.handlers = code.handlers;
+    this.debugInfo = code.getDebugInfo();
+    this.highestSortingString = code.highestSortingString;
+    this.methods = methods;
+    this.fields = fields;
+    this.types = types;
+    this.strings = strings;
+    this.protos = protos;
+  }
+
+  public DexCodeStorage getStorage() {
+    return storage;
+  }
+
+  public int getCodeUnits() {
+    return codeUnits;
+  }
+
+  DexCode reload() {
+    OffsetToObjectMapping mapping = new OffsetToObjectMapping();
+    mapping.initializeMethods(methods.length);
+    for (int i = 0; i < methods.length; i++) {
+      mapping.setMethod(i, methods[i]);
+    }
+    mapping.initializeFields(fields.length);
+    for (int i = 0; i < fields.length; i++) {
+      mapping.setField(i, fields[i]);
+    }
+    mapping.initializeTypes(types.length);
+    for (int i = 0; i < types.length; i++) {
+      mapping.setType(i, types[i]);
+    }
+    mapping.initializeStrings(strings.length);
+    for (int i = 0; i < strings.length; i++) {
+      mapping.setString(i, strings[i]);
+    }
+    mapping.initializeProtos(protos.length);
+    for (int i = 0; i < protos.length; i++) {
+      mapping.setProto(i, protos[i]);
+    }
+    mapping.initializeCallSites(0);
+    mapping.initializeMethodHandles(0);
+    ShortBuffer buffer = storage.read(position, codeUnits);
+    Instruction[] instructions =
+        new InstructionFactory().readSequenceFrom(buffer, 0, codeUnits, mapping);
+    DexCode code =
+        new DexCode(
+            registerSize,
+            incomingRegisterSize,
+            outgoingRegisterSize,
+            instructions,
+            tries,
+            handlers,
+            debugInfo);
+    code.highestSortingString = highestSortingString;
+    return code;
+  }
+
+  @Override
+  public boolean isSpilledDexCode() {
+    return true;
+  }
+
+  @Override
+  public SpilledDexCode asSpilledDexCode() {
+    return this;
+  }
+
+  @Override
+  public void collectIndexedItems(
+      IndexedItemCollection indexedItems, DexMethod method, int instructionOffset) {
+    // Equivalent to DexCode#collectIndexedItems. The spilled code does not reference call sites
+    // and method handles, so the instruction offsets are not needed.
+    for (DexMethod item : methods) {
+      item.collectIndexedItems(indexedItems, method, instructionOffset);
+    }
+    for (DexField item : fields) {
+      item.collectIndexedItems(indexedItems, method, instructionOffset);
+    }
+    for (DexType item : types) {
+      item.collectIndexedItems(indexedItems, method, instructionOffset);
+    }
+    // The only instructions that reference strings are the const-string instructions.
+    highestSortingString = null;
+    for (DexString item : strings) {
+      item.collectIndexedItems(indexedItems, method, instructionOffset);
+      if (highestSortingString == null || highestSortingString.slowCompareTo(item) < 0) {
+        highestSortingString = item;
+      }
+    }
+    for (DexProto item : protos) {
+      item.collectIndexedItems(indexedItems, method, instructionOffset);
+    }
+    if (debugInfo != null) {
+      new DexDebugInfoForWriting(debugInfo).collectIndexedItems(indexedItems);
+    }
+    if (handlers != null) {
+      for (TryHandler handler : handlers) {
+        handler.collectIndexedItems(indexedItems);
+      }
+    }
+  }
+
+  @Override
+  public IRCode buildIR(DexEncodedMethod encodedMethod, AppView<?> appView, Origin origin) {
+    throw new Unreachable("Spilled code must be reloaded before use");
+  }
+
+  @Override
+  public void registerCodeReferences(DexEncodedMethod method, UseRegistry registry) {
+    throw new Unreachable("Spilled code must be reloaded before use");
+  }
+
+  @Override
+  public boolean isEmptyVoidMethod() {
+    throw new Unreachable("Spilled code must be reloaded before use");
+  }
+
+  @Override
+  public String toString() {
+    return "<spilled code>";
+  }
+
+  @Override
+  public String toString(DexEncodedMethod method, ClassNameMapper naming) {
+    return toString();
+  }
+
+  @Override
+  protected int computeHashCode() {
+    return System.identityHashCode(this);
+  }
+
+  @Override
+  protected boolean computeEquals(Object other) {
+    return this == other;
+  }
+}
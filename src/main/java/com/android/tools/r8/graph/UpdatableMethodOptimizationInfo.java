@@ -52,6 +52,8 @@ public interface UpdatableMethodOptimizationInfo extends MethodOptimizationInfo
 
   void setNonNullParamOnNormalExits(BitSet facts);
 
+  void setNonNullParamOnAllCallSites(BitSet facts);
+
   void setReachabilitySensitive(boolean reachabilitySensitive);
 
   void markUseIdentifierNameString();
@@ -0,0 +1,129 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.analysis.loop;
+
+import com.android.tools.r8.ir.code.BasicBlock;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A natural loop, i.e., a header block together with all blocks that can reach one of the back
+ * edges to the header without passing through the header.
+ *
+ * <p>Natural loops that share a header are represented by a single loop.
+ */
+public class Loop {
+
+  private final BasicBlock header;
+  private final List<BasicBlock> latches = new ArrayList<>();
+  private final Set<BasicBlock> blocks = Sets.newIdentityHashSet();
+
+  private Loop parent;
+  private final List<Loop> children = new ArrayList<>();
+
+  Loop(BasicBlock header) {
+    this.header = header;
+    blocks.add(header);
+  }
+
+  void addLatch(BasicBlock latch) {
+    latches.add(latch);
+  }
+
+  /**
+   * Adds a block to the loop. This is also used to keep the loop up to date when a transformation
+   * inserts a new block into the loop, such as a preheader of a nested loop.
+   */
+  public void addBlock(BasicBlock block) {
+    blocks.add(block);
+  }
+
+  void setParent(Loop parent) {
+    assert this.parent == null;
+    this.parent = parent;
+    parent.children.add(this);
+  }
+
+  /** The unique entry block of the loop, which dominates all blocks of the loop. */
+  public BasicBlock getHeader() {
+    return header;
+  }
+
+  /** The blocks of the loop that have a back edge to the header. */
+  public List<BasicBlock> getLatches() {
+    return latches;
+  }
+
+  /** The blocks of the loop, including the blocks of all nested loops. */
+  public Set<BasicBlock> getBlocks() {
+    return blocks;
+  }
+
+  public boolean contains(BasicBlock block) {
+    return blocks.contains(block);
+  }
+
+  public boolean contains(Loop loop) {
+    return blocks.contains(loop.header);
+  }
+
+  /** The closest enclosing loop, or null if this is an outermost loop. */
+  public Loop getParent() {
+    return parent;
+  }
+
+  /** The loops that are immediately nested in this loop. */
+  public List<Loop> getChildren() {
+    return children;
+  }
+
+  /** The nesting depth of the loop, which is 1 for an outermost loop. */
+  public int getDepth() {
+    int depth = 1;
+    for (Loop loop = parent; loop != null; loop = loop.parent) {
+      depth++;
+    }
+    return depth;
+  }
+
+  /**
+   * Returns the unique predecessor of the header that is not in the loop, or null if the loop is
+   * entered from more than one block.
+   */
+  public BasicBlock getUniqueEntryPredecessor() {
+    BasicBlock result = null;
+    for (BasicBlock predecessor : header.getPredecessors()) {
+      if (!contains(predecessor)) {
+        if (result != null) {
+          return null;
+        }
+        result = predecessor;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the preheader of the loop, i.e., the unique entry predecessor if its only successor is
+   * the header and it does not have catch handlers, or null if the loop has no such block.
+   */
+  public BasicBlock getPreheader() {
+    BasicBlock predecessor = getUniqueEntryPredecessor();
+    if (predecessor != null
+        && predecessor.exit().isGoto()
+        && !predecessor.hasCatchHandlers()
+        && predecessor.getSuccessors().size() == 1) {
+      assert predecessor.exit().asGoto().getTarget() == header;
+      return predecessor;
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "Loop(header: " + header.getNumber() + ", size: " + blocks.size() + ")";
+  }
+}
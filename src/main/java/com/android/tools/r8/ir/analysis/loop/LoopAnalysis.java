@@ -0,0 +1,173 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.analysis.loop;
+
+import com.android.tools.r8.ir.code.BasicBlock;
+import com.android.tools.r8.ir.code.DominatorTree;
+import com.android.tools.r8.ir.code.IRCode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the natural loops of a method and their nesting.
+ *
+ * <p>An edge from a block to one of its dominators is a back edge, and the dominator is the header
+ * of a loop. An edge to an earlier block in reverse postorder that is not a back edge means that
+ * the control flow graph is irreducible. In that case the loops only describe the reducible parts
+ * of the method, and there may be cycles in the control flow graph that are not described by any
+ * loop.
+ *
+ * <p>The analysis considers both normal and exceptional edges. The result is only valid as long as
+ * the control flow graph is not changed.
+ */
+public class LoopAnalysis {
+
+  private final DominatorTree dominatorTree;
+
+  // The loops ordered by the position of their header in the reverse postorder, such that each
+  // loop precedes the loops that are nested in it.
+  private final List<Loop> loops = new ArrayList<>();
+  private final Map<BasicBlock, Loop> loopsByHeader = new IdentityHashMap<>();
+  private final Map<BasicBlock, Loop> innermostLoops = new IdentityHashMap<>();
+  private boolean isReducible = true;
+
+  public LoopAnalysis(IRCode code) {
+    this(new DominatorTree(code, DominatorTree.Assumption.MAY_HAVE_UNREACHABLE_BLOCKS));
+  }
+
+  public LoopAnalysis(DominatorTree dominatorTree) {
+    this.dominatorTree = dominatorTree;
+    findLoops();
+    if (!loops.isEmpty()) {
+      computeLoopBodies();
+      computeLoopNesting();
+    }
+  }
+
+  private boolean isReachable(BasicBlock block) {
+    return dominatorTree.immediateDominator(block) != null;
+  }
+
+  private void findLoops() {
+    // The dominator tree numbers the blocks in reverse postorder.
+    for (BasicBlock block : dominatorTree.getSortedBlocks()) {
+      if (!isReachable(block)) {
+        continue;
+      }
+      for (BasicBlock successor : block.getSuccessors()) {
+        if (successor.getNumber() > block.getNumber()) {
+          continue;
+        }
+        if (dominatorTree.dominatedBy(block, successor)) {
+          Loop loop = loopsByHeader.get(successor);
+          if (loop == null) {
+            loop = new Loop(successor);
+            loopsByHeader.put(successor, loop);
+            loops.add(loop);
+          }
+          loop.addLatch(block);
+        } else {
+          isReducible = false;
+        }
+      }
+    }
+    loops.sort((x, y) -> Integer.compare(x.getHeader().getNumber(), y.getHeader().getNumber()));
+  }
+
+  private void computeLoopBodies() {
+    Deque<BasicBlock> worklist = new ArrayDeque<>();
+    for (Loop loop : loops) {
+      for (BasicBlock latch : loop.getLatches()) {
+        worklist.add(latch);
+      }
+      while (!worklist.isEmpty()) {
+        BasicBlock block = worklist.removeLast();
+        if (loop.contains(block)) {
+          continue;
+        }
+        loop.addBlock(block);
+        for (BasicBlock predecessor : block.getPredecessors()) {
+          if (isReachable(predecessor) && !loop.contains(predecessor)) {
+            worklist.addLast(predecessor);
+          }
+        }
+      }
+    }
+  }
+
+  private void computeLoopNesting() {
+    for (int i = 0; i < loops.size(); i++) {
+      Loop loop = loops.get(i);
+      // All enclosing loops have an earlier header in the reverse postorder, and the innermost of
+      // these has the latest header.
+      for (int j = i - 1; j >= 0; j--) {
+        Loop candidate = loops.get(j);
+        if (candidate.contains(loop.getHeader())) {
+          loop.setParent(candidate);
+          break;
+        }
+      }
+      // Since inner loops are processed after outer loops, this maps each block to its innermost
+      // loop in the end.
+      for (BasicBlock block : loop.getBlocks()) {
+        innermostLoops.put(block, loop);
+      }
+    }
+  }
+
+  public DominatorTree getDominatorTree() {
+    return dominatorTree;
+  }
+
+  /**
+   * Returns all loops of the method, ordered such that each loop precedes the loops that are nested
+   * in it.
+   */
+  public List<Loop> getLoops() {
+    return Collections.unmodifiableList(loops);
+  }
+
+  /** Returns the outermost loops of the method. */
+  public List<Loop> getOutermostLoops() {
+    List<Loop> result = new ArrayList<>();
+    for (Loop loop : loops) {
+      if (loop.getParent() == null) {
+        result.add(loop);
+      }
+    }
+    return result;
+  }
+
+  /** Returns the innermost loop that contains the given block, or null if there is no such loop. */
+  public Loop getInnermostLoop(BasicBlock block) {
+    return innermostLoops.get(block);
+  }
+
+  /** Returns the loop with the given header, or null if the block is not a loop header. */
+  public Loop getLoopWithHeader(BasicBlock block) {
+    return loopsByHeader.get(block);
+  }
+
+  public boolean isLoopHeader(BasicBlock block) {
+    return loopsByHeader.containsKey(block);
+  }
+
+  public boolean hasLoops() {
+    return !loops.isEmpty();
+  }
+
+  /**
+   * Returns true if every cycle in the control flow graph is described by a natural loop. If this
+   * returns false, then blocks that are not loop headers may still be the target of an edge that
+   * closes a cycle.
+   */
+  public boolean isReducible() {
+    return isReducible;
+  }
+}
@@ -196,7 +196,10 @@ public class ClassTypeLatticeElement extends ReferenceTypeLatticeElement {
         appView
             .appInfo()
             .withSubtyping()
-            .computeLeastUpperBoundOfClasses(getClassType(), other.getClassType());
+            .computeLeastUpperBoundOfClasses(
+                getClassType(),
+                other.getClassType(),
+                appView.dexItemFactory().leastUpperBoundCache);
     Set<DexType> c1lubItfs = getInterfaces();
     Set<DexType> c2lubItfs = other.getInterfaces();
     Set<DexType> lubItfs = null;
@@ -230,14 +233,19 @@ public class ClassTypeLatticeElement extends ReferenceTypeLatticeElement {
     if (s1.isEmpty() || s2.isEmpty()) {
       return Collections.emptySet();
     }
-    Set<DexType> cached = appView.dexItemFactory().leastUpperBoundOfInterfacesTable.get(s1, s2);
-    if (cached != null) {
-      return cached;
-    }
-    cached = appView.dexItemFactory().leastUpperBoundOfInterfacesTable.get(s2, s1);
-    if (cached != null) {
-      return cached;
+    // Cache the computation result only if the given two sets of interfaces are different.
+    if (s1.size() == s2.size() && s1.containsAll(s2)) {
+      return computeLeastUpperBoundOfInterfacesUncached(appView, s1, s2);
     }
+    return appView
+        .dexItemFactory()
+        .leastUpperBoundCache
+        .getOrComputeInterfaces(
+            s1, s2, () -> computeLeastUpperBoundOfInterfacesUncached(appView, s1, s2));
+  }
+
+  private static Set<DexType> computeLeastUpperBoundOfInterfacesUncached(
+      AppView<? extends AppInfoWithSubtyping> appView, Set<DexType> s1, Set<DexType> s2) {
     Map<DexType, Set<InterfaceMarker>> seen = new IdentityHashMap<>();
     Queue<InterfaceWithMarker> worklist = new ArrayDeque<>();
     for (DexType itf1 : s1) {
@@ -299,14 +307,7 @@ public class ClassTypeLatticeElement extends ReferenceTypeLatticeElement {
       }
       lubBuilder.add(itf);
     }
-    Set<DexType> lub = lubBuilder.build();
-    // Cache the computation result only if the given two sets of interfaces are different.
-    if (s1.size() != s2.size() || !s1.containsAll(s2)) {
-      synchronized (appView.dexItemFactory().leastUpperBoundOfInterfacesTable) {
-        appView.dexItemFactory().leastUpperBoundOfInterfacesTable.put(s1, s2, lub);
-      }
-    }
-    return lub;
+    return lubBuilder.build();
   }
 
   @Override
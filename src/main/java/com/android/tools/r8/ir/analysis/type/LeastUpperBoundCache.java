@@ -0,0 +1,190 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.analysis.type;
+
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.utils.Timing;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache for the least upper bounds of classes and of sets of interfaces, which are computed when
+ * joining {@link ClassTypeLatticeElement}s.
+ *
+ * <p>The cache is safe to use from the threads that build and optimize IR concurrently, and it is
+ * bounded. The least upper bounds of classes are stored in a direct-mapped table indexed by the
+ * identity hash codes of the two classes, such that a lookup does not allocate; an entry is evicted
+ * when another pair of classes maps to the same slot. The least upper bounds of interface sets are
+ * stored in a cache that evicts the least recently used entries once the capacity is exceeded.
+ * Since the join is symmetric, the order of the arguments does not matter for the lookup.
+ *
+ * <p>The computed interface sets are interned, such that equal sets resulting from different joins
+ * are represented by the same instance. This makes subsequent lookups and comparisons of the
+ * interfaces of lattice elements cheap. The interned sets are weakly referenced, such that they are
+ * reclaimed once no lattice element or cache entry refers to them.
+ *
+ * <p>The cached results depend on the class hierarchy, so the cache must be cleared when the
+ * hierarchy changes, see {@link DexItemFactory#clearTypeLatticeElementsCache}.
+ */
+public class LeastUpperBoundCache {
+
+  private static final int DEFAULT_CAPACITY = 1 << 14;
+
+  private final AtomicReferenceArray<ClassEntry> classes;
+  private final Cache<UnorderedPair<Set<DexType>>, Set<DexType>> interfaces;
+  private final Interner<Set<DexType>> internedInterfaces = Interners.newWeakInterner();
+
+  // Statistics.
+  private final LongAdder classHits = new LongAdder();
+  private final LongAdder classMisses = new LongAdder();
+  private final LongAdder interfaceHits = new LongAdder();
+  private final LongAdder interfaceMisses = new LongAdder();
+
+  public LeastUpperBoundCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public LeastUpperBoundCache(int capacity) {
+    classes = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(capacity, 1)));
+    interfaces = CacheBuilder.newBuilder().maximumSize(capacity).build();
+  }
+
+  /** Returns the cached least upper bound of the given classes, or computes and caches it. */
+  public DexType getOrComputeClasses(DexType t1, DexType t2, Supplier<DexType> computation) {
+    int index = classIndex(t1, t2);
+    ClassEntry entry = classes.get(index);
+    if (entry != null && entry.matches(t1, t2)) {
+      classHits.increment();
+      return entry.lub;
+    }
+    classMisses.increment();
+    DexType lub = computation.get();
+    classes.set(index, new ClassEntry(t1, t2, lub));
+    return lub;
+  }
+
+  /**
+   * Returns the cached least upper bound of the given sets of interfaces, or computes and caches
+   * it. The result is interned.
+   */
+  public Set<DexType> getOrComputeInterfaces(
+      Set<DexType> s1, Set<DexType> s2, Supplier<Set<DexType>> computation) {
+    UnorderedPair<Set<DexType>> key = new UnorderedPair<>(s1, s2);
+    Set<DexType> cached = interfaces.getIfPresent(key);
+    if (cached != null) {
+      interfaceHits.increment();
+      return cached;
+    }
+    interfaceMisses.increment();
+    Set<DexType> lub = intern(computation.get());
+    interfaces.put(key, lub);
+    return lub;
+  }
+
+  private int classIndex(DexType t1, DexType t2) {
+    // Symmetric, since the order of the classes does not matter.
+    int hash = System.identityHashCode(t1) + System.identityHashCode(t2);
+    return (hash ^ (hash >>> 16)) & (classes.length() - 1);
+  }
+
+  /** Returns the canonical instance of the given set of interfaces. */
+  public Set<DexType> intern(Set<DexType> interfaces) {
+    return internedInterfaces.intern(interfaces);
+  }
+
+  // The interned interface sets remain valid when the class hierarchy changes, since they are only
+  // canonical representations of sets, and are therefore not cleared.
+  public void clear() {
+    for (int i = 0; i < classes.length(); i++) {
+      classes.set(i, null);
+    }
+    interfaces.invalidateAll();
+  }
+
+  public boolean isEmpty() {
+    for (int i = 0; i < classes.length(); i++) {
+      if (classes.get(i) != null) {
+        return false;
+      }
+    }
+    return interfaces.size() == 0;
+  }
+
+  public long getClassHits() {
+    return classHits.sum();
+  }
+
+  public long getClassMisses() {
+    return classMisses.sum();
+  }
+
+  public long getInterfaceHits() {
+    return interfaceHits.sum();
+  }
+
+  public long getInterfaceMisses() {
+    return interfaceMisses.sum();
+  }
+
+  public void recordStatistics(Timing timing) {
+    timing.addStatistic("Class LUB cache hits", getClassHits());
+    timing.addStatistic("Class LUB cache misses", getClassMisses());
+    timing.addStatistic("Interface LUB cache hits", getInterfaceHits());
+    timing.addStatistic("Interface LUB cache misses", getInterfaceMisses());
+  }
+
+  private static class ClassEntry {
+
+    private final DexType first;
+    private final DexType second;
+    private final DexType lub;
+
+    private ClassEntry(DexType first, DexType second, DexType lub) {
+      this.first = first;
+      this.second = second;
+      this.lub = lub;
+    }
+
+    private boolean matches(DexType t1, DexType t2) {
+      return (first == t1 && second == t2) || (first == t2 && second == t1);
+    }
+  }
+
+  private static class UnorderedPair<T> {
+
+    private final T first;
+    private final T second;
+
+    private UnorderedPair(T first, T second) {
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof UnorderedPair)) {
+        return false;
+      }
+      UnorderedPair<?> other = (UnorderedPair<?>) o;
+      return (first.equals(other.first) && second.equals(other.second))
+          || (first.equals(other.second) && second.equals(other.first));
+    }
+
+    @Override
+    public int hashCode() {
+      // Symmetric, since the order of the elements does not matter.
+      return first.hashCode() + second.hashCode();
+    }
+  }
+}
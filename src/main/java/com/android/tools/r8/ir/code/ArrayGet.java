@@ -34,6 +34,10 @@ public class ArrayGet extends Instruction implements ImpreciseMemberTypeInstruct
 
   private MemberType type;
 
+  // True if the array is known to be non-null and the index is known to be within the bounds of
+  // the array, in which case this instruction cannot throw.
+  private boolean inBounds = false;
+
   public ArrayGet(MemberType type, Value dest, Value array, Value index) {
     super(dest, Arrays.asList(array, index));
     this.type = type;
@@ -66,6 +70,14 @@ public class ArrayGet extends Instruction implements ImpreciseMemberTypeInstruct
     return type;
   }
 
+  public boolean isInBounds() {
+    return inBounds;
+  }
+
+  public void markInBounds() {
+    inBounds = true;
+  }
+
   @Override
   public boolean couldIntroduceAnAlias(AppView<?> appView, Value root) {
     assert root != null && root.getTypeLattice().isReference();
@@ -144,10 +156,14 @@ public class ArrayGet extends Instruction implements ImpreciseMemberTypeInstruct
 
   @Override
   public boolean instructionTypeCanThrow() {
-    // TODO: Determine if the array index out-of-bounds exception cannot happen.
     return true;
   }
 
+  @Override
+  public boolean instructionInstanceCanThrow() {
+    return !inBounds;
+  }
+
   @Override
   public boolean isArrayGet() {
     return true;
@@ -57,6 +57,10 @@ public class IRMetadata {
     second |= metadata.second;
   }
 
+  public boolean mayHaveArrayLength() {
+    return get(Opcodes.ARRAY_LENGTH);
+  }
+
   public boolean mayHaveCheckCast() {
     return get(Opcodes.CHECK_CAST);
   }
@@ -89,6 +93,10 @@ public class IRMetadata {
     return get(Opcodes.INSTANCE_OF);
   }
 
+  public boolean mayHaveInstancePut() {
+    return get(Opcodes.INSTANCE_PUT);
+  }
+
   public boolean mayHaveIntSwitch() {
     return get(Opcodes.INT_SWITCH);
   }
@@ -167,6 +175,10 @@ public class IRMetadata {
     return get(Opcodes.MONITOR);
   }
 
+  public boolean mayHaveNewInstance() {
+    return get(Opcodes.NEW_INSTANCE);
+  }
+
   public boolean mayHaveStaticGet() {
     return get(Opcodes.STATIC_GET);
   }
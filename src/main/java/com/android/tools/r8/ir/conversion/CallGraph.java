@@ -6,15 +6,21 @@ package com.android.tools.r8.ir.conversion;
 
 import com.android.tools.r8.graph.AppView;
 import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexMethod;
 import com.android.tools.r8.ir.conversion.CallGraphBuilder.CycleEliminator;
 import com.android.tools.r8.ir.conversion.CallGraphBuilder.CycleEliminator.CycleEliminationResult;
 import com.android.tools.r8.ir.conversion.CallSiteInformation.CallGraphBasedCallSiteInformation;
 import com.android.tools.r8.shaking.AppInfoWithLiveness;
 import com.android.tools.r8.utils.Timing;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Call graph representation.
@@ -31,6 +37,14 @@ import java.util.concurrent.ExecutorService;
  * many calls of <code>a</code> there are in <code>a</code>.
  *
  * <p>Recursive calls are not present.
+ *
+ * <p>The edge sets are concurrent skip-list sets ordered by method, such that edges can be
+ * registered from many threads without locking while the iteration order stays deterministic.
+ *
+ * <p>The graph is not consumed by {@link MethodProcessor}, which allows later phases to update
+ * the edges of methods whose code has changed (see {@link #update}) and process subsets of the
+ * graph in call graph order (see {@link #createMethodProcessor(AppView, Collection)}) instead of
+ * building a new call graph.
  */
 public class CallGraph {
 
@@ -38,14 +52,26 @@ public class CallGraph {
 
     public static Node[] EMPTY_ARRAY = {};
 
+    private static final AtomicIntegerFieldUpdater<Node> NUMBER_OF_CALL_SITES_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(Node.class, "numberOfCallSites");
+
     public final DexEncodedMethod method;
-    private int numberOfCallSites = 0;
+    private volatile int numberOfCallSites = 0;
 
     // Outgoing calls from this method.
-    private final Set<Node> callees = new TreeSet<>();
+    private final Set<Node> callees = new ConcurrentSkipListSet<>();
 
     // Incoming calls to this method.
-    private final Set<Node> callers = new TreeSet<>();
+    private final Set<Node> callers = new ConcurrentSkipListSet<>();
+
+    // The number of call sites in this method for each of the called methods, which is used to
+    // retract the call sites of this method when its edges are recomputed. Only accessed by the
+    // thread that registers the calls of this method.
+    private Reference2IntMap<Node> numberOfCallSitesByCallee;
+
+    // Set once the number of call sites has been used, after which the call sites of this method
+    // are no longer counted (see CallGraph#discardCallSiteCounts).
+    private boolean callSiteCountsDiscarded = false;
 
     public Node(DexEncodedMethod method) {
       this.method = method;
@@ -56,18 +82,13 @@ public class CallGraph {
     }
 
     public void addCallerConcurrently(Node caller, boolean likelySpuriousCallEdge) {
+      if (!caller.callSiteCountsDiscarded) {
+        NUMBER_OF_CALL_SITES_UPDATER.incrementAndGet(this);
+        caller.recordCallSite(this);
+      }
       if (caller != this && !likelySpuriousCallEdge) {
-        synchronized (callers) {
-          callers.add(caller);
-          numberOfCallSites++;
-        }
-        synchronized (caller.callees) {
-          caller.callees.add(this);
-        }
-      } else {
-        synchronized (callers) {
-          numberOfCallSites++;
-        }
+        callers.add(caller);
+        caller.callees.add(this);
       }
     }
 
@@ -76,11 +97,32 @@ public class CallGraph {
       caller.callees.remove(this);
     }
 
-    public void cleanForRemoval() {
-      assert callees.isEmpty();
-      for (Node caller : callers) {
-        caller.callees.remove(this);
+    private void recordCallSite(Node callee) {
+      if (numberOfCallSitesByCallee == null) {
+        numberOfCallSitesByCallee = new Reference2IntOpenHashMap<>();
       }
+      numberOfCallSitesByCallee.put(callee, numberOfCallSitesByCallee.getInt(callee) + 1);
+    }
+
+    /** Removes the outgoing edges of this method and the call sites that it contributed. */
+    void removeAllCallees() {
+      for (Node callee : callees) {
+        callee.callers.remove(this);
+      }
+      callees.clear();
+      if (numberOfCallSitesByCallee != null) {
+        for (Reference2IntMap.Entry<Node> entry :
+            numberOfCallSitesByCallee.reference2IntEntrySet()) {
+          Node callee = entry.getKey();
+          NUMBER_OF_CALL_SITES_UPDATER.addAndGet(callee, -entry.getIntValue());
+        }
+        numberOfCallSitesByCallee = null;
+      }
+    }
+
+    void discardCallSiteCounts() {
+      callSiteCountsDiscarded = true;
+      numberOfCallSitesByCallee = null;
     }
 
     public Set<Node> getCallersWithDeterministicOrder() {
@@ -92,6 +134,7 @@ public class CallGraph {
     }
 
     public int getNumberOfCallSites() {
+      assert !callSiteCountsDiscarded;
       return numberOfCallSites;
     }
 
@@ -145,10 +188,18 @@ public class CallGraph {
   }
 
   final Set<Node> nodes;
+  final Map<DexMethod, Node> nodesByMethod;
   final CycleEliminationResult cycleEliminationResult;
 
-  CallGraph(Set<Node> nodes, CycleEliminationResult cycleEliminationResult) {
+  // Whether the number of call sites of each node is still maintained.
+  private boolean hasCallSiteCounts = true;
+
+  CallGraph(
+      Set<Node> nodes,
+      Map<DexMethod, Node> nodesByMethod,
+      CycleEliminationResult cycleEliminationResult) {
     this.nodes = nodes;
+    this.nodesByMethod = nodesByMethod;
     this.cycleEliminationResult = cycleEliminationResult;
   }
 
@@ -157,18 +208,63 @@ public class CallGraph {
   }
 
   /**
-   * Extract the next set of leaves (nodes with an call (outgoing) degree of 0) if any.
-   *
-   * <p>All nodes in the graph are extracted if called repeatedly until null is returned. Please
-   * note that there are no cycles in this graph (see {@link CycleEliminator#breakCycles}).
+   * Creates a method processor that processes all methods in the graph in waves of leaves (nodes
+   * with a call (outgoing) degree of 0 once the previous waves have been removed). Please note that
+   * there are no cycles in this graph (see {@link CycleEliminator#breakCycles}).
+   */
+  MethodProcessor createMethodProcessor(AppView<AppInfoWithLiveness> appView) {
+    return new MethodProcessor(appView, this);
+  }
+
+  /**
+   * Creates a method processor that only processes the given methods. The methods are processed in
+   * waves such that a method is processed after the methods in the given collection that it calls.
+   */
+  public MethodProcessor createMethodProcessor(
+      AppView<AppInfoWithLiveness> appView, Collection<DexEncodedMethod> methods) {
+    return new MethodProcessor(appView, this, methods);
+  }
+
+  /**
+   * Recomputes the outgoing call edges of the given methods, whose code may have changed since the
+   * call graph was built. Cycles that are introduced by the new edges are broken.
    *
-   * <p>
+   * <p>Unless the call site counts have been discarded, the call sites of the given methods are
+   * retracted from the number of call sites of their previous callees before the new call sites are
+   * registered, such that the number of call sites of each node reflects the current code.
    */
-  static MethodProcessor createMethodProcessor(
-      AppView<AppInfoWithLiveness> appView, ExecutorService executorService, Timing timing)
+  public void update(
+      AppView<AppInfoWithLiveness> appView,
+      Collection<DexEncodedMethod> methods,
+      ExecutorService executorService,
+      Timing timing)
       throws ExecutionException {
-    CallGraph callGraph = CallGraph.builder(appView).build(executorService, timing);
-    return new MethodProcessor(appView, callGraph);
+    new CallGraphBuilder(appView, nodesByMethod, hasCallSiteCounts)
+        .update(this, methods, executorService, timing);
+  }
+
+  /**
+   * Stops counting the call sites of the nodes and releases the number of call sites per callee
+   * that each node retains for retracting its call sites. Called once the call site information
+   * has been computed, since the counts are not used after that.
+   */
+  void discardCallSiteCounts() {
+    hasCallSiteCounts = false;
+    for (Node node : nodes) {
+      node.discardCallSiteCounts();
+    }
+  }
+
+  public int numberOfNodes() {
+    return nodes.size();
+  }
+
+  public int numberOfEdges() {
+    int numberOfEdges = 0;
+    for (Node node : nodes) {
+      numberOfEdges += node.callees.size();
+    }
+    return numberOfEdges;
   }
 
   CallSiteInformation createCallSiteInformation(AppView<AppInfoWithLiveness> appView) {
@@ -28,6 +28,10 @@ import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.Timing;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -48,12 +52,28 @@ import java.util.function.Consumer;
 public class CallGraphBuilder {
 
   private final AppView<AppInfoWithLiveness> appView;
-  private final Map<DexMethod, Node> nodes = new IdentityHashMap<>();
+  private final Map<DexMethod, Node> nodes;
   private final Map<DexMethod, Set<DexEncodedMethod>> possibleTargetsCache =
       new ConcurrentHashMap<>();
 
+  // Nodes that have been created by this builder. Only used when updating an existing call graph.
+  private final Set<Node> newNodes;
+  // Whether the call sites of the created nodes are counted.
+  private final boolean countCallSites;
+
   CallGraphBuilder(AppView<AppInfoWithLiveness> appView) {
     this.appView = appView;
+    this.nodes = new ConcurrentHashMap<>();
+    this.newNodes = null;
+    this.countCallSites = true;
+  }
+
+  CallGraphBuilder(
+      AppView<AppInfoWithLiveness> appView, Map<DexMethod, Node> nodes, boolean countCallSites) {
+    this.appView = appView;
+    this.nodes = nodes;
+    this.newNodes = ConcurrentHashMap.newKeySet();
+    this.countCallSites = countCallSites;
   }
 
   public CallGraph build(ExecutorService executorService, Timing timing) throws ExecutionException {
@@ -72,16 +92,63 @@ public class CallGraphBuilder {
 
     assert verifyAllMethodsWithCodeExists();
 
-    timing.begin("Cycle elimination");
     // Sort the nodes for deterministic cycle elimination.
     Set<Node> nodesWithDeterministicOrder = Sets.newTreeSet(nodes.values());
+    if (appView.options().printTimes) {
+      recordStatistics(nodesWithDeterministicOrder, timing);
+    }
+
+    timing.begin("Cycle elimination");
     CycleEliminator cycleEliminator =
         new CycleEliminator(nodesWithDeterministicOrder, appView.options());
     CycleEliminationResult cycleEliminationResult = cycleEliminator.breakCycles();
     timing.end();
     assert cycleEliminator.breakCycles().numberOfRemovedEdges() == 0; // The cycles should be gone.
 
-    return new CallGraph(nodesWithDeterministicOrder, cycleEliminationResult);
+    timing.addStatistic("Broken cycles", cycleEliminationResult.numberOfRemovedEdges());
+    return new CallGraph(nodesWithDeterministicOrder, nodes, cycleEliminationResult);
+  }
+
+  void update(
+      CallGraph callGraph,
+      Collection<DexEncodedMethod> methods,
+      ExecutorService executorService,
+      Timing timing)
+      throws ExecutionException {
+    assert nodes == callGraph.nodesByMethod;
+    assert newNodes != null;
+    timing.begin("Update call graph");
+    Set<Node> updatedNodes = Sets.newTreeSet();
+    for (DexEncodedMethod method : methods) {
+      Node node = nodes.get(method.method);
+      if (node != null) {
+        node.removeAllCallees();
+        updatedNodes.add(node);
+      }
+    }
+
+    List<Future<?>> futures = new ArrayList<>();
+    for (DexEncodedMethod method : methods) {
+      futures.add(
+          executorService.submit(
+              () -> {
+                processMethod(method);
+                return null; // we want a Callable not a Runnable to be able to throw
+              }));
+    }
+    ThreadUtils.awaitFutures(futures);
+
+    callGraph.nodes.addAll(newNodes);
+    updatedNodes.addAll(newNodes);
+
+    // Any cycle that has been introduced must contain one of the new edges, and can therefore be
+    // found by only traversing the graph from the updated nodes.
+    CycleEliminator cycleEliminator = new CycleEliminator(updatedNodes, appView.options());
+    CycleEliminationResult cycleEliminationResult = cycleEliminator.breakCycles();
+    callGraph.cycleEliminationResult.addAll(cycleEliminationResult);
+    timing.addStatistic("Updated nodes", updatedNodes.size());
+    timing.addStatistic("Broken cycles", cycleEliminationResult.numberOfRemovedEdges());
+    timing.end();
   }
 
   private void processClass(DexProgramClass clazz) {
@@ -95,9 +162,105 @@ public class CallGraphBuilder {
   }
 
   private Node getOrCreateNode(DexEncodedMethod method) {
-    synchronized (nodes) {
-      return nodes.computeIfAbsent(method.method, ignore -> new Node(method));
+    // Avoid computeIfAbsent() when the node already exists, since it locks the bin of the key.
+    Node node = nodes.get(method.method);
+    if (node != null) {
+      return node;
+    }
+    return nodes.computeIfAbsent(
+        method.method,
+        ignore -> {
+          Node newNode = new Node(method);
+          if (!countCallSites) {
+            newNode.discardCallSiteCounts();
+          }
+          if (newNodes != null) {
+            newNodes.add(newNode);
+          }
+          return newNode;
+        });
+  }
+
+  private void recordStatistics(Set<Node> nodesWithDeterministicOrder, Timing timing) {
+    int numberOfEdges = 0;
+    for (Node node : nodesWithDeterministicOrder) {
+      numberOfEdges += node.getCalleesWithDeterministicOrder().size();
+    }
+    int numberOfNonTrivialComponents = 0;
+    int largestComponentSize = 0;
+    for (int size : computeStronglyConnectedComponentSizes(nodesWithDeterministicOrder)) {
+      if (size > 1) {
+        numberOfNonTrivialComponents++;
+        largestComponentSize = Math.max(largestComponentSize, size);
+      }
+    }
+    timing.addStatistic("Nodes", nodesWithDeterministicOrder.size());
+    timing.addStatistic("Edges", numberOfEdges);
+    timing.addStatistic("Strongly connected components (size > 1)", numberOfNonTrivialComponents);
+    timing.addStatistic("Largest strongly connected component", largestComponentSize);
+  }
+
+  /**
+   * Returns the size of each strongly connected component in the graph using an iterative version
+   * of Tarjan's algorithm, to avoid stack overflows on long call chains.
+   */
+  private static IntList computeStronglyConnectedComponentSizes(Collection<Node> nodes) {
+    IntList sizes = new IntArrayList();
+    Reference2IntMap<Node> index = new Reference2IntOpenHashMap<>();
+    Reference2IntMap<Node> lowLink = new Reference2IntOpenHashMap<>();
+    Set<Node> onStack = Sets.newIdentityHashSet();
+    Deque<Node> componentStack = new ArrayDeque<>();
+    Deque<Node> dfsStack = new ArrayDeque<>();
+    Deque<Iterator<Node>> iteratorStack = new ArrayDeque<>();
+    int nextIndex = 0;
+    for (Node root : nodes) {
+      if (index.containsKey(root)) {
+        continue;
+      }
+      index.put(root, nextIndex);
+      lowLink.put(root, nextIndex);
+      nextIndex++;
+      componentStack.push(root);
+      onStack.add(root);
+      dfsStack.push(root);
+      iteratorStack.push(root.getCalleesWithDeterministicOrder().iterator());
+      while (!dfsStack.isEmpty()) {
+        Node node = dfsStack.peek();
+        Iterator<Node> callees = iteratorStack.peek();
+        if (callees.hasNext()) {
+          Node callee = callees.next();
+          if (!index.containsKey(callee)) {
+            index.put(callee, nextIndex);
+            lowLink.put(callee, nextIndex);
+            nextIndex++;
+            componentStack.push(callee);
+            onStack.add(callee);
+            dfsStack.push(callee);
+            iteratorStack.push(callee.getCalleesWithDeterministicOrder().iterator());
+          } else if (onStack.contains(callee)) {
+            lowLink.put(node, Math.min(lowLink.getInt(node), index.getInt(callee)));
+          }
+          continue;
+        }
+        dfsStack.pop();
+        iteratorStack.pop();
+        if (!dfsStack.isEmpty()) {
+          Node parent = dfsStack.peek();
+          lowLink.put(parent, Math.min(lowLink.getInt(parent), lowLink.getInt(node)));
+        }
+        if (lowLink.getInt(node) == index.getInt(node)) {
+          int size = 0;
+          Node member;
+          do {
+            member = componentStack.pop();
+            onStack.remove(member);
+            size++;
+          } while (member != node);
+          sizes.add(size);
+        }
+      }
     }
+    return sizes;
   }
 
   private boolean verifyAllMethodsWithCodeExists() {
@@ -314,6 +477,14 @@ public class CallGraphBuilder {
         this.removedEdges = removedEdges;
       }
 
+      void addAll(CycleEliminationResult other) {
+        other.removedEdges.forEach(
+            (callee, callers) ->
+                removedEdges
+                    .computeIfAbsent(callee, ignore -> SetUtils.newIdentityHashSet(callers.size()))
+                    .addAll(callers));
+      }
+
       void forEachRemovedCaller(Node callee, Consumer<Node> fn) {
         removedEdges.getOrDefault(callee, ImmutableSet.of()).forEach(fn);
       }
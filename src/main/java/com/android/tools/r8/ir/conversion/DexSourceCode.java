@@ -39,6 +39,7 @@ import com.android.tools.r8.graph.DexDebugInfo;
 import com.android.tools.r8.graph.DexEncodedMethod;
 import com.android.tools.r8.graph.DexItemFactory;
 import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexProto;
 import com.android.tools.r8.graph.DexType;
 import com.android.tools.r8.graph.GraphLense.RewrittenPrototypeDescription.RemovedArgumentInfo;
 import com.android.tools.r8.graph.GraphLense.RewrittenPrototypeDescription.RemovedArgumentsInfo;
@@ -174,8 +175,9 @@ public class DexSourceCode implements SourceCode {
       ++register;
     }
 
+    DexProto proto = builder.prototypeChanges.getProtoForCode(method.method.proto);
     int numberOfArguments =
-        method.method.proto.parameters.values.length
+        proto.parameters.values.length
             + removedArgumentsInfo.numberOfRemovedArguments()
             + (method.isStatic() ? 0 : 1);
 
@@ -190,7 +192,7 @@ public class DexSourceCode implements SourceCode {
         nextRemovedArgument =
             removedArgumentIterator.hasNext() ? removedArgumentIterator.next() : null;
       } else {
-        DexType dexType = method.method.proto.parameters.values[usedArgumentIndex++];
+        DexType dexType = proto.parameters.values[usedArgumentIndex++];
         writeCallback.accept(register, dexType);
         type =
             TypeLatticeElement.fromDexType(
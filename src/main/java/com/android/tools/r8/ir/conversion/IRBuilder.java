@@ -1679,7 +1679,8 @@ public class IRBuilder {
       addReturn();
     } else {
       ValueTypeConstraint returnTypeConstraint =
-          ValueTypeConstraint.fromDexType(method.method.proto.returnType);
+          ValueTypeConstraint.fromDexType(
+              prototypeChanges.getProtoForCode(method.method.proto).returnType);
       Value in = readRegister(value, returnTypeConstraint);
       addReturn(new Return(in));
     }
@@ -60,7 +60,9 @@ import com.android.tools.r8.ir.optimize.DynamicTypeOptimization;
 import com.android.tools.r8.ir.optimize.IdempotentFunctionCallCanonicalizer;
 import com.android.tools.r8.ir.optimize.Inliner;
 import com.android.tools.r8.ir.optimize.Inliner.ConstraintWithTarget;
+import com.android.tools.r8.ir.optimize.LoopInvariantCodeMotion;
 import com.android.tools.r8.ir.optimize.MemberValuePropagation;
+import com.android.tools.r8.ir.optimize.NonNullParameterPropagation;
 import com.android.tools.r8.ir.optimize.NonNullTracker;
 import com.android.tools.r8.ir.optimize.Outliner;
 import com.android.tools.r8.ir.optimize.PeepholeOptimizer;
@@ -68,6 +70,7 @@ import com.android.tools.r8.ir.optimize.RedundantFieldLoadElimination;
 import com.android.tools.r8.ir.optimize.ReflectionOptimizer;
 import com.android.tools.r8.ir.optimize.ServiceLoaderRewriter;
 import com.android.tools.r8.ir.optimize.UninstantiatedTypeOptimization;
+import com.android.tools.r8.ir.optimize.ValueRangeOptimization;
 import com.android.tools.r8.ir.optimize.classinliner.ClassInliner;
 import com.android.tools.r8.ir.optimize.lambda.LambdaMerger;
 import com.android.tools.r8.ir.optimize.staticizer.ClassStaticizer;
@@ -92,6 +95,7 @@ import com.android.tools.r8.utils.InternalOptions.OutlineOptions;
 import com.android.tools.r8.utils.StringDiagnostic;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.Timing;
+import com.android.tools.r8.utils.Tracer;
 import com.google.common.base.Predicates;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ArrayListMultimap;
@@ -148,6 +152,7 @@ public class IRConverter {
   private final MemberValuePropagation memberValuePropagation;
   private final LensCodeRewriter lensCodeRewriter;
   private final NonNullTracker nonNullTracker;
+  private final NonNullParameterPropagation nonNullParameterPropagation;
   private final Inliner inliner;
   private final IdentifierNameStringMarker identifierNameStringMarker;
   private final Devirtualizer devirtualizer;
@@ -158,12 +163,12 @@ public class IRConverter {
 
   final DeadCodeRemover deadCodeRemover;
 
-  private final OptimizationFeedbackDelayed delayedOptimizationFeedback =
-      new OptimizationFeedbackDelayed();
+  private final OptimizationFeedbackDelayed delayedOptimizationFeedback;
   private final OptimizationFeedback simpleOptimizationFeedback = new OptimizationFeedbackSimple();
   private DexString highestSortingString;
 
   private List<Action> onWaveDoneActions = null;
+  private Tracer.Span waveSpan = null;
 
   private final List<DexString> neverMergePrefixes;
   boolean seenNotNeverMergePrefix = false;
@@ -183,6 +188,8 @@ public class IRConverter {
     this.options = appView.options();
     this.printer = printer;
     this.mainDexClasses = mainDexClasses.getClasses();
+    this.delayedOptimizationFeedback =
+        new OptimizationFeedbackDelayed(appView.methodOptimizationInfoCanonicalizer());
     this.codeRewriter = new CodeRewriter(appView, this);
     this.constantCanonicalizer = new ConstantCanonicalizer();
     this.classInitializerDefaultsOptimization =
@@ -211,6 +218,7 @@ public class IRConverter {
       this.lambdaMerger = null;
       this.covariantReturnTypeAnnotationTransformer = null;
       this.nonNullTracker = null;
+      this.nonNullParameterPropagation = null;
       this.classInliner = null;
       this.classStaticizer = null;
       this.dynamicTypeOptimization = null;
@@ -264,6 +272,10 @@ public class IRConverter {
           options.enableTreeShakingOfLibraryMethodOverrides
               ? new LibraryMethodOverrideAnalysis(appViewWithLiveness)
               : null;
+      this.nonNullParameterPropagation =
+          options.enableNonNullTracking && options.enableNonNullParameterPropagation
+              ? new NonNullParameterPropagation(appViewWithLiveness)
+              : null;
       this.lensCodeRewriter = new LensCodeRewriter(appViewWithLiveness, lambdaRewriter);
       this.inliner = new Inliner(appViewWithLiveness, mainDexClasses, lensCodeRewriter);
       this.outliner = new Outliner(appViewWithLiveness, this);
@@ -287,6 +299,7 @@ public class IRConverter {
       this.classStaticizer = null;
       this.dynamicTypeOptimization = null;
       this.libraryMethodOverrideAnalysis = null;
+      this.nonNullParameterPropagation = null;
       this.inliner = null;
       this.outliner = null;
       this.memberValuePropagation = null;
@@ -518,6 +531,12 @@ public class IRConverter {
   }
 
   private void convertMethods(DexProgramClass clazz) {
+    try (Tracer.Span ignored = timing.getTracer().begin(clazz)) {
+      convertMethodsInternal(clazz);
+    }
+  }
+
+  private void convertMethodsInternal(DexProgramClass clazz) {
     boolean isReachabilitySensitive = clazz.hasReachabilitySensitiveAnnotation(options.itemFactory);
     // When converting all methods on a class always convert <clinit> first.
     for (DexEncodedMethod method : clazz.directMethods()) {
@@ -537,6 +556,12 @@ public class IRConverter {
   }
 
   private void convertMethod(DexEncodedMethod method) {
+    try (Tracer.Span ignored = timing.getTracer().begin(method)) {
+      convertMethodInternal(method);
+    }
+  }
+
+  private void convertMethodInternal(DexEncodedMethod method) {
     if (method.getCode() != null) {
       boolean matchesMethodFilter = options.methodMatchesFilter(method);
       if (matchesMethodFilter) {
@@ -618,10 +643,11 @@ public class IRConverter {
     // Process the application identifying outlining candidates.
     GraphLense graphLenseForIR = appView.graphLense();
     OptimizationFeedbackDelayed feedback = delayedOptimizationFeedback;
+    CallGraph callGraph;
     {
       timing.begin("Build call graph");
-      MethodProcessor methodProcessor =
-          CallGraph.createMethodProcessor(appView.withLiveness(), executorService, timing);
+      callGraph = CallGraph.builder(appView.withLiveness()).build(executorService, timing);
+      MethodProcessor methodProcessor = callGraph.createMethodProcessor(appView.withLiveness());
       timing.end();
       timing.begin("IR conversion phase 1");
       BiConsumer<IRCode, DexEncodedMethod> outlineHandler =
@@ -649,11 +675,16 @@ public class IRConverter {
     if (inliner != null) {
       printPhase("Double caller inlining");
       assert graphLenseForIR == appView.graphLense();
-      inliner.processDoubleInlineCallers(this, executorService, feedback);
+      inliner.processDoubleInlineCallers(this, callGraph, executorService, feedback, timing);
       feedback.updateVisibleOptimizationInfo();
       assert graphLenseForIR == appView.graphLense();
     }
 
+    if (nonNullParameterPropagation != null) {
+      printPhase("Non-null parameter propagation");
+      propagateNonNullParameters(callGraph, feedback, executorService);
+    }
+
     // TODO(b/112831361): Implement support for staticizeClasses in CF backend.
     if (!options.isGeneratingClassFiles()) {
       printPhase("Class staticizer post processing");
@@ -681,16 +712,16 @@ public class IRConverter {
     if (outliner != null) {
       printPhase("Outlining");
       timing.begin("IR conversion phase 2");
-      if (outliner.selectMethodsForOutlining()) {
+      if (outliner.selectMethodsForOutlining(executorService)) {
         forEachSelectedOutliningMethod(
             executorService,
             (code, method) -> {
               printMethod(code, "IR before outlining (SSA)", null);
               outliner.identifyOutlineSites(code, method);
             });
-        DexProgramClass outlineClass = outliner.buildOutlinerClass(computeOutlineClassType());
-        appView.appInfo().addSynthesizedClass(outlineClass);
-        optimizeSynthesizedClass(outlineClass, executorService);
+        List<DexProgramClass> outlineClasses =
+            outliner.buildOutlinerClasses(this::computeOutlineClassType, executorService);
+        optimizeSynthesizedClasses(outlineClasses, executorService);
         forEachSelectedOutliningMethod(
             executorService,
             (code, method) -> {
@@ -699,8 +730,10 @@ public class IRConverter {
               finalizeIR(method, code, OptimizationFeedbackIgnore.getInstance());
             });
         assert outliner.checkAllOutlineSitesFoundAgain();
-        builder.addSynthesizedClass(outlineClass, true);
-        clearDexMethodCompilationState(outlineClass);
+        for (DexProgramClass outlineClass : outlineClasses) {
+          builder.addSynthesizedClass(outlineClass, outliner.shouldAddToMainDex(outlineClass));
+          clearDexMethodCompilationState(outlineClass);
+        }
       }
       timing.end();
     }
@@ -729,6 +762,10 @@ public class IRConverter {
       }
     }
 
+    if (inliner != null) {
+      inliner.recordStatistics(timing);
+    }
+
     // Check if what we've added to the application builder as synthesized classes are same as
     // what we've added and used through AppInfo.
     assert appView
@@ -738,17 +775,55 @@ public class IRConverter {
         && builder
             .getSynthesizedClasses()
             .containsAll(appView.appInfo().getSynthesizedClassesForSanityCheck());
+
+    // All optimization info has been installed, so the canonicalization tables can be dropped.
+    appView.methodOptimizationInfoCanonicalizer().clear();
     return builder.build();
   }
 
+  // Processes the methods that null check a parameter that is non-null at all call sites again,
+  // such that the null checks can be removed.
+  private void propagateNonNullParameters(
+      CallGraph callGraph, OptimizationFeedbackDelayed feedback, ExecutorService executorService)
+      throws ExecutionException {
+    Set<DexEncodedMethod> methodsToReprocess = nonNullParameterPropagation.finish();
+    if (methodsToReprocess.isEmpty()) {
+      return;
+    }
+    timing.begin("Non-null parameter propagation");
+    callGraph.update(appView.withLiveness(), methodsToReprocess, executorService, timing);
+    MethodProcessor methodProcessor =
+        callGraph.createMethodProcessor(appView.withLiveness(), methodsToReprocess);
+    methodProcessor.forEachMethod(
+        (method, isProcessedConcurrently) ->
+            processMethod(
+                method,
+                feedback,
+                isProcessedConcurrently,
+                CallSiteInformation.empty(),
+                Outliner::noProcessing),
+        () -> {},
+        () -> {},
+        executorService);
+    feedback.updateVisibleOptimizationInfo();
+    timing.end();
+  }
+
   private void waveStart() {
     onWaveDoneActions = Collections.synchronizedList(new ArrayList<>());
+    assert waveSpan == null;
+    waveSpan = timing.getTracer().begin("Wave");
   }
 
   private void waveDone() {
     delayedOptimizationFeedback.updateVisibleOptimizationInfo();
+    if (outliner != null) {
+      outliner.mergeCandidateMethods();
+    }
     onWaveDoneActions.forEach(Action::execute);
     onWaveDoneActions = null;
+    waveSpan.end();
+    waveSpan = null;
   }
 
   public void addWaveDoneAction(Action action) {
@@ -936,7 +1011,10 @@ public class IRConverter {
     Code code = method.getCode();
     boolean matchesMethodFilter = options.methodMatchesFilter(method);
     if (code != null && matchesMethodFilter) {
-      rewriteCode(method, feedback, isProcessedConcurrently, callSiteInformation, outlineHandler);
+      try (Tracer.Span ignored = timing.getTracer().begin(method)) {
+        rewriteCode(
+            method, feedback, isProcessedConcurrently, callSiteInformation, outlineHandler);
+      }
     } else {
       // Mark abstract methods as processed as well.
       method.markProcessed(ConstraintWithTarget.NEVER);
@@ -1104,6 +1182,13 @@ public class IRConverter {
 
     previous = printMethod(code, "IR after inlining (SSA)", previous);
 
+    if (method.isClassInitializer() && RedundantFieldLoadElimination.shouldRun(appView, code)) {
+      // Forward the values stored into static fields of the enclosing class to the subsequent reads
+      // in the class initializer, such that derived values, e.g., B = A + "/b", can be folded by
+      // the optimizations below and hoisted by the class initializer defaults optimization.
+      new RedundantFieldLoadElimination(appView, code).run();
+    }
+
     if (appView.appInfo().hasLiveness()) {
       // Reflection optimization 1. getClass() / forName() -> const-class
       ReflectionOptimizer.rewriteGetClassOrForNameToConstClass(appView.withLiveness(), code);
@@ -1148,6 +1233,7 @@ public class IRConverter {
         && !isDebugMode
         && options.isGeneratingDex()) {
       stringBuilderOptimizer.computeTrivialStringConcatenation(code);
+      stringBuilderOptimizer.reduceBuilderAllocations(code);
     }
 
     codeRewriter.splitRangeInvokeConstants(code);
@@ -1164,6 +1250,12 @@ public class IRConverter {
     if (RedundantFieldLoadElimination.shouldRun(appView, code)) {
       new RedundantFieldLoadElimination(appView, code).run();
     }
+    if (LoopInvariantCodeMotion.shouldRun(appView, code)) {
+      new LoopInvariantCodeMotion(appView, code).run();
+    }
+    if (ValueRangeOptimization.shouldRun(appView, code)) {
+      new ValueRangeOptimization(appView, code).run();
+    }
 
     if (options.testing.invertConditionals) {
       invertConditionalsForTesting(code);
@@ -1304,6 +1396,10 @@ public class IRConverter {
         libraryMethodOverrideAnalysis.analyze(code);
       }
 
+      if (nonNullParameterPropagation != null) {
+        nonNullParameterPropagation.analyze(method, code);
+      }
+
       // Compute optimization info summary for the current method unless it is pinned
       // (in that case we should not be making any assumptions about the behavior of the method).
       if (!appView.appInfo().withLiveness().isPinned(method.method)) {
@@ -1547,6 +1643,9 @@ public class IRConverter {
     }
     printMethod(code, "Final IR (non-SSA)", null);
     markProcessed(method, code, feedback);
+    if (appView.codeStorage() != null) {
+      appView.codeStorage().add(method);
+    }
   }
 
   private void markProcessed(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback) {
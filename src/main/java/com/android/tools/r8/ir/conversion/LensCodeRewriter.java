@@ -60,6 +60,7 @@ import com.android.tools.r8.ir.code.StaticGet;
 import com.android.tools.r8.ir.code.StaticPut;
 import com.android.tools.r8.ir.code.Value;
 import com.android.tools.r8.ir.desugar.LambdaRewriter;
+import com.android.tools.r8.ir.optimize.enums.EnumUnboxingRewriter;
 import com.android.tools.r8.logging.Log;
 import com.android.tools.r8.shaking.VerticalClassMerger.VerticallyMergedClasses;
 import com.google.common.collect.Sets;
@@ -80,10 +81,13 @@ public class LensCodeRewriter {
 
   private final Map<DexProto, DexProto> protoFixupCache = new ConcurrentHashMap<>();
   private final LambdaRewriter lambdaRewriter;
+  private final EnumUnboxingRewriter enumUnboxingRewriter;
 
   LensCodeRewriter(AppView<? extends AppInfoWithSubtyping> appView, LambdaRewriter lambdaRewriter) {
     this.appView = appView;
     this.lambdaRewriter = lambdaRewriter;
+    this.enumUnboxingRewriter =
+        appView.unboxedEnums().isEmpty() ? null : new EnumUnboxingRewriter(appView);
   }
 
   private Value makeOutValue(Instruction insn, IRCode code) {
@@ -452,6 +456,9 @@ public class LensCodeRewriter {
       new TypeAnalysis(appView).narrowing(affectedPhis);
       assert code.verifyTypes(appView);
     }
+    if (enumUnboxingRewriter != null) {
+      enumUnboxingRewriter.rewrite(code, method);
+    }
     assert code.isConsistentSSA();
     assert code.hasNoVerticallyMergedClasses(appView);
   }
@@ -10,20 +10,21 @@ import com.android.tools.r8.ir.conversion.CallGraph.Node;
 import com.android.tools.r8.shaking.AppInfoWithLiveness;
 import com.android.tools.r8.utils.Action;
 import com.android.tools.r8.utils.IROrdering;
+import com.android.tools.r8.utils.SetUtils;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.ThrowingBiConsumer;
 import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class MethodProcessor {
@@ -33,35 +34,89 @@ public class MethodProcessor {
 
   MethodProcessor(AppView<AppInfoWithLiveness> appView, CallGraph callGraph) {
     this.callSiteInformation = callGraph.createCallSiteInformation(appView);
-    this.waves = createWaves(appView, callGraph, callSiteInformation);
+    // The number of call sites is only used for computing the call site information.
+    callGraph.discardCallSiteCounts();
+    this.waves = createWaves(appView, callGraph, callGraph.nodes, callSiteInformation);
+  }
+
+  MethodProcessor(
+      AppView<AppInfoWithLiveness> appView,
+      CallGraph callGraph,
+      Collection<DexEncodedMethod> methods) {
+    this.callSiteInformation = CallSiteInformation.empty();
+    Set<Node> nodes = Sets.newTreeSet();
+    for (DexEncodedMethod method : methods) {
+      Node node = callGraph.nodesByMethod.get(method.method);
+      assert node != null;
+      nodes.add(node);
+    }
+    this.waves = createWaves(appView, callGraph, nodes, callSiteInformation);
   }
 
   public CallSiteInformation getCallSiteInformation() {
     return callSiteInformation;
   }
 
+  /**
+   * Partitions the given nodes into waves, such that each node is in a later wave than the nodes
+   * among the given nodes that it calls. The call graph itself is not modified.
+   */
   public static Deque<Collection<DexEncodedMethod>> createWaves(
-      AppView<?> appView, CallGraph callGraph, CallSiteInformation callSiteInformation) {
+      AppView<?> appView,
+      CallGraph callGraph,
+      Set<Node> nodes,
+      CallSiteInformation callSiteInformation) {
     IROrdering shuffle = appView.options().testing.irOrdering;
     Deque<Collection<DexEncodedMethod>> waves = new ArrayDeque<>();
 
-    Set<Node> nodes = callGraph.nodes;
+    // Compute the number of unprocessed callees of each node, and the initial set of leaves.
+    Set<Node> nodesToProcess = SetUtils.newIdentityHashSet(nodes.size());
+    nodesToProcess.addAll(nodes);
+    Reference2IntMap<Node> numberOfUnprocessedCallees = new Reference2IntOpenHashMap<>();
+    List<Node> leaves = new ArrayList<>();
+    for (Node node : nodes) {
+      int numberOfCallees = 0;
+      for (Node callee : node.getCalleesWithDeterministicOrder()) {
+        if (nodesToProcess.contains(callee)) {
+          numberOfCallees++;
+        }
+      }
+      if (numberOfCallees == 0) {
+        leaves.add(node);
+      } else {
+        numberOfUnprocessedCallees.put(node, numberOfCallees);
+      }
+    }
+
     Set<DexEncodedMethod> reprocessing = Sets.newIdentityHashSet();
-    while (!nodes.isEmpty()) {
+    while (!leaves.isEmpty()) {
       Set<DexEncodedMethod> wave = Sets.newIdentityHashSet();
-      extractLeaves(
-          nodes,
-          leaf -> {
-            wave.add(leaf.method);
+      List<Node> nextLeaves = new ArrayList<>();
+      for (Node leaf : leaves) {
+        wave.add(leaf.method);
+
+        // Reprocess methods that invoke a method with a single call site.
+        if (callSiteInformation.hasSingleCallSite(leaf.method.method)) {
+          callGraph.cycleEliminationResult.forEachRemovedCaller(
+              leaf, caller -> reprocessing.add(caller.method));
+        }
 
-            // Reprocess methods that invoke a method with a single call site.
-            if (callSiteInformation.hasSingleCallSite(leaf.method.method)) {
-              callGraph.cycleEliminationResult.forEachRemovedCaller(
-                  leaf, caller -> reprocessing.add(caller.method));
+        for (Node caller : leaf.getCallersWithDeterministicOrder()) {
+          if (numberOfUnprocessedCallees.containsKey(caller)) {
+            int remaining = numberOfUnprocessedCallees.getInt(caller) - 1;
+            if (remaining == 0) {
+              numberOfUnprocessedCallees.removeInt(caller);
+              nextLeaves.add(caller);
+            } else {
+              numberOfUnprocessedCallees.put(caller, remaining);
             }
-          });
+          }
+        }
+      }
       waves.addLast(shuffle.order(wave));
+      leaves = nextLeaves;
     }
+    assert numberOfUnprocessedCallees.isEmpty(); // The graph should not have any cycles.
     // TODO(b/127694949): Reprocess these methods using a general framework for reprocessing
     //  methods.
     if (!reprocessing.isEmpty()) {
@@ -70,20 +125,6 @@ public class MethodProcessor {
     return waves;
   }
 
-  private static void extractLeaves(Set<Node> nodes, Consumer<Node> fn) {
-    Set<Node> removed = Sets.newIdentityHashSet();
-    Iterator<Node> nodeIterator = nodes.iterator();
-    while (nodeIterator.hasNext()) {
-      Node node = nodeIterator.next();
-      if (node.isLeaf()) {
-        fn.accept(node);
-        nodeIterator.remove();
-        removed.add(node);
-      }
-    }
-    removed.forEach(Node::cleanForRemoval);
-  }
-
   /**
    * Applies the given method to all leaf nodes of the graph.
    *
@@ -9,6 +9,7 @@ import com.android.tools.r8.graph.DexEncodedMethod.ClassInlinerEligibility;
 import com.android.tools.r8.graph.DexEncodedMethod.TrivialInitializer;
 import com.android.tools.r8.graph.DexString;
 import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.graph.MethodOptimizationInfoCanonicalizer;
 import com.android.tools.r8.graph.ParameterUsagesInfo;
 import com.android.tools.r8.graph.UpdatableMethodOptimizationInfo;
 import com.android.tools.r8.ir.analysis.type.TypeLatticeElement;
@@ -21,11 +22,17 @@ import java.util.Set;
 
 public class OptimizationFeedbackDelayed implements OptimizationFeedback {
 
+  private final MethodOptimizationInfoCanonicalizer canonicalizer;
+
   // Caching of updated optimization info and processed status.
   private final Map<DexEncodedMethod, UpdatableMethodOptimizationInfo> optimizationInfos =
       new IdentityHashMap<>();
   private final Map<DexEncodedMethod, ConstraintWithTarget> processed = new IdentityHashMap<>();
 
+  public OptimizationFeedbackDelayed(MethodOptimizationInfoCanonicalizer canonicalizer) {
+    this.canonicalizer = canonicalizer;
+  }
+
   private synchronized UpdatableMethodOptimizationInfo getOptimizationInfoForUpdating(
       DexEncodedMethod method) {
     UpdatableMethodOptimizationInfo info = optimizationInfos.get(method);
@@ -160,7 +167,9 @@ public class OptimizationFeedbackDelayed implements OptimizationFeedback {
     IteratorUtils.removeIf(
         optimizationInfos.entrySet().iterator(), entry -> entry.getKey().isObsolete());
     IteratorUtils.removeIf(processed.entrySet().iterator(), entry -> entry.getKey().isObsolete());
-    optimizationInfos.forEach(DexEncodedMethod::setOptimizationInfo);
+    // The updated infos are no longer modified, so equal infos can be shared between methods.
+    optimizationInfos.forEach(
+        (method, info) -> method.setOptimizationInfo(canonicalizer.canonicalize(info)));
     processed.forEach(DexEncodedMethod::markProcessed);
     optimizationInfos.clear();
     processed.clear();
@@ -33,6 +33,8 @@ import com.android.tools.r8.graph.ParameterUsagesInfo.ParameterUsage;
 import com.android.tools.r8.graph.ParameterUsagesInfo.ParameterUsageBuilder;
 import com.android.tools.r8.ir.analysis.ClassInitializationAnalysis.AnalysisAssumption;
 import com.android.tools.r8.ir.analysis.equivalence.BasicBlockBehavioralSubsumption;
+import com.android.tools.r8.ir.analysis.loop.Loop;
+import com.android.tools.r8.ir.analysis.loop.LoopAnalysis;
 import com.android.tools.r8.ir.analysis.type.Nullability;
 import com.android.tools.r8.ir.analysis.type.TypeAnalysis;
 import com.android.tools.r8.ir.analysis.type.TypeLatticeElement;
@@ -1789,6 +1791,15 @@ public class CodeRewriter {
     return invoke.getInvokedMethod().proto.parameters.values[argumentIndex - 1];
   }
 
+  private boolean isNullCheckWithoutResult(InvokeMethod invoke) {
+    DexMethod invokedMethod = invoke.getInvokedMethod();
+    if (invokedMethod == dexItemFactory.objectMethods.getClass) {
+      return invoke.outValue() == null || !invoke.outValue().isUsed();
+    }
+    return invokedMethod == dexItemFactory.kotlin.intrinsics.checkParameterIsNotNull
+        || invokedMethod == dexItemFactory.kotlin.intrinsics.checkExpressionValueIsNotNull;
+  }
+
   // Replace result uses for methods where something is known about what is returned.
   public void rewriteMoveResult(IRCode code) {
     if (options.isGeneratingClassFiles()) {
@@ -1829,6 +1840,14 @@ public class CodeRewriter {
               iterator.replaceCurrentInstructionWithThrowNull(
                   appView.withSubtyping(), code, blockIterator, blocksToBeRemoved, affectedValues);
             }
+          } else if (isNullCheckWithoutResult(invoke)) {
+            // Calls such as Intrinsics.checkParameterIsNotNull(obj, msg) or obj.getClass(), which
+            // is the rewritten form of Objects.requireNonNull(obj), only check that obj is not
+            // null.
+            Value obj = invoke.arguments().get(0);
+            if (!obj.hasLocalInfo() && obj.getTypeLattice().isDefinitelyNotNull()) {
+              iterator.removeOrReplaceByDebugLocalRead();
+            }
           } else if (outValue != null && !outValue.hasLocalInfo()) {
             if (appView
                 .dexItemFactory()
@@ -4329,17 +4348,25 @@ public class CodeRewriter {
   // materializing instruction on that path to work around a bug in some L x86_64 non-emulator VMs.
   // See b/111337896.
   public void workaroundExceptionTargetingLoopHeaderBug(IRCode code) {
+    Set<BasicBlock> loopHeaders = null;
+    boolean loopHeadersComputed = false;
     for (BasicBlock block : code.blocks) {
       if (block.hasCatchHandlers()) {
         for (BasicBlock handler : block.getCatchHandlers().getUniqueTargets()) {
-          // We conservatively assume that a block with at least two normal predecessors is a loop
-          // header. If we ever end up computing exact loop headers, use that here instead.
+          // A block with at least two normal predecessors may be a loop header.
           // The loop is conditional if it has at least two normal successors.
           BasicBlock target = handler.endOfGotoChain();
           if (target != null
               && target.getPredecessors().size() > 1
               && target.getNormalPredecessors().size() > 1
               && target.getNormalSuccessors().size() > 1) {
+            if (!loopHeadersComputed) {
+              loopHeaders = computeLoopHeadersForExceptionTargetingLoopHeaderBug(code);
+              loopHeadersComputed = true;
+            }
+            if (loopHeaders != null && !loopHeaders.contains(target)) {
+              continue;
+            }
             Instruction fixit = new AlwaysMaterializingNop();
             fixit.setBlock(handler);
             fixit.setPosition(handler.getPosition());
@@ -4349,4 +4376,23 @@ public class CodeRewriter {
       }
     }
   }
+
+  /**
+   * Returns the blocks that will be loop headers once trivial gotos have been collapsed, or null
+   * if the control flow graph is irreducible, in which case every block with two normal
+   * predecessors must conservatively be assumed to be a loop header.
+   */
+  private static Set<BasicBlock> computeLoopHeadersForExceptionTargetingLoopHeaderBug(
+      IRCode code) {
+    LoopAnalysis loopAnalysis = new LoopAnalysis(code);
+    if (!loopAnalysis.isReducible()) {
+      return null;
+    }
+    Set<BasicBlock> loopHeaders = Sets.newIdentityHashSet();
+    for (Loop loop : loopAnalysis.getLoops()) {
+      BasicBlock header = loop.getHeader().endOfGotoChain();
+      loopHeaders.add(header != null ? header : loop.getHeader());
+    }
+    return loopHeaders;
+  }
 }
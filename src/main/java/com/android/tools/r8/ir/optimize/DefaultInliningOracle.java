@@ -307,6 +307,11 @@ public final class DefaultInliningOracle implements InliningOracle, InliningStra
 
   private int computeInstructionLimit(InvokeMethod invoke, DexEncodedMethod candidate) {
     int instructionLimit = inliningInstructionLimit;
+    ExecutionProfile executionProfile = appView.executionProfile();
+    if (!executionProfile.isEmpty()
+        && executionProfile.isHotCallSite(method.method, candidate.method, appView.graphLense())) {
+      instructionLimit = Math.max(instructionLimit, appView.options().hotInliningInstructionLimit);
+    }
     BitSet hints = candidate.getOptimizationInfo().getNonNullParamOrThrow();
     if (hints != null) {
       List<Value> arguments = invoke.inValues();
@@ -0,0 +1,185 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize;
+
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.graph.GraphLense;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.origin.PathOrigin;
+import com.android.tools.r8.utils.AbortException;
+import com.android.tools.r8.utils.DescriptorUtils;
+import com.android.tools.r8.utils.ExceptionDiagnostic;
+import com.android.tools.r8.utils.FileUtils;
+import com.android.tools.r8.utils.Reporter;
+import com.android.tools.r8.utils.StringDiagnostic;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.objectweb.asm.Type;
+
+/**
+ * The set of hot methods and hot call sites of an application, as recorded by an execution profile
+ * such as a startup or benchmark trace.
+ *
+ * <p>Each non-empty line of the profile that does not start with '#' is either a method, which
+ * marks the method as hot, or a pair of methods separated by whitespace, which marks the call
+ * sites of the second method in the first method as hot. Methods are written in smali syntax, for
+ * example {@code Lcom/example/Foo;->bar(ILjava/lang/String;)V}, optionally prefixed by the flags
+ * 'H', 'S' and 'P' as in ART profiles. Only entries with the 'H' flag or without flags are hot;
+ * entries that are only marked as executed at startup ('S') or after startup ('P') are ignored.
+ * Lines that do not denote a method, such as class entries in ART profiles, are ignored.
+ *
+ * <p>The methods in the profile refer to the methods of the input program. Lookups therefore map
+ * the given methods back to their original signatures using the graph lens.
+ */
+public class ExecutionProfile {
+
+  private static final ExecutionProfile EMPTY =
+      new ExecutionProfile(ImmutableSet.of(), ImmutableMap.of());
+
+  private final Set<DexMethod> hotMethods;
+  private final Map<DexMethod, Set<DexMethod>> hotCallSites;
+
+  private ExecutionProfile(Set<DexMethod> hotMethods, Map<DexMethod, Set<DexMethod>> hotCallSites) {
+    this.hotMethods = hotMethods;
+    this.hotCallSites = hotCallSites;
+  }
+
+  public static ExecutionProfile empty() {
+    return EMPTY;
+  }
+
+  public static ExecutionProfile parse(Path path, DexItemFactory factory, Reporter reporter) {
+    Origin origin = new PathOrigin(path);
+    List<String> lines;
+    try {
+      lines = FileUtils.readAllLines(path);
+    } catch (IOException e) {
+      reporter.error(new ExceptionDiagnostic(e, origin));
+      throw new AbortException();
+    }
+    Set<DexMethod> hotMethods = Sets.newIdentityHashSet();
+    Map<DexMethod, Set<DexMethod>> hotCallSites = new IdentityHashMap<>();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] entries = line.split("\\s+");
+      if (entries.length > 2) {
+        reportInvalidLine(line, i + 1, origin, reporter);
+        continue;
+      }
+      if (!isMethodEntry(entries[0])) {
+        // Class entries in ART profiles are not used.
+        continue;
+      }
+      DexMethod method = parseMethod(entries[0], factory);
+      DexMethod callee = entries.length == 2 ? parseMethod(entries[1], factory) : null;
+      if (method == null || (entries.length == 2 && callee == null)) {
+        reportInvalidLine(line, i + 1, origin, reporter);
+        continue;
+      }
+      if (!isHotEntry(entries[0])) {
+        continue;
+      }
+      if (callee == null) {
+        hotMethods.add(method);
+      } else {
+        hotCallSites.computeIfAbsent(method, ignore -> Sets.newIdentityHashSet()).add(callee);
+      }
+    }
+    reporter.failIfPendingErrors();
+    return new ExecutionProfile(hotMethods, hotCallSites);
+  }
+
+  private static void reportInvalidLine(
+      String line, int lineNumber, Origin origin, Reporter reporter) {
+    reporter.error(
+        new StringDiagnostic(
+            "Invalid execution profile entry on line " + lineNumber + ": " + line, origin));
+  }
+
+  private static boolean isMethodEntry(String entry) {
+    return entry.contains("->");
+  }
+
+  private static int getFlagsLength(String entry) {
+    int length = 0;
+    while (length < entry.length() && "HSP".indexOf(entry.charAt(length)) >= 0) {
+      length++;
+    }
+    return length;
+  }
+
+  // An entry is hot if it has the 'H' flag of ART profiles, or no flags at all.
+  private static boolean isHotEntry(String entry) {
+    int flagsLength = getFlagsLength(entry);
+    return flagsLength == 0 || entry.substring(0, flagsLength).indexOf('H') >= 0;
+  }
+
+  private static DexMethod parseMethod(String entry, DexItemFactory factory) {
+    // Skip the flags of ART profile entries.
+    int start = getFlagsLength(entry);
+    int arrowIndex = entry.indexOf("->", start);
+    int protoIndex = arrowIndex >= 0 ? entry.indexOf('(', arrowIndex) : -1;
+    if (arrowIndex < 0 || protoIndex < 0) {
+      return null;
+    }
+    String holderDescriptor = entry.substring(start, arrowIndex);
+    String name = entry.substring(arrowIndex + 2, protoIndex);
+    String protoDescriptor = entry.substring(protoIndex);
+    if (!DescriptorUtils.isClassDescriptor(holderDescriptor) || name.isEmpty()) {
+      return null;
+    }
+    Type[] argumentTypes;
+    Type returnType;
+    try {
+      if (!Type.getMethodType(protoDescriptor).getDescriptor().equals(protoDescriptor)) {
+        return null;
+      }
+      argumentTypes = Type.getArgumentTypes(protoDescriptor);
+      returnType = Type.getReturnType(protoDescriptor);
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      return null;
+    }
+    DexType[] parameters = new DexType[argumentTypes.length];
+    for (int i = 0; i < argumentTypes.length; i++) {
+      parameters[i] = factory.createType(argumentTypes[i].getDescriptor());
+    }
+    return factory.createMethod(
+        factory.createType(holderDescriptor),
+        factory.createProto(factory.createType(returnType.getDescriptor()), parameters),
+        name);
+  }
+
+  public boolean isEmpty() {
+    return hotMethods.isEmpty() && hotCallSites.isEmpty();
+  }
+
+  public boolean isHotMethod(DexMethod method, GraphLense graphLense) {
+    return hotMethods.contains(graphLense.getOriginalMethodSignature(method));
+  }
+
+  /**
+   * Returns true if the invocations of {@param callee} in {@param caller} are hot, which is the
+   * case if the call site is in the profile or if {@param caller} is a hot method.
+   */
+  public boolean isHotCallSite(DexMethod caller, DexMethod callee, GraphLense graphLense) {
+    if (isHotMethod(caller, graphLense)) {
+      return true;
+    }
+    Set<DexMethod> callees = hotCallSites.get(graphLense.getOriginalMethodSignature(caller));
+    return callees != null && callees.contains(graphLense.getOriginalMethodSignature(callee));
+  }
+}
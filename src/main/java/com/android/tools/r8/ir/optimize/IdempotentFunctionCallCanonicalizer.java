@@ -127,32 +127,8 @@ public class IdempotentFunctionCallCanonicalizer {
           continue;
         }
         // Interested in known-to-be idempotent methods.
-        if (!isIdempotentLibraryMethodInvoke(invoke)) {
-          if (!appView.enableWholeProgramOptimizations()) {
-            // Give up in D8
-            continue;
-          }
-          assert appView.appInfo().hasLiveness();
-          // Check if the call has a single target; that target is side effect free; and
-          // that target's output depends only on arguments.
-          DexEncodedMethod target = invoke.lookupSingleTarget(appView.withLiveness(), context);
-          if (target == null
-              || target.getOptimizationInfo().mayHaveSideEffects()
-              || !target.getOptimizationInfo().returnValueOnlyDependsOnArguments()) {
-            continue;
-          }
-          // Verify that the target method is accessible in the current context.
-          if (!isMemberVisibleFromOriginalContext(
-              appView, context, target.method.holder, target.accessFlags)) {
-            continue;
-          }
-          // Check if the call could throw a NPE as a result of the receiver being null.
-          if (current.isInvokeMethodWithReceiver()) {
-            Value receiver = current.asInvokeMethodWithReceiver().getReceiver().getAliasedValue();
-            if (receiver.getTypeLattice().isNullable()) {
-              continue;
-            }
-          }
+        if (!isIdempotentInvoke(appView, invoke, context)) {
+          continue;
         }
         // TODO(b/119596718): Use dominant tree to extend it to non-canonicalized in values?
         // For now, interested in inputs that are also canonicalized constants.
@@ -252,7 +228,45 @@ public class IdempotentFunctionCallCanonicalizer {
     assert code.isConsistentSSA();
   }
 
-  private boolean isIdempotentLibraryMethodInvoke(InvokeMethod invoke) {
+  /**
+   * Returns true if the given invoke has no side effects and its return value only depends on its
+   * arguments, such that two invocations with the same arguments yield the same value.
+   */
+  public static boolean isIdempotentInvoke(
+      AppView<?> appView, InvokeMethod invoke, DexType context) {
+    if (isIdempotentLibraryMethodInvoke(appView.dexItemFactory(), invoke)) {
+      return true;
+    }
+    if (!appView.enableWholeProgramOptimizations()) {
+      // Give up in D8
+      return false;
+    }
+    assert appView.appInfo().hasLiveness();
+    // Check if the call has a single target; that target is side effect free; and
+    // that target's output depends only on arguments.
+    DexEncodedMethod target = invoke.lookupSingleTarget(appView.withLiveness(), context);
+    if (target == null
+        || target.getOptimizationInfo().mayHaveSideEffects()
+        || !target.getOptimizationInfo().returnValueOnlyDependsOnArguments()) {
+      return false;
+    }
+    // Verify that the target method is accessible in the current context.
+    if (!isMemberVisibleFromOriginalContext(
+        appView, context, target.method.holder, target.accessFlags)) {
+      return false;
+    }
+    // Check if the call could throw a NPE as a result of the receiver being null.
+    if (invoke.isInvokeMethodWithReceiver()) {
+      Value receiver = invoke.asInvokeMethodWithReceiver().getReceiver().getAliasedValue();
+      if (receiver.getTypeLattice().isNullable()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isIdempotentLibraryMethodInvoke(
+      DexItemFactory factory, InvokeMethod invoke) {
     DexMethod invokedMethod = invoke.getInvokedMethod();
     Predicate<InvokeMethod> noSideEffectPredicate =
         factory.libraryMethodsWithoutSideEffects.get(invokedMethod);
@@ -30,9 +30,11 @@ import com.android.tools.r8.ir.code.Position;
 import com.android.tools.r8.ir.code.Throw;
 import com.android.tools.r8.ir.code.Value;
 import com.android.tools.r8.ir.code.ValueNumberGenerator;
+import com.android.tools.r8.ir.conversion.CallGraph;
 import com.android.tools.r8.ir.conversion.CallSiteInformation;
 import com.android.tools.r8.ir.conversion.IRConverter;
 import com.android.tools.r8.ir.conversion.LensCodeRewriter;
+import com.android.tools.r8.ir.conversion.MethodProcessor;
 import com.android.tools.r8.ir.conversion.OptimizationFeedback;
 import com.android.tools.r8.ir.conversion.OptimizationFeedbackIgnore;
 import com.android.tools.r8.ir.desugar.TwrCloseResourceRewriter;
@@ -40,9 +42,8 @@ import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.shaking.AppInfoWithLiveness;
 import com.android.tools.r8.shaking.MainDexClasses;
 import com.android.tools.r8.utils.InternalOptions;
-import com.android.tools.r8.utils.ThreadUtils;
+import com.android.tools.r8.utils.Timing;
 import com.google.common.collect.Sets;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -50,7 +51,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
 public class Inliner {
@@ -67,6 +68,11 @@ public class Inliner {
   private final Set<DexMethod> blackList = Sets.newIdentityHashSet();
   private final LensCodeRewriter lensCodeRewriter;
 
+  // Statistics on the number of inlined instructions, only collected if there is an execution
+  // profile.
+  private final AtomicLong hotInlinedInstructions = new AtomicLong();
+  private final AtomicLong coldInlinedInstructions = new AtomicLong();
+
   public Inliner(
       AppView<AppInfoWithLiveness> appView,
       MainDexClasses mainDexClasses,
@@ -201,28 +207,34 @@ public class Inliner {
   }
 
   public void processDoubleInlineCallers(
-      IRConverter converter, ExecutorService executorService, OptimizationFeedback feedback)
+      IRConverter converter,
+      CallGraph callGraph,
+      ExecutorService executorService,
+      OptimizationFeedback feedback,
+      Timing timing)
       throws ExecutionException {
     if (doubleInlineCallers.isEmpty()) {
       return;
     }
     applyDoubleInlining = true;
-    List<Future<?>> futures = new ArrayList<>();
-    for (DexEncodedMethod method : doubleInlineCallers) {
-      futures.add(
-          executorService.submit(
-              () -> {
-                converter.processMethod(
-                    method,
-                    feedback,
-                    doubleInlineCallers::contains,
-                    CallSiteInformation.empty(),
-                    Outliner::noProcessing);
-                assert method.isProcessed();
-                return null;
-              }));
-    }
-    ThreadUtils.awaitFutures(futures);
+    // The code of the double inline callers has been rewritten in the primary optimization pass, so
+    // update their call edges, and process them in call graph order.
+    callGraph.update(appView.withLiveness(), doubleInlineCallers, executorService, timing);
+    MethodProcessor methodProcessor =
+        callGraph.createMethodProcessor(appView.withLiveness(), doubleInlineCallers);
+    methodProcessor.forEachMethod(
+        (method, isProcessedConcurrently) -> {
+          converter.processMethod(
+              method,
+              feedback,
+              isProcessedConcurrently,
+              CallSiteInformation.empty(),
+              Outliner::noProcessing);
+          assert method.isProcessed();
+        },
+        () -> {},
+        () -> {},
+        executorService);
   }
 
   /**
@@ -764,14 +776,26 @@ public class Inliner {
       Predicate<DexEncodedMethod> isProcessedConcurrently,
       CallSiteInformation callSiteInformation) {
     InternalOptions options = appView.options();
+    int instructionLimit = options.inliningInstructionLimit;
+    int instructionAllowance = options.inliningInstructionAllowance;
+    ExecutionProfile executionProfile = appView.executionProfile();
+    if (!executionProfile.isEmpty()) {
+      // Hot call sites in cold methods use the hot instruction limit, see DefaultInliningOracle.
+      if (executionProfile.isHotMethod(method.method, appView.graphLense())) {
+        instructionLimit = options.hotInliningInstructionLimit;
+        instructionAllowance = options.hotInliningInstructionAllowance;
+      } else {
+        instructionLimit = options.coldInliningInstructionLimit;
+      }
+    }
     DefaultInliningOracle oracle =
         createDefaultOracle(
             method,
             code,
             isProcessedConcurrently,
             callSiteInformation,
-            options.inliningInstructionLimit,
-            options.inliningInstructionAllowance - numberOfInstructions(code));
+            instructionLimit,
+            instructionAllowance - numberOfInstructions(code));
     performInliningImpl(oracle, oracle, method, code, feedback);
   }
 
@@ -858,6 +882,7 @@ public class Inliner {
               // Back up before the invoke instruction.
               iterator.previous();
               strategy.markInlined(inlinee);
+              recordInlinedInstructions(context, target, inlinee);
               iterator.inlineInvoke(
                   appView,
                   code,
@@ -896,6 +921,27 @@ public class Inliner {
     assert code.isConsistentSSA();
   }
 
+  private void recordInlinedInstructions(
+      DexEncodedMethod context, DexEncodedMethod target, InlineeWithReason inlinee) {
+    ExecutionProfile executionProfile = appView.executionProfile();
+    if (executionProfile.isEmpty()) {
+      return;
+    }
+    int numberOfInstructions = numberOfInstructions(inlinee.code);
+    if (executionProfile.isHotCallSite(context.method, target.method, appView.graphLense())) {
+      hotInlinedInstructions.addAndGet(numberOfInstructions);
+    } else {
+      coldInlinedInstructions.addAndGet(numberOfInstructions);
+    }
+  }
+
+  public void recordStatistics(Timing timing) {
+    if (!appView.executionProfile().isEmpty()) {
+      timing.addStatistic("Inlined instructions at hot call sites", hotInlinedInstructions.get());
+      timing.addStatistic("Inlined instructions at cold call sites", coldInlinedInstructions.get());
+    }
+  }
+
   private boolean useReflectiveOperationExceptionOrUnknownClassInCatch(IRCode code) {
     for (BasicBlock block : code.blocks) {
       for (CatchHandler<BasicBlock> catchHandler : block.getCatchHandlers()) {
@@ -0,0 +1,403 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize;
+
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.graph.DexEncodedField;
+import com.android.tools.r8.graph.DexField;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.ir.analysis.loop.Loop;
+import com.android.tools.r8.ir.analysis.loop.LoopAnalysis;
+import com.android.tools.r8.ir.code.BasicBlock;
+import com.android.tools.r8.ir.code.DominatorTree;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.code.Instruction;
+import com.android.tools.r8.ir.code.InstructionListIterator;
+import com.android.tools.r8.ir.code.Phi;
+import com.android.tools.r8.ir.code.Phi.RegisterReadType;
+import com.android.tools.r8.ir.code.Value;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loop-invariant code motion.
+ *
+ * <p>Moves instructions that compute the same value in every iteration of a loop to the preheader
+ * of the loop. Since the moved instructions are also executed when the loop body would not have
+ * executed them, only instructions that cannot throw and have no side effects are moved:
+ *
+ * <ul>
+ *   <li>arithmetic, array-length and instance-of instructions,
+ *   <li>reads of non-volatile fields that are not written in the loop, and
+ *   <li>invokes of idempotent methods, when the invoke is executed in every iteration.
+ * </ul>
+ *
+ * <p>When a loop does not have a preheader, a preheader is inserted. If the loop is entered from
+ * several blocks, all of them are redirected to the new preheader.
+ *
+ * <p>Constants are only moved along with the instructions that use them, since constants are cheap
+ * to rematerialize and the register allocator benefits from having them close to their uses.
+ *
+ * <p>Loops are processed from the innermost to the outermost loop, such that instructions that are
+ * moved out of a nested loop can subsequently be moved out of the enclosing loop.
+ */
+public class LoopInvariantCodeMotion {
+
+  private final AppView<?> appView;
+  private final IRCode code;
+  private final DexType context;
+
+  private int nextBlockNumber;
+
+  // Maps each inserted preheader to the header of its loop, used for ordering the preheader before
+  // the blocks of the loop.
+  private final Map<BasicBlock, BasicBlock> insertedPreheaders = new IdentityHashMap<>();
+
+  public LoopInvariantCodeMotion(AppView<?> appView, IRCode code) {
+    this.appView = appView;
+    this.code = code;
+    this.context = code.method.method.holder;
+  }
+
+  public static boolean shouldRun(AppView<?> appView, IRCode code) {
+    return appView.options().enableLoopInvariantCodeMotion
+        && appView.enableWholeProgramOptimizations()
+        && !appView.options().debug
+        && mayHaveLoops(code);
+  }
+
+  private static boolean mayHaveLoops(IRCode code) {
+    // If every edge goes from a block with a lower number to a block with a higher number, then
+    // the control flow graph is acyclic.
+    for (BasicBlock block : code.blocks) {
+      for (BasicBlock predecessor : block.getPredecessors()) {
+        if (predecessor.getNumber() >= block.getNumber()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public void run() {
+    DominatorTree dominatorTree = new DominatorTree(code);
+    LoopAnalysis loopAnalysis = new LoopAnalysis(dominatorTree);
+    if (!loopAnalysis.hasLoops()) {
+      return;
+    }
+    List<Loop> loops = loopAnalysis.getLoops();
+    // Compute the blocks that are executed in every iteration of each loop before the control flow
+    // graph is changed by the insertion of preheaders.
+    Map<Loop, Set<BasicBlock>> blocksExecutedInEveryIteration = new IdentityHashMap<>();
+    for (Loop loop : loops) {
+      blocksExecutedInEveryIteration.put(
+          loop, computeBlocksExecutedInEveryIteration(loop, dominatorTree));
+    }
+    nextBlockNumber = code.getHighestBlockNumber() + 1;
+    boolean changed = false;
+    for (int i = loops.size() - 1; i >= 0; i--) {
+      Loop loop = loops.get(i);
+      changed |= hoistInvariantInstructions(loop, blocksExecutedInEveryIteration.get(loop));
+    }
+    if (changed) {
+      assert code.isConsistentSSA();
+    }
+  }
+
+  private static Set<BasicBlock> computeBlocksExecutedInEveryIteration(
+      Loop loop, DominatorTree dominatorTree) {
+    // A block is executed in every iteration if it dominates all latches.
+    Set<BasicBlock> result = Sets.newIdentityHashSet();
+    List<BasicBlock> latches = loop.getLatches();
+    BasicBlock block = latches.get(0);
+    while (true) {
+      boolean dominatesAllLatches = true;
+      for (int i = 1; i < latches.size(); i++) {
+        if (!dominatorTree.dominatedBy(latches.get(i), block)) {
+          dominatesAllLatches = false;
+          break;
+        }
+      }
+      if (dominatesAllLatches) {
+        result.add(block);
+      }
+      if (block == loop.getHeader()) {
+        break;
+      }
+      block = dominatorTree.immediateDominator(block);
+    }
+    return result;
+  }
+
+  private boolean hoistInvariantInstructions(
+      Loop loop, Set<BasicBlock> blocksExecutedInEveryIteration) {
+    FieldWrites fieldWrites = null;
+    BasicBlock preheader = null;
+    boolean changed = false;
+    for (BasicBlock block : getBlocksInReversePostorder(loop)) {
+      // Iterate a copy of the instructions, since the hoisting of an instruction may also remove
+      // the constants that precede it in the block.
+      for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+        if (!isCandidate(instruction) || !hasLoopInvariantOperands(instruction, loop)) {
+          continue;
+        }
+        if (instruction.isFieldGet() && fieldWrites == null) {
+          fieldWrites = new FieldWrites(loop);
+        }
+        if (!canBeHoisted(instruction, fieldWrites, blocksExecutedInEveryIteration)) {
+          continue;
+        }
+        if (preheader == null) {
+          preheader = getOrCreatePreheader(loop);
+          if (preheader == null) {
+            return changed;
+          }
+        }
+        // Move the constant operands defined in the loop to the preheader first.
+        for (Value operand : instruction.inValues()) {
+          if (!operand.isPhi() && loop.contains(operand.definition.getBlock())) {
+            assert isMovableConstant(operand.definition);
+            moveToPreheader(operand.definition, preheader);
+          }
+        }
+        moveToPreheader(instruction, preheader);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private List<BasicBlock> getBlocksInReversePostorder(Loop loop) {
+    // The blocks are numbered in reverse postorder by the dominator tree. Inserted preheaders are
+    // ordered immediately before the header of their loop.
+    List<BasicBlock> blocks = new ArrayList<>(loop.getBlocks());
+    blocks.sort(
+        (x, y) -> Integer.compare(getReversePostorderIndex(x), getReversePostorderIndex(y)));
+    return blocks;
+  }
+
+  private int getReversePostorderIndex(BasicBlock block) {
+    BasicBlock header = insertedPreheaders.get(block);
+    return header != null ? 2 * header.getNumber() - 1 : 2 * block.getNumber();
+  }
+
+  private boolean isCandidate(Instruction instruction) {
+    if (!instruction.hasOutValue()
+        || !instruction.outValue().isUsed()
+        || instruction.outValue().hasLocalInfo()
+        || !instruction.getDebugValues().isEmpty()) {
+      return false;
+    }
+    return instruction.isBinop()
+        || instruction.isUnop()
+        || instruction.isArrayLength()
+        || instruction.isInstanceOf()
+        || instruction.isFieldGet()
+        || instruction.isInvokeMethod();
+  }
+
+  private boolean hasLoopInvariantOperands(Instruction instruction, Loop loop) {
+    for (Value operand : instruction.inValues()) {
+      if (operand.isPhi()) {
+        if (loop.contains(operand.asPhi().getBlock())) {
+          return false;
+        }
+      } else if (loop.contains(operand.definition.getBlock())
+          && !isMovableConstant(operand.definition)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isMovableConstant(Instruction instruction) {
+    return instruction.isConstNumber()
+        && !instruction.outValue().hasLocalInfo()
+        && instruction.getDebugValues().isEmpty();
+  }
+
+  private boolean canBeHoisted(
+      Instruction instruction,
+      FieldWrites fieldWrites,
+      Set<BasicBlock> blocksExecutedInEveryIteration) {
+    if (instruction.isInvokeMethod()) {
+      // Idempotent invokes have no side effects, but may be expensive. Therefore only move them
+      // if they would be executed in every iteration.
+      return blocksExecutedInEveryIteration.contains(instruction.getBlock())
+          && IdempotentFunctionCallCanonicalizer.isIdempotentInvoke(
+              appView, instruction.asInvokeMethod(), context);
+    }
+    if (instruction.instructionMayHaveSideEffects(appView, context)) {
+      return false;
+    }
+    if (instruction.isFieldGet()) {
+      DexField field = instruction.asFieldInstruction().getField();
+      DexEncodedField definition = appView.appInfo().resolveField(field);
+      return definition != null
+          && !definition.accessFlags.isVolatile()
+          && !fieldWrites.mayWrite(field);
+    }
+    return true;
+  }
+
+  private BasicBlock getOrCreatePreheader(Loop loop) {
+    BasicBlock preheader = loop.getPreheader();
+    if (preheader != null) {
+      return preheader;
+    }
+    BasicBlock header = loop.getHeader();
+    if (header.entry().isMoveException()) {
+      return null;
+    }
+    // Find the predecessors of the header that are not in the loop.
+    List<BasicBlock> predecessors = header.getPredecessors();
+    List<Integer> entryPredecessorIndices = new ArrayList<>();
+    Set<BasicBlock> entryPredecessors = Sets.newIdentityHashSet();
+    for (int i = 0; i < predecessors.size(); i++) {
+      BasicBlock predecessor = predecessors.get(i);
+      if (loop.contains(predecessor)) {
+        continue;
+      }
+      if (predecessor.hasCatchSuccessor(header) || !entryPredecessors.add(predecessor)) {
+        return null;
+      }
+      entryPredecessorIndices.add(i);
+    }
+    if (entryPredecessorIndices.isEmpty()) {
+      return null;
+    }
+    // Redirect all edges from outside the loop to a single new preheader.
+    BasicBlock firstEntryPredecessor = predecessors.get(entryPredecessorIndices.get(0));
+    preheader =
+        BasicBlock.createGotoBlock(
+            nextBlockNumber++, firstEntryPredecessor.exit().getPosition(), code.metadata(), header);
+    for (int index : entryPredecessorIndices) {
+      BasicBlock predecessor = predecessors.get(index);
+      predecessor.replaceSuccessor(header, preheader);
+      preheader.getMutablePredecessors().add(predecessor);
+    }
+    // The phis of the header take a single operand from the preheader. When the loop is entered
+    // from several blocks with different values, the values are joined by a phi in the preheader.
+    for (Phi phi : header.getPhis()) {
+      List<Value> operands = new ArrayList<>(entryPredecessorIndices.size());
+      for (int index : entryPredecessorIndices) {
+        operands.add(phi.getOperand(index));
+      }
+      Value operand = operands.get(0);
+      for (Value other : operands) {
+        if (other != operand) {
+          Phi preheaderPhi =
+              new Phi(
+                  code.valueNumberGenerator.next(),
+                  preheader,
+                  phi.getTypeLattice(),
+                  phi.getLocalInfo(),
+                  RegisterReadType.NORMAL);
+          preheaderPhi.addOperands(operands, false);
+          operand = preheaderPhi;
+          break;
+        }
+      }
+      phi.replaceOperandAt(entryPredecessorIndices.get(0), operand);
+    }
+    List<Integer> removedPredecessorIndices =
+        entryPredecessorIndices.subList(1, entryPredecessorIndices.size());
+    header.removePhisByIndex(removedPredecessorIndices);
+    header.removePredecessorsByIndex(removedPredecessorIndices);
+    header.replacePredecessor(firstEntryPredecessor, preheader);
+    ListIterator<BasicBlock> blockIterator = code.blocks.listIterator();
+    while (blockIterator.next() != header) {}
+    blockIterator.previous();
+    blockIterator.add(preheader);
+    insertedPreheaders.put(preheader, header);
+    // The preheader belongs to the enclosing loops that contain the entry predecessors. Since only
+    // the header of a loop has predecessors outside of it, the entry predecessors of a nested loop
+    // all belong to the same enclosing loops.
+    for (Loop enclosing = loop.getParent(); enclosing != null; enclosing = enclosing.getParent()) {
+      if (!enclosing.contains(firstEntryPredecessor)) {
+        break;
+      }
+      enclosing.addBlock(preheader);
+    }
+    return preheader;
+  }
+
+  private void moveToPreheader(Instruction instruction, BasicBlock preheader) {
+    InstructionListIterator iterator = instruction.getBlock().listIterator(code, instruction);
+    Instruction previous = iterator.previous();
+    assert previous == instruction;
+    iterator.removeInstructionIgnoreOutValue();
+    // The instruction keeps its position. Since it cannot throw, the position only affects the
+    // line number information of the preheader.
+    iterator = preheader.listIterator(code, preheader.getInstructions().size() - 1);
+    iterator.add(instruction);
+  }
+
+  /** The fields that may be written in a loop. */
+  private class FieldWrites {
+
+    private final Set<DexField> writtenFields = Sets.newIdentityHashSet();
+    private boolean mayWriteAnyField = false;
+
+    FieldWrites(Loop loop) {
+      for (BasicBlock block : loop.getBlocks()) {
+        for (Instruction instruction : block.getInstructions()) {
+          if (instruction.isFieldPut()) {
+            writtenFields.add(instruction.asFieldInstruction().getField());
+            if (instruction.isStaticPut()
+                && instruction
+                    .asFieldInstruction()
+                    .getField()
+                    .holder
+                    .classInitializationMayHaveSideEffects(
+                        appView, type -> appView.isSubtype(context, type).isTrue())) {
+              mayWriteAnyField = true;
+            }
+          } else if (!cannotWriteFields(instruction)
+              && instruction.instructionMayHaveSideEffects(appView, context)) {
+            mayWriteAnyField = true;
+          }
+          if (mayWriteAnyField) {
+            return;
+          }
+        }
+      }
+    }
+
+    // Returns true for instructions whose only side effect is that they may throw.
+    private boolean cannotWriteFields(Instruction instruction) {
+      return instruction.isArrayGet()
+          || instruction.isArrayLength()
+          || instruction.isArrayPut()
+          || instruction.isBinop()
+          || instruction.isCheckCast()
+          || instruction.isConstInstruction()
+          || instruction.isInstanceGet()
+          || instruction.isInstanceOf()
+          || instruction.isJumpInstruction()
+          || instruction.isMoveException()
+          || instruction.isNewArrayEmpty()
+          || instruction.isUnop();
+    }
+
+    boolean mayWrite(DexField field) {
+      if (mayWriteAnyField) {
+        return true;
+      }
+      // A field may be written through a reference with a different holder, so only the name and
+      // the type are compared.
+      for (DexField writtenField : writtenFields) {
+        if (writtenField.name == field.name && writtenField.type == field.type) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -40,6 +40,7 @@ import com.android.tools.r8.shaking.ProguardMemberRuleReturnValue;
 import com.android.tools.r8.utils.Reporter;
 import com.android.tools.r8.utils.StringDiagnostic;
 import com.google.common.collect.Sets;
+import java.util.Collection;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -292,7 +293,16 @@ public class MemberValuePropagation {
     }
     // No Proguard rule could replace the instruction check for knowledge about the return value.
     DexEncodedMethod target = current.lookupSingleTarget(appView, callingContext);
-    if (target == null || !mayPropagateValueFor(target)) {
+    if (target == null) {
+      // The return value of a virtual call is non-null if no possible target returns null.
+      if (current.outValue().getTypeLattice().isReference()
+          && current.outValue().canBeNull()
+          && allTargetsNeverReturnNull(current, callingContext)) {
+        insertAssumeNotNull(code, affectedValues, blocks, iterator, current);
+      }
+      return;
+    }
+    if (!mayPropagateValueFor(target)) {
       return;
     }
     if (target.getOptimizationInfo().returnsConstant()) {
@@ -330,6 +340,28 @@ public class MemberValuePropagation {
     }
   }
 
+  private boolean allTargetsNeverReturnNull(InvokeMethod invoke, DexType callingContext) {
+    if (!invoke.isInvokeVirtual() && !invoke.isInvokeInterface()) {
+      return false;
+    }
+    DexClass holder = appView.definitionFor(invoke.getInvokedMethod().holder);
+    if (holder == null || !holder.isProgramClass()) {
+      return false;
+    }
+    Collection<DexEncodedMethod> targets = invoke.lookupTargets(appView, callingContext);
+    if (targets == null || targets.isEmpty()) {
+      return false;
+    }
+    for (DexEncodedMethod target : targets) {
+      if (!target.isProgramMethod(appView)
+          || !mayPropagateValueFor(target)
+          || !target.getOptimizationInfo().neverReturnsNull()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private void rewriteStaticGetWithConstantValues(
       IRCode code,
       Predicate<DexEncodedMethod> isProcessedConcurrently,
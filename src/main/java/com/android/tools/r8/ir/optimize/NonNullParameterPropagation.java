@@ -0,0 +1,238 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize;
+
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.graph.DexCallSite;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexMethodHandle;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.graph.DexValue;
+import com.android.tools.r8.graph.DexValue.DexValueMethodHandle;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.code.Instruction;
+import com.android.tools.r8.ir.code.InvokeMethod;
+import com.android.tools.r8.ir.code.Value;
+import com.android.tools.r8.shaking.AppInfoWithLiveness;
+import com.android.tools.r8.utils.MethodSignatureEquivalence;
+import com.google.common.base.Equivalence.Wrapper;
+import com.google.common.collect.Sets;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the parameters that are non-null at all call sites of a method.
+ *
+ * <p>During the primary optimization pass, {@link #analyze} records for each call site which
+ * arguments may be null according to the type lattice. Once all methods have been processed,
+ * {@link #finish} stores the parameters that are never passed a nullable argument in the
+ * optimization info of the method, see {@link
+ * com.android.tools.r8.graph.MethodOptimizationInfo#getNonNullParamOnAllCallSites}. When the method
+ * is processed again, {@link NonNullTracker} inserts non-null assumptions for these parameters,
+ * such that null checks on the parameters, e.g., {@code Objects.requireNonNull(param)} or Kotlin's
+ * {@code Intrinsics.checkParameterIsNotNull(param, name)}, can be removed.
+ *
+ * <p>The facts are only computed for methods whose call sites are all known, i.e., methods that
+ * are not kept, do not override a library method, and are not targeted by a method handle.
+ */
+public class NonNullParameterPropagation {
+
+  private final AppView<AppInfoWithLiveness> appView;
+  private final DexItemFactory dexItemFactory;
+
+  // Maps each method to the parameters that may be null at some call site. Note that the bit set
+  // takes into account the receiver for instance methods.
+  private final Map<DexEncodedMethod, BitSet> maybeNullParameters = new ConcurrentHashMap<>();
+
+  // Maps each method to the parameters that are checked for null in the code of the method.
+  private final Map<DexEncodedMethod, BitSet> nullCheckedParameters = new ConcurrentHashMap<>();
+
+  // Methods that may be invoked from call sites that are not visible to this analysis.
+  private final Set<DexMethod> methodsWithUnknownCallSites = Sets.newConcurrentHashSet();
+
+  // Signatures of virtual methods that are invoked from call sites whose targets are unknown.
+  private final Set<Wrapper<DexMethod>> signaturesWithUnknownTargets =
+      Sets.newConcurrentHashSet();
+
+  private final MethodSignatureEquivalence equivalence = MethodSignatureEquivalence.get();
+
+  private boolean finished = false;
+
+  public NonNullParameterPropagation(AppView<AppInfoWithLiveness> appView) {
+    this.appView = appView;
+    this.dexItemFactory = appView.dexItemFactory();
+  }
+
+  public void analyze(DexEncodedMethod method, IRCode code) {
+    if (finished) {
+      return;
+    }
+    for (Instruction instruction : code.instructions()) {
+      if (instruction.isInvokeMethod()) {
+        analyzeInvoke(instruction.asInvokeMethod(), method);
+      } else if (instruction.isInvokeCustom()) {
+        DexCallSite callSite = instruction.asInvokeCustom().getCallSite();
+        markUnknownCallSites(callSite.bootstrapMethod);
+        for (DexValue bootstrapArgument : callSite.bootstrapArgs) {
+          DexValueMethodHandle methodHandle = bootstrapArgument.asDexValueMethodHandle();
+          if (methodHandle != null) {
+            markUnknownCallSites(methodHandle.value);
+          }
+        }
+      } else if (instruction.isConstMethodHandle()) {
+        markUnknownCallSites(instruction.asConstMethodHandle().getValue());
+      }
+    }
+    BitSet nullChecked = computeNullCheckedParameters(code);
+    if (!nullChecked.isEmpty()) {
+      nullCheckedParameters.put(method, nullChecked);
+    }
+  }
+
+  private void analyzeInvoke(InvokeMethod invoke, DexEncodedMethod context) {
+    if (invoke.isInvokePolymorphic()) {
+      return;
+    }
+    List<Value> arguments = invoke.inValues();
+    BitSet maybeNull = new BitSet();
+    // The receiver is non-null after a successful dispatch, and is not a parameter fact.
+    for (int i = invoke.isInvokeStatic() ? 0 : 1; i < arguments.size(); i++) {
+      Value argument = arguments.get(i);
+      if (argument.getTypeLattice().isReference()
+          && !argument.getTypeLattice().isDefinitelyNotNull()) {
+        maybeNull.set(i);
+      }
+    }
+    if (maybeNull.isEmpty()) {
+      return;
+    }
+    Collection<DexEncodedMethod> targets = invoke.lookupTargets(appView, context.method.holder);
+    if (targets == null) {
+      if (invoke.isInvokeVirtual() || invoke.isInvokeInterface()) {
+        signaturesWithUnknownTargets.add(equivalence.wrap(invoke.getInvokedMethod()));
+      }
+      return;
+    }
+    for (DexEncodedMethod target : targets) {
+      maybeNullParameters.merge(
+          target,
+          maybeNull,
+          (existing, other) -> {
+            BitSet result = (BitSet) existing.clone();
+            result.or(other);
+            return result;
+          });
+    }
+  }
+
+  private void markUnknownCallSites(DexMethodHandle methodHandle) {
+    if (methodHandle.isMethodHandle()) {
+      methodsWithUnknownCallSites.add(methodHandle.asMethod());
+      signaturesWithUnknownTargets.add(equivalence.wrap(methodHandle.asMethod()));
+    }
+  }
+
+  private BitSet computeNullCheckedParameters(IRCode code) {
+    BitSet result = new BitSet();
+    List<Value> arguments = code.collectArguments();
+    for (int index = 0; index < arguments.size(); index++) {
+      Value argument = arguments.get(index);
+      if (argument.isThis() || !argument.getTypeLattice().isReference()) {
+        continue;
+      }
+      for (Instruction user : argument.uniqueUsers()) {
+        if (isNullCheck(user, argument)) {
+          result.set(index);
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean isNullCheck(Instruction instruction, Value value) {
+    if (instruction.isIf()) {
+      return instruction.asIf().isZeroTest();
+    }
+    if (instruction.isInvokeMethod()) {
+      InvokeMethod invoke = instruction.asInvokeMethod();
+      DexMethod invokedMethod = invoke.getInvokedMethod();
+      return invoke.inValues().get(0) == value
+          && (invokedMethod == dexItemFactory.objectsMethods.requireNonNull
+              || invokedMethod == dexItemFactory.objectMethods.getClass
+              || invokedMethod == dexItemFactory.kotlin.intrinsics.checkParameterIsNotNull
+              || invokedMethod == dexItemFactory.kotlin.intrinsics.checkExpressionValueIsNotNull);
+    }
+    return false;
+  }
+
+  /**
+   * Stores the parameters that are non-null at all call sites in the optimization info of each
+   * method, and returns the methods that null check such a parameter, and therefore should be
+   * processed again.
+   */
+  public Set<DexEncodedMethod> finish() {
+    assert !finished;
+    finished = true;
+    Set<DexEncodedMethod> methodsToReprocess = Sets.newIdentityHashSet();
+    for (DexProgramClass clazz : appView.appInfo().classes()) {
+      // Default methods may be moved to companion classes by interface method desugaring, and
+      // methods in classes with a missing super type may be invoked through the missing type.
+      if (clazz.isInterface() || clazz.hasMissingSuperType(appView.appInfo())) {
+        continue;
+      }
+      for (DexEncodedMethod method : clazz.methods()) {
+        BitSet facts = computeNonNullParameters(method);
+        if (facts == null) {
+          continue;
+        }
+        method.getMutableOptimizationInfo().setNonNullParamOnAllCallSites(facts);
+        BitSet nullChecked = nullCheckedParameters.get(method);
+        if (nullChecked != null && nullChecked.intersects(facts)) {
+          methodsToReprocess.add(method);
+        }
+      }
+    }
+    maybeNullParameters.clear();
+    nullCheckedParameters.clear();
+    methodsWithUnknownCallSites.clear();
+    signaturesWithUnknownTargets.clear();
+    return methodsToReprocess;
+  }
+
+  private BitSet computeNonNullParameters(DexEncodedMethod method) {
+    if (method.getCode() == null || method.isClassInitializer() || hasUnknownCallSites(method)) {
+      return null;
+    }
+    BitSet maybeNull = maybeNullParameters.get(method);
+    DexType[] parameters = method.method.proto.parameters.values;
+    int offset = method.isStatic() ? 0 : 1;
+    BitSet facts = new BitSet();
+    for (int i = 0; i < parameters.length; i++) {
+      int index = i + offset;
+      if (parameters[i].isReferenceType() && (maybeNull == null || !maybeNull.get(index))) {
+        facts.set(index);
+      }
+    }
+    return facts.isEmpty() ? null : facts;
+  }
+
+  private boolean hasUnknownCallSites(DexEncodedMethod method) {
+    AppInfoWithLiveness appInfo = appView.appInfo();
+    return appInfo.isPinned(method.method)
+        || method.isLibraryMethodOverride().isTrue()
+        || appInfo.methodsTargetedByInvokeDynamic.contains(method.method)
+        || methodsWithUnknownCallSites.contains(method.method)
+        || (method.isVirtualMethod()
+            && signaturesWithUnknownTargets.contains(equivalence.wrap(method.method)));
+  }
+}
@@ -61,6 +61,9 @@ public class NonNullTracker {
       IRCode code, ListIterator<BasicBlock> blockIterator, Predicate<BasicBlock> blockTester) {
     Set<Value> affectedValues = Sets.newIdentityHashSet();
     Set<Value> knownToBeNonNullValues = Sets.newIdentityHashSet();
+    BitSet nonNullParamOnAllCallSites =
+        code.method.getOptimizationInfo().getNonNullParamOnAllCallSites();
+    int argumentIndex = 0;
     while (blockIterator.hasNext()) {
       BasicBlock block = blockIterator.next();
       if (!blockTester.test(block)) {
@@ -70,9 +73,23 @@ public class NonNullTracker {
       // 1) invocations that call non-overridable library methods that are known to return non null.
       // 2) instructions that implicitly indicate receiver/array is not null.
       // 3) parameters that are not null after the invocation.
+      // 4) arguments that are not null at all call sites of the method.
       InstructionListIterator iterator = block.listIterator(code);
       while (iterator.hasNext()) {
         Instruction current = iterator.next();
+        if (current.isArgument()) {
+          Value argument = current.outValue();
+          if (nonNullParamOnAllCallSites != null
+              && nonNullParamOnAllCallSites.get(argumentIndex)
+              && isNullableReferenceType(argument)) {
+            knownToBeNonNullValues.add(argument);
+          }
+          argumentIndex++;
+          // The non-null instructions for the arguments are added after the last argument.
+          if (iterator.hasNext() && iterator.peekNext().isArgument()) {
+            continue;
+          }
+        }
         if (current.isInvokeMethod()
             && appView
                 .dexItemFactory()
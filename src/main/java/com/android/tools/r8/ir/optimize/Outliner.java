@@ -65,18 +65,30 @@ import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.InternalOptions.OutlineOptions;
 import com.android.tools.r8.utils.StringUtils;
 import com.android.tools.r8.utils.StringUtils.BraceType;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Support class for implementing outlining (i.e. extracting common code patterns as methods).
@@ -88,36 +100,55 @@ import java.util.function.BiConsumer;
  *       Outliner#identifyCandidateMethods()} to identify outlining candidates and the methods
  *       containing each candidate. IR is converted to the output format (DEX or CF) and thrown away
  *       along with the outlining candidates; only a list of lists of methods is kept, where each
- *       list of methods corresponds to methods containing an outlining candidate.
- *   <li>Second, {@link Outliner#selectMethodsForOutlining()} is called to retain the lists of
- *       methods found in the first step that are large enough (see {@link InternalOptions#outline}
- *       {@link OutlineOptions#threshold}), and the methods to be further analyzed for outlining is
- *       returned by {@link Outliner#getMethodsSelectedForOutlining}. Each selected method is then
- *       converted back to IR and passed to {@link Outliner#identifyOutlineSites(IRCode,
- *       DexEncodedMethod)}, which then stores concrete outlining candidates in {@link
- *       Outliner#outlineSites}.
- *   <li>Third, {@link Outliner#buildOutlinerClass(DexType)} is called to construct the <em>outline
- *       support class</em> containing a static helper method for each outline candidate that occurs
- *       frequently enough. Each selected method is then converted to IR, passed to {@link
- *       Outliner#applyOutliningCandidate(IRCode, DexEncodedMethod)} to perform the outlining, and
- *       converted back to the output format (DEX or CF).
+ *       list of methods corresponds to methods containing an outlining candidate. The candidates
+ *       are collected in thread local maps, which are merged by {@link
+ *       Outliner#mergeCandidateMethods()} at the end of each wave.
+ *   <li>Second, {@link Outliner#selectMethodsForOutlining(ExecutorService)} is called to retain
+ *       the lists of methods found in the first step that are large enough (see {@link
+ *       InternalOptions#outline} {@link OutlineOptions#threshold}), and the methods to be further
+ *       analyzed for outlining is returned by {@link Outliner#getMethodsSelectedForOutlining}. Each
+ *       selected method is then converted back to IR and passed to {@link
+ *       Outliner#identifyOutlineSites(IRCode, DexEncodedMethod)}, which then stores concrete
+ *       outlining candidates in {@link Outliner#outlineSites}.
+ *   <li>Third, {@link Outliner#buildOutlinerClasses(Supplier, ExecutorService)} is called to
+ *       construct the <em>outline support classes</em> containing a static helper method for each
+ *       outline candidate that occurs frequently enough. Each selected method is then converted to
+ *       IR, passed to {@link Outliner#applyOutliningCandidate(IRCode, DexEncodedMethod)} to perform
+ *       the outlining, and converted back to the output format (DEX or CF).
  * </ul>
+ *
+ * <p>If an execution profile is given, methods that are hot according to the profile are not
+ * outlined, such that hot code does not pay for the overhead of calling the outlines. All other
+ * methods are considered cold and are outlined more aggressively, see {@link
+ * OutlineOptions#coldThreshold}.
  */
 public class Outliner {
 
+  /**
+   * Canonical instances of the outlines found, such that outlines can be counted in identity maps.
+   */
+  private final Map<Outline, Outline> canonicalOutlines = new ConcurrentHashMap<>();
   /** Result of first step (see {@link Outliner#identifyCandidateMethods()}. */
-  private final List<List<DexEncodedMethod>> candidateMethodLists = new ArrayList<>();
-  /** Result of second step (see {@link Outliner#selectMethodsForOutlining()}. */
+  private final OutlineCollector candidateMethods = new OutlineCollector();
+  /** Result of second step (see {@link Outliner#selectMethodsForOutlining(ExecutorService)}. */
   private final Set<DexEncodedMethod> methodsSelectedForOutlining = Sets.newIdentityHashSet();
-  /** Result of second step (see {@link Outliner#selectMethodsForOutlining()}. */
-  private final Map<Outline, List<DexEncodedMethod>> outlineSites = new HashMap<>();
-  /** Result of third step (see {@link Outliner#buildOutlinerClass(DexType)}. */
+  /** Result of second step (see {@link Outliner#selectMethodsForOutlining(ExecutorService)}. */
+  private final OutlineCollector outlineSites = new OutlineCollector();
+  /** Result of third step (see {@link Outliner#buildOutlinerClasses(Supplier, ExecutorService)}. */
   private final Map<Outline, DexMethod> generatedOutlines = new HashMap<>();
+  /**
+   * The methods containing each generated outline that have not been rewritten yet. Only
+   * maintained when assertions are enabled (see {@link #checkAllOutlineSitesFoundAgain()}).
+   */
+  private final Map<Outline, Multiset<DexEncodedMethod>> remainingOutlineSites = new HashMap<>();
+  /** The outline classes that have an outline site in a class in the main dex list. */
+  private final Set<DexType> outlineClassesWithMainDexSites = Sets.newIdentityHashSet();
 
   static final int MAX_IN_SIZE = 5;  // Avoid using ranged calls for outlined code.
 
   private final AppView<AppInfoWithLiveness> appView;
   private final InliningConstraints inliningConstraints;
+  private final Set<DexType> mainDexClasses;
 
   private abstract static class OutlineInstruction {
 
@@ -879,7 +910,7 @@ public class Outliner {
           }
         }
       }
-      if (newArgumentRegisters > MAX_IN_SIZE) {
+      if (newArgumentRegisters > maxArgumentRegisters()) {
         return false;
       }
 
@@ -1125,31 +1156,74 @@ public class Outliner {
     }
   }
 
+  /**
+   * Collects the methods in which each outline occurs.
+   *
+   * <p>Each thread adds outlines to a map of its own, such that the threads do not contend on a
+   * shared map. The thread local maps are merged into a single map by {@link #merge()}, which must
+   * only be called when no other thread is adding outlines. Outlines are canonicalized using {@link
+   * Outliner#canonicalOutlines}, which allows the maps to be identity maps.
+   */
+  private class OutlineCollector {
+
+    private final Queue<Map<Outline, List<DexEncodedMethod>>> threadLocalMaps =
+        new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Map<Outline, List<DexEncodedMethod>>> threadLocalMap =
+        ThreadLocal.withInitial(
+            () -> {
+              Map<Outline, List<DexEncodedMethod>> map = new IdentityHashMap<>();
+              threadLocalMaps.add(map);
+              return map;
+            });
+    private final Map<Outline, List<DexEncodedMethod>> merged = new IdentityHashMap<>();
+
+    void add(Outline outline, DexEncodedMethod method) {
+      threadLocalMap
+          .get()
+          .computeIfAbsent(canonicalize(outline), ignore -> new ArrayList<>())
+          .add(method);
+    }
+
+    Map<Outline, List<DexEncodedMethod>> merge() {
+      for (Map<Outline, List<DexEncodedMethod>> map : threadLocalMaps) {
+        map.forEach(
+            (outline, methods) -> {
+              List<DexEncodedMethod> mergedMethods = merged.putIfAbsent(outline, methods);
+              if (mergedMethods != null) {
+                mergedMethods.addAll(methods);
+              }
+            });
+        map.clear();
+      }
+      return merged;
+    }
+
+    boolean isEmpty() {
+      return merged.isEmpty() && threadLocalMaps.stream().allMatch(Map::isEmpty);
+    }
+
+    void clear() {
+      assert threadLocalMaps.stream().allMatch(Map::isEmpty);
+      merged.clear();
+    }
+  }
+
+  private Outline canonicalize(Outline outline) {
+    Outline canonical = canonicalOutlines.putIfAbsent(outline, outline);
+    return canonical != null ? canonical : outline;
+  }
+
   // Collect outlining candidates with the methods that can use them.
   // TODO(sgjesse): This does not take several usages in the same method into account.
   private class OutlineMethodIdentifier extends OutlineSpotter {
 
-    private final Map<Outline, List<DexEncodedMethod>> candidateMap;
-
-    OutlineMethodIdentifier(
-        DexEncodedMethod method,
-        BasicBlock block,
-        Map<Outline, List<DexEncodedMethod>> candidateMap) {
+    OutlineMethodIdentifier(DexEncodedMethod method, BasicBlock block) {
       super(method, block);
-      this.candidateMap = candidateMap;
     }
 
     @Override
     protected void handle(int start, int end, Outline outline) {
-      synchronized (candidateMap) {
-        candidateMap.computeIfAbsent(outline, this::addOutlineMethodList).add(method);
-      }
-    }
-
-    private List<DexEncodedMethod> addOutlineMethodList(Outline outline) {
-      List<DexEncodedMethod> result = new ArrayList<>();
-      candidateMethodLists.add(result);
-      return result;
+      candidateMethods.add(outline, method);
     }
   }
 
@@ -1161,9 +1235,7 @@ public class Outliner {
 
     @Override
     protected void handle(int start, int end, Outline outline) {
-      synchronized (outlineSites) {
-        outlineSites.computeIfAbsent(outline, k -> new ArrayList<>()).add(method);
-      }
+      outlineSites.add(outline, method);
     }
   }
 
@@ -1250,11 +1322,9 @@ public class Outliner {
       }
     }
 
-    /** When assertions are enabled, remove method from the outline's list. */
+    /** When assertions are enabled, remove method from the outline's remaining sites. */
     private boolean removeMethodFromOutlineList(Outline outline) {
-      synchronized (outlineSites) {
-        assert outlineSites.get(outline).remove(method);
-      }
+      assert remainingOutlineSites.get(outline).remove(method);
       return true;
     }
   }
@@ -1262,23 +1332,57 @@ public class Outliner {
   public Outliner(AppView<AppInfoWithLiveness> appView, IRConverter converter) {
     this.appView = appView;
     this.inliningConstraints = new InliningConstraints(appView, GraphLense.getIdentityLense());
+    this.mainDexClasses = converter.mainDexClasses;
+  }
+
+  private boolean isProfileGuided() {
+    return !appView.executionProfile().isEmpty();
+  }
+
+  private boolean isHotMethod(DexEncodedMethod method) {
+    return isProfileGuided()
+        && appView.executionProfile().isHotMethod(method.method, appView.graphLense());
+  }
+
+  private int threshold() {
+    OutlineOptions options = appView.options().outline;
+    return isProfileGuided() ? options.coldThreshold : options.threshold;
+  }
+
+  private int maxArgumentRegisters() {
+    return isProfileGuided() ? appView.options().outline.coldMaxArgumentRegisters : MAX_IN_SIZE;
+  }
+
+  private int maxOutlinesPerClass() {
+    return isProfileGuided()
+        ? appView.options().outline.coldMaxOutlinesPerClass
+        : Integer.MAX_VALUE;
   }
 
   public BiConsumer<IRCode, DexEncodedMethod> identifyCandidateMethods() {
     // Since optimizations may change the map identity of Outline objects (e.g. by setting the
-    // out-value of invokes to null), this map must not be used except for identifying methods
-    // potentially relevant to outlining. OutlineMethodIdentifier will add method lists to
-    // candidateMethodLists whenever it adds an entry to candidateMap.
-    Map<Outline, List<DexEncodedMethod>> candidateMap = new HashMap<>();
-    assert candidateMethodLists.isEmpty();
+    // out-value of invokes to null), the candidates must not be used except for identifying
+    // methods potentially relevant to outlining.
+    assert candidateMethods.isEmpty();
     return (code, method) -> {
       assert !(method.getCode() instanceof OutlineCode);
+      if (isHotMethod(method)) {
+        return;
+      }
       for (BasicBlock block : code.blocks) {
-        new OutlineMethodIdentifier(method, block, candidateMap).process();
+        new OutlineMethodIdentifier(method, block).process();
       }
     };
   }
 
+  /**
+   * Merges the candidates that have been identified by the different threads. Must be called when
+   * no methods are being processed, e.g., at the end of each wave.
+   */
+  public void mergeCandidateMethods() {
+    candidateMethods.merge();
+  }
+
   public void identifyOutlineSites(IRCode code, DexEncodedMethod method) {
     assert !(method.getCode() instanceof OutlineCode);
     for (BasicBlock block : code.blocks) {
@@ -1286,18 +1390,36 @@ public class Outliner {
     }
   }
 
-  public boolean selectMethodsForOutlining() {
+  public boolean selectMethodsForOutlining(ExecutorService executorService)
+      throws ExecutionException {
     assert methodsSelectedForOutlining.size() == 0;
-    assert outlineSites.size() == 0;
-    for (List<DexEncodedMethod> outlineMethods : candidateMethodLists) {
-      if (outlineMethods.size() >= appView.options().outline.threshold) {
-        for (DexEncodedMethod outlineMethod : outlineMethods) {
-          methodsSelectedForOutlining.add(
-              appView.graphLense().mapDexEncodedMethod(outlineMethod, appView));
-        }
-      }
+    assert outlineSites.isEmpty();
+    List<List<DexEncodedMethod>> candidateMethodLists =
+        new ArrayList<>(candidateMethods.merge().values());
+    candidateMethods.clear();
+    canonicalOutlines.clear();
+    List<Future<Set<DexEncodedMethod>>> futures = new ArrayList<>();
+    for (List<List<DexEncodedMethod>> chunk :
+        Lists.partition(candidateMethodLists, appView.options().outline.selectionChunkSize)) {
+      futures.add(
+          executorService.submit(
+              () -> {
+                Set<DexEncodedMethod> selected = Sets.newIdentityHashSet();
+                for (List<DexEncodedMethod> outlineMethods : chunk) {
+                  if (outlineMethods.size() >= threshold()) {
+                    for (DexEncodedMethod outlineMethod : outlineMethods) {
+                      selected.add(
+                          appView.graphLense().mapDexEncodedMethod(outlineMethod, appView));
+                    }
+                  }
+                }
+                return selected;
+              }));
+    }
+    ThreadUtils.awaitFutures(futures);
+    for (Future<Set<DexEncodedMethod>> future : futures) {
+      methodsSelectedForOutlining.addAll(ThreadUtils.awaitFuture(future));
     }
-    candidateMethodLists.clear();
     return methodsSelectedForOutlining.size() > 0;
   }
 
@@ -1305,12 +1427,37 @@ public class Outliner {
     return methodsSelectedForOutlining;
   }
 
-  public DexProgramClass buildOutlinerClass(DexType type) {
-    // Build the outlined methods.
+  /**
+   * Builds the outline support classes. The types of the classes are created by {@param
+   * typeSupplier}, and each class is added to the synthesized classes before the next type is
+   * created.
+   */
+  public List<DexProgramClass> buildOutlinerClasses(
+      Supplier<DexType> typeSupplier, ExecutorService executorService) throws ExecutionException {
     // By now the candidates are the actual selected outlines. Name the generated methods in a
     // consistent order, to provide deterministic output.
-    List<Outline> outlines = selectOutlines();
+    List<Outline> outlines = selectOutlines(executorService);
     outlines.sort(Comparator.naturalOrder());
+    List<DexProgramClass> classes = new ArrayList<>();
+    for (List<Outline> chunk : Lists.partition(outlines, maxOutlinesPerClass())) {
+      DexProgramClass clazz = buildOutlinerClass(typeSupplier.get(), chunk);
+      appView.appInfo().addSynthesizedClass(clazz);
+      classes.add(clazz);
+    }
+    return classes;
+  }
+
+  /**
+   * Returns true if the given outline class should be added to the main dex list. Without an
+   * execution profile all outline classes are added. With a profile, the outlines are only taken
+   * from cold code, so an outline class is only added if a class in the main dex list uses it.
+   */
+  public boolean shouldAddToMainDex(DexProgramClass outlineClass) {
+    return !isProfileGuided() || outlineClassesWithMainDexSites.contains(outlineClass.type);
+  }
+
+  private DexProgramClass buildOutlinerClass(DexType type, List<Outline> outlines) {
+    // Build the outlined methods.
     DexEncodedMethod[] direct = new DexEncodedMethod[outlines.size()];
     int count = 0;
     for (Outline outline : outlines) {
@@ -1320,8 +1467,15 @@ public class Outliner {
       DexString methodName =
           appView.dexItemFactory().createString(OutlineOptions.METHOD_PREFIX + count);
       DexMethod method = outline.buildMethod(type, methodName);
-      List<DexEncodedMethod> sites = outlineSites.get(outline);
+      List<DexEncodedMethod> sites = outlineSites.merged.get(outline);
       assert !sites.isEmpty();
+      for (DexEncodedMethod site : sites) {
+        DexType holder = site.method.holder;
+        if (mainDexClasses.contains(holder) || appView.appInfo().isInMainDexList(holder)) {
+          outlineClassesWithMainDexSites.add(type);
+          break;
+        }
+      }
       direct[count] =
           new DexEncodedMethod(
               method,
@@ -1330,9 +1484,14 @@ public class Outliner {
               ParameterAnnotationsList.empty(),
               new OutlineCode(outline));
       if (appView.options().isGeneratingClassFiles()) {
-        direct[count].upgradeClassFileVersion(sites.get(0).getClassFileVersion());
+        // Use the highest class file version of all sites, which does not depend on the order in
+        // which the sites were found.
+        for (DexEncodedMethod site : sites) {
+          direct[count].upgradeClassFileVersion(site.getClassFileVersion());
+        }
       }
       generatedOutlines.put(outline, method);
+      assert remainingOutlineSites.put(outline, ConcurrentHashMultiset.create(sites)) == null;
       count++;
     }
     // No need to sort the direct methods as they are generated in sorted order.
@@ -1365,14 +1524,34 @@ public class Outliner {
     return clazz;
   }
 
-  private List<Outline> selectOutlines() {
-    assert outlineSites.size() > 0;
-    assert candidateMethodLists.isEmpty();
+  private List<Outline> selectOutlines(ExecutorService executorService)
+      throws ExecutionException {
+    assert candidateMethods.isEmpty();
+    List<Entry<Outline, List<DexEncodedMethod>>> entries =
+        new ArrayList<>(outlineSites.merge().entrySet());
+    assert entries.size() > 0;
+    List<Future<List<Outline>>> futures = new ArrayList<>();
+    for (List<Entry<Outline, List<DexEncodedMethod>>> chunk :
+        Lists.partition(entries, appView.options().outline.selectionChunkSize)) {
+      futures.add(
+          executorService.submit(
+              () -> {
+                List<Outline> selected = new ArrayList<>();
+                for (Entry<Outline, List<DexEncodedMethod>> entry : chunk) {
+                  if (entry.getValue().size() >= threshold()) {
+                    Outline outline = entry.getKey();
+                    // Create the proto up front, since it is needed for sorting the outlines.
+                    outline.buildProto();
+                    selected.add(outline);
+                  }
+                }
+                return selected;
+              }));
+    }
+    ThreadUtils.awaitFutures(futures);
     List<Outline> result = new ArrayList<>();
-    for (Entry<Outline, List<DexEncodedMethod>> entry : outlineSites.entrySet()) {
-      if (entry.getValue().size() >= appView.options().outline.threshold) {
-        result.add(entry.getKey());
-      }
+    for (Future<List<Outline>> future : futures) {
+      result.addAll(ThreadUtils.awaitFuture(future));
     }
     return result;
   }
@@ -1390,7 +1569,7 @@ public class Outliner {
 
   public boolean checkAllOutlineSitesFoundAgain() {
     for (Outline outline : generatedOutlines.keySet()) {
-      assert outlineSites.get(outline).isEmpty() : outlineSites.get(outline);
+      assert remainingOutlineSites.get(outline).isEmpty() : remainingOutlineSites.get(outline);
     }
     return true;
   }
@@ -4,10 +4,13 @@
 
 package com.android.tools.r8.ir.optimize;
 
+import static com.android.tools.r8.optimize.MemberRebindingAnalysis.isMemberVisibleFromOriginalContext;
+
 import com.android.tools.r8.errors.Unreachable;
 import com.android.tools.r8.graph.AppView;
 import com.android.tools.r8.graph.DexEncodedField;
 import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexEncodedMethod.TrivialInitializer.TrivialInstanceInitializer;
 import com.android.tools.r8.graph.DexField;
 import com.android.tools.r8.graph.DexType;
 import com.android.tools.r8.ir.analysis.type.TypeAnalysis;
@@ -18,6 +21,7 @@ import com.android.tools.r8.ir.code.IRCode;
 import com.android.tools.r8.ir.code.InstanceGet;
 import com.android.tools.r8.ir.code.InstancePut;
 import com.android.tools.r8.ir.code.Instruction;
+import com.android.tools.r8.ir.code.InvokeDirect;
 import com.android.tools.r8.ir.code.InstructionListIterator;
 import com.android.tools.r8.ir.code.NewInstance;
 import com.android.tools.r8.ir.code.Phi;
@@ -25,7 +29,10 @@ import com.android.tools.r8.ir.code.StaticGet;
 import com.android.tools.r8.ir.code.StaticPut;
 import com.android.tools.r8.ir.code.Value;
 import com.google.common.collect.Sets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -33,12 +40,16 @@ import java.util.Map;
 import java.util.Set;
 
 /**
- * Eliminate redundant field loads.
+ * Eliminate redundant field loads and dead field stores.
+ *
+ * <p>The active field sets at the entry of each block are computed by a fixed-point computation,
+ * where the active field set at a join point is the intersection of the active field sets at the
+ * exit of its predecessors. A field is only active at a join point if the same field instruction
+ * is active on all incoming edges, since this instruction then dominates the join point.
  *
- * <p>Simple algorithm that goes through all blocks in one pass in dominator order and propagates
- * active field sets across control-flow edges where the target has only one predecessor.
+ * <p>In addition, stores to instance fields of newly created objects that do not escape are
+ * removed if the field is never read.
  */
-// TODO(ager): Evaluate speed/size for computing active field sets in a fixed-point computation.
 public class RedundantFieldLoadElimination {
 
   private final AppView<?> appView;
@@ -55,6 +66,13 @@ public class RedundantFieldLoadElimination {
   private final Map<BasicBlock, Map<DexField, FieldInstruction>> activeStaticFieldsAtEntry =
       new IdentityHashMap<>();
 
+  // Maps keeping track of fields that have an already loaded value at basic block exit. Only used
+  // during the fixed-point computation.
+  private final Map<BasicBlock, Map<FieldAndObject, FieldInstruction>> activeInstanceFieldsAtExit =
+      new IdentityHashMap<>();
+  private final Map<BasicBlock, Map<DexField, FieldInstruction>> activeStaticFieldsAtExit =
+      new IdentityHashMap<>();
+
   // Maps keeping track of fields with already loaded values for the current block during
   // elimination.
   private Map<FieldAndObject, FieldInstruction> activeInstanceFields;
@@ -69,7 +87,8 @@ public class RedundantFieldLoadElimination {
 
   public static boolean shouldRun(AppView<?> appView, IRCode code) {
     return appView.options().enableRedundantFieldLoadElimination
-        && code.metadata().mayHaveFieldGet();
+        && (code.metadata().mayHaveFieldGet()
+            || (code.metadata().mayHaveNewInstance() && code.metadata().mayHaveInstancePut()));
   }
 
   private static class FieldAndObject {
@@ -110,7 +129,7 @@ public class RedundantFieldLoadElimination {
   }
 
   public void run() {
-    DexType context = method.method.holder;
+    computeActiveFieldsAtEntry();
     for (BasicBlock block : dominatorTree.getSortedBlocks()) {
       activeInstanceFields =
           activeInstanceFieldsAtEntry.containsKey(block)
@@ -120,118 +139,219 @@ public class RedundantFieldLoadElimination {
           activeStaticFieldsAtEntry.containsKey(block)
               ? activeStaticFieldsAtEntry.get(block)
               : new IdentityHashMap<>();
-      InstructionListIterator it = block.listIterator(code);
-      while (it.hasNext()) {
-        Instruction instruction = it.next();
-        if (instruction.isFieldInstruction()) {
-          DexField field = instruction.asFieldInstruction().getField();
-          if (couldBeVolatile(field)) {
-            killAllActiveFields();
-            continue;
+      processInstructions(block, true);
+    }
+    if (appView.enableWholeProgramOptimizations() && code.metadata().mayHaveNewInstance()) {
+      eliminateDeadStores();
+    }
+    if (!affectedValues.isEmpty()) {
+      new TypeAnalysis(appView).narrowing(affectedValues);
+    }
+    assert code.isConsistentSSA();
+  }
+
+  private void computeActiveFieldsAtEntry() {
+    BasicBlock[] sortedBlocks = dominatorTree.getSortedBlocks();
+    Deque<BasicBlock> worklist = new ArrayDeque<>(Arrays.asList(sortedBlocks));
+    Set<BasicBlock> enqueued = Sets.newIdentityHashSet();
+    enqueued.addAll(worklist);
+    // The active field sets are not monotone in the number of iterations, since a field load may
+    // become active when the field is no longer active at its block entry. Fall back to only
+    // propagating the active field sets to blocks with a single predecessor if the computation does
+    // not stabilize quickly.
+    int remainingIterations =
+        appView.options().redundantFieldLoadEliminationMaxIterationsPerBlock
+            * sortedBlocks.length;
+    while (!worklist.isEmpty()) {
+      if (remainingIterations-- == 0) {
+        activeInstanceFieldsAtEntry.clear();
+        activeStaticFieldsAtEntry.clear();
+        computeActiveFieldsAtEntryForSinglePredecessorBlocks();
+        break;
+      }
+      BasicBlock block = worklist.removeFirst();
+      enqueued.remove(block);
+      computeActiveFieldsAtEntry(block);
+      activeInstanceFieldsAtEntry.put(block, new HashMap<>(activeInstanceFields));
+      activeStaticFieldsAtEntry.put(block, new IdentityHashMap<>(activeStaticFields));
+      processInstructions(block, false);
+      if (!activeInstanceFields.equals(activeInstanceFieldsAtExit.get(block))
+          || !activeStaticFields.equals(activeStaticFieldsAtExit.get(block))) {
+        activeInstanceFieldsAtExit.put(block, activeInstanceFields);
+        activeStaticFieldsAtExit.put(block, activeStaticFields);
+        for (BasicBlock successor : block.getSuccessors()) {
+          if (enqueued.add(successor)) {
+            worklist.addLast(successor);
           }
+        }
+      }
+    }
+    activeInstanceFieldsAtExit.clear();
+    activeStaticFieldsAtExit.clear();
+  }
 
-          assert !couldBeVolatile(field);
+  // Sets the active field sets to the intersection of the active field sets at the exit of the
+  // predecessors of the given block. Predecessors that have not been processed yet are ignored.
+  private void computeActiveFieldsAtEntry(BasicBlock block) {
+    activeInstanceFields = null;
+    activeStaticFields = null;
+    for (BasicBlock predecessor : block.getPredecessors()) {
+      Map<FieldAndObject, FieldInstruction> instanceFieldsAtExit =
+          activeInstanceFieldsAtExit.get(predecessor);
+      if (instanceFieldsAtExit == null) {
+        continue;
+      }
+      Map<DexField, FieldInstruction> staticFieldsAtExit =
+          activeStaticFieldsAtExit.get(predecessor);
+      Instruction exceptionalExit =
+          predecessor.hasCatchSuccessor(block) ? predecessor.exceptionalExit() : null;
+      if (activeInstanceFields == null) {
+        activeInstanceFields = new HashMap<>(instanceFieldsAtExit);
+        activeStaticFields = new IdentityHashMap<>(staticFieldsAtExit);
+      } else {
+        activeInstanceFields.entrySet().retainAll(instanceFieldsAtExit.entrySet());
+        activeStaticFields.entrySet().retainAll(staticFieldsAtExit.entrySet());
+      }
+      if (exceptionalExit != null && exceptionalExit.isFieldInstruction()) {
+        killActiveFieldsForExceptionalExit(exceptionalExit.asFieldInstruction());
+      }
+    }
+    if (activeInstanceFields == null) {
+      activeInstanceFields = new HashMap<>();
+      activeStaticFields = new IdentityHashMap<>();
+    }
+  }
 
-          if (instruction.isInstanceGet()) {
-            InstanceGet instanceGet = instruction.asInstanceGet();
-            if (instanceGet.outValue().hasLocalInfo()) {
-              continue;
-            }
-            Value object = instanceGet.object().getAliasedValue();
-            FieldAndObject fieldAndObject = new FieldAndObject(field, object);
-            if (activeInstanceFields.containsKey(fieldAndObject)) {
+  private void computeActiveFieldsAtEntryForSinglePredecessorBlocks() {
+    for (BasicBlock block : dominatorTree.getSortedBlocks()) {
+      activeInstanceFields =
+          activeInstanceFieldsAtEntry.containsKey(block)
+              ? new HashMap<>(activeInstanceFieldsAtEntry.get(block))
+              : new HashMap<>();
+      activeStaticFields =
+          activeStaticFieldsAtEntry.containsKey(block)
+              ? new IdentityHashMap<>(activeStaticFieldsAtEntry.get(block))
+              : new IdentityHashMap<>();
+      processInstructions(block, false);
+      propagateActiveFieldsFrom(block);
+    }
+  }
+
+  private void processInstructions(BasicBlock block, boolean eliminate) {
+    DexType context = method.method.holder;
+    InstructionListIterator it = block.listIterator(code);
+    while (it.hasNext()) {
+      Instruction instruction = it.next();
+      if (instruction.isFieldInstruction()) {
+        DexField field = instruction.asFieldInstruction().getField();
+        if (couldBeVolatile(field)) {
+          killAllActiveFields();
+          continue;
+        }
+
+        assert !couldBeVolatile(field);
+
+        if (instruction.isInstanceGet()) {
+          InstanceGet instanceGet = instruction.asInstanceGet();
+          if (instanceGet.outValue().hasLocalInfo()) {
+            continue;
+          }
+          Value object = instanceGet.object().getAliasedValue();
+          FieldAndObject fieldAndObject = new FieldAndObject(field, object);
+          if (activeInstanceFields.containsKey(fieldAndObject)) {
+            if (eliminate) {
               FieldInstruction active = activeInstanceFields.get(fieldAndObject);
               eliminateRedundantRead(it, instanceGet, active);
-            } else {
-              activeInstanceFields.put(fieldAndObject, instanceGet);
             }
-          } else if (instruction.isInstancePut()) {
-            InstancePut instancePut = instruction.asInstancePut();
-            // An instance-put instruction can potentially write the given field on all objects
-            // because of aliases.
-            killActiveFields(instancePut);
-            // ... but at least we know the field value for this particular object.
-            Value object = instancePut.object().getAliasedValue();
-            FieldAndObject fieldAndObject = new FieldAndObject(field, object);
-            activeInstanceFields.put(fieldAndObject, instancePut);
-          } else if (instruction.isStaticGet()) {
-            StaticGet staticGet = instruction.asStaticGet();
-            if (staticGet.outValue().hasLocalInfo()) {
-              continue;
-            }
-            if (activeStaticFields.containsKey(field)) {
+          } else {
+            activeInstanceFields.put(fieldAndObject, instanceGet);
+          }
+        } else if (instruction.isInstancePut()) {
+          InstancePut instancePut = instruction.asInstancePut();
+          // An instance-put instruction can potentially write the given field on all objects
+          // because of aliases.
+          killActiveFields(instancePut);
+          // ... but at least we know the field value for this particular object.
+          Value object = instancePut.object().getAliasedValue();
+          FieldAndObject fieldAndObject = new FieldAndObject(field, object);
+          activeInstanceFields.put(fieldAndObject, instancePut);
+        } else if (instruction.isStaticGet()) {
+          StaticGet staticGet = instruction.asStaticGet();
+          if (staticGet.outValue().hasLocalInfo()) {
+            continue;
+          }
+          if (activeStaticFields.containsKey(field)) {
+            if (eliminate) {
               FieldInstruction active = activeStaticFields.get(field);
               eliminateRedundantRead(it, staticGet, active);
-            } else {
-              // A field get on a different class can cause <clinit> to run and change static
-              // field values.
-              killActiveFields(staticGet);
-              activeStaticFields.put(field, staticGet);
             }
-          } else if (instruction.isStaticPut()) {
-            StaticPut staticPut = instruction.asStaticPut();
-            // A field put on a different class can cause <clinit> to run and change static
+          } else {
+            // A field get on a different class can cause <clinit> to run and change static
             // field values.
-            killActiveFields(staticPut);
-            activeStaticFields.put(field, staticPut);
-          }
-        } else if (instruction.isMonitor()) {
-          if (instruction.asMonitor().isEnter()) {
-            killAllActiveFields();
+            killActiveFields(staticGet);
+            activeStaticFields.put(field, staticGet);
           }
-        } else if (instruction.isInvokeMethod() || instruction.isInvokeCustom()) {
+        } else if (instruction.isStaticPut()) {
+          StaticPut staticPut = instruction.asStaticPut();
+          // A field put on a different class can cause <clinit> to run and change static
+          // field values.
+          killActiveFields(staticPut);
+          activeStaticFields.put(field, staticPut);
+        }
+      } else if (instruction.isMonitor()) {
+        if (instruction.asMonitor().isEnter()) {
+          killAllActiveFields();
+        }
+      } else if (instruction.isInvokeMethod() || instruction.isInvokeCustom()) {
+        // Invocations of methods that are known not to have side effects do not write fields.
+        if (instruction.instructionMayHaveSideEffects(appView, context)) {
+          killAllActiveFields();
+        }
+      } else if (instruction.isNewInstance()) {
+        NewInstance newInstance = instruction.asNewInstance();
+        if (newInstance.clazz.classInitializationMayHaveSideEffects(
+            appView,
+            // Types that are a super type of `context` are guaranteed to be initialized already.
+            type -> appView.isSubtype(context, type).isTrue())) {
           killAllActiveFields();
-        } else if (instruction.isNewInstance()) {
-          NewInstance newInstance = instruction.asNewInstance();
-          if (newInstance.clazz.classInitializationMayHaveSideEffects(
-              appView,
-              // Types that are a super type of `context` are guaranteed to be initialized already.
-              type -> appView.isSubtype(context, type).isTrue())) {
-            killAllActiveFields();
-          }
-        } else {
-          // If the current instruction could trigger a method invocation, it could also cause field
-          // values to change. In that case, it must be handled above.
-          assert !instruction.instructionMayTriggerMethodInvocation(appView, context);
-
-          // If this assertion fails for a new instruction we need to determine if that instruction
-          // has side-effects that can change the value of fields. If so, it must be handled above.
-          // If not, it can be safely added to the assert.
-          assert instruction.isArgument()
-                  || instruction.isArrayGet()
-                  || instruction.isArrayLength()
-                  || instruction.isArrayPut()
-                  || instruction.isAssume()
-                  || instruction.isBinop()
-                  || instruction.isCheckCast()
-                  || instruction.isConstClass()
-                  || instruction.isConstMethodHandle()
-                  || instruction.isConstMethodType()
-                  || instruction.isConstNumber()
-                  || instruction.isConstString()
-                  || instruction.isDebugInstruction()
-                  || instruction.isDexItemBasedConstString()
-                  || instruction.isGoto()
-                  || instruction.isIf()
-                  || instruction.isInstanceOf()
-                  || instruction.isInvokeMultiNewArray()
-                  || instruction.isInvokeNewArray()
-                  || instruction.isMoveException()
-                  || instruction.isNewArrayEmpty()
-                  || instruction.isNewArrayFilledData()
-                  || instruction.isReturn()
-                  || instruction.isSwitch()
-                  || instruction.isThrow()
-                  || instruction.isUnop()
-              : "Unexpected instruction of type " + instruction.getClass().getTypeName();
         }
+      } else {
+        // If the current instruction could trigger a method invocation, it could also cause field
+        // values to change. In that case, it must be handled above.
+        assert !instruction.instructionMayTriggerMethodInvocation(appView, context);
+
+        // If this assertion fails for a new instruction we need to determine if that instruction
+        // has side-effects that can change the value of fields. If so, it must be handled above.
+        // If not, it can be safely added to the assert.
+        assert instruction.isArgument()
+                || instruction.isArrayGet()
+                || instruction.isArrayLength()
+                || instruction.isArrayPut()
+                || instruction.isAssume()
+                || instruction.isBinop()
+                || instruction.isCheckCast()
+                || instruction.isConstClass()
+                || instruction.isConstMethodHandle()
+                || instruction.isConstMethodType()
+                || instruction.isConstNumber()
+                || instruction.isConstString()
+                || instruction.isDebugInstruction()
+                || instruction.isDexItemBasedConstString()
+                || instruction.isGoto()
+                || instruction.isIf()
+                || instruction.isInstanceOf()
+                || instruction.isInvokeMultiNewArray()
+                || instruction.isInvokeNewArray()
+                || instruction.isMoveException()
+                || instruction.isNewArrayEmpty()
+                || instruction.isNewArrayFilledData()
+                || instruction.isReturn()
+                || instruction.isSwitch()
+                || instruction.isThrow()
+                || instruction.isUnop()
+            : "Unexpected instruction of type " + instruction.getClass().getTypeName();
       }
-      propagateActiveFieldsFrom(block);
     }
-    if (!affectedValues.isEmpty()) {
-      new TypeAnalysis(appView).narrowing(affectedValues);
-    }
-    assert code.isConsistentSSA();
   }
 
   private void propagateActiveFieldsFrom(BasicBlock block) {
@@ -289,21 +409,114 @@ public class RedundantFieldLoadElimination {
     }
   }
 
-  // If a field get instruction throws an exception it did not have an effect on the
+  // If a field instruction throws an exception it did not have an effect on the
   // value of the field. Therefore, when propagating across exceptional edges for a
-  // field get instruction we have to exclude that field from the set of known
+  // field instruction we have to exclude that field from the set of known
   // field values.
   private void killActiveFieldsForExceptionalExit(FieldInstruction instruction) {
     DexField field = instruction.getField();
-    if (instruction.isInstanceGet()) {
-      Value object = instruction.asInstanceGet().object().getAliasedValue();
+    if (instruction.isInstanceGet() || instruction.isInstancePut()) {
+      Value object =
+          instruction.isInstanceGet()
+              ? instruction.asInstanceGet().object().getAliasedValue()
+              : instruction.asInstancePut().object().getAliasedValue();
       FieldAndObject fieldAndObject = new FieldAndObject(field, object);
       activeInstanceFields.remove(fieldAndObject);
-    } else if (instruction.isStaticGet()) {
+    } else {
       activeStaticFields.remove(field);
     }
   }
 
+  // Removes the instance-put instructions on newly created objects that do not escape, if the
+  // field is never read from the object. The constructor of the object must be trivial, since it
+  // would otherwise be able to read the fields of the object.
+  private void eliminateDeadStores() {
+    DexType context = method.method.holder;
+    List<NewInstance> newInstances = new ArrayList<>();
+    for (Instruction instruction : code.instructions()) {
+      if (instruction.isNewInstance()) {
+        newInstances.add(instruction.asNewInstance());
+      }
+    }
+    for (NewInstance newInstance : newInstances) {
+      Value object = newInstance.outValue();
+      if (object == null
+          || object.hasLocalInfo()
+          || object.numberOfPhiUsers() > 0
+          || object.numberOfDebugUsers() > 0
+          || mayHaveFinalizer(newInstance.clazz)) {
+        continue;
+      }
+      List<InstancePut> stores = new ArrayList<>();
+      Set<DexEncodedField> readFields = Sets.newIdentityHashSet();
+      boolean escapes = false;
+      for (Instruction user : object.uniqueUsers()) {
+        if (user.isInstanceGet()) {
+          DexEncodedField definition =
+              appView.appInfo().resolveField(user.asInstanceGet().getField());
+          if (definition == null) {
+            escapes = true;
+            break;
+          }
+          readFields.add(definition);
+        } else if (user.isInstancePut() && user.asInstancePut().value() != object) {
+          stores.add(user.asInstancePut());
+        } else if (!isTrivialConstructorCall(user, object)) {
+          escapes = true;
+          break;
+        }
+      }
+      if (escapes) {
+        continue;
+      }
+      for (InstancePut store : stores) {
+        DexField field = store.getField();
+        if (couldBeVolatile(field)) {
+          continue;
+        }
+        DexEncodedField definition = appView.appInfo().resolveField(field);
+        if (definition == null
+            || readFields.contains(definition)
+            || !definition.isProgramField(appView)
+            || !isMemberVisibleFromOriginalContext(
+                appView, context, definition.field.holder, definition.accessFlags)) {
+          continue;
+        }
+        affectedValues.addAll(store.value().affectedValues());
+        InstructionListIterator iterator = store.getBlock().listIterator(code, store);
+        iterator.previous();
+        iterator.removeOrReplaceByDebugLocalRead();
+      }
+    }
+  }
+
+  private boolean isTrivialConstructorCall(Instruction instruction, Value object) {
+    if (!instruction.isInvokeDirect()) {
+      return false;
+    }
+    InvokeDirect invoke = instruction.asInvokeDirect();
+    if (invoke.getReceiver() != object || invoke.inValues().lastIndexOf(object) != 0) {
+      return false;
+    }
+    if (invoke.getInvokedMethod() == appView.dexItemFactory().objectMethods.constructor) {
+      return true;
+    }
+    DexEncodedMethod target = appView.definitionFor(invoke.getInvokedMethod());
+    return target != null
+        && target.isInstanceInitializer()
+        && target.getOptimizationInfo().getTrivialInitializerInfo()
+            instanceof TrivialInstanceInitializer;
+  }
+
+  private boolean mayHaveFinalizer(DexType type) {
+    DexEncodedMethod finalizer =
+        appView
+            .appInfo()
+            .resolveMethod(type, appView.dexItemFactory().objectMethods.finalize)
+            .asSingleTarget();
+    return finalizer == null || finalizer.method.holder != appView.dexItemFactory().objectType;
+  }
+
   private void eliminateRedundantRead(
       InstructionListIterator it, FieldInstruction redundant, FieldInstruction active) {
     affectedValues.addAll(redundant.value().affectedValues());
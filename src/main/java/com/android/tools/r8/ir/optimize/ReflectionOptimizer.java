@@ -27,25 +27,29 @@ import com.android.tools.r8.utils.DescriptorUtils;
 public class ReflectionOptimizer {
 
   // Rewrite getClass() to const-class if the type of the given instance is effectively final.
-  // Rewrite forName() to const-class if the type is resolvable, accessible and already initialized.
+  // Rewrite forName() to const-class if the type is resolvable, accessible and either already
+  // initialized or without side effects in its class initialization.
   public static void rewriteGetClassOrForNameToConstClass(
       AppView<AppInfoWithLiveness> appView, IRCode code) {
     DexType context = code.method.method.holder;
     ClassInitializationAnalysis classInitializationAnalysis =
         new ClassInitializationAnalysis(appView, code);
     for (BasicBlock block : code.blocks) {
-      // Conservatively bail out if the containing block has catch handlers.
-      // TODO(b/118509730): unless join of all catch types is ClassNotFoundException ?
-      if (block.hasCatchHandlers()) {
-        continue;
-      }
       InstructionListIterator it = block.listIterator(code);
       while (it.hasNext()) {
         Instruction current = it.next();
         DexType type = null;
         if (current.isInvokeVirtual()) {
+          // Conservatively bail out if the containing block has catch handlers.
+          if (block.hasCatchHandlers()) {
+            continue;
+          }
           type = getTypeForGetClass( appView, context, current.asInvokeVirtual());
         } else if (current.isInvokeStatic()) {
+          // Class#forName(name) is typically guarded by a handler for ClassNotFoundException.
+          // Since the type is required to be resolvable and its class initialization cannot
+          // throw, the handlers need not be considered. Note that replacing forName() with
+          // const-class replaces a throwing instruction by another throwing instruction.
           type = getTypeForClassForName(
               appView, classInitializationAnalysis, context, current.asInvokeStatic());
         }
@@ -179,11 +183,14 @@ public class ReflectionOptimizer {
     if (constraints == ConstraintWithTarget.NEVER) {
       return null;
     }
-    // Make sure the type is already initialized.
+    // Make sure the type is already initialized, or that skipping its initialization is not
+    // observable. The latter is the case if the class initialization of the type and its super
+    // types does not have side effects, which includes that it does not throw.
     // Note that, if the given name refers to an array type, the corresponding Class<?> won't
     // be initialized. So, it's okay to rewrite the instruction.
     if (type.isClassType()
-        && !classInitializationAnalysis.isClassDefinitelyLoadedBeforeInstruction(type, invoke)) {
+        && !classInitializationAnalysis.isClassDefinitelyLoadedBeforeInstruction(type, invoke)
+        && baseClazz.classInitializationMayHaveSideEffects(appView)) {
       return null;
     }
     return type;
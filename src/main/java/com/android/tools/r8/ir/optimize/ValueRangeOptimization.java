@@ -0,0 +1,532 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize;
+
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.ir.analysis.type.TypeAnalysis;
+import com.android.tools.r8.ir.code.ArrayGet;
+import com.android.tools.r8.ir.code.ArrayLength;
+import com.android.tools.r8.ir.code.BasicBlock;
+import com.android.tools.r8.ir.code.Binop;
+import com.android.tools.r8.ir.code.DominatorTree;
+import com.android.tools.r8.ir.code.Goto;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.code.If;
+import com.android.tools.r8.ir.code.If.Type;
+import com.android.tools.r8.ir.code.Instruction;
+import com.android.tools.r8.ir.code.InstructionListIterator;
+import com.android.tools.r8.ir.code.NumericType;
+import com.android.tools.r8.ir.code.Phi;
+import com.android.tools.r8.ir.code.Value;
+import com.android.tools.r8.utils.LongInterval;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes a range for each int value in a method, and uses the ranges to optimize array accesses
+ * and branches.
+ *
+ * <p>The range of a value is computed from its definition, and is refined at each use by the
+ * conditions of the if-instructions that dominate the use. For example, in
+ *
+ * <pre>
+ *   for (int i = 0; i < array.length; i++) {
+ *     sum += array[i];
+ *   }
+ * </pre>
+ *
+ * the range of i is [0, Integer.MAX_VALUE], and inside the loop it is known that i < array.length.
+ * The ranges are used to:
+ *
+ * <ul>
+ *   <li>remove array-length instructions that are dominated by an array-length instruction on the
+ *       same array,
+ *   <li>mark array-get instructions that cannot throw as being in bounds, which allows subsequent
+ *       optimizations to treat them as side effect free, and
+ *   <li>remove branches of if-instructions that are never taken.
+ * </ul>
+ *
+ * <p>The ranges that do not depend on any branch conditions are also recorded on the values. Only
+ * the optimizations that run later on the same IR can use them, such as dead code removal of an
+ * unused StringBuilder with a capacity that is known to be non-negative. The ranges are not
+ * persisted, so they are lost when the IR is built again from the code of the method.
+ */
+public class ValueRangeOptimization {
+
+  private static final LongInterval INT_RANGE =
+      new LongInterval(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  private static final LongInterval ARRAY_LENGTH_RANGE = new LongInterval(0, Integer.MAX_VALUE);
+  private static final LongInterval ZERO_RANGE = new LongInterval(0, 0);
+
+  // The number of times the range of a value may grow before it is widened to the int range, to
+  // ensure that the analysis terminates for loops.
+  private static final int WIDENING_THRESHOLD = 3;
+
+  private final AppView<?> appView;
+  private final IRCode code;
+  private final DominatorTree dominatorTree;
+
+  private final Map<Value, LongInterval> ranges = new IdentityHashMap<>();
+  private final Map<Value, Integer> numberOfUpdates = new IdentityHashMap<>();
+  private final Map<BasicBlock, List<Condition>> conditions = new IdentityHashMap<>();
+
+  // Maps each array (modulo aliasing) to the array-length instructions on the array.
+  private final Map<Value, List<ArrayLength>> arrayLengths = new IdentityHashMap<>();
+
+  public ValueRangeOptimization(AppView<?> appView, IRCode code) {
+    this.appView = appView;
+    this.code = code;
+    this.dominatorTree = new DominatorTree(code);
+  }
+
+  public static boolean shouldRun(AppView<?> appView, IRCode code) {
+    return appView.options().enableValueRangeOptimization
+        && !appView.options().debug
+        && code.metadata().mayHaveArrayLength();
+  }
+
+  public void run() {
+    removeRedundantArrayLengths();
+    computeRanges();
+    markArrayGetsInBounds();
+    recordRanges();
+    removeDeadBranches();
+    assert code.isConsistentSSA();
+  }
+
+  private void removeRedundantArrayLengths() {
+    for (BasicBlock block : code.topologicallySortedBlocks()) {
+      InstructionListIterator iterator = block.listIterator(code);
+      while (iterator.hasNext()) {
+        Instruction instruction = iterator.next();
+        if (!instruction.isArrayLength()) {
+          continue;
+        }
+        ArrayLength arrayLength = instruction.asArrayLength();
+        List<ArrayLength> existing =
+            arrayLengths.computeIfAbsent(
+                arrayLength.array().getAliasedValue(), ignore -> new ArrayList<>());
+        ArrayLength dominatingArrayLength = null;
+        for (ArrayLength candidate : existing) {
+          if (dominates(candidate, arrayLength)) {
+            dominatingArrayLength = candidate;
+            break;
+          }
+        }
+        if (dominatingArrayLength != null
+            && arrayLength.outValue() != null
+            && !arrayLength.outValue().hasLocalInfo()) {
+          arrayLength.outValue().replaceUsers(dominatingArrayLength.outValue());
+          iterator.removeOrReplaceByDebugLocalRead();
+        } else if (arrayLength.outValue() != null) {
+          existing.add(arrayLength);
+        }
+      }
+    }
+  }
+
+  private void computeRanges() {
+    List<BasicBlock> blocks = code.topologicallySortedBlocks();
+    boolean changed;
+    do {
+      changed = false;
+      for (BasicBlock block : blocks) {
+        for (Phi phi : block.getPhis()) {
+          if (phi.getTypeLattice().isInt()) {
+            changed |= update(phi, computePhiRange(phi));
+          }
+        }
+        for (Instruction instruction : block.getInstructions()) {
+          Value outValue = instruction.outValue();
+          if (outValue != null && outValue.getTypeLattice().isInt()) {
+            changed |= update(outValue, computeRange(instruction));
+          }
+        }
+      }
+    } while (changed);
+  }
+
+  private boolean update(Value value, LongInterval range) {
+    if (range == null) {
+      return false;
+    }
+    LongInterval previous = ranges.get(value);
+    if (previous == null) {
+      ranges.put(value, range);
+      return true;
+    }
+    long min = Math.min(previous.getMin(), range.getMin());
+    long max = Math.max(previous.getMax(), range.getMax());
+    if (min == previous.getMin() && max == previous.getMax()) {
+      return false;
+    }
+    int updates = numberOfUpdates.merge(value, 1, Integer::sum);
+    if (updates > WIDENING_THRESHOLD) {
+      if (min < previous.getMin()) {
+        min = Integer.MIN_VALUE;
+      }
+      if (max > previous.getMax()) {
+        max = Integer.MAX_VALUE;
+      }
+    }
+    ranges.put(value, new LongInterval(min, max));
+    return true;
+  }
+
+  private LongInterval computePhiRange(Phi phi) {
+    List<BasicBlock> predecessors = phi.getBlock().getPredecessors();
+    LongInterval result = null;
+    for (int i = 0; i < phi.getOperands().size(); i++) {
+      LongInterval operandRange = getRange(phi.getOperand(i), predecessors.get(i));
+      if (operandRange == null) {
+        continue;
+      }
+      result =
+          result == null
+              ? operandRange
+              : new LongInterval(
+                  Math.min(result.getMin(), operandRange.getMin()),
+                  Math.max(result.getMax(), operandRange.getMax()));
+    }
+    return result;
+  }
+
+  private LongInterval computeRange(Instruction instruction) {
+    if (instruction.outValue().hasValueRange()) {
+      return instruction.outValue().getValueRange();
+    }
+    if (instruction.isArrayLength()) {
+      return ARRAY_LENGTH_RANGE;
+    }
+    if (instruction.isArrayGet()) {
+      switch (instruction.asArrayGet().getMemberType()) {
+        case BOOLEAN_OR_BYTE:
+          return new LongInterval(Byte.MIN_VALUE, Byte.MAX_VALUE);
+        case CHAR:
+          return new LongInterval(Character.MIN_VALUE, Character.MAX_VALUE);
+        case SHORT:
+          return new LongInterval(Short.MIN_VALUE, Short.MAX_VALUE);
+        default:
+          return INT_RANGE;
+      }
+    }
+    if (instruction.isAdd() || instruction.isSub() || instruction.isAnd()) {
+      Binop binop = instruction.asBinop();
+      if (binop.getNumericType() != NumericType.INT) {
+        return INT_RANGE;
+      }
+      BasicBlock block = instruction.getBlock();
+      LongInterval left = getRange(binop.leftValue(), block);
+      LongInterval right = getRange(binop.rightValue(), block);
+      if (left == null || right == null) {
+        return null;
+      }
+      if (instruction.isAnd()) {
+        // The result of x & y is non-negative and at most y if y is non-negative.
+        if (left.getMin() >= 0 || right.getMin() >= 0) {
+          long max = Long.MAX_VALUE;
+          if (left.getMin() >= 0) {
+            max = left.getMax();
+          }
+          if (right.getMin() >= 0) {
+            max = Math.min(max, right.getMax());
+          }
+          return new LongInterval(0, max);
+        }
+        return INT_RANGE;
+      }
+      long min;
+      long max;
+      if (instruction.isAdd()) {
+        min = left.getMin() + right.getMin();
+        max = left.getMax() + right.getMax();
+      } else {
+        min = left.getMin() - right.getMax();
+        max = left.getMax() - right.getMin();
+      }
+      if (min < Integer.MIN_VALUE || max > Integer.MAX_VALUE) {
+        // The computation may overflow.
+        return INT_RANGE;
+      }
+      return new LongInterval(min, max);
+    }
+    return INT_RANGE;
+  }
+
+  /**
+   * Returns the range of the given value in the given block, or null if the range of the value
+   * has not been computed yet.
+   */
+  private LongInterval getRange(Value value, BasicBlock block) {
+    LongInterval range = getRange(value);
+    if (range == null) {
+      return null;
+    }
+    long min = range.getMin();
+    long max = range.getMax();
+    for (Condition condition : getConditions(block)) {
+      Type type;
+      LongInterval other;
+      if (condition.left == value) {
+        type = condition.type;
+        other = condition.right == null ? ZERO_RANGE : getRange(condition.right);
+      } else if (condition.right == value) {
+        type = condition.type.forSwappedOperands();
+        other = getRange(condition.left);
+      } else {
+        continue;
+      }
+      if (other == null) {
+        continue;
+      }
+      switch (type) {
+        case EQ:
+          min = Math.max(min, other.getMin());
+          max = Math.min(max, other.getMax());
+          break;
+        case NE:
+          if (other.isSingleValue()) {
+            if (min == other.getSingleValue()) {
+              min++;
+            }
+            if (max == other.getSingleValue()) {
+              max--;
+            }
+          }
+          break;
+        case GE:
+          min = Math.max(min, other.getMin());
+          break;
+        case GT:
+          min = Math.max(min, other.getMin() + 1);
+          break;
+        case LE:
+          max = Math.min(max, other.getMax());
+          break;
+        case LT:
+          max = Math.min(max, other.getMax() - 1);
+          break;
+      }
+    }
+    if (min > max) {
+      // The block is unreachable.
+      return range;
+    }
+    return new LongInterval(min, max);
+  }
+
+  private LongInterval getRange(Value value) {
+    return value.isConstNumber() ? value.getValueRange() : ranges.get(value);
+  }
+
+  /** Returns the conditions that are known to hold when the given block is executed. */
+  private List<Condition> getConditions(BasicBlock block) {
+    List<Condition> result = conditions.get(block);
+    if (result != null) {
+      return result;
+    }
+    result = new ArrayList<>();
+    for (BasicBlock dominator : dominatorTree.dominatorBlocks(block, DominatorTree.Inclusive.YES)) {
+      if (dominator.getPredecessors().size() != 1) {
+        continue;
+      }
+      BasicBlock predecessor = dominator.getPredecessors().get(0);
+      if (!predecessor.exit().isIf()) {
+        continue;
+      }
+      If theIf = predecessor.exit().asIf();
+      if (theIf.getTrueTarget() == theIf.fallthroughBlock()
+          || !theIf.lhs().getTypeLattice().isInt()) {
+        continue;
+      }
+      if (dominator == theIf.getTrueTarget()) {
+        result.add(new Condition(theIf.getType(), theIf));
+      } else if (dominator == theIf.fallthroughBlock()) {
+        result.add(new Condition(theIf.getType().inverted(), theIf));
+      }
+    }
+    conditions.put(block, result);
+    return result;
+  }
+
+  private void markArrayGetsInBounds() {
+    for (BasicBlock block : code.blocks) {
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.isArrayGet() && isInBounds(instruction.asArrayGet())) {
+          instruction.asArrayGet().markInBounds();
+        }
+      }
+    }
+  }
+
+  private boolean isInBounds(ArrayGet arrayGet) {
+    BasicBlock block = arrayGet.getBlock();
+    LongInterval indexRange = getRange(arrayGet.index(), block);
+    if (indexRange == null || indexRange.getMin() < 0) {
+      return false;
+    }
+    Value array = arrayGet.array().getAliasedValue();
+    if (!array.isPhi() && array.definition.isNewArrayEmpty()) {
+      LongInterval sizeRange = getRange(array.definition.asNewArrayEmpty().size(), block);
+      if (sizeRange != null && indexRange.getMax() < sizeRange.getMin()) {
+        return true;
+      }
+    }
+    // An array-length instruction on the array that dominates the array-get instruction
+    // guarantees that the array is non-null.
+    for (ArrayLength arrayLength : arrayLengths.getOrDefault(array, new ArrayList<>())) {
+      if (!dominates(arrayLength, arrayGet)) {
+        continue;
+      }
+      Value length = arrayLength.outValue();
+      LongInterval lengthRange = getRange(length, block);
+      if (lengthRange != null && indexRange.getMax() < lengthRange.getMin()) {
+        return true;
+      }
+      for (Condition condition : getConditions(block)) {
+        if ((condition.left == arrayGet.index()
+                && condition.right == length
+                && condition.type == Type.LT)
+            || (condition.left == length
+                && condition.right == arrayGet.index()
+                && condition.type == Type.GT)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean dominates(Instruction instruction, Instruction other) {
+    BasicBlock block = instruction.getBlock();
+    if (block != other.getBlock()) {
+      // The catch handlers of the block are reached when the instruction throws, in which case
+      // its out-value is not defined.
+      return !block.hasCatchHandlers() && dominatorTree.dominatedBy(other.getBlock(), block);
+    }
+    for (Instruction current : block.getInstructions()) {
+      if (current == instruction) {
+        return true;
+      }
+      if (current == other) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  // Records the ranges on the values for the remaining optimizations on this IR. Since the ranges
+  // are not stored in the code or the optimization info, they are not available to later rounds.
+  private void recordRanges() {
+    ranges.forEach(
+        (value, range) -> {
+          if (!value.hasValueRange()
+              && !range.isSingleValue()
+              && (range.getMin() > Integer.MIN_VALUE || range.getMax() < Integer.MAX_VALUE)) {
+            value.setValueRange(range);
+          }
+        });
+  }
+
+  private void removeDeadBranches() {
+    List<If> deadBranches = new ArrayList<>();
+    List<BasicBlock> liveTargets = new ArrayList<>();
+    for (BasicBlock block : code.blocks) {
+      if (!block.exit().isIf()) {
+        continue;
+      }
+      If theIf = block.exit().asIf();
+      if (theIf.getTrueTarget() == theIf.fallthroughBlock()
+          || !theIf.lhs().getTypeLattice().isInt()) {
+        continue;
+      }
+      LongInterval left = getRange(theIf.lhs(), block);
+      LongInterval right = theIf.isZeroTest() ? ZERO_RANGE : getRange(theIf.rhs(), block);
+      if (left == null || right == null) {
+        continue;
+      }
+      Boolean outcome = evaluate(theIf.getType(), left, right);
+      if (outcome == null) {
+        continue;
+      }
+      BasicBlock target = outcome ? theIf.getTrueTarget() : theIf.fallthroughBlock();
+      BasicBlock deadTarget = outcome ? theIf.fallthroughBlock() : theIf.getTrueTarget();
+      if (deadTarget.getPredecessors().size() == 1) {
+        deadBranches.add(theIf);
+        liveTargets.add(target);
+      }
+    }
+    if (deadBranches.isEmpty()) {
+      return;
+    }
+    for (int i = 0; i < deadBranches.size(); i++) {
+      If theIf = deadBranches.get(i);
+      BasicBlock block = theIf.getBlock();
+      BasicBlock target = liveTargets.get(i);
+      BasicBlock deadTarget =
+          target == theIf.getTrueTarget() ? theIf.fallthroughBlock() : theIf.getTrueTarget();
+      deadTarget.unlinkSinglePredecessorSiblingsAllowed();
+      block.replaceLastInstruction(new Goto(), code);
+      assert block.exit().asGoto().getTarget() == target;
+    }
+    Set<Value> affectedValues = code.removeUnreachableBlocks();
+    if (!affectedValues.isEmpty()) {
+      new TypeAnalysis(appView).narrowing(affectedValues);
+    }
+  }
+
+  /** Returns the outcome of comparing two values in the given ranges, or null if unknown. */
+  private static Boolean evaluate(Type type, LongInterval left, LongInterval right) {
+    switch (type) {
+      case EQ:
+        if (left.isSingleValue() && right.isSingleValue()) {
+          return left.getSingleValue() == right.getSingleValue();
+        }
+        return left.doesntOverlapWith(right) ? false : null;
+      case NE:
+        if (left.isSingleValue() && right.isSingleValue()) {
+          return left.getSingleValue() != right.getSingleValue();
+        }
+        return left.doesntOverlapWith(right) ? true : null;
+      case GE:
+        return evaluateLessThan(right, left, true);
+      case GT:
+        return evaluateLessThan(right, left, false);
+      case LE:
+        return evaluateLessThan(left, right, true);
+      case LT:
+        return evaluateLessThan(left, right, false);
+      default:
+        return null;
+    }
+  }
+
+  private static Boolean evaluateLessThan(
+      LongInterval left, LongInterval right, boolean orEqual) {
+    if (orEqual ? left.getMax() <= right.getMin() : left.getMax() < right.getMin()) {
+      return true;
+    }
+    if (orEqual ? left.getMin() > right.getMax() : left.getMin() >= right.getMax()) {
+      return false;
+    }
+    return null;
+  }
+
+  /** A condition of the form left <type> right, or left <type> 0 if right is null. */
+  private static class Condition {
+
+    private final Type type;
+    private final Value left;
+    private final Value right;
+
+    private Condition(Type type, If theIf) {
+      this.type = type;
+      this.left = theIf.lhs();
+      this.right = theIf.isZeroTest() ? null : theIf.rhs();
+    }
+  }
+}
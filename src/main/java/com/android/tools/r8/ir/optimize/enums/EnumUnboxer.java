@@ -0,0 +1,984 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize.enums;
+
+import com.android.tools.r8.dex.Constants;
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.graph.DexAnnotationElement;
+import com.android.tools.r8.graph.DexAnnotationSet;
+import com.android.tools.r8.graph.DexCallSite;
+import com.android.tools.r8.graph.DexClass;
+import com.android.tools.r8.graph.DexClass.FieldSetter;
+import com.android.tools.r8.graph.DexClass.MethodSetter;
+import com.android.tools.r8.graph.DexEncodedAnnotation;
+import com.android.tools.r8.graph.DexEncodedField;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexField;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexMethodHandle;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.graph.DexProto;
+import com.android.tools.r8.graph.DexString;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.graph.DexValue;
+import com.android.tools.r8.graph.DexValue.DexValueAnnotation;
+import com.android.tools.r8.graph.DexValue.DexValueArray;
+import com.android.tools.r8.graph.DexValue.DexValueEnum;
+import com.android.tools.r8.graph.DexValue.DexValueType;
+import com.android.tools.r8.graph.GraphLense;
+import com.android.tools.r8.graph.MethodAccessFlags;
+import com.android.tools.r8.graph.ParameterAnnotationsList;
+import com.android.tools.r8.graph.UseRegistry;
+import com.android.tools.r8.ir.analysis.type.TypeLatticeElement;
+import com.android.tools.r8.ir.code.BasicBlock;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.code.Instruction;
+import com.android.tools.r8.ir.code.InvokeDirect;
+import com.android.tools.r8.ir.code.InvokeMethod;
+import com.android.tools.r8.ir.code.Phi;
+import com.android.tools.r8.ir.code.StaticPut;
+import com.android.tools.r8.ir.code.Value;
+import com.android.tools.r8.ir.optimize.enums.EnumUnboxingHelperSourceCode.NameSourceCode;
+import com.android.tools.r8.ir.optimize.enums.EnumUnboxingHelperSourceCode.OrdinalSourceCode;
+import com.android.tools.r8.ir.optimize.enums.EnumUnboxingHelperSourceCode.ValuesSourceCode;
+import com.android.tools.r8.ir.optimize.enums.UnboxedEnums.UnboxedEnum;
+import com.android.tools.r8.ir.synthetic.SynthesizedCode;
+import com.android.tools.r8.shaking.AppInfoWithLiveness;
+import com.android.tools.r8.shaking.AppInfoWithLiveness.EnumValueInfo;
+import com.android.tools.r8.utils.MethodSignatureEquivalence;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.google.common.base.Equivalence.Wrapper;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Replaces enum classes whose instances never escape by the int ordinal+1 of the enum constants.
+ *
+ * <p>An enum is a candidate for unboxing if it is a simple enum, i.e., it has no instance fields,
+ * no virtual methods, no interfaces and no constant specific class bodies, and if none of its
+ * members are kept. The code of all methods that refer to a candidate is then analyzed, and the
+ * candidate is discarded if one of its values flows into a context where the identity of the enum
+ * instance may be observed, e.g., a call to a library method such as EnumMap.put(), a field of
+ * another type than the enum type, or a reflective use of the enum class.
+ *
+ * <p>For each unboxed enum, the enum constants, the class initializer, the instance initializers
+ * and the values() and valueOf() methods are removed from the enum class, and static helper
+ * methods that replace ordinal(), name() and values() are added instead. Fields and methods whose
+ * signatures mention an unboxed enum are changed to use int instead, which is recorded in an
+ * {@link EnumUnboxingLens}. The code is rewritten by the {@link EnumUnboxingRewriter} as part of
+ * the lens code rewriting.
+ */
+public class EnumUnboxer {
+
+  private static final MethodSignatureEquivalence equivalence = MethodSignatureEquivalence.get();
+
+  private final AppView<AppInfoWithLiveness> appView;
+  private final DexItemFactory factory;
+
+  private final Map<DexType, Candidate> candidates = new IdentityHashMap<>();
+  private final Set<DexType> discardedCandidates = Sets.newConcurrentHashSet();
+
+  public EnumUnboxer(AppView<AppInfoWithLiveness> appView) {
+    this.appView = appView;
+    this.factory = appView.dexItemFactory();
+  }
+
+  /** Returns true if the given method is the values() method of the given enum type. */
+  static boolean isValuesMethod(DexMethod method, DexType enumType, DexItemFactory factory) {
+    return method.holder == enumType
+        && method.name == factory.valuesMethodName
+        && method.proto.parameters.isEmpty()
+        && method.proto.returnType.isArrayType()
+        && method.proto.returnType.toBaseType(factory) == enumType
+        && method.proto.returnType.getNumberOfLeadingSquareBrackets() == 1;
+  }
+
+  private static boolean isValueOfMethod(
+      DexMethod method, DexType enumType, DexItemFactory factory) {
+    return method.holder == enumType
+        && method.name == factory.valueOfMethodName
+        && method.proto.returnType == enumType
+        && method.proto.parameters.size() == 1
+        && method.proto.parameters.values[0] == factory.stringType;
+  }
+
+  public GraphLense run(ExecutorService executorService) throws ExecutionException {
+    for (DexProgramClass clazz : appView.appInfo().classesWithDeterministicOrder()) {
+      if (clazz.isEnum()) {
+        Candidate candidate = computeCandidate(clazz);
+        if (candidate != null) {
+          candidates.put(clazz.type, candidate);
+        }
+      }
+    }
+    if (candidates.isEmpty()) {
+      return appView.graphLense();
+    }
+
+    analyzeSignaturesAndAnnotations();
+    if (hasCandidates()) {
+      analyzeCode(executorService);
+    }
+    if (hasCandidates()) {
+      discardCandidatesWithSignatureConflicts();
+    }
+    if (!hasCandidates()) {
+      return appView.graphLense();
+    }
+
+    Map<DexType, UnboxedEnum> unboxedEnums = new IdentityHashMap<>();
+    for (Candidate candidate : candidates.values()) {
+      if (isCandidate(candidate.clazz.type)) {
+        unboxedEnums.put(candidate.clazz.type, unboxEnumClass(candidate));
+      }
+    }
+    appView.setUnboxedEnums(new UnboxedEnums(unboxedEnums));
+
+    BiMap<DexField, DexField> fieldMap = HashBiMap.create();
+    BiMap<DexMethod, DexMethod> methodMap = HashBiMap.create();
+    Map<DexProto, DexProto> protoCache = new IdentityHashMap<>();
+    for (DexProgramClass clazz : appView.appInfo().classesWithDeterministicOrder()) {
+      rewriteFields(clazz, clazz.staticFields(), clazz::setStaticField, fieldMap);
+      rewriteFields(clazz, clazz.instanceFields(), clazz::setInstanceField, fieldMap);
+      rewriteMethods(clazz.directMethods(), clazz::setDirectMethod, methodMap, protoCache);
+      rewriteMethods(clazz.virtualMethods(), clazz::setVirtualMethod, methodMap, protoCache);
+    }
+    return new EnumUnboxingLens(fieldMap, methodMap, appView);
+  }
+
+  private boolean hasCandidates() {
+    return discardedCandidates.size() < candidates.size();
+  }
+
+  private boolean isCandidate(DexType type) {
+    return candidates.containsKey(type) && !discardedCandidates.contains(type);
+  }
+
+  private void discard(DexType type) {
+    if (candidates.containsKey(type)) {
+      discardedCandidates.add(type);
+    }
+  }
+
+  private void discardAll(DexProto proto) {
+    discard(proto.returnType.toBaseType(factory));
+    for (DexType parameter : proto.parameters.values) {
+      discard(parameter.toBaseType(factory));
+    }
+  }
+
+  private boolean mentionsCandidate(DexProto proto) {
+    if (isCandidate(proto.returnType.toBaseType(factory))) {
+      return true;
+    }
+    for (DexType parameter : proto.parameters.values) {
+      if (isCandidate(parameter.toBaseType(factory))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean mentionsCandidate(DexMethod method) {
+    return isCandidate(method.holder) || mentionsCandidate(method.proto);
+  }
+
+  private boolean mentionsCandidate(DexField field) {
+    return isCandidate(field.holder) || isCandidate(field.type.toBaseType(factory));
+  }
+
+  private boolean isRemovedMember(DexEncodedField field) {
+    Candidate candidate = candidates.get(field.field.holder);
+    return candidate != null && candidate.removedFields.contains(field);
+  }
+
+  private boolean isRemovedMember(DexEncodedMethod method) {
+    Candidate candidate = candidates.get(method.method.holder);
+    return candidate != null && candidate.removedMethods.contains(method);
+  }
+
+  private DexType getCandidate(Value value) {
+    TypeLatticeElement type = value.getTypeLattice();
+    if (type.isClassType()) {
+      DexType classType = type.asClassTypeLatticeElement().getClassType();
+      if (isCandidate(classType)) {
+        return classType;
+      }
+    }
+    return null;
+  }
+
+  // Candidate selection.
+
+  private Candidate computeCandidate(DexProgramClass clazz) {
+    if (clazz.superType != factory.enumType
+        || !clazz.interfaces.isEmpty()
+        || !clazz.instanceFields().isEmpty()
+        || !clazz.virtualMethods().isEmpty()
+        || !clazz.hasClassInitializer()
+        || appView.appInfo().isPinned(clazz.type)) {
+      return null;
+    }
+    // The values of an enum with constant specific class bodies are not all of the enum type.
+    Map<DexField, EnumValueInfo> valueInfoMap =
+        appView.appInfo().getEnumValueInfoMapFor(clazz.type);
+    if (valueInfoMap == null) {
+      return null;
+    }
+    for (EnumValueInfo valueInfo : valueInfoMap.values()) {
+      if (valueInfo.type != clazz.type) {
+        return null;
+      }
+    }
+
+    Candidate candidate = new Candidate(clazz);
+    for (DexEncodedField field : clazz.staticFields()) {
+      if (appView.appInfo().isPinned(field.field)) {
+        return null;
+      }
+      if (valueInfoMap.containsKey(field.field)) {
+        assert field.field.type == clazz.type;
+      } else if (!field.field.type.isArrayType()
+          || field.field.type.toBaseType(factory) != clazz.type
+          || candidate.valuesField != null) {
+        // Only the enum constants and the field that holds the result of values() can be removed.
+        return null;
+      } else {
+        candidate.valuesField = field;
+      }
+      candidate.removedFields.add(field);
+    }
+
+    for (DexEncodedMethod method : clazz.directMethods()) {
+      if (appView.appInfo().isPinned(method.method)) {
+        return null;
+      }
+      DexMethod reference = method.method;
+      if (method.isClassInitializer()) {
+        if (!computeConstantNames(method, candidate, valueInfoMap)) {
+          return null;
+        }
+      } else if (method.isInstanceInitializer()) {
+        if (!isTrivialEnumConstructor(method, clazz)) {
+          return null;
+        }
+      } else if (method.isStatic()
+          && (isValuesMethod(reference, clazz.type, factory)
+              || isValueOfMethod(reference, clazz.type, factory))) {
+        // Will be replaced by a helper method or removed.
+      } else if (isValuesInitializer(method)) {
+        IRCode code = method.buildIR(appView, clazz.origin);
+        if (code == null || !isSimpleEnumInitializationCode(code, method, clazz)) {
+          return null;
+        }
+      } else if (method.isStatic()) {
+        continue;
+      } else {
+        return null;
+      }
+      candidate.removedMethods.add(method);
+    }
+    if (candidate.names == null) {
+      return null;
+    }
+
+    // The helper methods must not clash with the remaining static methods, also after their
+    // signatures have been rewritten.
+    for (DexEncodedMethod method : clazz.directMethods()) {
+      DexString name = method.method.name;
+      if (!candidate.removedMethods.contains(method)
+          && (name == factory.ordinalMethodName
+              || name == factory.nameMethodName
+              || name == factory.valuesMethodName)) {
+        return null;
+      }
+    }
+    candidate.ordinalMethod =
+        factory.createMethod(
+            clazz.type,
+            factory.createProto(factory.intType, factory.intType),
+            factory.ordinalMethodName);
+    candidate.nameMethod =
+        factory.createMethod(
+            clazz.type,
+            factory.createProto(factory.stringType, factory.intType),
+            factory.nameMethodName);
+    candidate.valuesMethod =
+        factory.createMethod(
+            clazz.type,
+            factory.createProto(factory.createArrayType(1, factory.intType)),
+            factory.valuesMethodName);
+    return candidate;
+  }
+
+  // Finds the name of each enum constant from the class initializer, which must only initialize
+  // the enum constants and the field that holds the values.
+  private boolean computeConstantNames(
+      DexEncodedMethod classInitializer,
+      Candidate candidate,
+      Map<DexField, EnumValueInfo> valueInfoMap) {
+    DexProgramClass clazz = candidate.clazz;
+    IRCode code = classInitializer.buildIR(appView, clazz.origin);
+    if (code == null || !isSimpleEnumInitializationCode(code, classInitializer, clazz)) {
+      return false;
+    }
+    DexString[] names = new DexString[valueInfoMap.size()];
+    for (Instruction instruction : code.instructions()) {
+      if (!instruction.isStaticPut()) {
+        continue;
+      }
+      StaticPut staticPut = instruction.asStaticPut();
+      EnumValueInfo valueInfo = valueInfoMap.get(staticPut.getField());
+      if (valueInfo == null) {
+        continue;
+      }
+      Value value = staticPut.value();
+      if (value.isPhi() || !value.definition.isNewInstance()) {
+        return false;
+      }
+      InvokeDirect constructorCall = null;
+      for (Instruction user : value.uniqueUsers()) {
+        if (user.isInvokeDirect()
+            && factory.isConstructor(user.asInvokeDirect().getInvokedMethod())) {
+          constructorCall = user.asInvokeDirect();
+        }
+      }
+      if (constructorCall == null || constructorCall.arguments().size() != 3) {
+        return false;
+      }
+      Value name = constructorCall.arguments().get(1);
+      if (name.isPhi() || !name.definition.isConstString()) {
+        return false;
+      }
+      if (valueInfo.ordinal < 0
+          || valueInfo.ordinal >= names.length
+          || names[valueInfo.ordinal] != null) {
+        return false;
+      }
+      names[valueInfo.ordinal] = name.definition.asConstString().getValue();
+    }
+    for (DexString name : names) {
+      if (name == null) {
+        return false;
+      }
+    }
+    Map<DexField, Integer> ordinals = new IdentityHashMap<>();
+    valueInfoMap.forEach((field, valueInfo) -> ordinals.put(field, valueInfo.ordinal));
+    candidate.ordinals = ordinals;
+    candidate.names = Arrays.asList(names);
+    return true;
+  }
+
+  // Returns true if the given method is the synthetic $values() method that javac emits for
+  // initializing the $VALUES field.
+  private boolean isValuesInitializer(DexEncodedMethod method) {
+    DexMethod reference = method.method;
+    return method.isStatic()
+        && method.accessFlags.isPrivate()
+        && method.accessFlags.isSynthetic()
+        && reference.proto.parameters.isEmpty()
+        && reference.proto.returnType.isArrayType()
+        && reference.proto.returnType.toBaseType(factory) == reference.holder
+        && reference.proto.returnType.getNumberOfLeadingSquareBrackets() == 1;
+  }
+
+  // Returns true if the given method only creates the enum constants and the array of values.
+  private boolean isSimpleEnumInitializationCode(
+      IRCode code, DexEncodedMethod method, DexProgramClass clazz) {
+    for (Instruction instruction : code.instructions()) {
+      if (instruction.isConstNumber()
+          || instruction.isConstString()
+          || instruction.isNewArrayEmpty()
+          || instruction.isInvokeNewArray()
+          || instruction.isArrayPut()
+          || instruction.isReturn()
+          || instruction.isGoto()
+          || instruction.isDebugInstruction()) {
+        continue;
+      }
+      if (instruction.isNewInstance()) {
+        if (instruction.asNewInstance().clazz != clazz.type) {
+          return false;
+        }
+      } else if (instruction.isInvokeDirect()) {
+        DexMethod invokedMethod = instruction.asInvokeDirect().getInvokedMethod();
+        if (invokedMethod.holder != clazz.type || !factory.isConstructor(invokedMethod)) {
+          return false;
+        }
+      } else if (instruction.isInvokeStatic()) {
+        DexMethod invokedMethod = instruction.asInvokeStatic().getInvokedMethod();
+        DexEncodedMethod definition = clazz.lookupDirectMethod(invokedMethod);
+        if (definition == null || definition == method || !isValuesInitializer(definition)) {
+          return false;
+        }
+      } else if (instruction.isStaticPut() || instruction.isStaticGet()) {
+        DexField field = instruction.asFieldInstruction().getField();
+        if (field.holder != clazz.type) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Returns true if the given constructor only calls Enum.<init>(String, int).
+  private boolean isTrivialEnumConstructor(DexEncodedMethod method, DexProgramClass clazz) {
+    DexProto proto = method.method.proto;
+    if (proto.parameters.size() != 2
+        || proto.parameters.values[0] != factory.stringType
+        || proto.parameters.values[1] != factory.intType) {
+      return false;
+    }
+    IRCode code = method.buildIR(appView, clazz.origin);
+    if (code == null) {
+      return false;
+    }
+    for (Instruction instruction : code.instructions()) {
+      if (instruction.isArgument()
+          || instruction.isReturn()
+          || instruction.isDebugInstruction()) {
+        continue;
+      }
+      if (instruction.isInvokeDirect()) {
+        InvokeDirect invoke = instruction.asInvokeDirect();
+        if (invoke.getInvokedMethod().holder == factory.enumType
+            && factory.isConstructor(invoke.getInvokedMethod())
+            && invoke.getReceiver() == code.getThis()) {
+          continue;
+        }
+      }
+      return false;
+    }
+    return true;
+  }
+
+  // Signature and annotation analysis.
+
+  private void analyzeSignaturesAndAnnotations() {
+    for (DexProgramClass clazz : appView.appInfo().classes()) {
+      for (DexEncodedField field : clazz.fields()) {
+        if (isRemovedMember(field)) {
+          continue;
+        }
+        DexType type = field.field.type;
+        if (type.isArrayType() || appView.appInfo().isPinned(field.field)) {
+          // Arrays of an unboxed enum type are not supported.
+          discard(type.toBaseType(factory));
+        }
+      }
+      for (DexEncodedMethod method : clazz.methods()) {
+        if (isRemovedMember(method)) {
+          continue;
+        }
+        DexProto proto = method.method.proto;
+        if (appView.appInfo().isPinned(method.method)
+            || method.accessFlags.isNative()
+            || clazz.accessFlags.isAnnotation()) {
+          discardAll(proto);
+          continue;
+        }
+        if (proto.returnType.isArrayType()) {
+          discard(proto.returnType.toBaseType(factory));
+        }
+        for (DexType parameter : proto.parameters.values) {
+          if (parameter.isArrayType()) {
+            discard(parameter.toBaseType(factory));
+          }
+        }
+      }
+      clazz.forEachAnnotation(annotation -> analyzeAnnotation(annotation.annotation));
+    }
+  }
+
+  private void analyzeAnnotation(DexEncodedAnnotation annotation) {
+    discard(annotation.type);
+    for (DexAnnotationElement element : annotation.elements) {
+      analyzeAnnotationValue(element.value);
+    }
+  }
+
+  private void analyzeAnnotationValue(DexValue value) {
+    if (value instanceof DexValueEnum) {
+      discard(((DexValueEnum) value).value.holder);
+    } else if (value instanceof DexValueType) {
+      discard(((DexValueType) value).value.toBaseType(factory));
+    } else if (value instanceof DexValueArray) {
+      for (DexValue element : ((DexValueArray) value).getValues()) {
+        analyzeAnnotationValue(element);
+      }
+    } else if (value instanceof DexValueAnnotation) {
+      analyzeAnnotation(((DexValueAnnotation) value).value);
+    }
+  }
+
+  // Code analysis.
+
+  private void analyzeCode(ExecutorService executorService) throws ExecutionException {
+    List<Future<?>> futures = new ArrayList<>();
+    for (DexProgramClass clazz : appView.appInfo().classes()) {
+      futures.add(
+          executorService.submit(
+              () -> {
+                for (DexEncodedMethod method : clazz.methods()) {
+                  if (method.hasCode() && !isRemovedMember(method)) {
+                    analyzeMethod(method, clazz);
+                  }
+                }
+              }));
+    }
+    ThreadUtils.awaitFutures(futures);
+  }
+
+  private void analyzeMethod(DexEncodedMethod method, DexProgramClass clazz) {
+    CandidateReferenceCollector collector = new CandidateReferenceCollector();
+    method.registerCodeReferences(collector);
+    if (!collector.hasCandidateReferences() && !mentionsCandidate(method.method.proto)) {
+      return;
+    }
+    IRCode code = method.buildIR(appView, clazz.origin);
+    if (code == null) {
+      return;
+    }
+    for (BasicBlock block : code.blocks) {
+      for (Phi phi : block.getPhis()) {
+        analyzeValue(phi, method);
+      }
+      for (Instruction instruction : block.getInstructions()) {
+        if (instruction.isInvokeStatic()) {
+          DexMethod invokedMethod = instruction.asInvokeStatic().getInvokedMethod();
+          if (isCandidate(invokedMethod.holder)) {
+            if (isValuesMethod(invokedMethod, invokedMethod.holder, factory)) {
+              analyzeValuesArray(instruction.outValue(), invokedMethod.holder);
+            } else if (isValueOfMethod(invokedMethod, invokedMethod.holder, factory)) {
+              discard(invokedMethod.holder);
+            }
+          }
+        }
+        if (instruction.outValue() != null) {
+          analyzeValue(instruction.outValue(), method);
+        }
+      }
+    }
+  }
+
+  // The result of values() can only be used for reading the enum values and the number of values.
+  private void analyzeValuesArray(Value array, DexType enumType) {
+    if (array == null) {
+      return;
+    }
+    if (array.numberOfPhiUsers() > 0) {
+      discard(enumType);
+      return;
+    }
+    for (Instruction user : array.uniqueUsers()) {
+      if (user.isArrayGet() && user.asArrayGet().array() == array) {
+        continue;
+      }
+      if (user.isArrayLength() || user.isDebugInstruction()) {
+        continue;
+      }
+      discard(enumType);
+      return;
+    }
+  }
+
+  private void analyzeValue(Value value, DexEncodedMethod context) {
+    DexType enumType = getCandidate(value);
+    if (enumType == null) {
+      return;
+    }
+    for (Phi phi : value.uniquePhiUsers()) {
+      if (getCandidate(phi) != enumType) {
+        discard(enumType);
+        return;
+      }
+    }
+    for (Instruction user : value.uniqueUsers()) {
+      if (!isUnboxableUse(user, value, enumType, context)) {
+        discard(enumType);
+        return;
+      }
+    }
+  }
+
+  private boolean isUnboxableUse(
+      Instruction user, Value value, DexType enumType, DexEncodedMethod context) {
+    if (user.isIf()) {
+      for (Value operand : user.inValues()) {
+        if (getCandidate(operand) != enumType && !operand.getTypeLattice().isNullType()) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (user.isReturn()) {
+      return context.method.proto.returnType == enumType;
+    }
+    if (user.isStaticPut()) {
+      return user.asStaticPut().getField().type == enumType;
+    }
+    if (user.isInstancePut()) {
+      return user.asInstancePut().object() != value
+          && user.asInstancePut().getField().type == enumType;
+    }
+    if (user.isInvokeMethod() && !user.isInvokePolymorphic()) {
+      InvokeMethod invoke = user.asInvokeMethod();
+      DexMethod invokedMethod = invoke.getInvokedMethod();
+      List<Value> arguments = invoke.arguments();
+      int offset = arguments.size() - invokedMethod.proto.parameters.size();
+      for (int i = 0; i < arguments.size(); i++) {
+        if (arguments.get(i) != value) {
+          continue;
+        }
+        if (i < offset) {
+          // The enum value is the receiver, which is only allowed for ordinal(), name() and
+          // toString(), since the enum has no virtual methods.
+          if (!invoke.isInvokeVirtual()
+              || !invokedMethod.proto.parameters.isEmpty()
+              || !isUnboxableEnumMethod(invokedMethod, enumType)) {
+            return false;
+          }
+        } else if (invokedMethod.proto.parameters.values[i - offset] != enumType) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return user.isDebugInstruction();
+  }
+
+  private boolean isUnboxableEnumMethod(DexMethod method, DexType enumType) {
+    if (method.name == factory.ordinalMethodName) {
+      return method.holder == enumType || method.holder == factory.enumType;
+    }
+    if (method.name == factory.nameMethodName) {
+      return method.holder == enumType || method.holder == factory.enumType;
+    }
+    if (method.name == factory.toStringMethodName) {
+      return method.holder == enumType
+          || method.holder == factory.enumType
+          || method.holder == factory.objectType;
+    }
+    return false;
+  }
+
+  // Finds the candidates that are referenced from the code of a method, and discards the
+  // candidates that are used in a way that cannot be rewritten, such as const-class or check-cast
+  // instructions, instance creation, and method handles.
+  private class CandidateReferenceCollector extends UseRegistry {
+
+    private boolean hasCandidateReferences = false;
+
+    CandidateReferenceCollector() {
+      super(factory);
+    }
+
+    boolean hasCandidateReferences() {
+      return hasCandidateReferences;
+    }
+
+    private boolean registerMethod(DexMethod method) {
+      hasCandidateReferences |= mentionsCandidate(method);
+      return true;
+    }
+
+    private boolean registerField(DexField field) {
+      hasCandidateReferences |= mentionsCandidate(field);
+      return true;
+    }
+
+    @Override
+    public boolean registerInvokeVirtual(DexMethod method) {
+      return registerMethod(method);
+    }
+
+    @Override
+    public boolean registerInvokeDirect(DexMethod method) {
+      return registerMethod(method);
+    }
+
+    @Override
+    public boolean registerInvokeStatic(DexMethod method) {
+      return registerMethod(method);
+    }
+
+    @Override
+    public boolean registerInvokeInterface(DexMethod method) {
+      return registerMethod(method);
+    }
+
+    @Override
+    public boolean registerInvokeSuper(DexMethod method) {
+      return registerMethod(method);
+    }
+
+    @Override
+    public boolean registerInstanceFieldWrite(DexField field) {
+      return registerField(field);
+    }
+
+    @Override
+    public boolean registerInstanceFieldRead(DexField field) {
+      return registerField(field);
+    }
+
+    @Override
+    public boolean registerNewInstance(DexType type) {
+      discard(type);
+      return true;
+    }
+
+    @Override
+    public boolean registerStaticFieldRead(DexField field) {
+      Candidate candidate = candidates.get(field.holder);
+      if (candidate != null && !candidate.isEnumConstant(field)) {
+        discard(field.holder);
+      }
+      return registerField(field);
+    }
+
+    @Override
+    public boolean registerStaticFieldWrite(DexField field) {
+      discard(field.holder);
+      return registerField(field);
+    }
+
+    @Override
+    public boolean registerTypeReference(DexType type) {
+      discard(type.toBaseType(factory));
+      return true;
+    }
+
+    @Override
+    public void registerMethodHandle(DexMethodHandle methodHandle, MethodHandleUse use) {
+      if (methodHandle.isMethodHandle()) {
+        DexMethod method = methodHandle.asMethod();
+        discard(method.holder);
+        discardAll(method.proto);
+      } else {
+        DexField field = methodHandle.asField();
+        discard(field.holder);
+        discard(field.type.toBaseType(factory));
+      }
+      super.registerMethodHandle(methodHandle, use);
+    }
+
+    @Override
+    public void registerCallSite(DexCallSite callSite) {
+      discardAll(callSite.methodProto);
+      super.registerCallSite(callSite);
+    }
+  }
+
+  // Signature rewriting.
+
+  private DexType rewriteType(DexType type) {
+    return isCandidate(type) ? factory.intType : type;
+  }
+
+  private DexProto rewriteProto(DexProto proto, Map<DexProto, DexProto> cache) {
+    return factory.applyClassMappingToProto(proto, this::rewriteType, cache);
+  }
+
+  // Discards the candidates whose unboxing would lead to two methods with the same signature in
+  // the same class, or to a virtual method that accidentally overrides another method.
+  private void discardCandidatesWithSignatureConflicts() {
+    Set<Wrapper<DexMethod>> existingSignatures = new HashSet<>();
+    for (DexProgramClass clazz : appView.appInfo().classes()) {
+      for (DexEncodedMethod method : clazz.methods()) {
+        existingSignatures.add(equivalence.wrap(method.method));
+      }
+    }
+    Map<DexProto, DexProto> protoCache = new IdentityHashMap<>();
+    while (hasCandidates()) {
+      DexProto conflict = findSignatureConflict(existingSignatures, protoCache);
+      if (conflict == null) {
+        break;
+      }
+      discardAll(conflict);
+      // The rewritten prototypes depend on the remaining candidates.
+      protoCache.clear();
+    }
+  }
+
+  // Returns the prototype of a method whose rewritten signature conflicts with another method, or
+  // null if there are no conflicts.
+  private DexProto findSignatureConflict(
+      Set<Wrapper<DexMethod>> existingSignatures, Map<DexProto, DexProto> protoCache) {
+    for (DexProgramClass clazz : appView.appInfo().classesWithDeterministicOrder()) {
+      Set<DexMethod> newSignatures = Sets.newIdentityHashSet();
+      for (DexEncodedMethod method : clazz.methods()) {
+        if (isRemovedMember(method)) {
+          continue;
+        }
+        DexProto newProto = rewriteProto(method.method.proto, protoCache);
+        if (newProto == method.method.proto) {
+          continue;
+        }
+        DexMethod newMethod =
+            factory.createMethod(method.method.holder, newProto, method.method.name);
+        if (clazz.lookupMethod(newMethod) != null
+            || !newSignatures.add(newMethod)
+            || (method.isVirtualMethod()
+                && isVirtualSignatureInUse(clazz, newMethod, existingSignatures))) {
+          return method.method.proto;
+        }
+      }
+    }
+    return null;
+  }
+
+  private boolean isVirtualSignatureInUse(
+      DexClass clazz, DexMethod method, Set<Wrapper<DexMethod>> existingSignatures) {
+    if (existingSignatures.contains(equivalence.wrap(method))) {
+      return true;
+    }
+    if (clazz.superType != null
+        && appView.appInfo().resolveMethod(clazz.superType, method).asResultOfResolve() != null) {
+      return true;
+    }
+    for (DexType iface : clazz.interfaces.values) {
+      if (appView.appInfo().resolveMethod(iface, method).asResultOfResolve() != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void rewriteFields(
+      DexProgramClass clazz,
+      List<DexEncodedField> fields,
+      FieldSetter setter,
+      BiMap<DexField, DexField> fieldMap) {
+    for (int i = 0; i < fields.size(); i++) {
+      DexEncodedField field = fields.get(i);
+      if (!isCandidate(field.field.type)) {
+        continue;
+      }
+      DexField newField = factory.createField(clazz.type, factory.intType, field.field.name);
+      DexEncodedField newEncodedField = field.toTypeSubstitutedField(newField);
+      if (newEncodedField.isStatic() && newEncodedField.hasExplicitStaticValue()) {
+        // The only possible value of a field of an enum type is null.
+        newEncodedField.setStaticValue(DexValue.defaultForType(factory.intType));
+      }
+      setter.setField(i, newEncodedField);
+      fieldMap.put(field.field, newField);
+    }
+  }
+
+  private void rewriteMethods(
+      List<DexEncodedMethod> methods,
+      MethodSetter setter,
+      BiMap<DexMethod, DexMethod> methodMap,
+      Map<DexProto, DexProto> protoCache) {
+    for (int i = 0; i < methods.size(); i++) {
+      DexEncodedMethod method = methods.get(i);
+      DexProto newProto = rewriteProto(method.method.proto, protoCache);
+      if (newProto == method.method.proto) {
+        continue;
+      }
+      DexMethod newMethod =
+          factory.createMethod(method.method.holder, newProto, method.method.name);
+      setter.setMethod(i, method.toTypeSubstitutedMethod(newMethod));
+      methodMap.put(method.method, newMethod);
+    }
+  }
+
+  // Removes the enum constants and the enum specific methods from the enum class, and adds the
+  // helper methods that replace ordinal(), name() and values().
+  private UnboxedEnum unboxEnumClass(Candidate candidate) {
+    DexProgramClass clazz = candidate.clazz;
+    clazz.setStaticFields(DexEncodedField.EMPTY_ARRAY);
+
+    List<DexEncodedMethod> directMethods = new ArrayList<>();
+    for (DexEncodedMethod method : clazz.directMethods()) {
+      if (!candidate.removedMethods.contains(method)) {
+        directMethods.add(method);
+      }
+    }
+    List<DexString> names = candidate.names;
+    int numberOfConstants = names.size();
+    directMethods.add(
+        createHelperMethod(
+            candidate.ordinalMethod,
+            new SynthesizedCode(
+                callerPosition -> new OrdinalSourceCode(candidate.ordinalMethod, callerPosition),
+                registry -> {})));
+    directMethods.add(
+        createHelperMethod(
+            candidate.nameMethod,
+            new SynthesizedCode(
+                callerPosition -> new NameSourceCode(candidate.nameMethod, names, callerPosition),
+                registry -> {})));
+    directMethods.add(
+        createHelperMethod(
+            candidate.valuesMethod,
+            new SynthesizedCode(
+                callerPosition ->
+                    new ValuesSourceCode(
+                        candidate.valuesMethod, numberOfConstants, callerPosition),
+                registry -> {})));
+    clazz.setDirectMethods(directMethods.toArray(DexEncodedMethod.EMPTY_ARRAY));
+
+    // The class is no longer an enum, and its generic signature refers to java.lang.Enum.
+    clazz.accessFlags.unsetEnum();
+    clazz.superType = factory.objectType;
+    clazz.annotations = clazz.annotations.getWithout(factory.annotationSignature);
+
+    return new UnboxedEnum(
+        clazz.type,
+        candidate.ordinals,
+        names,
+        candidate.ordinalMethod,
+        candidate.nameMethod,
+        candidate.valuesMethod);
+  }
+
+  private DexEncodedMethod createHelperMethod(DexMethod method, SynthesizedCode code) {
+    return new DexEncodedMethod(
+        method,
+        MethodAccessFlags.fromSharedAccessFlags(
+            Constants.ACC_PUBLIC | Constants.ACC_STATIC | Constants.ACC_SYNTHETIC, false),
+        DexAnnotationSet.empty(),
+        ParameterAnnotationsList.empty(),
+        code);
+  }
+
+  private static class Candidate {
+
+    final DexProgramClass clazz;
+    final Set<DexEncodedField> removedFields = Sets.newIdentityHashSet();
+    final Set<DexEncodedMethod> removedMethods = Sets.newIdentityHashSet();
+
+    DexEncodedField valuesField;
+    Map<DexField, Integer> ordinals;
+    List<DexString> names;
+
+    DexMethod ordinalMethod;
+    DexMethod nameMethod;
+    DexMethod valuesMethod;
+
+    Candidate(DexProgramClass clazz) {
+      this.clazz = clazz;
+    }
+
+    boolean isEnumConstant(DexField field) {
+      return ordinals != null && ordinals.containsKey(field);
+    }
+  }
+}
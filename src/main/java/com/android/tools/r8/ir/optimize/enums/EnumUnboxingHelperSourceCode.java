@@ -0,0 +1,136 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize.enums;
+
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexString;
+import com.android.tools.r8.ir.analysis.type.TypeLatticeElement;
+import com.android.tools.r8.ir.code.MemberType;
+import com.android.tools.r8.ir.code.NumericType;
+import com.android.tools.r8.ir.code.Position;
+import com.android.tools.r8.ir.code.ValueType;
+import com.android.tools.r8.ir.synthetic.SyntheticSourceCode;
+import java.util.List;
+
+/**
+ * Source code of the static methods that replace Enum.ordinal(), Enum.name() and the values()
+ * method of an unboxed enum. Similar to the original methods, ordinal() and name() throw a
+ * NullPointerException when applied to the value that represents null.
+ */
+abstract class EnumUnboxingHelperSourceCode extends SyntheticSourceCode {
+
+  EnumUnboxingHelperSourceCode(DexMethod method, Position callerPosition) {
+    super(null, method, callerPosition);
+  }
+
+  void addThrowNull() {
+    int nullRegister = nextRegister(ValueType.OBJECT);
+    add(builder -> builder.addNullConst(nullRegister));
+    add(builder -> builder.addThrow(nullRegister), endsBlock);
+  }
+
+  // static int ordinal(int value) {
+  //   if (value == 0) throw null;
+  //   return value - 1;
+  // }
+  static class OrdinalSourceCode extends EnumUnboxingHelperSourceCode {
+
+    OrdinalSourceCode(DexMethod method, Position callerPosition) {
+      super(method, callerPosition);
+    }
+
+    @Override
+    protected void prepareInstructions() {
+      int valueRegister = getParamRegister(0);
+      int[] keys = new int[] {0};
+      int[] offsets = new int[1];
+      int[] fallthrough = new int[1];
+      int switchIndex = nextInstructionIndex();
+      add(
+          builder -> builder.addSwitch(valueRegister, keys, fallthrough[0], offsets),
+          builder -> endsSwitch(builder, switchIndex, fallthrough[0], offsets));
+
+      fallthrough[0] = nextInstructionIndex();
+      int ordinalRegister = nextRegister(ValueType.INT);
+      add(builder -> builder.addAddLiteral(NumericType.INT, ordinalRegister, valueRegister, -1));
+      add(builder -> builder.addReturn(ordinalRegister), endsBlock);
+
+      offsets[0] = nextInstructionIndex();
+      addThrowNull();
+    }
+  }
+
+  // static String name(int value) {
+  //   switch (value) {
+  //     case 1: return "FIRST";
+  //     ...
+  //     default: throw null;
+  //   }
+  // }
+  static class NameSourceCode extends EnumUnboxingHelperSourceCode {
+
+    private final List<DexString> names;
+
+    NameSourceCode(DexMethod method, List<DexString> names, Position callerPosition) {
+      super(method, callerPosition);
+      this.names = names;
+    }
+
+    @Override
+    protected void prepareInstructions() {
+      int valueRegister = getParamRegister(0);
+      int[] keys = new int[names.size()];
+      int[] offsets = new int[names.size()];
+      int[] fallthrough = new int[1];
+      int switchIndex = nextInstructionIndex();
+      add(
+          builder -> builder.addSwitch(valueRegister, keys, fallthrough[0], offsets),
+          builder -> endsSwitch(builder, switchIndex, fallthrough[0], offsets));
+
+      fallthrough[0] = nextInstructionIndex();
+      addThrowNull();
+
+      int nameRegister = nextRegister(ValueType.OBJECT);
+      for (int i = 0; i < names.size(); i++) {
+        DexString name = names.get(i);
+        keys[i] = i + 1;
+        offsets[i] = nextInstructionIndex();
+        add(builder -> builder.addConstString(nameRegister, name));
+        add(builder -> builder.addReturn(nameRegister), endsBlock);
+      }
+    }
+  }
+
+  // static int[] values() {
+  //   return new int[] { 1, 2, ... };
+  // }
+  static class ValuesSourceCode extends EnumUnboxingHelperSourceCode {
+
+    private final int numberOfConstants;
+
+    ValuesSourceCode(DexMethod method, int numberOfConstants, Position callerPosition) {
+      super(method, callerPosition);
+      this.numberOfConstants = numberOfConstants;
+    }
+
+    @Override
+    protected void prepareInstructions() {
+      int sizeRegister = nextRegister(ValueType.INT);
+      int arrayRegister = nextRegister(ValueType.OBJECT);
+      int indexRegister = nextRegister(ValueType.INT);
+      int valueRegister = nextRegister(ValueType.INT);
+      add(builder -> builder.addConst(TypeLatticeElement.INT, sizeRegister, numberOfConstants));
+      add(builder -> builder.addNewArrayEmpty(arrayRegister, sizeRegister, proto.returnType));
+      for (int i = 0; i < numberOfConstants; i++) {
+        int ordinal = i;
+        add(builder -> builder.addConst(TypeLatticeElement.INT, indexRegister, ordinal));
+        add(builder -> builder.addConst(TypeLatticeElement.INT, valueRegister, ordinal + 1));
+        add(
+            builder ->
+                builder.addArrayPut(MemberType.INT, valueRegister, arrayRegister, indexRegister));
+      }
+      add(builder -> builder.addReturn(arrayRegister), endsBlock);
+    }
+  }
+}
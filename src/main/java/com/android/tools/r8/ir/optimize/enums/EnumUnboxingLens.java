@@ -0,0 +1,48 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize.enums;
+
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.graph.DexField;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.GraphLense.NestedGraphLense;
+import com.android.tools.r8.graph.GraphLense.RewrittenPrototypeDescription;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Maps the fields and methods whose signature mention an unboxed enum type to the corresponding
+ * fields and methods where the enum type has been replaced by int.
+ *
+ * <p>The enum types themselves are not mapped, since an enum class remains in the program as the
+ * holder of the synthesized helper methods. Instead, the {@link EnumUnboxingRewriter} changes the
+ * type of all values of an unboxed enum type to int when the code of a method is rewritten.
+ */
+class EnumUnboxingLens extends NestedGraphLense {
+
+  EnumUnboxingLens(
+      BiMap<DexField, DexField> fieldMap,
+      BiMap<DexMethod, DexMethod> methodMap,
+      AppView<?> appView) {
+    super(
+        ImmutableMap.of(),
+        methodMap,
+        fieldMap,
+        fieldMap.inverse(),
+        methodMap.inverse(),
+        appView.graphLense(),
+        appView.dexItemFactory());
+  }
+
+  @Override
+  public RewrittenPrototypeDescription lookupPrototypeChanges(DexMethod method) {
+    DexMethod originalMethod = originalMethodSignatures.getOrDefault(method, method);
+    RewrittenPrototypeDescription result = previousLense.lookupPrototypeChanges(originalMethod);
+    if (originalMethod != method) {
+      // The code of the method still uses the enum types until it has been rewritten.
+      result = result.withProtoBeforeEnumUnboxing(originalMethod.proto);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,218 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize.enums;
+
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexField;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.ir.analysis.type.Nullability;
+import com.android.tools.r8.ir.analysis.type.TypeLatticeElement;
+import com.android.tools.r8.ir.code.ArrayGet;
+import com.android.tools.r8.ir.code.BasicBlock;
+import com.android.tools.r8.ir.code.ConstNumber;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.code.Instruction;
+import com.android.tools.r8.ir.code.InstructionListIterator;
+import com.android.tools.r8.ir.code.InvokeMethod;
+import com.android.tools.r8.ir.code.InvokeStatic;
+import com.android.tools.r8.ir.code.MemberType;
+import com.android.tools.r8.ir.code.Phi;
+import com.android.tools.r8.ir.code.Value;
+import com.android.tools.r8.ir.optimize.enums.UnboxedEnums.UnboxedEnum;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites the code of a method, such that all values of an unboxed enum type are represented by
+ * ints, as described in {@link UnboxedEnums}.
+ *
+ * <p>This runs as part of the lens code rewriting, after field and method references have been
+ * mapped by the {@link EnumUnboxingLens}. The {@link EnumUnboxer} has already verified that all
+ * uses of an unboxed enum can be rewritten by this class.
+ */
+public class EnumUnboxingRewriter {
+
+  private final AppView<?> appView;
+  private final DexItemFactory factory;
+  private final UnboxedEnums unboxedEnums;
+
+  public EnumUnboxingRewriter(AppView<?> appView) {
+    this.appView = appView;
+    this.factory = appView.dexItemFactory();
+    this.unboxedEnums = appView.unboxedEnums();
+  }
+
+  public void rewrite(IRCode code, DexEncodedMethod method) {
+    assert !unboxedEnums.isEmpty();
+
+    // Find the null constants that are used as a value of an unboxed enum type before the types of
+    // the enum values are changed.
+    Set<Value> nullValuesToRetype = Sets.newIdentityHashSet();
+    for (Instruction instruction : code.instructions()) {
+      Value outValue = instruction.outValue();
+      if (outValue != null
+          && outValue.getTypeLattice().isNullType()
+          && isUsedAsUnboxedEnum(outValue, method)) {
+        assert instruction.isConstNumber();
+        nullValuesToRetype.add(outValue);
+      }
+    }
+
+    InstructionListIterator iterator = code.instructionListIterator();
+    while (iterator.hasNext()) {
+      Instruction current = iterator.next();
+      if (current.isStaticGet()) {
+        DexField field = current.asStaticGet().getField();
+        UnboxedEnum unboxedEnum = unboxedEnums.get(field.holder);
+        if (unboxedEnum != null) {
+          assert unboxedEnum.isEnumConstant(field);
+          iterator.replaceCurrentInstruction(
+              new ConstNumber(
+                  code.createValue(TypeLatticeElement.INT), unboxedEnum.getUnboxedValue(field)));
+        }
+      } else if (current.isInvokeMethod()) {
+        InvokeMethod invoke = current.asInvokeMethod();
+        DexMethod invokedMethod = invoke.getInvokedMethod();
+        if (invoke.isInvokeStatic()) {
+          UnboxedEnum unboxedEnum = unboxedEnums.get(invokedMethod.holder);
+          if (unboxedEnum != null
+              && EnumUnboxer.isValuesMethod(invokedMethod, unboxedEnum.type, factory)) {
+            // A call to the values() method of the enum, which has been removed.
+            DexType intArrayType = unboxedEnum.valuesMethod.proto.returnType;
+            Value newOutValue =
+                invoke.outValue() != null
+                    ? code.createValue(
+                        TypeLatticeElement.fromDexType(
+                            intArrayType, Nullability.definitelyNotNull(), appView))
+                    : null;
+            iterator.replaceCurrentInstruction(
+                new InvokeStatic(unboxedEnum.valuesMethod, newOutValue, ImmutableList.of()));
+          }
+        } else if (invoke.isInvokeMethodWithReceiver()) {
+          UnboxedEnum unboxedEnum =
+              getUnboxedEnum(invoke.asInvokeMethodWithReceiver().getReceiver());
+          if (unboxedEnum != null) {
+            // A call to ordinal(), name() or toString() on an enum value.
+            assert invokedMethod.proto.parameters.isEmpty();
+            DexMethod replacement;
+            if (invokedMethod.name == factory.ordinalMethodName) {
+              replacement = unboxedEnum.ordinalMethod;
+            } else {
+              assert invokedMethod.name == factory.nameMethodName
+                  || invokedMethod.name == factory.toStringMethodName;
+              replacement = unboxedEnum.nameMethod;
+            }
+            Value newOutValue =
+                invoke.outValue() != null
+                    ? code.createValue(invoke.outValue().getTypeLattice())
+                    : null;
+            iterator.replaceCurrentInstruction(
+                new InvokeStatic(
+                    replacement,
+                    newOutValue,
+                    ImmutableList.of(invoke.asInvokeMethodWithReceiver().getReceiver())));
+          }
+        }
+      } else if (current.isArrayGet()) {
+        ArrayGet arrayGet = current.asArrayGet();
+        if (arrayGet.getMemberType() == MemberType.OBJECT && isValuesArray(arrayGet.array())) {
+          // A read from the array returned by the values() method of the enum.
+          iterator.replaceCurrentInstruction(
+              new ArrayGet(
+                  MemberType.INT,
+                  code.createValue(TypeLatticeElement.INT),
+                  arrayGet.array(),
+                  arrayGet.index()));
+        }
+      }
+    }
+
+    // Finally change the type of all values of an unboxed enum type to int.
+    for (BasicBlock block : code.blocks) {
+      for (Phi phi : block.getPhis()) {
+        if (getUnboxedEnum(phi) != null) {
+          phi.setTypeLattice(TypeLatticeElement.INT);
+        }
+      }
+      for (Instruction instruction : block.getInstructions()) {
+        Value outValue = instruction.outValue();
+        if (outValue != null
+            && (getUnboxedEnum(outValue) != null || nullValuesToRetype.contains(outValue))) {
+          outValue.setTypeLattice(TypeLatticeElement.INT);
+        }
+      }
+    }
+    assert code.isConsistentSSA();
+  }
+
+  private UnboxedEnum getUnboxedEnum(Value value) {
+    TypeLatticeElement type = value.getTypeLattice();
+    if (type.isClassType()) {
+      return unboxedEnums.get(type.asClassTypeLatticeElement().getClassType());
+    }
+    return null;
+  }
+
+  // Returns true if the given value is the result of a call to values() on an unboxed enum, either
+  // before or after the call has been rewritten.
+  private boolean isValuesArray(Value value) {
+    if (value.isPhi() || !value.definition.isInvokeStatic()) {
+      return false;
+    }
+    DexMethod invokedMethod = value.definition.asInvokeStatic().getInvokedMethod();
+    UnboxedEnum unboxedEnum = unboxedEnums.get(invokedMethod.holder);
+    return unboxedEnum != null
+        && (invokedMethod == unboxedEnum.valuesMethod
+            || EnumUnboxer.isValuesMethod(invokedMethod, unboxedEnum.type, factory));
+  }
+
+  // Returns true if the given null value flows into a context where an int is expected. Since the
+  // code did type check prior to enum unboxing, this is only the case if the null value is used as
+  // a value of an unboxed enum type.
+  private boolean isUsedAsUnboxedEnum(Value value, DexEncodedMethod method) {
+    for (Phi phi : value.uniquePhiUsers()) {
+      if (getUnboxedEnum(phi) != null) {
+        return true;
+      }
+    }
+    for (Instruction user : value.uniqueUsers()) {
+      if (user.isIf()) {
+        for (Value operand : user.inValues()) {
+          if (getUnboxedEnum(operand) != null) {
+            return true;
+          }
+        }
+      } else if (user.isReturn()) {
+        if (method.method.proto.returnType.isIntType()) {
+          return true;
+        }
+      } else if (user.isStaticPut()) {
+        if (user.asStaticPut().getField().type.isIntType()) {
+          return true;
+        }
+      } else if (user.isInstancePut()) {
+        if (user.asInstancePut().value() == value
+            && user.asInstancePut().getField().type.isIntType()) {
+          return true;
+        }
+      } else if (user.isInvokeMethod()) {
+        InvokeMethod invoke = user.asInvokeMethod();
+        DexType[] parameters = invoke.getInvokedMethod().proto.parameters.values;
+        List<Value> arguments = invoke.arguments();
+        int offset = arguments.size() - parameters.length;
+        for (int i = offset; i < arguments.size(); i++) {
+          if (arguments.get(i) == value && parameters[i - offset].isIntType()) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize.enums;
+
+import com.android.tools.r8.graph.DexField;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexString;
+import com.android.tools.r8.graph.DexType;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The enum classes that have been unboxed by the {@link EnumUnboxer}.
+ *
+ * <p>A value of an unboxed enum type is represented by the int ordinal+1 of the enum constant, such
+ * that null is represented by 0.
+ */
+public class UnboxedEnums {
+
+  private static final UnboxedEnums EMPTY = new UnboxedEnums(ImmutableMap.of());
+
+  private final Map<DexType, UnboxedEnum> unboxedEnums;
+
+  UnboxedEnums(Map<DexType, UnboxedEnum> unboxedEnums) {
+    this.unboxedEnums = unboxedEnums;
+  }
+
+  public static UnboxedEnums empty() {
+    return EMPTY;
+  }
+
+  public boolean isEmpty() {
+    return unboxedEnums.isEmpty();
+  }
+
+  public boolean isUnboxedEnum(DexType type) {
+    return unboxedEnums.containsKey(type);
+  }
+
+  public UnboxedEnum get(DexType type) {
+    return unboxedEnums.get(type);
+  }
+
+  public Set<DexType> getTypes() {
+    return unboxedEnums.keySet();
+  }
+
+  /** Returns true if the given method is the synthesized replacement of Enum.ordinal(). */
+  public boolean isOrdinalMethod(DexMethod method) {
+    UnboxedEnum unboxedEnum = unboxedEnums.get(method.holder);
+    return unboxedEnum != null && unboxedEnum.ordinalMethod == method;
+  }
+
+  public static class UnboxedEnum {
+
+    public final DexType type;
+    // The ordinal of each enum constant.
+    private final Map<DexField, Integer> ordinals;
+    // The name of each enum constant, indexed by ordinal.
+    final List<DexString> names;
+
+    public final DexMethod ordinalMethod;
+    public final DexMethod nameMethod;
+    public final DexMethod valuesMethod;
+
+    UnboxedEnum(
+        DexType type,
+        Map<DexField, Integer> ordinals,
+        List<DexString> names,
+        DexMethod ordinalMethod,
+        DexMethod nameMethod,
+        DexMethod valuesMethod) {
+      assert ordinals.size() == names.size();
+      this.type = type;
+      this.ordinals = ordinals;
+      this.names = names;
+      this.ordinalMethod = ordinalMethod;
+      this.nameMethod = nameMethod;
+      this.valuesMethod = valuesMethod;
+    }
+
+    public boolean isEnumConstant(DexField field) {
+      return ordinals.containsKey(field);
+    }
+
+    /** Returns the int that represents the given enum constant. */
+    public int getUnboxedValue(DexField field) {
+      assert isEnumConstant(field);
+      return ordinals.get(field) + 1;
+    }
+
+    public int getNumberOfConstants() {
+      return names.size();
+    }
+  }
+}
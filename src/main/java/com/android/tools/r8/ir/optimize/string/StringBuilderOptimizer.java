@@ -5,10 +5,12 @@ package com.android.tools.r8.ir.optimize.string;
 
 import static com.android.tools.r8.ir.analysis.type.Nullability.definitelyNotNull;
 
+import com.android.tools.r8.errors.Unreachable;
 import com.android.tools.r8.graph.AppInfo;
 import com.android.tools.r8.graph.AppView;
 import com.android.tools.r8.graph.DexClass;
 import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexItemFactory.StringBuildingMethods;
 import com.android.tools.r8.graph.DexMethod;
 import com.android.tools.r8.graph.DexType;
 import com.android.tools.r8.ir.analysis.escape.EscapeAnalysis;
@@ -26,6 +28,7 @@ import com.android.tools.r8.ir.code.InstructionListIterator;
 import com.android.tools.r8.ir.code.InvokeDirect;
 import com.android.tools.r8.ir.code.InvokeMethod;
 import com.android.tools.r8.ir.code.InvokeMethodWithReceiver;
+import com.android.tools.r8.ir.code.InvokeStatic;
 import com.android.tools.r8.ir.code.InvokeVirtual;
 import com.android.tools.r8.ir.code.NumberConversion;
 import com.android.tools.r8.ir.code.Value;
@@ -33,10 +36,12 @@ import com.android.tools.r8.ir.code.ValueType;
 import com.android.tools.r8.logging.Log;
 import com.android.tools.r8.utils.StringUtils;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import it.unimi.dsi.fastutil.objects.Object2IntArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -93,6 +98,9 @@ public class StringBuilderOptimizer {
   private int numberOfBuildersWithNonDeterministicArg = 0;
   private int numberOfDeadBuilders = 0;
   private int numberOfBuildersSimplified = 0;
+  private int numberOfValueOfArgumentsRewritten = 0;
+  private int numberOfConstantAppendsMerged = 0;
+  private int numberOfBuildersPresized = 0;
   private final Object2IntMap<Integer> histogramOfLengthOfAppendChains;
   private final Object2IntMap<Integer> histogramOfLengthOfEndResult;
   private final Object2IntMap<Integer> histogramOfLengthOfPartialAppendChains;
@@ -136,6 +144,10 @@ public class StringBuilderOptimizer {
         "# builders w/ non-deterministic arg: %s", numberOfBuildersWithNonDeterministicArg);
     Log.info(getClass(), "# dead builders : %s", numberOfDeadBuilders);
     Log.info(getClass(), "# builders simplified: %s", numberOfBuildersSimplified);
+    Log.info(getClass(),
+        "# String#valueOf arguments rewritten: %s", numberOfValueOfArgumentsRewritten);
+    Log.info(getClass(), "# constant appends merged: %s", numberOfConstantAppendsMerged);
+    Log.info(getClass(), "# builders presized: %s", numberOfBuildersPresized);
     assert histogramOfLengthOfAppendChains != null;
     Log.info(getClass(), "------ histogram of StringBuilder append chain lengths ------");
     histogramOfLengthOfAppendChains.forEach((chainSize, count) -> {
@@ -181,12 +193,27 @@ public class StringBuilderOptimizer {
         .removeTrivialBuilders();
   }
 
+  // This optimization reduces the cost of the builders that could not be replaced by a constant
+  // string, by (1) passing the argument of String#valueOf(x) directly to the append call that is
+  // the only user of the result, (2) merging adjacent appends of constants into a single append,
+  // and (3) allocating the builders with a capacity that is large enough for the constant parts of
+  // the result, such that the builder does not need to grow while appending.
+  public void reduceBuilderAllocations(IRCode code) {
+    StringConcatenationAnalysis analysis = new StringConcatenationAnalysis(code);
+    analysis.rewriteValueOfArguments();
+    analysis.mergeConstantAppends();
+    analysis.presizeBuilders();
+    assert code.isConsistentSSA();
+  }
+
   class StringConcatenationAnalysis {
 
     // Inspired by {@link JumboStringTest}. Some code intentionally may have too many append(...).
     private static final int CONCATENATION_THRESHOLD = 200;
     private static final String ANY_STRING = "*";
     private static final String DUMMY = "$dummy$";
+    private static final int DEFAULT_BUILDER_CAPACITY = 16;
+    private static final int MAX_BUILDER_CAPACITY = 1 << 16;
 
     private final IRCode code;
 
@@ -758,6 +785,335 @@ public class StringBuilderOptimizer {
       }
       assert code.isConsistentSSA();
     }
+
+    // Rewrites builder.append(String.valueOf(x)) into builder.append(x), if the result of
+    // String#valueOf(x) is only used by the append call. Note that String#valueOf(Object) calls
+    // x.toString(), and append(Object) calls String#valueOf(Object), so the call is only moved if
+    // it is directly followed by the append call.
+    private void rewriteValueOfArguments() {
+      Set<Instruction> valueOfInvokesToRemove = Sets.newIdentityHashSet();
+      InstructionListIterator it = code.instructionListIterator();
+      while (it.hasNext()) {
+        Instruction instr = it.next();
+        if (!instr.isInvokeVirtual()) {
+          continue;
+        }
+        InvokeVirtual invoke = instr.asInvokeVirtual();
+        StringBuildingMethods builderMethods = getStringBuildingMethods(invoke.getInvokedMethod());
+        if (builderMethods == null
+            || invoke.getInvokedMethod() != builderMethods.appendString) {
+          continue;
+        }
+        Value arg = invoke.inValues().get(1);
+        if (arg.isPhi()
+            || !arg.definition.isInvokeStatic()
+            || arg.hasLocalInfo()
+            || arg.numberOfAllUsers() != 1) {
+          continue;
+        }
+        InvokeStatic valueOfInvoke = arg.definition.asInvokeStatic();
+        DexMethod appendMethod =
+            getAppendMethodForValueOf(valueOfInvoke.getInvokedMethod(), builderMethods);
+        if (appendMethod == null) {
+          continue;
+        }
+        if (appendMethod == builderMethods.appendObject
+            && !isDirectlyFollowedBy(valueOfInvoke, invoke)) {
+          continue;
+        }
+        List<Value> arguments =
+            ImmutableList.of(invoke.getReceiver(), valueOfInvoke.inValues().get(0));
+        it.replaceCurrentInstruction(new InvokeVirtual(appendMethod, invoke.outValue(), arguments));
+        valueOfInvokesToRemove.add(valueOfInvoke);
+        numberOfValueOfArgumentsRewritten++;
+      }
+      if (valueOfInvokesToRemove.isEmpty()) {
+        return;
+      }
+      it = code.instructionListIterator();
+      while (it.hasNext()) {
+        Instruction instr = it.next();
+        if (valueOfInvokesToRemove.contains(instr)) {
+          assert !instr.outValue().isUsed();
+          it.removeOrReplaceByDebugLocalRead();
+        }
+      }
+    }
+
+    private DexMethod getAppendMethodForValueOf(
+        DexMethod method, StringBuildingMethods builderMethods) {
+      if (method.holder != factory.stringType
+          || method.name != factory.valueOfMethodName
+          || method.getArity() != 1) {
+        return null;
+      }
+      DexType argType = method.proto.parameters.values[0];
+      if (argType == factory.booleanType) {
+        return builderMethods.appendBoolean;
+      } else if (argType == factory.charType) {
+        return builderMethods.appendChar;
+      } else if (argType == factory.intType) {
+        return builderMethods.appendInt;
+      } else if (argType == factory.longType) {
+        return builderMethods.appendLong;
+      } else if (argType == factory.floatType) {
+        return builderMethods.appendFloat;
+      } else if (argType == factory.doubleType) {
+        return builderMethods.appendDouble;
+      } else if (argType == factory.objectType) {
+        return builderMethods.appendObject;
+      }
+      // String#valueOf(char[]) does not have the same semantics as append(char[]) when the
+      // argument is null.
+      return null;
+    }
+
+    private boolean isDirectlyFollowedBy(Instruction instruction, Instruction successor) {
+      if (instruction.getBlock() != successor.getBlock()) {
+        return false;
+      }
+      InstructionListIterator it = instruction.getBlock().listIterator(code, instruction);
+      while (it.hasNext()) {
+        Instruction next = it.next();
+        if (next == successor) {
+          return true;
+        }
+        if (!next.isConstInstruction()) {
+          return false;
+        }
+      }
+      return false;
+    }
+
+    // Merges adjacent appends of constants to the same builder, e.g., builder.append("x: ")
+    // followed by builder.append(42) is rewritten into builder.append("x: 42").
+    private void mergeConstantAppends() {
+      for (BasicBlock block : code.blocks) {
+        // Adding a const-string instruction to a block with catch handlers would add another
+        // throwing instruction to the block.
+        if (block.hasCatchHandlers()) {
+          continue;
+        }
+        List<List<InvokeVirtual>> runs = new ArrayList<>();
+        List<InvokeVirtual> currentRun = new ArrayList<>();
+        for (Instruction instr : block.getInstructions()) {
+          if (instr.isConstInstruction()) {
+            continue;
+          }
+          String constant = instr.isInvokeVirtual() ? getConstantAppendArgument(instr) : null;
+          if (constant != null
+              && !currentRun.isEmpty()
+              && currentRun.get(0).getReceiver().getAliasedValue()
+                  != instr.asInvokeVirtual().getReceiver().getAliasedValue()) {
+            addRun(runs, currentRun);
+            currentRun = new ArrayList<>();
+          }
+          if (constant != null) {
+            currentRun.add(instr.asInvokeVirtual());
+          } else {
+            addRun(runs, currentRun);
+            currentRun = new ArrayList<>();
+          }
+        }
+        addRun(runs, currentRun);
+        for (List<InvokeVirtual> run : runs) {
+          mergeConstantAppends(run);
+        }
+      }
+    }
+
+    private void addRun(List<List<InvokeVirtual>> runs, List<InvokeVirtual> run) {
+      if (run.size() > 1) {
+        runs.add(run);
+      }
+    }
+
+    private void mergeConstantAppends(List<InvokeVirtual> run) {
+      StringBuilder merged = new StringBuilder();
+      for (InvokeVirtual append : run) {
+        merged.append(getConstantAppendArgument(append));
+      }
+      InvokeVirtual last = run.get(run.size() - 1);
+      StringBuildingMethods builderMethods = getStringBuildingMethods(last.getInvokedMethod());
+      assert builderMethods != null;
+      // Remove all but the last append, which is replaced by an append of the merged string.
+      for (InvokeVirtual append : run) {
+        if (append != last) {
+          InstructionListIterator it = append.getBlock().listIterator(code, append);
+          it.previous();
+          it.removeOrReplaceByDebugLocalRead();
+        }
+      }
+      InstructionListIterator it = last.getBlock().listIterator(code, last);
+      it.previous();
+      Value stringValue =
+          code.createValue(TypeLatticeElement.stringClassType(appView, definitelyNotNull()));
+      ConstString constString =
+          new ConstString(stringValue, factory.createString(merged.toString()), throwingInfo);
+      constString.setPosition(last.getPosition());
+      it.add(constString);
+      it.next();
+      it.replaceCurrentInstruction(
+          new InvokeVirtual(
+              builderMethods.appendString,
+              last.outValue(),
+              ImmutableList.of(last.getReceiver(), stringValue)));
+      numberOfConstantAppendsMerged += run.size() - 1;
+    }
+
+    // Returns the string that is appended by the given instruction, if it is an append of a
+    // constant whose result is unused.
+    private String getConstantAppendArgument(Instruction instr) {
+      InvokeVirtual invoke = instr.asInvokeVirtual();
+      DexMethod invokedMethod = invoke.getInvokedMethod();
+      if (!optimizationConfiguration.isAppendMethod(invokedMethod)
+          || invoke.inValues().size() != 2
+          || (invoke.hasOutValue() && invoke.outValue().isUsed())) {
+        return null;
+      }
+      DexType argType = invokedMethod.proto.parameters.values[0];
+      // E.g., append(char[]) throws if the argument is null.
+      if (!argType.isPrimitiveType()
+          && argType != factory.stringType
+          && argType != factory.charSequenceType
+          && argType != factory.objectType) {
+        return null;
+      }
+      String constant =
+          extractConstantArgument(invoke.inValues().get(1).getAliasedValue(), argType);
+      return constant.equals(ANY_STRING) ? null : constant;
+    }
+
+    // Replaces new StringBuilder() by new StringBuilder(capacity), where capacity is a lower bound
+    // on the length of the result, if this is larger than the default capacity of the builder.
+    // Since the capacity of a builder does not affect the semantics, the lower bound only needs to
+    // be computed from the appends that dominate the toString() calls.
+    private void presizeBuilders() {
+      List<Value> builders = new ArrayList<>();
+      for (Instruction instr : code.instructions()) {
+        if (instr.isNewInstance()
+            && optimizationConfiguration.isBuilderType(instr.asNewInstance().clazz)) {
+          builders.add(instr.outValue());
+        }
+      }
+      DominatorTree dominatorTree = null;
+      for (Value builder : builders) {
+        if (builder.numberOfPhiUsers() > 0) {
+          continue;
+        }
+        InvokeDirect constructorInvoke = null;
+        List<InvokeVirtual> appends = new ArrayList<>();
+        List<InvokeVirtual> toStrings = new ArrayList<>();
+        for (Instruction user : builder.uniqueUsers()) {
+          if (!user.isInvokeMethodWithReceiver()
+              || user.asInvokeMethodWithReceiver().getReceiver() != builder) {
+            continue;
+          }
+          DexMethod invokedMethod = user.asInvokeMethodWithReceiver().getInvokedMethod();
+          if (user.isInvokeDirect()
+              && optimizationConfiguration.isBuilderInit(invokedMethod)) {
+            constructorInvoke = user.asInvokeDirect();
+          } else if (user.isInvokeVirtual()
+              && optimizationConfiguration.isAppendMethod(invokedMethod)) {
+            appends.add(user.asInvokeVirtual());
+          } else if (user.isInvokeVirtual()
+              && optimizationConfiguration.isToStringMethod(invokedMethod)) {
+            toStrings.add(user.asInvokeVirtual());
+          }
+        }
+        StringBuildingMethods builderMethods =
+            constructorInvoke != null
+                ? getStringBuildingMethods(constructorInvoke.getInvokedMethod())
+                : null;
+        if (builderMethods == null
+            || constructorInvoke.getInvokedMethod() != builderMethods.defaultConstructor
+            || toStrings.isEmpty()) {
+          continue;
+        }
+        if (dominatorTree == null) {
+          dominatorTree = new DominatorTree(code, Assumption.MAY_HAVE_UNREACHABLE_BLOCKS);
+        }
+        long capacity = Long.MAX_VALUE;
+        for (InvokeVirtual toString : toStrings) {
+          long length = 0;
+          for (InvokeVirtual append : appends) {
+            if (dominates(dominatorTree, append, toString)) {
+              length += getMinimumAppendLength(append);
+            }
+          }
+          capacity = Math.min(capacity, length);
+        }
+        if (capacity <= DEFAULT_BUILDER_CAPACITY) {
+          continue;
+        }
+        InstructionListIterator it =
+            constructorInvoke.getBlock().listIterator(code, constructorInvoke);
+        it.previous();
+        Value capacityValue =
+            it.insertConstIntInstruction(
+                code, appView.options(), (int) Math.min(capacity, MAX_BUILDER_CAPACITY));
+        it.next();
+        it.replaceCurrentInstruction(
+            new InvokeDirect(
+                builderMethods.intConstructor, null, ImmutableList.of(builder, capacityValue)));
+        numberOfBuildersPresized++;
+      }
+    }
+
+    private boolean dominates(
+        DominatorTree dominatorTree, Instruction instruction, Instruction other) {
+      BasicBlock block = instruction.getBlock();
+      BasicBlock otherBlock = other.getBlock();
+      if (block != otherBlock) {
+        return dominatorTree.dominatedBy(otherBlock, block);
+      }
+      for (Instruction instr : block.getInstructions()) {
+        if (instr == instruction) {
+          return true;
+        }
+        if (instr == other) {
+          return false;
+        }
+      }
+      throw new Unreachable();
+    }
+
+    // Returns a lower bound on the number of characters that are appended by the given append.
+    private int getMinimumAppendLength(InvokeVirtual append) {
+      if (append.inValues().size() != 2) {
+        return 0;
+      }
+      DexType argType = append.getInvokedMethod().proto.parameters.values[0];
+      Value arg = append.inValues().get(1).getAliasedValue();
+      if (argType.isPrimitiveType()
+          || argType == factory.stringType
+          || argType == factory.charSequenceType
+          || argType == factory.objectType) {
+        String constant = extractConstantArgument(arg, argType);
+        if (!constant.equals(ANY_STRING)) {
+          return constant.length();
+        }
+      }
+      if (argType == factory.booleanType) {
+        return 4; // "true" or "false".
+      } else if (argType == factory.charType
+          || argType == factory.intType
+          || argType == factory.longType) {
+        return 1;
+      } else if (argType == factory.floatType || argType == factory.doubleType) {
+        return 3; // E.g., "0.0".
+      }
+      return 0;
+    }
+
+    private StringBuildingMethods getStringBuildingMethods(DexMethod method) {
+      if (method.holder == factory.stringBuilderType) {
+        return factory.stringBuilderMethods;
+      } else if (method.holder == factory.stringBufferType) {
+        return factory.stringBufferMethods;
+      }
+      return null;
+    }
   }
 
   class DefaultStringBuilderOptimizationConfiguration
@@ -42,11 +42,16 @@ import com.android.tools.r8.naming.NamingLens;
 import com.android.tools.r8.naming.ProguardMapSupplier;
 import com.android.tools.r8.utils.ExceptionUtils;
 import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.ThreadUtils;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -94,7 +99,8 @@ public class CfApplicationWriter {
     this.proguardMapSupplier = proguardMapSupplier;
   }
 
-  public void write(ClassFileConsumer consumer, ExecutorService executor) {
+  public void write(ClassFileConsumer consumer, ExecutorService executor)
+      throws ExecutionException {
     application.timing.begin("CfApplicationWriter.write");
     try {
       writeApplication(consumer, executor);
@@ -103,7 +109,8 @@ public class CfApplicationWriter {
     }
   }
 
-  private void writeApplication(ClassFileConsumer consumer, ExecutorService executor) {
+  private void writeApplication(ClassFileConsumer consumer, ExecutorService executor)
+      throws ExecutionException {
     ProguardMapSupplier.ProguardMapAndId proguardMapAndId = null;
     if (proguardMapSupplier != null && options.proguardMapConsumer != null) {
       proguardMapAndId = proguardMapSupplier.getProguardMapAndId();
@@ -112,13 +119,26 @@ public class CfApplicationWriter {
       }
     }
     String markerString = marker.toString();
-    for (DexProgramClass clazz : application.classes()) {
-      if (clazz.getSynthesizedFrom().isEmpty() || options.coreLibraryCompilation) {
-        writeClass(clazz, consumer, markerString);
-      } else {
+    List<DexProgramClass> classes = application.classes();
+    for (DexProgramClass clazz : classes) {
+      if (!clazz.getSynthesizedFrom().isEmpty() && !options.coreLibraryCompilation) {
         throw new Unimplemented("No support for synthetics in the Java bytecode backend.");
       }
     }
+    // The classes are generated concurrently, but passed to the consumer on the calling thread in
+    // the order of the application, such that the output does not depend on the scheduling. Each
+    // class is passed on as soon as it and all classes before it are done, and the reference to
+    // its future is dropped, such that the class file can be reclaimed once it has been consumed.
+    List<Future<byte[]>> futures = new ArrayList<>(classes.size());
+    for (DexProgramClass clazz : classes) {
+      futures.add(executor.submit(() -> writeClass(clazz, markerString)));
+    }
+    for (int i = 0; i < classes.size(); i++) {
+      String desc = namingLens.lookupDescriptor(classes.get(i).type).toString();
+      byte[] result = ThreadUtils.awaitFuture(futures.set(i, null));
+      ExceptionUtils.withConsumeResourceHandler(
+          options.reporter, handler -> consumer.accept(ByteDataView.of(result), desc, handler));
+    }
     ApplicationWriter.supplyAdditionalConsumers(
         application,
         appView,
@@ -128,14 +148,13 @@ public class CfApplicationWriter {
         proguardMapAndId == null ? null : proguardMapAndId.map);
   }
 
-  private void writeClass(DexProgramClass clazz, ClassFileConsumer consumer, String markerString) {
+  private byte[] writeClass(DexProgramClass clazz, String markerString) {
     ClassWriter writer = new ClassWriter(0);
     int markerStringPoolIndex = writer.newConst(markerString);
     assert markerStringPoolIndex == MARKER_STRING_CONSTANT_POOL_INDEX;
     writer.visitSource(clazz.sourceFile != null ? clazz.sourceFile.toString() : null, null);
     int version = getClassFileVersion(clazz);
     int access = clazz.accessFlags.getAsCfAccessFlags();
-    String desc = namingLens.lookupDescriptor(clazz.type).toString();
     String name = namingLens.lookupInternalName(clazz.type);
     String signature = getSignature(clazz.annotations);
     String superName =
@@ -192,8 +211,7 @@ public class CfApplicationWriter {
       // so don't assert that verifyCf() returns true.
       verifyCf(result);
     }
-    ExceptionUtils.withConsumeResourceHandler(
-        options.reporter, handler -> consumer.accept(ByteDataView.of(result), desc, handler));
+    return result;
   }
 
   private int getClassFileVersion(DexEncodedMethod method) {
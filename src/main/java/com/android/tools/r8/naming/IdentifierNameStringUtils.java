@@ -204,11 +204,13 @@ public final class IdentifierNameStringUtils {
     int positionOfIdentifier = isReferenceFieldUpdater ? 2 : 1;
     Value in = ins.get(positionOfIdentifier);
     if (in.isConstString()) {
-      Value classValue = ins.get(0);
-      if (!classValue.isConstClass()) {
+      // The holder is either a const-class or the result of Class#forName(name) for a constant
+      // name, e.g., Class.forName("a.b.C").getDeclaredField("f").
+      DexType holderType =
+          ConstantValueUtils.getDexTypeRepresentedByValue(ins.get(0), definitions);
+      if (holderType == null) {
         return null;
       }
-      DexType holderType = classValue.getConstInstruction().asConstClass().getValue();
       if (holderType.isArrayType()) {
         // None of the fields or methods of an array type will be renamed, since they are all
         // declared in the library. Hence there is no need to handle this case.
@@ -309,6 +309,13 @@ public class Enqueuer {
   /** Map of active if rules to speed up aapt2 generated keep rules. */
   private Map<Wrapper<ProguardIfRule>, Set<ProguardIfRule>> activeIfRules;
 
+  /**
+   * Set of types that have become live, or of which a member has become live or targeted, since
+   * the active if rules were last evaluated. Only these types can satisfy an if rule that they did
+   * not satisfy in the previous evaluation. Null until the if rules have been evaluated once.
+   */
+  private Set<DexType> typesToReevaluateForIfRules;
+
   /**
    * A cache of ScopedDexMethodSet for each live type used for determining that virtual methods that
    * cannot be removed because they are widening access for another virtual method defined earlier
@@ -959,6 +966,7 @@ public class Enqueuer {
       if (Log.ENABLED) {
         Log.verbose(getClass(), "Type `%s` has become live.", type);
       }
+      recordTypeToReevaluateForIfRules(type);
       DexClass holder = appView.definitionFor(type);
       if (holder == null) {
         reportMissingClass(type);
@@ -1220,6 +1228,7 @@ public class Enqueuer {
     if (!targetedMethods.add(method, reason)) {
       return;
     }
+    recordTypeToReevaluateForIfRules(method.method.holder);
     markTypeAsLive(method.method.holder);
     markParameterAndReturnTypesAsLive(method);
     if (appView.definitionFor(method.method.holder).isProgramClass()) {
@@ -1431,6 +1440,7 @@ public class Enqueuer {
     }
     processAnnotations(encodedField, encodedField.annotations.annotations);
     liveFields.add(encodedField, reason);
+    recordTypeToReevaluateForIfRules(encodedField.field.holder);
     collectProguardCompatibilityRule(reason);
 
     // Add all dependent members to the workqueue.
@@ -1450,6 +1460,7 @@ public class Enqueuer {
     }
     processAnnotations(field, field.annotations.annotations);
     liveFields.add(field, reason);
+    recordTypeToReevaluateForIfRules(field.field.holder);
     collectProguardCompatibilityRule(reason);
 
     // Add all dependent members to the workqueue.
@@ -1889,6 +1900,12 @@ public class Enqueuer {
     return result;
   }
 
+  private void recordTypeToReevaluateForIfRules(DexType type) {
+    if (typesToReevaluateForIfRules != null) {
+      typesToReevaluateForIfRules.add(type);
+    }
+  }
+
   private void trace(ExecutorService executorService, Timing timing) throws ExecutionException {
     timing.begin("Grow the tree.");
     try {
@@ -1955,8 +1972,10 @@ public class Enqueuer {
                   liveTypes,
                   mode,
                   consequentSetBuilder,
-                  targetedMethods.getItems());
+                  targetedMethods.getItems(),
+                  typesToReevaluateForIfRules);
           ConsequentRootSet consequentRootSet = ifRuleEvaluator.run();
+          typesToReevaluateForIfRules = activeIfRules.isEmpty() ? null : Sets.newIdentityHashSet();
           // TODO(b/132600955): This modifies the root set. Should the consequent be persistent?
           rootSet.addConsequentRootSet(consequentRootSet);
           enqueueRootItems(consequentRootSet.noShrinking);
@@ -2143,6 +2162,7 @@ public class Enqueuer {
 
   private void processNewlyLiveMethod(DexEncodedMethod method, KeepReason reason) {
     if (liveMethods.add(method, reason)) {
+      recordTypeToReevaluateForIfRules(method.method.holder);
       collectProguardCompatibilityRule(reason);
       DexClass holder = appView.definitionFor(method.method.holder);
       assert holder != null;
@@ -42,7 +42,16 @@ public class IfRuleEvaluator {
   private final Mode mode;
   private final RootSetBuilder rootSetBuilder;
   private final Set<DexEncodedMethod> targetedMethods;
+  private final Set<DexType> typesToEvaluate;
 
+  /**
+   * Creates an evaluator for the given if rules.
+   *
+   * @param typesToEvaluate The types of the classes that may satisfy an if rule that they did not
+   *     satisfy in the previous evaluation of the if rules, or null if all classes must be
+   *     evaluated. Classes that satisfied an if rule in a previous evaluation have already
+   *     materialized the consequent rules for the members that were live at that point.
+   */
   IfRuleEvaluator(
       AppView<? extends AppInfoWithSubtyping> appView,
       ExecutorService executorService,
@@ -52,7 +61,8 @@ public class IfRuleEvaluator {
       Set<DexType> liveTypes,
       Mode mode,
       RootSetBuilder rootSetBuilder,
-      Set<DexEncodedMethod> targetedMethods) {
+      Set<DexEncodedMethod> targetedMethods,
+      Set<DexType> typesToEvaluate) {
     this.appView = appView;
     this.executorService = executorService;
     this.ifRules = ifRules;
@@ -62,23 +72,31 @@ public class IfRuleEvaluator {
     this.mode = mode;
     this.rootSetBuilder = rootSetBuilder;
     this.targetedMethods = targetedMethods;
+    this.typesToEvaluate = typesToEvaluate;
   }
 
   public ConsequentRootSet run() throws ExecutionException {
     appView.appInfo().app().timing.begin("Find consequent items for -if rules...");
     try {
       if (ifRules != null && !ifRules.isEmpty()) {
+        Iterable<DexProgramClass> classesToEvaluate = getClassesToEvaluate();
         Iterator<Map.Entry<Wrapper<ProguardIfRule>, Set<ProguardIfRule>>> it =
             ifRules.entrySet().iterator();
         while (it.hasNext()) {
           Map.Entry<Wrapper<ProguardIfRule>, Set<ProguardIfRule>> ifRuleEntry = it.next();
           ProguardIfRule ifRule = ifRuleEntry.getKey().get();
+          if (!mayBeSatisfiedByTypesToEvaluate(ifRule)) {
+            continue;
+          }
 
           // Depending on which types that trigger the -if rule, the application of the subsequent
           // -keep rule may vary (due to back references). So, we need to try all pairs of -if
           // rule and live types.
           for (DexProgramClass clazz :
-              ifRule.relevantCandidatesForRule(appView, appView.appInfo().classes())) {
+              ifRule.relevantCandidatesForRule(appView, classesToEvaluate)) {
+            if (typesToEvaluate != null && !typesToEvaluate.contains(clazz.type)) {
+              continue;
+            }
             if (!isEffectivelyLive(clazz)) {
               continue;
             }
@@ -159,6 +177,49 @@ public class IfRuleEvaluator {
     return rootSetBuilder.buildConsequentRootSet();
   }
 
+  private Iterable<DexProgramClass> getClassesToEvaluate() {
+    Iterable<DexProgramClass> classes = appView.appInfo().classes();
+    if (typesToEvaluate == null) {
+      return classes;
+    }
+    // Keep the order of the classes of the application, such that the consequent rules are
+    // materialized in the same order as when evaluating all classes.
+    List<DexProgramClass> classesToEvaluate = new ArrayList<>(typesToEvaluate.size());
+    if (!typesToEvaluate.isEmpty()) {
+      for (DexProgramClass clazz : classes) {
+        if (typesToEvaluate.contains(clazz.type)) {
+          classesToEvaluate.add(clazz);
+        }
+      }
+    }
+    return classesToEvaluate;
+  }
+
+  /**
+   * Returns false if the class names of the given if rule are specific types, none of which are
+   * (or have been merged into) one of the types to evaluate.
+   */
+  private boolean mayBeSatisfiedByTypesToEvaluate(ProguardIfRule rule) {
+    if (typesToEvaluate == null) {
+      return true;
+    }
+    List<DexType> specificTypes = rule.getClassNames().asSpecificDexTypes();
+    if (specificTypes == null) {
+      return true;
+    }
+    for (DexType type : specificTypes) {
+      if (typesToEvaluate.contains(type)) {
+        return true;
+      }
+      if (appView.verticallyMergedClasses() != null
+          && appView.verticallyMergedClasses().hasBeenMergedIntoSubtype(type)
+          && typesToEvaluate.contains(appView.verticallyMergedClasses().getTargetFor(type))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private boolean canRemoveSubsequentKeepRule(ProguardIfRule rule) {
     // We cannot remove an if-rule if there is a kept graph consumer, otherwise we would not record
     // all edges.
@@ -28,6 +28,9 @@ import java.util.zip.ZipOutputStream;
 public class ArchiveBuilder implements OutputBuilder {
   private final Path archive;
   private final Origin origin;
+  // Pool of the buffers that are passed to addIndexedClassFile, if any. Used to retain the content
+  // of dex files that are added out of order instead of copying it.
+  private final ByteBufferPool byteBufferPool;
   private ZipOutputStream stream = null;
   private boolean closed = false;
   private int openCount = 0;
@@ -36,7 +39,12 @@ public class ArchiveBuilder implements OutputBuilder {
   private SortedSet<DelayedData> delayedWrites = new TreeSet<>();
 
   public ArchiveBuilder(Path archive) {
+    this(archive, null);
+  }
+
+  public ArchiveBuilder(Path archive, ByteBufferPool byteBufferPool) {
     this.archive = archive;
+    this.byteBufferPool = byteBufferPool;
     origin = new PathOrigin(archive);
   }
 
@@ -71,7 +79,7 @@ public class ArchiveBuilder implements OutputBuilder {
         writeDirectoryNow(data.name, handler);
       } else {
         assert data.content != null;
-        writeFileNow(data.name, data.content, handler);
+        writeFileNow(data, handler);
       }
     }
   }
@@ -132,8 +140,9 @@ public class ArchiveBuilder implements OutputBuilder {
   public void addFile(String name, DataEntryResource content, DiagnosticsHandler handler) {
     try (InputStream in = content.getByteStream()) {
       ByteDataView view = ByteDataView.of(ByteStreams.toByteArray(in));
+      long crc = ZipUtils.computeCrc(view);
       synchronized (this) {
-        delayedWrites.add(DelayedData.createFile(name, view));
+        delayedWrites.add(DelayedData.createFile(name, view, crc));
       }
     } catch (IOException e) {
       handleIOException(e, handler);
@@ -144,13 +153,25 @@ public class ArchiveBuilder implements OutputBuilder {
   }
 
   @Override
-  public synchronized void addFile(String name, ByteDataView content, DiagnosticsHandler handler) {
-    delayedWrites.add(DelayedData.createFile(name,  ByteDataView.of(content.copyByteData())));
+  public void addFile(String name, ByteDataView content, DiagnosticsHandler handler) {
+    ByteDataView copy = ByteDataView.of(content.copyByteData());
+    long crc = ZipUtils.computeCrc(copy);
+    synchronized (this) {
+      delayedWrites.add(DelayedData.createFile(name, copy, crc));
+    }
+  }
+
+  private void writeFileNow(DelayedData data, DiagnosticsHandler handler) {
+    writeFileNow(data.name, data.content, data.crc, handler);
+    if (data.isRetained) {
+      byteBufferPool.unretain(data.content.getBuffer());
+    }
   }
 
-  private void writeFileNow(String name, ByteDataView content, DiagnosticsHandler handler) {
+  private void writeFileNow(
+      String name, ByteDataView content, long crc, DiagnosticsHandler handler) {
     try {
-      ZipUtils.writeToZipStream(getStream(handler), name, content, ZipEntry.DEFLATED);
+      ZipUtils.writeToZipStream(getStream(handler), name, content, crc, ZipEntry.DEFLATED);
     } catch (IOException e) {
       handleIOException(e, handler);
     }
@@ -159,24 +180,37 @@ public class ArchiveBuilder implements OutputBuilder {
   private void writeNextIfAvailable(DiagnosticsHandler handler) {
     DelayedData data = delayedClassesDexFiles.remove(classesFileIndex);
     while (data != null) {
-      writeFileNow(data.name, data.content, handler);
+      writeFileNow(data, handler);
       classesFileIndex++;
       data = delayedClassesDexFiles.remove(classesFileIndex);
     }
   }
 
   @Override
-  public synchronized void addIndexedClassFile(
+  public void addIndexedClassFile(
       int index, String name, ByteDataView content, DiagnosticsHandler handler) {
-    if (index == classesFileIndex) {
-      // Fast case, we got the file in order (or we only had one).
-      writeFileNow(name, content, handler);
-      classesFileIndex++;
-      writeNextIfAvailable(handler);
-    } else {
-      // Data is released in the application writer, take a copy.
-      delayedClassesDexFiles.put(index,
-          new DelayedData(name, ByteDataView.of(content.copyByteData()), false));
+    // Compute the checksum before entering the critical section, such that the checksums of
+    // different files are computed in parallel.
+    long crc = ZipUtils.computeCrc(content);
+    synchronized (this) {
+      if (index == classesFileIndex) {
+        // Fast case, we got the file in order (or we only had one).
+        writeFileNow(name, content, crc, handler);
+        classesFileIndex++;
+        writeNextIfAvailable(handler);
+      } else if (byteBufferPool != null && byteBufferPool.retain(content.getBuffer())) {
+        // The backing buffer is not reused by the pool until the data has been written.
+        delayedClassesDexFiles.put(
+            index,
+            DelayedData.createRetainedFile(
+                name,
+                new ByteDataView(content.getBuffer(), content.getOffset(), content.getLength()),
+                crc));
+      } else {
+        // Data is released in the application writer, take a copy.
+        delayedClassesDexFiles.put(
+            index, DelayedData.createFile(name, ByteDataView.of(content.copyByteData()), crc));
+      }
     }
   }
 
@@ -193,20 +227,29 @@ public class ArchiveBuilder implements OutputBuilder {
   private static class DelayedData implements Comparable<DelayedData> {
     public final String name;
     public final ByteDataView content;
+    public final long crc;
     public final boolean isDirectory;
+    public final boolean isRetained;
+
+    public static DelayedData createFile(String name, ByteDataView content, long crc) {
+      return new DelayedData(name, content, crc, false, false);
+    }
 
-    public static DelayedData createFile(String name, ByteDataView content) {
-      return new DelayedData(name, content, false);
+    public static DelayedData createRetainedFile(String name, ByteDataView content, long crc) {
+      return new DelayedData(name, content, crc, false, true);
     }
 
     public static DelayedData createDirectory(String name) {
-      return new DelayedData(name, null, true);
+      return new DelayedData(name, null, 0, true, false);
     }
 
-    private DelayedData(String name, ByteDataView content, boolean isDirectory) {
+    private DelayedData(
+        String name, ByteDataView content, long crc, boolean isDirectory, boolean isRetained) {
       this.name = name;
       this.content = content;
+      this.crc = crc;
       this.isDirectory = isDirectory;
+      this.isRetained = isRetained;
     }
 
     @Override
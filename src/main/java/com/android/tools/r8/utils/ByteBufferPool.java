@@ -0,0 +1,145 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.utils;
+
+import com.android.tools.r8.ByteBufferProvider;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ByteBufferProvider} that reuses released byte buffers for subsequent requests.
+ *
+ * <p>The backing array of an acquired buffer can be retained after the buffer has been released
+ * using {@link #retain}. The buffer is then only reused once all retentions have ended by a call to
+ * {@link #unretain}. This allows a consumer to hold on to the data of a buffer without copying it.
+ *
+ * <p>The number of buffers and the total number of bytes kept for reuse are bounded. Buffers that
+ * are released when the pool is full are dropped, such that they can be reclaimed by the GC.
+ */
+public class ByteBufferPool implements ByteBufferProvider {
+
+  private static final int DEFAULT_MAX_AVAILABLE_BUFFERS = 8;
+  private static final long DEFAULT_MAX_AVAILABLE_BYTES = 64 * 1024 * 1024;
+
+  private static class PooledBuffer {
+
+    private final ByteBuffer buffer;
+    private boolean released = false;
+    private int retainCount = 0;
+    // Length of the prefix of the backing array that may have been written to. Bytes after this
+    // prefix are still zero.
+    private int dirtyLength = 0;
+
+    private PooledBuffer(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    private int capacity() {
+      return buffer.capacity();
+    }
+
+    private boolean isUnused() {
+      return released && retainCount == 0;
+    }
+  }
+
+  private final int maxAvailableBuffers;
+  private final long maxAvailableBytes;
+
+  private final List<PooledBuffer> available = new ArrayList<>();
+  private long availableBytes = 0;
+  private final Map<byte[], PooledBuffer> acquired = new IdentityHashMap<>();
+
+  public ByteBufferPool() {
+    this(DEFAULT_MAX_AVAILABLE_BUFFERS, DEFAULT_MAX_AVAILABLE_BYTES);
+  }
+
+  public ByteBufferPool(int maxAvailableBuffers, long maxAvailableBytes) {
+    this.maxAvailableBuffers = maxAvailableBuffers;
+    this.maxAvailableBytes = maxAvailableBytes;
+  }
+
+  @Override
+  public synchronized ByteBuffer acquireByteBuffer(int capacity) {
+    // Pick the smallest available buffer that is large enough.
+    int bestIndex = -1;
+    for (int i = 0; i < available.size(); i++) {
+      int candidateCapacity = available.get(i).capacity();
+      if (candidateCapacity >= capacity
+          && (bestIndex < 0 || candidateCapacity < available.get(bestIndex).capacity())) {
+        bestIndex = i;
+      }
+    }
+    PooledBuffer pooledBuffer;
+    if (bestIndex >= 0) {
+      pooledBuffer = available.remove(bestIndex);
+      availableBytes -= pooledBuffer.capacity();
+      pooledBuffer.released = false;
+      // Writers rely on the contents of a fresh buffer being zero, e.g., for alignment padding.
+      // The buffer is limited to the requested capacity, so only the part of the written prefix
+      // that is within the limit needs to be cleared.
+      Arrays.fill(
+          pooledBuffer.buffer.array(), 0, Math.min(pooledBuffer.dirtyLength, capacity), (byte) 0);
+      pooledBuffer.buffer.clear();
+      pooledBuffer.buffer.limit(capacity);
+    } else {
+      pooledBuffer = new PooledBuffer(ByteBuffer.allocate(capacity));
+    }
+    pooledBuffer.dirtyLength = Math.max(pooledBuffer.dirtyLength, capacity);
+    acquired.put(pooledBuffer.buffer.array(), pooledBuffer);
+    return pooledBuffer.buffer;
+  }
+  @Override
+  public synchronized void releaseByteBuffer(ByteBuffer buffer) {
+    PooledBuffer pooledBuffer = acquired.get(buffer.array());
+    assert pooledBuffer != null;
+    assert !pooledBuffer.released;
+    pooledBuffer.released = true;
+    returnToPoolIfUnused(pooledBuffer);
+  }
+
+  /**
+   * Prevents the buffer with the given backing array from being reused until {@link #unretain} is
+   * called. Returns false if the array does not belong to a buffer that has been acquired from
+   * this pool, in which case the data must be copied to be retained.
+   */
+  public synchronized boolean retain(byte[] array) {
+    PooledBuffer pooledBuffer = acquired.get(array);
+    if (pooledBuffer == null || pooledBuffer.released) {
+      return false;
+    }
+    pooledBuffer.retainCount++;
+    return true;
+  }
+
+  public synchronized void unretain(byte[] array) {
+    PooledBuffer pooledBuffer = acquired.get(array);
+    assert pooledBuffer != null;
+    assert pooledBuffer.retainCount > 0;
+    pooledBuffer.retainCount--;
+    returnToPoolIfUnused(pooledBuffer);
+  }
+
+  /** Drops all available buffers, such that they can be reclaimed by the GC. */
+  public synchronized void clear() {
+    available.clear();
+    availableBytes = 0;
+  }
+
+  private void returnToPoolIfUnused(PooledBuffer pooledBuffer) {
+    if (pooledBuffer.isUnused()) {
+      acquired.remove(pooledBuffer.buffer.array());
+      if (available.size() < maxAvailableBuffers
+          && availableBytes + pooledBuffer.capacity() <= maxAvailableBytes) {
+        available.add(pooledBuffer);
+        availableBytes += pooledBuffer.capacity();
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import com.android.tools.r8.origin.PathOrigin;
+import com.android.tools.r8.utils.Tracer.CounterEvent;
+import com.android.tools.r8.utils.Tracer.SpanEvent;
+import com.android.tools.r8.utils.Tracer.ThreadEvents;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map.Entry;
+
+/**
+ * Writes the events recorded by a {@link Tracer} in the Chrome trace event format, which can be
+ * loaded into chrome://tracing or Perfetto.
+ */
+public class ChromeTraceWriter {
+
+  private static final int PROCESS_ID = 1;
+
+  private final Writer writer;
+  private boolean first = true;
+
+  private ChromeTraceWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Writes the trace of the given tracer to the given path. Failing to write the trace does not
+   * fail the compilation, so errors are reported as warnings.
+   */
+  public static void write(Tracer tracer, Path path, Reporter reporter) {
+    try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      write(tracer, writer);
+    } catch (IOException e) {
+      reporter.warning(new ExceptionDiagnostic(e, new PathOrigin(path)));
+    }
+  }
+
+  public static void write(Tracer tracer, Writer writer) throws IOException {
+    new ChromeTraceWriter(writer).writeTrace(tracer);
+  }
+
+  private void writeTrace(Tracer tracer) throws IOException {
+    writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    for (ThreadEvents threadEvents : tracer.getThreadEvents()) {
+      beginEvent("thread_name", "M", threadEvents.threadId);
+      writer.write(",\"args\":{\"name\":");
+      writeString(threadEvents.threadName);
+      writer.write("}}");
+      for (SpanEvent span : threadEvents.spans) {
+        beginEvent(span.name, "X", threadEvents.threadId);
+        writer.write(",\"cat\":");
+        writeString(span.granularity.name().toLowerCase(Locale.ROOT));
+        writer.write(",\"ts\":");
+        writeMicros(span.start);
+        writer.write(",\"dur\":");
+        writeMicros(span.duration);
+        if (span.allocatedBytes >= 0) {
+          writer.write(",\"args\":{\"allocated bytes\":");
+          writer.write(Long.toString(span.allocatedBytes));
+          writer.write('}');
+        }
+        writer.write('}');
+      }
+    }
+    for (CounterEvent counters : tracer.getCounterEvents()) {
+      for (Entry<String, Long> counter : counters.values.entrySet()) {
+        beginEvent(counter.getKey(), "C", 0);
+        writer.write(",\"ts\":");
+        writeMicros(counters.time);
+        writer.write(",\"args\":{\"value\":");
+        writer.write(Long.toString(counter.getValue()));
+        writer.write("}}");
+      }
+    }
+    writer.write("]}\n");
+  }
+
+  private void beginEvent(String name, String phase, long threadId) throws IOException {
+    if (!first) {
+      writer.write(",\n");
+    }
+    first = false;
+    writer.write("{\"name\":");
+    writeString(name);
+    writer.write(",\"ph\":\"");
+    writer.write(phase);
+    writer.write("\",\"pid\":");
+    writer.write(Integer.toString(PROCESS_ID));
+    writer.write(",\"tid\":");
+    writer.write(Long.toString(threadId));
+  }
+
+  // The trace format uses microseconds, fractions are allowed.
+  private void writeMicros(long nanos) throws IOException {
+    writer.write(Long.toString(nanos / 1000));
+    int fraction = (int) (nanos % 1000);
+    if (fraction != 0) {
+      writer.write('.');
+      writer.write(Character.forDigit(fraction / 100, 10));
+      writer.write(Character.forDigit(fraction / 10 % 10, 10));
+      writer.write(Character.forDigit(fraction % 10, 10));
+    }
+  }
+
+  private void writeString(String string) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c == '"' || c == '\\') {
+        writer.write('\\');
+        writer.write(c);
+      } else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        writer.write(c);
+      }
+    }
+    writer.write('"');
+  }
+}
@@ -14,6 +14,7 @@ import com.android.tools.r8.DexFilePerClassFileConsumer;
 import com.android.tools.r8.DexIndexedConsumer;
 import com.android.tools.r8.ProgramConsumer;
 import com.android.tools.r8.StringConsumer;
+import com.android.tools.r8.TraceGranularity;
 import com.android.tools.r8.Version;
 import com.android.tools.r8.dex.Marker;
 import com.android.tools.r8.dex.Marker.Tool;
@@ -166,6 +167,8 @@ public class InternalOptions {
     enableUnusedArgumentRemoval = false;
     outline.enabled = false;
     enableEnumValueOptimization = false;
+    enableEnumUnboxing = false;
+    enableNonNullParameterPropagation = false;
     enableValuePropagation = false;
     enableSideEffectAnalysis = false;
     enableTreeShakingOfLibraryMethodOverrides = false;
@@ -174,9 +177,20 @@ public class InternalOptions {
   public boolean printTimes = System.getProperty("com.android.tools.r8.printtimes") != null;
   // To print memory one also have to enable printtimes.
   public boolean printMemory = System.getProperty("com.android.tools.r8.printmemory") != null;
+  // If set, a trace of the compilation is written to the path in the Chrome trace format.
+  public Path traceOutputPath = null;
+  public TraceGranularity traceGranularity = TraceGranularity.PHASE;
+  // Only one out of this number of class and method spans is recorded when tracing.
+  public int traceSamplingInterval =
+      Integer.getInteger("com.android.tools.r8.traceSamplingInterval", 1);
 
   // Flag to toggle if DEX code objects should pass-through without IR processing.
   public boolean passthroughDexCode = false;
+  // Approximate number of bytes of finalized DEX code that R8 keeps on the heap. Code beyond the
+  // budget is spilled to a temporary file and reloaded on demand. Spilling is disabled if zero.
+  // Set by R8Command.Builder.setCodeStorageHeapBudget, or by the system property below.
+  public long codeStorageHeapBudget =
+      Long.getLong("com.android.tools.r8.codeStorageHeapBudget", 0);
   // TODO(b/134705306): Currently allow merging dex files resulting from Java 8 library
   //  desugaring until all D8 users are complient.
   public boolean enableNeverMergePrefixes = false;
@@ -193,6 +207,7 @@ public class InternalOptions {
   public boolean enableUnusedInterfaceRemoval = true;
   public boolean enableDevirtualization = true;
   public boolean enableNonNullTracking = true;
+  public boolean enableNonNullParameterPropagation = true;
   public boolean enableInlining =
       !Version.isDev() || System.getProperty("com.android.tools.r8.disableinlining") == null;
   public boolean enableInliningOfInvokesWithDefinitelyNullReceivers =
@@ -223,15 +238,30 @@ public class InternalOptions {
   public int inliningInstructionLimit = 3;
   // This defines how many instructions of inlinees we can inlinee overall.
   public int inliningInstructionAllowance = 1500;
+  // If an execution profile is given, these limits are used instead of the limits above. Call sites
+  // that are hot according to the profile are inlined more aggressively, whereas call sites in cold
+  // methods are inlined less aggressively to compensate for the code size increase.
+  public int hotInliningInstructionLimit = 10;
+  public int hotInliningInstructionAllowance = 3000;
+  public int coldInliningInstructionLimit = 2;
   // Maximum number of control flow resolution blocks that setup the register state before
   // the actual catch handler allowed when inlining. Threshold found empirically by testing on
   // GMS Core.
   public int inliningControlFlowResolutionBlocksThreshold = 15;
   public boolean enableStringSwitchConversion = false;
   public boolean enableEnumValueOptimization = true;
+  // Disabled by default, since enums whose values() or valueOf() methods are kept cannot be unboxed
+  // yet. This requires keeping these methods as bridges over the unboxed representation.
+  public boolean enableEnumUnboxing = false;
   public final OutlineOptions outline = new OutlineOptions();
   public boolean enableInitializedClassesInInstanceMethodsAnalysis = true;
   public boolean enableRedundantFieldLoadElimination = true;
+  // The number of times each block may be visited when computing the active fields at block entry,
+  // before redundant field load elimination falls back to only propagating across single
+  // predecessor edges.
+  public int redundantFieldLoadEliminationMaxIterationsPerBlock = 10;
+  public boolean enableLoopInvariantCodeMotion = true;
+  public boolean enableValueRangeOptimization = true;
   public boolean enableValuePropagation = true;
   public boolean enableUninstantiatedTypeOptimization = true;
   // TODO(b/138917494): Disable until we have numbers on potential performance penalties.
@@ -462,6 +492,11 @@ public class InternalOptions {
     }
   }
 
+  // If set, the execution profile of hot methods and call sites is read from this path, see
+  // ExecutionProfile. Set by R8Command.Builder.setExecutionProfilePath, or by the system property
+  // com.android.tools.r8.executionProfile.
+  public Path executionProfilePath = getExecutionProfilePath();
+
   public LineNumberOptimization lineNumberOptimization = LineNumberOptimization.ON;
 
   public static boolean shouldEnableKeepRuleSynthesisForRecompilation() {
@@ -506,6 +541,11 @@ public class InternalOptions {
     return ImmutableSet.of();
   }
 
+  private static Path getExecutionProfilePath() {
+    String property = System.getProperty("com.android.tools.r8.executionProfile");
+    return property != null ? Paths.get(property) : null;
+  }
+
   private static Set<String> getNullableReceiverInliningFilter() {
     String property = System.getProperty("com.android.tools.r8.nullableReceiverInliningFilter");
     if (property != null) {
@@ -577,6 +617,10 @@ public class InternalOptions {
   // the code contains unsupported byte codes.
   public boolean skipReadingDexCode = false;
 
+  // Number of class definitions of a dex file that are parsed by a single task. The class
+  // definitions of larger dex files are split into ranges that are parsed concurrently.
+  public int dexClassDefsPerParsingTask = 1000;
+
   // If null, no main-dex list needs to be computed.
   // If non null it must be and passed to the consumer.
   public StringConsumer mainDexListConsumer = null;
@@ -920,6 +964,18 @@ public class InternalOptions {
     public int minSize = 3;
     public int maxSize = 99;
     public int threshold = 20;
+
+    // If an execution profile is given, methods that are hot according to the profile are never
+    // outlined, and all other methods are considered cold and outlined more aggressively using the
+    // limits below. Cold outlines may take more arguments, since the cost of a ranged invoke does
+    // not matter in cold code, and are split into several classes.
+    public int coldThreshold = 10;
+    public int coldMaxArgumentRegisters = 15;
+    public int coldMaxOutlinesPerClass = 1000;
+
+    // Number of outline candidates that are handled by a single task when selecting outlines in
+    // parallel.
+    public int selectionChunkSize = 1024;
   }
 
   public static class TestingOptions {
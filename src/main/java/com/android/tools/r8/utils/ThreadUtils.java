@@ -36,6 +36,15 @@ public class ThreadUtils {
     }
   }
 
+  /** Returns the result of the given future, waiting for the computation to complete if needed. */
+  public static <T> T awaitFuture(Future<T> future) throws ExecutionException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Interrupted while waiting for future.", e);
+    }
+  }
+
   static ExecutorService getExecutorServiceForProcessors(int processors) {
     // This heuristic is based on measurements on a 32 core (hyper-threaded) machine.
     int threads = processors <= 2 ? processors : (int) Math.ceil(Integer.min(processors, 16) / 2.0);
@@ -12,6 +12,8 @@ package com.android.tools.r8.utils;
 //     t.scope("My task", () -> { ... });
 // Finally a report is printed by:
 //     t.report();
+// If the timing is created with an enabled Tracer, the tasks are also recorded as phase spans on
+// the tracer, and statistics are recorded as counters.
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
@@ -26,6 +28,8 @@ public class Timing {
 
   private final Stack<Node> stack;
   private final boolean trackMemory;
+  private final Tracer tracer;
+  private final Stack<Tracer.Span> spans = new Stack<>();
 
   public Timing() {
     this("<no title>");
@@ -36,7 +40,12 @@ public class Timing {
   }
 
   public Timing(String title, boolean trackMemory) {
+    this(title, trackMemory, Tracer.disabled());
+  }
+
+  public Timing(String title, boolean trackMemory, Tracer tracer) {
     this.trackMemory = trackMemory;
+    this.tracer = tracer;
     stack = new Stack<>();
     stack.push(new Node("Recorded timings for " + title));
   }
@@ -45,6 +54,7 @@ public class Timing {
     final String title;
 
     final Map<String, Node> children = new LinkedHashMap<>();
+    final Map<String, Long> statistics = new LinkedHashMap<>();
     long duration = 0;
     long start_time;
     List<String> startMemory;
@@ -100,6 +110,13 @@ public class Timing {
         System.out.print("- ");
       }
       System.out.println(toString(top));
+      statistics.forEach(
+          (name, value) -> {
+            for (int i = 0; i <= depth; i++) {
+              System.out.print("  ");
+            }
+            System.out.println("* " + name + ": " + value);
+          });
       System.out.println();
       if (trackMemory) {
         printMemoryStart(depth);
@@ -150,11 +167,30 @@ public class Timing {
       parent.children.put(title, child);
     }
     stack.push(child);
+    if (tracer.isEnabled()) {
+      spans.push(tracer.begin(title));
+    }
   }
 
   public void end() {
     stack.peek().end();  // record time.
     stack.pop();
+    if (tracer.isEnabled()) {
+      spans.pop().end();
+    }
+  }
+
+  public Tracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Records a statistic for the current task. If a statistic with the same name has already been
+   * recorded for the task, the values are accumulated.
+   */
+  public void addStatistic(String name, long value) {
+    stack.peek().statistics.merge(name, value, Long::sum);
+    tracer.incrementCounter(name, value);
   }
 
   public void report() {
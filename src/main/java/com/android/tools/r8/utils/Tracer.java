@@ -0,0 +1,278 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import com.android.tools.r8.TraceGranularity;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Thread-aware instrumentation of a compilation.
+ *
+ * <p>In contrast to {@link Timing}, which only records the phases of the main thread, the tracer
+ * records spans on any thread, including the work that is submitted to the executor service. Spans
+ * have a {@link TraceGranularity}, and class and method spans are sampled to bound the size of the
+ * trace. Besides spans, the tracer maintains named counters, which are snapshotted whenever a phase
+ * ends.
+ *
+ * <p>Where supported by the VM, spans record the number of bytes allocated while they are open.
+ * This does not require a garbage collection. For phase spans the allocation is summed over all
+ * threads, for class and method spans only the allocation of the current thread is recorded.
+ *
+ * <p>All recording is thread-local, so recording a span does not require synchronization. The
+ * recorded events are exported, e.g., as a Chrome trace by {@link ChromeTraceWriter}, once the
+ * compilation has finished.
+ */
+public class Tracer {
+
+  private static final Tracer DISABLED = new Tracer(null, 1);
+
+  private static final ThreadMXBean threadMXBean = createThreadMXBean();
+
+  private final TraceGranularity granularity;
+  private final int samplingInterval;
+  private final long startTime = System.nanoTime();
+
+  private final AtomicLong classCount = new AtomicLong();
+  private final AtomicLong methodCount = new AtomicLong();
+
+  private final ThreadLocal<ThreadEvents> threadEvents = ThreadLocal.withInitial(this::register);
+  private final ConcurrentLinkedQueue<ThreadEvents> allThreadEvents = new ConcurrentLinkedQueue<>();
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final List<CounterEvent> counterEvents = new ArrayList<>();
+  private volatile boolean countersChanged = false;
+
+  private Tracer(TraceGranularity granularity, int samplingInterval) {
+    assert samplingInterval > 0;
+    this.granularity = granularity;
+    this.samplingInterval = samplingInterval;
+  }
+
+  /** Returns a tracer that does not record anything. */
+  public static Tracer disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * Creates a tracer that records spans up to the given granularity. Only one out of {@code
+   * samplingInterval} class and method spans is recorded.
+   */
+  public static Tracer create(TraceGranularity granularity, int samplingInterval) {
+    assert granularity != null;
+    return new Tracer(granularity, samplingInterval);
+  }
+
+  public static Tracer create(InternalOptions options) {
+    return options.traceOutputPath == null
+        ? disabled()
+        : create(options.traceGranularity, options.traceSamplingInterval);
+  }
+
+  private static ThreadMXBean createThreadMXBean() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (sunBean.isThreadAllocatedMemorySupported()
+            && sunBean.isThreadAllocatedMemoryEnabled()) {
+          return bean;
+        }
+      }
+    } catch (LinkageError | SecurityException e) {
+      // Allocation tracking is not available.
+    }
+    return null;
+  }
+
+  public boolean isEnabled() {
+    return granularity != null;
+  }
+
+  public boolean isEnabled(TraceGranularity granularity) {
+    return this.granularity != null && granularity.compareTo(this.granularity) <= 0;
+  }
+
+  /** Begins a phase span on the current thread. */
+  public Span begin(String name) {
+    if (!isEnabled()) {
+      return Span.NONE;
+    }
+    return new Span(this, name, TraceGranularity.PHASE, threadEvents.get());
+  }
+
+  /** Begins a span for the processing of the given class, if it is sampled. */
+  public Span begin(DexProgramClass clazz) {
+    return beginSampled(TraceGranularity.CLASS, classCount, clazz::toSourceString);
+  }
+
+  /** Begins a span for the processing of the given method, if it is sampled. */
+  public Span begin(DexEncodedMethod method) {
+    return beginSampled(TraceGranularity.METHOD, methodCount, method::toSourceString);
+  }
+
+  private Span beginSampled(
+      TraceGranularity granularity, AtomicLong count, Supplier<String> nameSupplier) {
+    if (!isEnabled(granularity) || count.getAndIncrement() % samplingInterval != 0) {
+      return Span.NONE;
+    }
+    return new Span(this, nameSupplier.get(), granularity, threadEvents.get());
+  }
+
+  /** Adds the given value to the counter with the given name. */
+  public void incrementCounter(String name, long value) {
+    if (isEnabled()) {
+      counters.computeIfAbsent(name, ignore -> new LongAdder()).add(value);
+      countersChanged = true;
+    }
+  }
+
+  private synchronized void recordCountersIfChanged(long time) {
+    if (!countersChanged) {
+      return;
+    }
+    countersChanged = false;
+    Map<String, Long> values = new TreeMap<>();
+    counters.forEach((name, value) -> values.put(name, value.sum()));
+    counterEvents.add(new CounterEvent(time, values));
+  }
+
+  private ThreadEvents register() {
+    Thread thread = Thread.currentThread();
+    ThreadEvents events = new ThreadEvents(thread.getId(), thread.getName());
+    allThreadEvents.add(events);
+    return events;
+  }
+
+  private long now() {
+    return System.nanoTime() - startTime;
+  }
+
+  private static long allocatedBytes(TraceGranularity granularity) {
+    if (threadMXBean == null) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+    if (granularity != TraceGranularity.PHASE) {
+      return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    long sum = 0;
+    for (long allocated : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+      if (allocated > 0) {
+        sum += allocated;
+      }
+    }
+    return sum;
+  }
+
+  /** Returns the recorded spans of all threads. Must only be called once tracing has finished. */
+  public List<ThreadEvents> getThreadEvents() {
+    return new ArrayList<>(allThreadEvents);
+  }
+
+  /** Returns the recorded counter snapshots. Must only be called once tracing has finished. */
+  public synchronized List<CounterEvent> getCounterEvents() {
+    recordCountersIfChanged(now());
+    return new ArrayList<>(counterEvents);
+  }
+
+  /** A span of work on a single thread, which is recorded when it ends. */
+  public static class Span implements AutoCloseable {
+
+    private static final Span NONE = new Span(null, null, null, null);
+
+    private final Tracer tracer;
+    private final String name;
+    private final TraceGranularity granularity;
+    private final ThreadEvents events;
+    private final long start;
+    private final long startAllocatedBytes;
+
+    private Span(Tracer tracer, String name, TraceGranularity granularity, ThreadEvents events) {
+      this.tracer = tracer;
+      this.name = name;
+      this.granularity = granularity;
+      this.events = events;
+      this.start = tracer == null ? 0 : tracer.now();
+      this.startAllocatedBytes = tracer == null ? -1 : allocatedBytes(granularity);
+    }
+
+    public void end() {
+      if (tracer == null) {
+        return;
+      }
+      assert events == tracer.threadEvents.get() : "Span must end on the thread it began on";
+      long end = tracer.now();
+      long allocated = -1;
+      if (startAllocatedBytes >= 0) {
+        allocated = Math.max(0, allocatedBytes(granularity) - startAllocatedBytes);
+      }
+      events.spans.add(new SpanEvent(name, granularity, start, end - start, allocated));
+      if (granularity == TraceGranularity.PHASE) {
+        tracer.recordCountersIfChanged(end);
+      }
+    }
+
+    @Override
+    public void close() {
+      end();
+    }
+  }
+
+  /** The spans recorded on a single thread. */
+  public static class ThreadEvents {
+
+    public final long threadId;
+    public final String threadName;
+    public final List<SpanEvent> spans = new ArrayList<>();
+
+    private ThreadEvents(long threadId, String threadName) {
+      this.threadId = threadId;
+      this.threadName = threadName;
+    }
+  }
+
+  public static class SpanEvent {
+
+    public final String name;
+    public final TraceGranularity granularity;
+    // Start time and duration in nanoseconds, relative to the creation of the tracer.
+    public final long start;
+    public final long duration;
+    // Number of bytes allocated during the span, or -1 if unknown.
+    public final long allocatedBytes;
+
+    private SpanEvent(
+        String name, TraceGranularity granularity, long start, long duration, long allocatedBytes) {
+      this.name = name;
+      this.granularity = granularity;
+      this.start = start;
+      this.duration = duration;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+
+  public static class CounterEvent {
+
+    // Time in nanoseconds, relative to the creation of the tracer.
+    public final long time;
+    public final Map<String, Long> values;
+
+    private CounterEvent(long time, Map<String, Long> values) {
+      this.time = time;
+      this.values = values;
+    }
+  }
+}
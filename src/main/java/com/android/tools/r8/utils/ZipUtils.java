@@ -80,21 +80,33 @@ public class ZipUtils {
   public static void writeToZipStream(
       ZipOutputStream stream, String entry, ByteDataView content, int compressionMethod)
       throws IOException {
-    byte[] buffer = content.getBuffer();
-    int offset = content.getOffset();
-    int length = content.getLength();
-    CRC32 crc = new CRC32();
-    crc.update(buffer, offset, length);
+    writeToZipStream(stream, entry, content, computeCrc(content), compressionMethod);
+  }
+
+  /**
+   * Writes the given content to the zip stream using a precomputed CRC-32 checksum of the content
+   * (see {@link #computeCrc}), which allows computing the checksum outside of the critical section
+   * that owns the stream.
+   */
+  public static void writeToZipStream(
+      ZipOutputStream stream, String entry, ByteDataView content, long crc, int compressionMethod)
+      throws IOException {
     ZipEntry zipEntry = new ZipEntry(entry);
     zipEntry.setMethod(compressionMethod);
-    zipEntry.setSize(length);
-    zipEntry.setCrc(crc.getValue());
+    zipEntry.setSize(content.getLength());
+    zipEntry.setCrc(crc);
     zipEntry.setTime(0);
     stream.putNextEntry(zipEntry);
-    stream.write(buffer, offset, length);
+    stream.write(content.getBuffer(), content.getOffset(), content.getLength());
     stream.closeEntry();
   }
 
+  public static long computeCrc(ByteDataView content) {
+    CRC32 crc = new CRC32();
+    crc.update(content.getBuffer(), content.getOffset(), content.getLength());
+    return crc.getValue();
+  }
+
   public static boolean isDexFile(String entry) {
     String name = entry.toLowerCase();
     return name.endsWith(DEX_EXTENSION);
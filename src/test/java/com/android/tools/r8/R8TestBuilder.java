@@ -321,6 +321,16 @@ public abstract class R8TestBuilder<T extends R8TestBuilder<T>>
     return self();
   }
 
+  public T setExecutionProfilePath(Path executionProfilePath) {
+    builder.setExecutionProfilePath(executionProfilePath);
+    return self();
+  }
+
+  public T setCodeStorageHeapBudget(long codeStorageHeapBudget) {
+    builder.setCodeStorageHeapBudget(codeStorageHeapBudget);
+    return self();
+  }
+
   public T setMainDexKeptGraphConsumer(GraphConsumer graphConsumer) {
     builder.setMainDexKeptGraphConsumer(graphConsumer);
     return self();
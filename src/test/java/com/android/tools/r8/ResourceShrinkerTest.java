@@ -21,6 +21,8 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -33,6 +35,7 @@ public class ResourceShrinkerTest extends TestBase {
   @Rule
   public TemporaryFolder tmp = new TemporaryFolder();
 
+  // Synchronized, such that it can also be used for the parallel analysis.
   private static class TrackAll implements ResourceShrinker.ReferenceChecker {
     Set<Integer> integers = Sets.newHashSet();
     Set<String> strings = Sets.newHashSet();
@@ -45,22 +48,23 @@ public class ResourceShrinkerTest extends TestBase {
     }
 
     @Override
-    public void referencedInt(int value) {
+    public synchronized void referencedInt(int value) {
       integers.add(value);
     }
 
     @Override
-    public void referencedString(String value) {
+    public synchronized void referencedString(String value) {
       strings.add(value);
     }
 
     @Override
-    public void referencedStaticField(String internalName, String fieldName) {
+    public synchronized void referencedStaticField(String internalName, String fieldName) {
       fields.add(Lists.newArrayList(internalName, fieldName));
     }
 
     @Override
-    public void referencedMethod(String internalName, String methodName, String methodDescriptor) {
+    public synchronized void referencedMethod(
+        String internalName, String methodName, String methodDescriptor) {
       if (Objects.equals(internalName, "java/lang/Object")
           && Objects.equals(methodName, "<init>")) {
         return;
@@ -219,6 +223,26 @@ public class ResourceShrinkerTest extends TestBase {
     assertThat(analysis.methods, is(Lists.newArrayList()));
   }
 
+  @Test
+  public void testParallelAnalysisOfMultipleDexFiles() throws Exception {
+    ResourceShrinker.Builder builder = new ResourceShrinker.Builder();
+    for (Class<?> clazz : new Class<?>[] {ConstInCode.class, StaticFields.class, ToProcess.class}) {
+      builder.addProgramFiles(compileToDexFile(readClasses(clazz)));
+    }
+    TrackAll analysis = new TrackAll();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      ResourceShrinker.run(builder.build(), analysis, executor);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(analysis.integers, hasItems(10, 11, 12, 13));
+    assertThat(analysis.strings, hasItems("my_layout", "another_layout", "staticValue", "12"));
+    assertEquals(3, analysis.fields.size());
+    assertEquals(3, analysis.methods.size());
+  }
+
   private TrackAll runAnalysis(Class<?>... classes)
       throws IOException, ExecutionException, CompilationFailedException {
     AndroidApp app = readClasses(classes);
@@ -227,10 +251,7 @@ public class ResourceShrinkerTest extends TestBase {
 
   private TrackAll runOnApp(AndroidApp app)
       throws IOException, ExecutionException, CompilationFailedException {
-    AndroidApp outputApp = compileWithD8(app);
-    Path outputDex = tmp.newFolder().toPath().resolve("classes.dex");
-    outputApp.writeToDirectory(outputDex.getParent(), OutputMode.DexIndexed);
-
+    Path outputDex = compileToDexFile(app);
     ProgramResourceProvider provider =
         () -> Lists.newArrayList(ProgramResource.fromFile(ProgramResource.Kind.DEX, outputDex));
     ResourceShrinker.Command command =
@@ -240,4 +261,11 @@ public class ResourceShrinkerTest extends TestBase {
     ResourceShrinker.run(command, analysis);
     return analysis;
   }
-}
\ No newline at end of file
+
+  private Path compileToDexFile(AndroidApp app) throws IOException, CompilationFailedException {
+    AndroidApp outputApp = compileWithD8(app);
+    Path outputDex = tmp.newFolder().toPath().resolve("classes.dex");
+    outputApp.writeToDirectory(outputDex.getParent(), OutputMode.DexIndexed);
+    return outputDex;
+  }
+}
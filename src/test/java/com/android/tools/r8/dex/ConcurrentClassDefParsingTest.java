@@ -0,0 +1,136 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.dex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.Timing;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+public class ConcurrentClassDefParsingTest {
+
+  interface I {
+    int get();
+  }
+
+  static class A implements I {
+    @Override
+    public int get() {
+      return 1;
+    }
+  }
+
+  static class B implements I {
+    @Override
+    public int get() {
+      return 2;
+    }
+  }
+
+  static class C extends B {
+    @Override
+    public int get() {
+      return super.get() + 1;
+    }
+  }
+
+  static class D implements I {
+    private final I[] values = {new A(), new B(), new C()};
+
+    @Override
+    public int get() {
+      int sum = 0;
+      for (I value : values) {
+        sum += value.get();
+      }
+      return sum;
+    }
+  }
+
+  private static final Class<?>[] CLASSES = {I.class, A.class, B.class, C.class, D.class};
+
+  private byte[] compileToDex() throws Exception {
+    D8Command.Builder builder =
+        D8Command.builder().setMode(CompilationMode.DEBUG).setDisableDesugaring(true);
+    for (Class<?> clazz : CLASSES) {
+      String name = clazz.getName();
+      try (InputStream stream =
+          getClass().getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+        builder.addClassProgramData(ByteStreams.toByteArray(stream), Origin.unknown());
+      }
+    }
+    byte[][] result = new byte[1][];
+    D8.run(
+        builder
+            .setProgramConsumer(
+                new DexIndexedConsumer.ForwardingConsumer(null) {
+                  @Override
+                  public void accept(
+                      int fileIndex,
+                      ByteDataView data,
+                      Set<String> descriptors,
+                      DiagnosticsHandler handler) {
+                    result[0] = data.copyByteData();
+                  }
+                })
+            .build());
+    return result[0];
+  }
+
+  private DexApplication read(byte[] dex, int classDefsPerParsingTask) throws Exception {
+    AndroidApp app = AndroidApp.builder().addDexProgramData(dex, Origin.unknown()).build();
+    InternalOptions options = new InternalOptions();
+    options.dexClassDefsPerParsingTask = classDefsPerParsingTask;
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      return new ApplicationReader(app, options, new Timing("ConcurrentClassDefParsingTest"))
+          .read(executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testClassesAreEqualToSequentialParsing() throws Exception {
+    byte[] dex = compileToDex();
+    DexApplication sequential = read(dex, Integer.MAX_VALUE);
+    DexApplication concurrent = read(dex, 1);
+    List<DexProgramClass> classes = sequential.classes();
+    assertEquals(CLASSES.length, classes.size());
+    assertEquals(classes.size(), concurrent.classes().size());
+    for (DexProgramClass clazz : classes) {
+      DexProgramClass other = concurrent.programDefinitionFor(clazz.type);
+      assertNotNull(other);
+      assertEquals(clazz.superType, other.superType);
+      assertEquals(clazz.interfaces, other.interfaces);
+      assertEquals(clazz.instanceFields(), other.instanceFields());
+      assertEquals(clazz.virtualMethods().size(), other.virtualMethods().size());
+      for (int i = 0; i < clazz.virtualMethods().size(); i++) {
+        DexEncodedMethod method = clazz.virtualMethods().get(i);
+        DexEncodedMethod otherMethod = other.virtualMethods().get(i);
+        assertEquals(method.method, otherMethod.method);
+        assertEquals(method.getCode(), otherMethod.getCode());
+      }
+    }
+  }
+}
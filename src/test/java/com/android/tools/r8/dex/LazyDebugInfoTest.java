@@ -0,0 +1,120 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.dex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexCode;
+import com.android.tools.r8.graph.DexDebugInfo;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.android.tools.r8.utils.Timing;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class LazyDebugInfoTest {
+
+  static class TestClass {
+
+    public static int sum(int[] values) {
+      int sum = 0;
+      for (int value : values) {
+        sum += value;
+      }
+      return sum;
+    }
+  }
+
+  private byte[] compileToDex() throws Exception {
+    byte[] classFile;
+    try (InputStream stream =
+        getClass().getResourceAsStream("LazyDebugInfoTest$TestClass.class")) {
+      classFile = ByteStreams.toByteArray(stream);
+    }
+    byte[][] result = new byte[1][];
+    D8.run(
+        D8Command.builder()
+            .addClassProgramData(classFile, Origin.unknown())
+            .setMode(CompilationMode.DEBUG)
+            .setDisableDesugaring(true)
+            .setProgramConsumer(
+                new DexIndexedConsumer.ForwardingConsumer(null) {
+                  @Override
+                  public void accept(
+                      int fileIndex,
+                      ByteDataView data,
+                      Set<String> descriptors,
+                      DiagnosticsHandler handler) {
+                    result[0] = data.copyByteData();
+                  }
+                })
+            .build());
+    return result[0];
+  }
+
+  private DexCode readSumCode(byte[] dex) throws Exception {
+    AndroidApp app = AndroidApp.builder().addDexProgramData(dex, Origin.unknown()).build();
+    DexApplication application =
+        new ApplicationReader(app, new InternalOptions(), new Timing("LazyDebugInfoTest")).read();
+    for (DexProgramClass clazz : application.classes()) {
+      for (DexEncodedMethod method : clazz.directMethods()) {
+        if (method.method.name.toString().equals("sum")) {
+          return method.getCode().asDexCode();
+        }
+      }
+    }
+    throw new AssertionError("Method `sum` not found");
+  }
+
+  @Test
+  public void testDebugInfoIsDecodedOnAccess() throws Exception {
+    byte[] dex = compileToDex();
+    DexCode code = readSumCode(dex);
+    DexDebugInfo debugInfo = code.getDebugInfo();
+    assertNotNull(debugInfo);
+    assertSame(debugInfo, code.getDebugInfo());
+    assertEquals(1, debugInfo.parameters.length);
+    assertEquals("values", debugInfo.parameters[0].toString());
+    // The debug info is equal to the debug info decoded from another read of the same file.
+    assertEquals(debugInfo, readSumCode(dex).getDebugInfo());
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    DexCode code = readSumCode(compileToDex());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<DexDebugInfo>> futures = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        futures.add(executor.submit(code::getDebugInfo));
+      }
+      ThreadUtils.awaitFutures(futures);
+      for (Future<DexDebugInfo> future : futures) {
+        assertSame(code.getDebugInfo(), future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -4,12 +4,14 @@
 
 package com.android.tools.r8.dexsplitter;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.android.tools.r8.CompilationFailedException;
 import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexIndexedConsumer;
 import com.android.tools.r8.DexSplitterHelper;
 import com.android.tools.r8.ExtractMarker;
 import com.android.tools.r8.OutputMode;
@@ -21,6 +23,7 @@ import com.android.tools.r8.ToolHelper.ArtCommandBuilder;
 import com.android.tools.r8.dex.Marker;
 import com.android.tools.r8.dexsplitter.DexSplitter.Options;
 import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.FeatureClassMapping;
 import com.android.tools.r8.utils.FeatureClassMapping.FeatureMappingException;
 import com.android.tools.r8.utils.StringUtils;
 import com.android.tools.r8.utils.codeinspector.ClassSubject;
@@ -116,6 +119,54 @@ public class DexSplitterTests {
     testMarker(false);
   }
 
+  private Path splitWithThreads(Path inputZip, Path splitSpec, int numberOfThreads)
+      throws IOException, CompilationFailedException, FeatureMappingException {
+    Path output = temp.newFolder().toPath().resolve("output");
+    Files.createDirectory(output);
+    D8Command command =
+        D8Command.builder()
+            .addProgramFiles(inputZip)
+            .setProgramConsumer(DexIndexedConsumer.emptyConsumer())
+            .build();
+    DexSplitterHelper.runForTesting(
+        command,
+        FeatureClassMapping.fromSpecification(splitSpec),
+        output.toString(),
+        options -> options.numberOfThreads = numberOfThreads);
+    return output;
+  }
+
+  /**
+   * The features are optimized and written concurrently. Check that the output of each feature is
+   * identical to the output when the features are processed one at a time, and that it is
+   * identical across repeated runs.
+   */
+  @Test
+  public void splitFilesDeterministic()
+      throws IOException, CompilationFailedException, FeatureMappingException {
+    Path inputZip = createInput(false);
+    Path splitSpec = temp.getRoot().toPath().resolve("split_spec_deterministic");
+    try (PrintWriter out = new PrintWriter(splitSpec.toFile(), "UTF-8")) {
+      out.write(
+          "dexsplitsample.Class1:base\n"
+              + "dexsplitsample.Class2:feature1\n"
+              + "dexsplitsample.Class3:feature2\n"
+              + "dexsplitsample.Class4:feature3");
+    }
+    List<String> features = ImmutableList.of("base", "feature1", "feature2", "feature3");
+
+    Path serialOutput = splitWithThreads(inputZip, splitSpec, 1);
+    for (int i = 0; i < 5; i++) {
+      Path output = splitWithThreads(inputZip, splitSpec, 4);
+      for (String feature : features) {
+        Path expected = serialOutput.resolve(feature).resolve("classes.dex");
+        Path actual = output.resolve(feature).resolve("classes.dex");
+        assertTrue(Files.exists(expected));
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(actual));
+      }
+    }
+  }
+
   /**
    * To test the file splitting we have 3 classes that we distribute like this: Class1 -> base
    * Class2 -> feature1 Class3 -> feature1
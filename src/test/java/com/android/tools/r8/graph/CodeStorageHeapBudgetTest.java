@@ -0,0 +1,90 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.R8TestCompileResult;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.google.common.io.ByteStreams;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Tests that spilling compiled code to disk does not change the output of the compilation. */
+@RunWith(Parameterized.class)
+public class CodeStorageHeapBudgetTest extends TestBase {
+
+  private static final String EXPECTED_OUTPUT = "Hello, world!";
+
+  private final TestParameters parameters;
+
+  // Code is only spilled when generating DEX.
+  @Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withDexRuntimes().build();
+  }
+
+  public CodeStorageHeapBudgetTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    R8TestCompileResult withoutBudget = compile(0);
+    // A budget of a single byte spills all code except the code that was accessed last.
+    R8TestCompileResult withTinyBudget = compile(1);
+
+    withTinyBudget
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines(EXPECTED_OUTPUT);
+
+    List<ProgramResource> expected = withoutBudget.app.getDexProgramResourcesForTesting();
+    List<ProgramResource> actual = withTinyBudget.app.getDexProgramResourcesForTesting();
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertArrayEquals(
+          ByteStreams.toByteArray(expected.get(i).getByteStream()),
+          ByteStreams.toByteArray(actual.get(i).getByteStream()));
+    }
+  }
+
+  private R8TestCompileResult compile(long codeStorageHeapBudget) throws Exception {
+    return testForR8(parameters.getBackend())
+        .addInnerClasses(CodeStorageHeapBudgetTest.class)
+        .addKeepMainRule(TestClass.class)
+        .enableInliningAnnotations()
+        .setCodeStorageHeapBudget(codeStorageHeapBudget)
+        .setMinApi(parameters.getRuntime())
+        .compile();
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(greeting(args.length) + ", " + subject(args.length) + "!");
+    }
+
+    @NeverInline
+    static String greeting(int count) {
+      return count == 0 ? "Hello" : "Hi";
+    }
+
+    @NeverInline
+    static String subject(int count) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i <= count; i++) {
+        builder.append(i == 0 ? "world" : "again");
+      }
+      return builder.toString();
+    }
+  }
+}
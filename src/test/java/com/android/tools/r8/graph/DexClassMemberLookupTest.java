@@ -0,0 +1,115 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.android.tools.r8.dex.Constants;
+import com.android.tools.r8.origin.SynthesizedOrigin;
+import java.util.Collections;
+import org.junit.Test;
+
+public class DexClassMemberLookupTest {
+
+  private static final int MEMBER_COUNT = 100;
+
+  private final DexItemFactory factory = new DexItemFactory();
+  private final DexType type = factory.createType("LTest;");
+  private final DexType otherType = factory.createType("LOther;");
+
+  private DexMethod method(DexType holder, int i) {
+    return factory.createMethod(holder, factory.createProto(factory.voidType), "m" + i);
+  }
+
+  private DexField field(DexType holder, int i) {
+    return factory.createField(holder, factory.intType, "f" + i);
+  }
+
+  private DexEncodedMethod encodedMethod(int i) {
+    return new DexEncodedMethod(
+        method(type, i),
+        MethodAccessFlags.fromSharedAccessFlags(Constants.ACC_PUBLIC, false),
+        DexAnnotationSet.empty(),
+        ParameterAnnotationsList.empty(),
+        null);
+  }
+
+  private DexEncodedField encodedField(int i) {
+    return new DexEncodedField(
+        field(type, i),
+        FieldAccessFlags.fromSharedAccessFlags(Constants.ACC_PUBLIC),
+        DexAnnotationSet.empty(),
+        null);
+  }
+
+  private DexProgramClass createClass(int count) {
+    DexEncodedField[] fields = new DexEncodedField[count];
+    DexEncodedMethod[] methods = new DexEncodedMethod[count];
+    for (int i = 0; i < count; i++) {
+      fields[i] = encodedField(i);
+      methods[i] = encodedMethod(i);
+    }
+    return new DexProgramClass(
+        type,
+        null,
+        new SynthesizedOrigin("test", getClass()),
+        ClassAccessFlags.fromSharedAccessFlags(Constants.ACC_PUBLIC),
+        factory.objectType,
+        DexTypeList.empty(),
+        null,
+        null,
+        Collections.emptyList(),
+        null,
+        Collections.emptyList(),
+        DexAnnotationSet.empty(),
+        DexEncodedField.EMPTY_ARRAY,
+        fields,
+        DexEncodedMethod.EMPTY_ARRAY,
+        methods,
+        false);
+  }
+
+  private void checkLookup(DexProgramClass clazz, int count) {
+    for (int i = 0; i < count; i++) {
+      assertSame(clazz.virtualMethods().get(i), clazz.lookupVirtualMethod(method(type, i)));
+      assertSame(clazz.instanceFields().get(i), clazz.lookupInstanceField(field(type, i)));
+      // Members are matched independent of the holder.
+      assertSame(clazz.virtualMethods().get(i), clazz.lookupMethod(method(otherType, i)));
+      assertSame(clazz.instanceFields().get(i), clazz.lookupField(field(otherType, i)));
+      assertNull(clazz.lookupDirectMethod(method(type, i)));
+      assertNull(clazz.lookupStaticField(field(type, i)));
+    }
+    assertNull(clazz.lookupVirtualMethod(method(type, count)));
+    assertNull(clazz.lookupInstanceField(field(type, count)));
+  }
+
+  @Test
+  public void testSmallClass() {
+    int count = MemberLookupTable.MAX_LINEAR_SCAN_SIZE;
+    checkLookup(createClass(count), count);
+  }
+
+  @Test
+  public void testLargeClass() {
+    checkLookup(createClass(MEMBER_COUNT), MEMBER_COUNT);
+  }
+
+  @Test
+  public void testLookupAfterMembersChange() {
+    DexProgramClass clazz = createClass(MEMBER_COUNT);
+    checkLookup(clazz, MEMBER_COUNT);
+    clazz.appendVirtualMethod(encodedMethod(MEMBER_COUNT));
+    clazz.appendInstanceField(encodedField(MEMBER_COUNT));
+    checkLookup(clazz, MEMBER_COUNT + 1);
+    clazz.removeVirtualMethod(MEMBER_COUNT);
+    clazz.removeInstanceField(MEMBER_COUNT);
+    checkLookup(clazz, MEMBER_COUNT);
+
+    DexEncodedMethod replacement = encodedMethod(MEMBER_COUNT);
+    clazz.setVirtualMethod(0, replacement);
+    assertNull(clazz.lookupVirtualMethod(method(type, 0)));
+    assertSame(replacement, clazz.lookupVirtualMethod(method(type, MEMBER_COUNT)));
+  }
+}
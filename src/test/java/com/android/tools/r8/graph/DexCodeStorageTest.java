@@ -0,0 +1,118 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.code.ConstString;
+import com.android.tools.r8.code.Instruction;
+import com.android.tools.r8.code.InvokeStatic;
+import com.android.tools.r8.code.ReturnVoid;
+import com.android.tools.r8.code.SgetObject;
+import com.android.tools.r8.dex.Constants;
+import com.android.tools.r8.graph.DexCode.Try;
+import com.android.tools.r8.graph.DexCode.TryHandler;
+import java.io.IOException;
+import org.junit.Test;
+
+public class DexCodeStorageTest {
+
+  private final DexItemFactory factory = new DexItemFactory();
+
+  private DexEncodedMethod createMethod(String name) {
+    DexType holder = factory.createType("LTest;");
+    DexMethod method = factory.createMethod(holder, factory.createProto(factory.voidType), name);
+    DexMethod println =
+        factory.createMethod(
+            factory.createType("Ljava/io/PrintStream;"),
+            factory.createProto(factory.voidType, factory.stringType),
+            "println");
+    DexField out =
+        factory.createField(
+            factory.createType("Ljava/lang/System;"),
+            factory.createType("Ljava/io/PrintStream;"),
+            "out");
+    DexCode code =
+        new DexCode(
+            2,
+            0,
+            2,
+            new Instruction[] {
+              new SgetObject(0, out),
+              new ConstString(1, factory.createString(name)),
+              new InvokeStatic(2, println, 0, 1, 0, 0, 0),
+              new ReturnVoid()
+            },
+            new Try[0],
+            new TryHandler[0],
+            null);
+    return new DexEncodedMethod(
+        method,
+        MethodAccessFlags.fromSharedAccessFlags(
+            Constants.ACC_PUBLIC | Constants.ACC_STATIC, false),
+        DexAnnotationSet.empty(),
+        ParameterAnnotationsList.empty(),
+        code);
+  }
+
+  @Test
+  public void testSpillAndReload() throws IOException {
+    DexEncodedMethod first = createMethod("first");
+    DexEncodedMethod second = createMethod("second");
+    DexCode firstCode = first.getCode().asDexCode();
+    DexCode secondCode = second.getCode().asDexCode();
+    try (DexCodeStorage storage = DexCodeStorage.create(1)) {
+      // The most recently added code is never spilled.
+      storage.add(first);
+      assertSame(firstCode, first.getCode());
+      assertEquals(0, storage.getSpilledMethods());
+
+      // Adding more code than the budget allows spills the code that was added first.
+      storage.add(second);
+      assertEquals(1, storage.getSpilledMethods());
+      assertSame(secondCode, second.getCode());
+      assertTrue(first.hasCode());
+
+      // Accessing the spilled code reloads it, which in turn spills the second method.
+      DexCode reloadedCode = first.getCode().asDexCode();
+      assertEquals(firstCode, reloadedCode);
+      assertFalse(reloadedCode == firstCode);
+      assertEquals(1, storage.getReloadedMethods());
+      assertEquals(2, storage.getSpilledMethods());
+      assertEquals(2 * storage.getReloadedBytes(), storage.getSpilledBytes());
+      assertEquals(secondCode, second.getCode());
+    }
+  }
+
+  @Test
+  public void testReplacedCodeIsNotSpilled() throws IOException {
+    DexEncodedMethod method = createMethod("method");
+    try (DexCodeStorage storage = DexCodeStorage.create(1)) {
+      storage.add(method);
+      method.removeCode();
+      storage.add(createMethod("other"));
+      assertEquals(0, storage.getSpilledMethods());
+      assertFalse(method.hasCode());
+    }
+  }
+
+  @Test
+  public void testRemovedCodeDoesNotCountTowardsBudget() throws IOException {
+    DexEncodedMethod first = createMethod("first");
+    DexEncodedMethod second = createMethod("second");
+    DexCode firstCode = first.getCode().asDexCode();
+    // The budget is large enough for the code of one method, but not for two.
+    try (DexCodeStorage storage = DexCodeStorage.create(200)) {
+      storage.add(first);
+      // Replacing the code of the first method releases its share of the budget.
+      storage.remove(first, firstCode);
+      storage.add(second);
+      assertEquals(0, storage.getSpilledMethods());
+      assertSame(firstCode, first.getCode());
+    }
+  }
+}
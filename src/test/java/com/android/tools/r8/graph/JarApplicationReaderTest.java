@@ -0,0 +1,53 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.android.tools.r8.utils.InternalOptions;
+import org.junit.Test;
+
+public class JarApplicationReaderTest {
+
+  private final InternalOptions options = new InternalOptions();
+  private final JarApplicationReader application = new JarApplicationReader(options);
+
+  @Test
+  public void testClassFileReaderSharesApplicationItems() {
+    JarApplicationReader first = application.forClassFile();
+    JarApplicationReader second = application.forClassFile();
+    assertNotSame(first, second);
+    assertSame(application, first.getApplicationReader());
+    assertSame(application, second.getApplicationReader());
+
+    // Distinct string instances, as read by distinct ASM class readers, map to the same items.
+    String name = new String("foo");
+    String otherName = new String("foo");
+    String desc = new String("(ILjava/lang/String;)[J");
+    String otherDesc = new String("(ILjava/lang/String;)[J");
+    String internalName = new String("java/lang/Object");
+    String otherInternalName = new String("java/lang/Object");
+    assertSame(application.getString("foo"), first.getString(name));
+    assertSame(first.getString(name), second.getString(otherName));
+    assertSame(first.getString(name), first.getString(otherName));
+    assertSame(application.getProto(desc), first.getProto(desc));
+    assertSame(first.getProto(desc), second.getProto(otherDesc));
+    assertSame(options.itemFactory.objectType, first.getTypeFromName(internalName));
+    assertSame(first.getTypeFromName(internalName), second.getTypeFromName(otherInternalName));
+  }
+
+  @Test
+  public void testProto() {
+    DexProto proto = application.forClassFile().getProto("(ILjava/lang/String;[[I)[J");
+    DexItemFactory factory = options.itemFactory;
+    assertEquals("[J", proto.returnType.toDescriptorString());
+    assertEquals(3, proto.parameters.size());
+    assertSame(factory.intType, proto.parameters.values[0]);
+    assertSame(factory.stringType, proto.parameters.values[1]);
+    assertEquals("[[I", proto.parameters.values[2].toDescriptorString());
+    assertEquals("LILL", proto.shorty.toString());
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.dex.Constants;
+import com.android.tools.r8.graph.DexEncodedMethod.DefaultMethodOptimizationInfoImpl;
+import java.util.BitSet;
+import org.junit.Test;
+
+public class MethodOptimizationInfoSharingTest {
+
+  private final DexItemFactory factory = new DexItemFactory();
+  private final DexType type = factory.createType("LTest;");
+  private final MethodOptimizationInfoCanonicalizer canonicalizer =
+      new MethodOptimizationInfoCanonicalizer();
+
+  private DexEncodedMethod createMethod(String name) {
+    return new DexEncodedMethod(
+        factory.createMethod(type, factory.createProto(factory.voidType), name),
+        MethodAccessFlags.fromSharedAccessFlags(Constants.ACC_PUBLIC, false),
+        DexAnnotationSet.empty(),
+        ParameterAnnotationsList.empty(),
+        null);
+  }
+
+  private UpdatableMethodOptimizationInfo createInfo() {
+    UpdatableMethodOptimizationInfo info =
+        DefaultMethodOptimizationInfoImpl.DEFAULT_INSTANCE.mutableCopy();
+    info.markNeverReturnsNull();
+    info.markMayNotHaveSideEffects();
+    BitSet facts = new BitSet();
+    facts.set(0);
+    info.setNonNullParamOnNormalExits(facts);
+    return info;
+  }
+
+  @Test
+  public void testEqualInfosAreShared() {
+    DexEncodedMethod first = createMethod("first");
+    DexEncodedMethod second = createMethod("second");
+    first.setOptimizationInfo(canonicalizer.canonicalize(createInfo()));
+    second.setOptimizationInfo(canonicalizer.canonicalize(createInfo()));
+    assertSame(first.getOptimizationInfo(), second.getOptimizationInfo());
+    assertTrue(first.getOptimizationInfo().neverReturnsNull());
+    assertFalse(first.getOptimizationInfo().mayHaveSideEffects());
+    assertTrue(first.getOptimizationInfo().getNonNullParamOnNormalExits().get(0));
+  }
+
+  @Test
+  public void testSharedInfoIsCopiedOnWrite() {
+    DexEncodedMethod first = createMethod("first");
+    DexEncodedMethod second = createMethod("second");
+    first.setOptimizationInfo(canonicalizer.canonicalize(createInfo()));
+    second.setOptimizationInfo(canonicalizer.canonicalize(createInfo()));
+    MethodOptimizationInfo shared = second.getOptimizationInfo();
+
+    UpdatableMethodOptimizationInfo info = first.getMutableOptimizationInfo();
+    assertNotSame(shared, info);
+    info.markReturnsConstantNumber(42);
+    assertTrue(first.getOptimizationInfo().returnsConstantNumber());
+    assertEquals(42, first.getOptimizationInfo().getReturnedConstantNumber());
+    // The copy has all facts of the shared info.
+    assertTrue(first.getOptimizationInfo().neverReturnsNull());
+    assertFalse(first.getOptimizationInfo().mayHaveSideEffects());
+    // The shared info is unchanged.
+    assertSame(shared, second.getOptimizationInfo());
+    assertFalse(shared.returnsConstantNumber());
+  }
+
+  @Test
+  public void testInfoWithRareFactsIsNotShared() {
+    DexEncodedMethod method = createMethod("method");
+    UpdatableMethodOptimizationInfo info = createInfo();
+    info.markReturnsArgument(0);
+    method.setOptimizationInfo(canonicalizer.canonicalize(info));
+    assertSame(info, method.getOptimizationInfo());
+    assertSame(info, method.getMutableOptimizationInfo());
+    assertEquals(0, method.getOptimizationInfo().getReturnedArgument());
+  }
+
+  @Test
+  public void testCanonicalizationDoesNotModifyInfo() {
+    UpdatableMethodOptimizationInfo info = createInfo();
+    MethodOptimizationInfo shared = canonicalizer.canonicalize(info);
+    assertNotSame(info, shared);
+    // The given info remains mutable and is not affected by the sharing.
+    info.markReturnsConstantNumber(42);
+    assertTrue(info.returnsConstantNumber());
+    assertFalse(shared.returnsConstantNumber());
+  }
+
+  @Test
+  public void testCompilationsDoNotShareInfos() {
+    MethodOptimizationInfoCanonicalizer other = new MethodOptimizationInfoCanonicalizer();
+    assertNotSame(
+        canonicalizer.canonicalize(createInfo()), other.canonicalize(createInfo()));
+    canonicalizer.clear();
+    MethodOptimizationInfo first = canonicalizer.canonicalize(createInfo());
+    assertSame(first, canonicalizer.canonicalize(createInfo()));
+  }
+}
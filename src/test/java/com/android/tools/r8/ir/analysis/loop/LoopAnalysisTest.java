@@ -0,0 +1,186 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.analysis.loop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.ir.analysis.type.TypeLatticeElement;
+import com.android.tools.r8.ir.code.Argument;
+import com.android.tools.r8.ir.code.BasicBlock;
+import com.android.tools.r8.ir.code.Goto;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.code.IRMetadata;
+import com.android.tools.r8.ir.code.If;
+import com.android.tools.r8.ir.code.If.Type;
+import com.android.tools.r8.ir.code.Instruction;
+import com.android.tools.r8.ir.code.Position;
+import com.android.tools.r8.ir.code.Return;
+import com.android.tools.r8.ir.code.Value;
+import com.android.tools.r8.ir.code.ValueNumberGenerator;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.InternalOptions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.LinkedList;
+import org.junit.Test;
+
+public class LoopAnalysisTest {
+
+  private final IRMetadata metadata = IRMetadata.unknown();
+  private final Position position = Position.testingPosition();
+  private final Value argument = new Value(0, TypeLatticeElement.INT, null);
+
+  private BasicBlock[] createBlocks(int count) {
+    BasicBlock[] blocks = new BasicBlock[count];
+    for (int i = 0; i < count; i++) {
+      blocks[i] = new BasicBlock();
+      blocks[i].setNumber(i);
+    }
+    Instruction instruction = new Argument(argument, false);
+    instruction.setPosition(position);
+    blocks[0].add(instruction, metadata);
+    return blocks;
+  }
+
+  private void link(BasicBlock block, BasicBlock... successors) {
+    Instruction exit;
+    if (successors.length == 0) {
+      exit = new Return();
+    } else if (successors.length == 1) {
+      exit = new Goto();
+    } else {
+      assertEquals(2, successors.length);
+      exit = new If(Type.EQ, argument);
+    }
+    exit.setPosition(position);
+    block.add(exit, metadata);
+    for (BasicBlock successor : successors) {
+      block.getMutableSuccessors().add(successor);
+      successor.getMutablePredecessors().add(block);
+    }
+    block.setFilledForTesting();
+  }
+
+  private IRCode createCode(BasicBlock... blocks) {
+    return new IRCode(
+        new InternalOptions(),
+        null,
+        new LinkedList<>(ImmutableList.copyOf(blocks)),
+        new ValueNumberGenerator(),
+        metadata,
+        Origin.unknown());
+  }
+
+  @Test
+  public void testNestedLoops() {
+    // block0:
+    //   v0 <- argument
+    //   goto block1
+    // block1:
+    //   if eq v0 block5
+    // block2:
+    //   goto block3
+    // block3:
+    //   if eq v0 block2
+    // block4:
+    //   goto block1
+    // block5:
+    //   return
+    BasicBlock[] blocks = createBlocks(6);
+    link(blocks[0], blocks[1]);
+    link(blocks[1], blocks[2], blocks[5]);
+    link(blocks[2], blocks[3]);
+    link(blocks[3], blocks[4], blocks[2]);
+    link(blocks[4], blocks[1]);
+    link(blocks[5]);
+    LoopAnalysis loopAnalysis = new LoopAnalysis(createCode(blocks));
+    assertTrue(loopAnalysis.isReducible());
+    assertEquals(2, loopAnalysis.getLoops().size());
+
+    Loop outer = loopAnalysis.getLoops().get(0);
+    assertSame(blocks[1], outer.getHeader());
+    assertEquals(ImmutableList.of(blocks[4]), outer.getLatches());
+    assertEquals(
+        ImmutableSet.of(blocks[1], blocks[2], blocks[3], blocks[4]),
+        ImmutableSet.copyOf(outer.getBlocks()));
+    assertNull(outer.getParent());
+    assertEquals(1, outer.getDepth());
+    assertSame(blocks[0], outer.getPreheader());
+
+    Loop inner = loopAnalysis.getLoops().get(1);
+    assertSame(blocks[2], inner.getHeader());
+    assertEquals(ImmutableList.of(blocks[3]), inner.getLatches());
+    assertEquals(ImmutableSet.of(blocks[2], blocks[3]), ImmutableSet.copyOf(inner.getBlocks()));
+    assertSame(outer, inner.getParent());
+    assertEquals(ImmutableList.of(inner), outer.getChildren());
+    assertEquals(2, inner.getDepth());
+    assertTrue(outer.contains(inner));
+    assertFalse(inner.contains(outer));
+    // The entry predecessor of the inner loop has two successors, thus it is not a preheader.
+    assertSame(blocks[1], inner.getUniqueEntryPredecessor());
+    assertNull(inner.getPreheader());
+
+    assertEquals(ImmutableList.of(outer), loopAnalysis.getOutermostLoops());
+    assertNull(loopAnalysis.getInnermostLoop(blocks[0]));
+    assertSame(outer, loopAnalysis.getInnermostLoop(blocks[1]));
+    assertSame(inner, loopAnalysis.getInnermostLoop(blocks[3]));
+    assertSame(outer, loopAnalysis.getInnermostLoop(blocks[4]));
+    assertNull(loopAnalysis.getInnermostLoop(blocks[5]));
+    assertTrue(loopAnalysis.isLoopHeader(blocks[2]));
+    assertFalse(loopAnalysis.isLoopHeader(blocks[3]));
+  }
+
+  @Test
+  public void testLoopsWithSharedHeader() {
+    // block0:
+    //   v0 <- argument
+    //   goto block1
+    // block1:
+    //   if eq v0 block4
+    // block2:
+    //   if eq v0 block1
+    // block3:
+    //   goto block1
+    // block4:
+    //   return
+    BasicBlock[] blocks = createBlocks(5);
+    link(blocks[0], blocks[1]);
+    link(blocks[1], blocks[2], blocks[4]);
+    link(blocks[2], blocks[3], blocks[1]);
+    link(blocks[3], blocks[1]);
+    link(blocks[4]);
+    LoopAnalysis loopAnalysis = new LoopAnalysis(createCode(blocks));
+    assertTrue(loopAnalysis.isReducible());
+    assertEquals(1, loopAnalysis.getLoops().size());
+    Loop loop = loopAnalysis.getLoopWithHeader(blocks[1]);
+    assertEquals(ImmutableSet.of(blocks[2], blocks[3]), ImmutableSet.copyOf(loop.getLatches()));
+    assertEquals(
+        ImmutableSet.of(blocks[1], blocks[2], blocks[3]), ImmutableSet.copyOf(loop.getBlocks()));
+  }
+
+  @Test
+  public void testIrreducibleCycle() {
+    // block0:
+    //   v0 <- argument
+    //   if eq v0 block2
+    // block1:
+    //   goto block2
+    // block2:
+    //   if eq v0 block1
+    // block3:
+    //   return
+    BasicBlock[] blocks = createBlocks(4);
+    link(blocks[0], blocks[1], blocks[2]);
+    link(blocks[1], blocks[2]);
+    link(blocks[2], blocks[3], blocks[1]);
+    link(blocks[3]);
+    LoopAnalysis loopAnalysis = new LoopAnalysis(createCode(blocks));
+    assertFalse(loopAnalysis.isReducible());
+    assertFalse(loopAnalysis.hasLoops());
+  }
+}
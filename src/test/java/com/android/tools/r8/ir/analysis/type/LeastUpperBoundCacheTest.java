@@ -0,0 +1,115 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.analysis.type;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+public class LeastUpperBoundCacheTest {
+
+  private final DexItemFactory factory = new DexItemFactory();
+
+  private DexType type(String name) {
+    return factory.createType("L" + name + ";");
+  }
+
+  private static <T> T unexpected() {
+    throw new AssertionError("Expected a cache hit");
+  }
+
+  @Test
+  public void testClassesAreSymmetric() {
+    LeastUpperBoundCache cache = new LeastUpperBoundCache();
+    DexType a = type("A");
+    DexType b = type("B");
+    DexType base = type("Base");
+    assertSame(base, cache.getOrComputeClasses(a, b, () -> base));
+    assertSame(base, cache.getOrComputeClasses(b, a, LeastUpperBoundCacheTest::unexpected));
+    assertEquals(1, cache.getClassHits());
+    assertEquals(1, cache.getClassMisses());
+  }
+
+  @Test
+  public void testInterfacesAreSymmetricAndInterned() {
+    LeastUpperBoundCache cache = new LeastUpperBoundCache();
+    Set<DexType> s1 = ImmutableSet.of(type("I"), type("J"));
+    Set<DexType> s2 = ImmutableSet.of(type("J"), type("K"));
+    Set<DexType> s3 = ImmutableSet.of(type("J"), type("L"));
+    Set<DexType> lub1 = cache.getOrComputeInterfaces(s1, s2, () -> ImmutableSet.of(type("J")));
+    Set<DexType> lub2 =
+        cache.getOrComputeInterfaces(s2, s1, LeastUpperBoundCacheTest::unexpected);
+    Set<DexType> lub3 = cache.getOrComputeInterfaces(s1, s3, () -> ImmutableSet.of(type("J")));
+    assertSame(lub1, lub2);
+    assertSame(lub1, lub3);
+    assertEquals(1, cache.getInterfaceHits());
+    assertEquals(2, cache.getInterfaceMisses());
+  }
+
+  @Test
+  public void testCapacityIsBounded() {
+    LeastUpperBoundCache cache = new LeastUpperBoundCache(16);
+    AtomicInteger computations = new AtomicInteger();
+    Supplier<DexType> computation =
+        () -> {
+          computations.incrementAndGet();
+          return factory.objectType;
+        };
+    for (int i = 0; i < 100; i++) {
+      cache.getOrComputeClasses(type("A" + i), type("B"), computation);
+    }
+    assertEquals(100, computations.get());
+    // At most 16 of the entries are still cached, so the others are recomputed.
+    for (int i = 0; i < 100; i++) {
+      cache.getOrComputeClasses(type("A" + i), type("B"), computation);
+    }
+    assertTrue(computations.get() >= 200 - 16);
+    cache.clear();
+    assertTrue(cache.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentJoins() throws ExecutionException {
+    LeastUpperBoundCache cache = new LeastUpperBoundCache(64);
+    List<DexType> types = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      types.add(type("C" + i));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 10000; i++) {
+                    DexType t1 = types.get(i % types.size());
+                    DexType t2 = types.get((i * 7) % types.size());
+                    DexType lub = factory.objectType;
+                    assertSame(lub, cache.getOrComputeClasses(t1, t2, () -> lub));
+                  }
+                }));
+      }
+      ThreadUtils.awaitFutures(futures);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(40000, cache.getClassHits() + cache.getClassMisses());
+  }
+}
@@ -0,0 +1,159 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.graph.AppInfo;
+import com.android.tools.r8.graph.AppView;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.ParameterAnnotationsList;
+import com.android.tools.r8.ir.conversion.CallGraph.Node;
+import com.android.tools.r8.ir.conversion.CallGraphBuilder.CycleEliminator;
+import com.android.tools.r8.utils.InternalOptions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+public class MethodProcessorWavesTest extends TestBase {
+
+  private final InternalOptions options = new InternalOptions();
+  private final DexItemFactory dexItemFactory = options.itemFactory;
+  private final AppView<?> appView =
+      AppView.createForD8(new AppInfo(DexApplication.builder(options, null).build()), options);
+
+  @Test
+  public void testWavesDoNotConsumeCallGraph() {
+    Node n1 = createNode("n1");
+    Node n2 = createNode("n2");
+    Node n3 = createNode("n3");
+    Node n4 = createNode("n4");
+
+    // n1 -> n2 -> n4 and n1 -> n3 -> n4.
+    n2.addCallerConcurrently(n1);
+    n3.addCallerConcurrently(n1);
+    n4.addCallerConcurrently(n2);
+    n4.addCallerConcurrently(n3);
+
+    CallGraph callGraph = createCallGraph(n1, n2, n3, n4);
+    Deque<Collection<DexEncodedMethod>> waves =
+        MethodProcessor.createWaves(
+            appView, callGraph, callGraph.nodes, CallSiteInformation.empty());
+
+    assertEquals(3, waves.size());
+    assertEquals(ImmutableSet.of(n4.method), Sets.newHashSet(waves.removeFirst()));
+    assertEquals(ImmutableSet.of(n2.method, n3.method), Sets.newHashSet(waves.removeFirst()));
+    assertEquals(ImmutableSet.of(n1.method), Sets.newHashSet(waves.removeFirst()));
+
+    // The call graph should be unchanged.
+    assertEquals(4, callGraph.numberOfNodes());
+    assertEquals(4, callGraph.numberOfEdges());
+    assertTrue(n1.hasCallee(n2));
+    assertTrue(n4.hasCaller(n3));
+  }
+
+  @Test
+  public void testWavesForSubset() {
+    Node n1 = createNode("n1");
+    Node n2 = createNode("n2");
+    Node n3 = createNode("n3");
+
+    // n1 -> n2 -> n3.
+    n2.addCallerConcurrently(n1);
+    n3.addCallerConcurrently(n2);
+
+    CallGraph callGraph = createCallGraph(n1, n2, n3);
+    Set<Node> subset = Sets.newTreeSet(ImmutableList.of(n1, n3));
+    Deque<Collection<DexEncodedMethod>> waves =
+        MethodProcessor.createWaves(appView, callGraph, subset, CallSiteInformation.empty());
+
+    // Since n2 is not processed, n1 and n3 can be processed in the same wave.
+    assertEquals(1, waves.size());
+    assertEquals(ImmutableSet.of(n1.method, n3.method), Sets.newHashSet(waves.removeFirst()));
+  }
+
+  @Test
+  public void testRemoveAllCalleesRetractsCallSites() {
+    Node n1 = createNode("n1");
+    Node n2 = createNode("n2");
+    Node n3 = createNode("n3");
+
+    // n1 calls n2 twice and n3 once, and n3 calls n2 once.
+    n2.addCallerConcurrently(n1);
+    n2.addCallerConcurrently(n1);
+    n3.addCallerConcurrently(n1);
+    n2.addCallerConcurrently(n3);
+    assertEquals(3, n2.getNumberOfCallSites());
+    assertEquals(1, n3.getNumberOfCallSites());
+
+    // Simulate that the code of n1 changed such that it only calls n2 once.
+    n1.removeAllCallees();
+    assertEquals(1, n2.getNumberOfCallSites());
+    assertEquals(0, n3.getNumberOfCallSites());
+    assertFalse(n2.hasCaller(n1));
+    assertTrue(n2.hasCaller(n3));
+
+    n2.addCallerConcurrently(n1);
+    assertEquals(2, n2.getNumberOfCallSites());
+    assertEquals(0, n3.getNumberOfCallSites());
+
+    // Removing the callees again only retracts the call sites registered since the last removal.
+    n1.removeAllCallees();
+    assertEquals(1, n2.getNumberOfCallSites());
+  }
+
+  @Test
+  public void testEdgesAreUpdatedAfterDiscardingCallSiteCounts() {
+    Node n1 = createNode("n1");
+    Node n2 = createNode("n2");
+    Node n3 = createNode("n3");
+
+    // n1 -> n2.
+    n2.addCallerConcurrently(n1);
+    CallGraph callGraph = createCallGraph(n1, n2, n3);
+    callGraph.discardCallSiteCounts();
+
+    // Simulate that the code of n1 changed such that it calls n3 instead of n2.
+    n1.removeAllCallees();
+    n3.addCallerConcurrently(n1);
+    assertFalse(n2.hasCaller(n1));
+    assertTrue(n3.hasCaller(n1));
+    assertTrue(n1.hasCallee(n3));
+  }
+
+  private CallGraph createCallGraph(Node... nodes) {
+    Set<Node> nodesWithDeterministicOrder = Sets.newTreeSet(ImmutableList.copyOf(nodes));
+    Map<DexMethod, Node> nodesByMethod = new IdentityHashMap<>();
+    for (Node node : nodes) {
+      nodesByMethod.put(node.method.method, node);
+    }
+    return new CallGraph(
+        nodesWithDeterministicOrder,
+        nodesByMethod,
+        new CycleEliminator(nodesWithDeterministicOrder, options).breakCycles());
+  }
+
+  private Node createNode(String methodName) {
+    DexMethod signature =
+        dexItemFactory.createMethod(
+            dexItemFactory.objectType,
+            dexItemFactory.createProto(dexItemFactory.voidType),
+            methodName);
+    return new Node(
+        new DexEncodedMethod(signature, null, null, ParameterAnnotationsList.empty(), null));
+  }
+}
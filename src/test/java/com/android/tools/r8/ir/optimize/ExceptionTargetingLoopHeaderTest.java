@@ -0,0 +1,110 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.AndroidApiLevel;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Tests that a nop is inserted at the start of catch handlers that target a loop header when
+ * compiling for VMs with the exception-targeting-loop-header bug, and only then.
+ */
+@RunWith(Parameterized.class)
+public class ExceptionTargetingLoopHeaderTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withDexRuntimes().build();
+  }
+
+  public ExceptionTargetingLoopHeaderTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    ClassSubject classSubject =
+        testForR8(parameters.getBackend())
+            .addInnerClasses(ExceptionTargetingLoopHeaderTest.class)
+            .addKeepMainRule(TestClass.class)
+            .enableInliningAnnotations()
+            .setMinApi(AndroidApiLevel.B)
+            .run(parameters.getRuntime(), TestClass.class)
+            .assertSuccessWithOutput(StringUtils.lines("5", "big", "small"))
+            .inspector()
+            .clazz(TestClass.class);
+    assertThat(classSubject, isPresent());
+
+    // The handler jumps directly to the loop header.
+    MethodSubject loopSubject = classSubject.uniqueMethodWithName("loop");
+    assertThat(loopSubject, isPresent());
+    assertTrue(loopSubject.streamInstructions().anyMatch(InstructionSubject::isNop));
+
+    // The handler jumps to a block with two predecessors and two successors that is not a loop
+    // header.
+    MethodSubject noLoopSubject = classSubject.uniqueMethodWithName("noLoop");
+    assertThat(noLoopSubject, isPresent());
+    assertTrue(noLoopSubject.streamInstructions().noneMatch(InstructionSubject::isNop));
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(loop(args.length + 5));
+      noLoop(args.length + 6);
+      noLoop(args.length + 1);
+    }
+
+    @NeverInline
+    static int loop(int n) {
+      int i = 0;
+      while (i < n) {
+        i++;
+        try {
+          check(i);
+        } catch (IllegalArgumentException e) {
+          // Continue with the next iteration.
+        }
+      }
+      return i;
+    }
+
+    @NeverInline
+    static void noLoop(int n) {
+      try {
+        check(n);
+      } catch (IllegalArgumentException e) {
+        // Continue below.
+      }
+      if (n > 5) {
+        System.out.println("big");
+      } else {
+        System.out.println("small");
+      }
+    }
+
+    @NeverInline
+    static void check(int i) {
+      if (i % 2 == 0) {
+        throw new IllegalArgumentException();
+      }
+    }
+  }
+}
@@ -0,0 +1,222 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverClassInline;
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.NeverPropagateValue;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.code.Iget;
+import com.android.tools.r8.code.Instruction;
+import com.android.tools.r8.code.InvokeStatic;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import java.util.function.Predicate;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class LoopInvariantCodeMotionTest extends TestBase {
+
+  private static final String EXPECTED = StringUtils.lines("12", "9", "9", "12", "4", "18", "6");
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    // The loops are identified from the branch offsets in the generated dex code.
+    return getTestParameters().withDexRuntimes().build();
+  }
+
+  public LoopInvariantCodeMotionTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  private CodeInspector compile(boolean enableLoopInvariantCodeMotion) throws Exception {
+    return testForR8(parameters.getBackend())
+        .addInnerClasses(LoopInvariantCodeMotionTest.class)
+        .addKeepMainRule(TestClass.class)
+        .addOptionsModification(
+            options -> options.enableLoopInvariantCodeMotion = enableLoopInvariantCodeMotion)
+        .enableClassInliningAnnotations()
+        .enableInliningAnnotations()
+        .enableMemberValuePropagationAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutput(EXPECTED)
+        .inspector();
+  }
+
+  @Test
+  public void test() throws Exception {
+    ClassSubject counterSubject = compile(true).clazz(Counter.class);
+    assertThat(counterSubject, isPresent());
+
+    // The read of the field is moved to a new preheader between the check of n and the loop.
+    assertFalse(
+        isInLoop(counterSubject.uniqueMethodWithName("sumOfSteps"), Iget.class::isInstance));
+
+    // The loop is entered from two blocks, which are redirected to a single new preheader.
+    assertFalse(isInLoop(counterSubject.uniqueMethodWithName("sumFrom"), Iget.class::isInstance));
+
+    // The field is written in the loop.
+    assertTrue(
+        isInLoop(counterSubject.uniqueMethodWithName("sumWithWrites"), Iget.class::isInstance));
+
+    // The invoke in the loop may write the field.
+    assertTrue(
+        isInLoop(
+            counterSubject.uniqueMethodWithName("sumWithSideEffects"), Iget.class::isInstance));
+
+    // The idempotent invoke is only executed in some iterations.
+    assertTrue(
+        isInLoop(
+            counterSubject.uniqueMethodWithName("sumOfSquares"),
+            instruction ->
+                instruction instanceof InvokeStatic
+                    && ((InvokeStatic) instruction).getMethod().name.toString().equals("square")));
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    ClassSubject counterSubject = compile(false).clazz(Counter.class);
+    assertThat(counterSubject, isPresent());
+    assertTrue(isInLoop(counterSubject.uniqueMethodWithName("sumOfSteps"), Iget.class::isInstance));
+    assertTrue(isInLoop(counterSubject.uniqueMethodWithName("sumFrom"), Iget.class::isInstance));
+  }
+
+  /**
+   * Returns true if the method has exactly one instruction that satisfies the predicate, and that
+   * instruction is enclosed by a backward branch.
+   */
+  private static boolean isInLoop(MethodSubject method, Predicate<Instruction> predicate) {
+    assertThat(method, isPresent());
+    Instruction[] instructions = method.getMethod().getCode().asDexCode().instructions;
+    Instruction match = null;
+    for (Instruction instruction : instructions) {
+      if (predicate.test(instruction)) {
+        assertEquals(null, match);
+        match = instruction;
+      }
+    }
+    assertTrue(match != null);
+    for (Instruction instruction : instructions) {
+      if (instruction.getOffset() < match.getOffset()) {
+        continue;
+      }
+      for (int target : instruction.getTargets()) {
+        if (instruction.getOffset() + target <= match.getOffset()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      Counter counter = new Counter(args.length + 3);
+      System.out.println(counter.sumOfSteps(4));
+      System.out.println(counter.sumFrom(6, true));
+      System.out.println(counter.sumFrom(6, false));
+      System.out.println(counter.sumWithSideEffects(4));
+      System.out.println(Counter.invocations);
+      System.out.println(Counter.sumOfSquares(new int[] {1, -1, 2}, 3));
+      System.out.println(counter.sumWithWrites(4));
+    }
+  }
+
+  @NeverClassInline
+  static class Counter {
+
+    static int invocations = 0;
+
+    @NeverPropagateValue int step;
+
+    Counter(int step) {
+      this.step = step;
+    }
+
+    @NeverInline
+    int sumOfSteps(int n) {
+      int sum = 0;
+      int i = 0;
+      if (n <= 0) {
+        return 0;
+      }
+      do {
+        sum += step;
+        i++;
+      } while (i < n);
+      return sum;
+    }
+
+    @NeverInline
+    int sumFrom(int n, boolean odd) {
+      int sum = 0;
+      int i = 0;
+      if (odd) {
+        i = 1;
+      }
+      do {
+        sum += step;
+        i += 2;
+      } while (i < n);
+      return sum;
+    }
+
+    @NeverInline
+    int sumWithWrites(int n) {
+      int sum = 0;
+      for (int i = 0; i < n; i++) {
+        sum += step;
+        step = i;
+      }
+      return sum;
+    }
+
+    @NeverInline
+    int sumWithSideEffects(int n) {
+      int sum = 0;
+      for (int i = 0; i < n; i++) {
+        sum += step;
+        log();
+      }
+      return sum;
+    }
+
+    @NeverInline
+    static void log() {
+      invocations++;
+    }
+
+    @NeverInline
+    static int sumOfSquares(int[] values, int x) {
+      int sum = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] > 0) {
+          sum += square(x);
+        }
+      }
+      return sum;
+    }
+
+    @NeverInline
+    static int square(int x) {
+      return x * x;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class ValueRangeOptimizationTest extends TestBase {
+
+  private static final String EXPECTED = StringUtils.lines("6", "3", "6");
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  private final TestParameters parameters;
+
+  public ValueRangeOptimizationTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    CodeInspector inspector =
+        testForR8(parameters.getBackend())
+            .addInnerClasses(ValueRangeOptimizationTest.class)
+            .addKeepMainRule(TestClass.class)
+            .enableInliningAnnotations()
+            .setMinApi(parameters.getRuntime())
+            .run(parameters.getRuntime(), TestClass.class)
+            .assertSuccessWithOutput(EXPECTED)
+            .inspector();
+
+    ClassSubject classSubject = inspector.clazz(TestClass.class);
+    assertThat(classSubject, isPresent());
+
+    // The index is known to be non-negative inside the loop, so the throwing branch is removed.
+    MethodSubject sumSubject = classSubject.uniqueMethodWithName("sum");
+    assertThat(sumSubject, isPresent());
+    assertTrue(sumSubject.streamInstructions().noneMatch(InstructionSubject::isThrow));
+
+    // The array access is in bounds, so the unused array-get instruction is removed.
+    MethodSubject countSubject = classSubject.uniqueMethodWithName("count");
+    assertThat(countSubject, isPresent());
+    assertTrue(countSubject.streamInstructions().noneMatch(InstructionSubject::isArrayGet));
+
+    // The second array-length instruction is replaced by the result of the first one.
+    MethodSubject lastSubject = classSubject.uniqueMethodWithName("last");
+    assertThat(lastSubject, isPresent());
+    assertEquals(
+        1, lastSubject.streamInstructions().filter(InstructionSubject::isArrayLength).count());
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      int[] values = {1, 2, 3};
+      System.out.println(sum(values));
+      System.out.println(count(values));
+      System.out.println(last(values));
+    }
+
+    @NeverInline
+    static int sum(int[] values) {
+      int sum = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (i < 0) {
+          throw new IllegalStateException();
+        }
+        sum += values[i];
+      }
+      return sum;
+    }
+
+    @NeverInline
+    static int count(int[] values) {
+      int count = 0;
+      for (int i = 0; i < values.length; i++) {
+        int unused = values[i];
+        count++;
+      }
+      return count;
+    }
+
+    @NeverInline
+    static int last(int[] values) {
+      return values[values.length - 1] + values.length;
+    }
+  }
+}
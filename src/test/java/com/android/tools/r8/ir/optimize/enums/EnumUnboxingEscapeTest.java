@@ -0,0 +1,177 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.enums;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.NeverMerge;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Tests which uses of an enum prevent the enum from being unboxed. */
+@RunWith(Parameterized.class)
+public class EnumUnboxingEscapeTest extends TestBase {
+
+  private final Backend backend;
+
+  @Parameters(name = "Backend: {0}")
+  public static Backend[] data() {
+    return ToolHelper.getBackends();
+  }
+
+  public EnumUnboxingEscapeTest(Backend backend) {
+    this.backend = backend;
+  }
+
+  @Test
+  public void test() throws Exception {
+    String expectedOutput =
+        StringUtils.lines("1", "a", "b", "0", "1", "true", "false", "A", "A");
+
+    if (backend == Backend.CF) {
+      testForJvm().addTestClasspath().run(TestClass.class).assertSuccessWithOutput(expectedOutput);
+    }
+
+    CodeInspector inspector =
+        testForR8(backend)
+            .addInnerClasses(EnumUnboxingEscapeTest.class)
+            .addKeepMainRule(TestClass.class)
+            .addOptionsModification(options -> options.enableEnumUnboxing = true)
+            .enableInliningAnnotations()
+            .enableMergeAnnotations()
+            .run(TestClass.class)
+            .assertSuccessWithOutput(expectedOutput)
+            .inspector();
+
+    ClassSubject testClassSubject = inspector.clazz(TestClass.class);
+    assertThat(testClassSubject, isPresent());
+
+    // Stored into an array.
+    assertIsEnum(inspector, ArrayEnum.class);
+
+    // Used in a switch, compared to null, and used for ordinal().
+    assertTrue(getParameterType(testClassSubject, "switchOn").isIntType());
+    assertTrue(getParameterType(testClassSubject, "isNull").isIntType());
+    assertTrue(getParameterType(testClassSubject, "ordinalOf").isIntType());
+    assertIsNotEnum(inspector, SwitchEnum.class);
+    assertIsNotEnum(inspector, NullEnum.class);
+    assertIsNotEnum(inspector, OrdinalEnum.class);
+
+    // Implements an interface and is passed as an instance of the interface.
+    assertIsEnum(inspector, InterfaceEnum.class);
+
+    // Stored into a generic collection.
+    assertIsEnum(inspector, GenericEnum.class);
+  }
+
+  private static DexType getParameterType(ClassSubject classSubject, String methodName) {
+    return classSubject.uniqueMethodWithName(methodName).getMethod().method.proto.parameters
+        .values[0];
+  }
+
+  private static void assertIsEnum(CodeInspector inspector, Class<?> clazz) {
+    ClassSubject classSubject = inspector.clazz(clazz);
+    assertThat(classSubject, isPresent());
+    assertTrue(classSubject.getDexClass().isEnum());
+  }
+
+  private static void assertIsNotEnum(CodeInspector inspector, Class<?> clazz) {
+    ClassSubject classSubject = inspector.clazz(clazz);
+    assertTrue(!classSubject.isPresent() || !classSubject.getDexClass().isEnum());
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(secondOrdinal(new ArrayEnum[] {ArrayEnum.A, ArrayEnum.B}));
+      System.out.println(switchOn(SwitchEnum.A));
+      System.out.println(switchOn(SwitchEnum.B));
+      System.out.println(ordinalOf(OrdinalEnum.A));
+      System.out.println(ordinalOf(OrdinalEnum.B));
+      System.out.println(isNull(null));
+      System.out.println(isNull(NullEnum.A));
+      System.out.println(describe(InterfaceEnum.A));
+      List<GenericEnum> list = new ArrayList<>();
+      list.add(GenericEnum.A);
+      System.out.println(list.get(0).name());
+    }
+
+    @NeverInline
+    static int secondOrdinal(ArrayEnum[] array) {
+      return array[1].ordinal();
+    }
+
+    @NeverInline
+    static String switchOn(SwitchEnum value) {
+      switch (value) {
+        case A:
+          return "a";
+        default:
+          return "b";
+      }
+    }
+
+    @NeverInline
+    static int ordinalOf(OrdinalEnum value) {
+      return value.ordinal();
+    }
+
+    @NeverInline
+    static boolean isNull(NullEnum value) {
+      return value == null;
+    }
+
+    @NeverInline
+    static String describe(Marker marker) {
+      return marker.toString();
+    }
+  }
+
+  enum ArrayEnum {
+    A,
+    B
+  }
+
+  enum SwitchEnum {
+    A,
+    B
+  }
+
+  enum OrdinalEnum {
+    A,
+    B
+  }
+
+  enum NullEnum {
+    A,
+    B
+  }
+
+  @NeverMerge
+  interface Marker {}
+
+  enum InterfaceEnum implements Marker {
+    A,
+    B
+  }
+
+  enum GenericEnum {
+    A,
+    B
+  }
+}
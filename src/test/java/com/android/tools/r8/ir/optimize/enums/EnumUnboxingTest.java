@@ -0,0 +1,129 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.enums;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import java.util.EnumSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class EnumUnboxingTest extends TestBase {
+
+  private final Backend backend;
+
+  @Parameters(name = "Backend: {0}")
+  public static Backend[] data() {
+    return ToolHelper.getBackends();
+  }
+
+  public EnumUnboxingTest(Backend backend) {
+    this.backend = backend;
+  }
+
+  @Test
+  public void test() throws Exception {
+    String expectedOutput =
+        StringUtils.lines(
+            "0", "RED", "2", "BLUE", "3", "true", "false", "green", "null", "[SMALL]");
+
+    if (backend == Backend.CF) {
+      testForJvm().addTestClasspath().run(TestClass.class).assertSuccessWithOutput(expectedOutput);
+    }
+
+    CodeInspector inspector =
+        testForR8(backend)
+            .addInnerClasses(EnumUnboxingTest.class)
+            .addKeepMainRule(TestClass.class)
+            .addOptionsModification(options -> options.enableEnumUnboxing = true)
+            .enableInliningAnnotations()
+            .run(TestClass.class)
+            .assertSuccessWithOutput(expectedOutput)
+            .inspector();
+
+    // The enum Color does not escape, so it should be unboxed.
+    ClassSubject testClassSubject = inspector.clazz(TestClass.class);
+    assertThat(testClassSubject, isPresent());
+    assertTrue(
+        testClassSubject.uniqueMethodWithName("get").getMethod().method.proto.returnType
+            .isIntType());
+    assertTrue(
+        testClassSubject.uniqueMethodWithName("isRed").getMethod().method.proto.parameters
+            .values[0].isIntType());
+    ClassSubject colorSubject = inspector.clazz(Color.class);
+    assertTrue(!colorSubject.isPresent() || !colorSubject.getDexClass().isEnum());
+
+    // The enum Size flows into EnumSet.of(), so it cannot be unboxed.
+    ClassSubject sizeSubject = inspector.clazz(Size.class);
+    assertThat(sizeSubject, isPresent());
+    assertTrue(sizeSubject.getDexClass().isEnum());
+  }
+
+  static class TestClass {
+
+    static Color lastColor;
+
+    public static void main(String[] args) {
+      System.out.println(Color.RED.ordinal());
+      System.out.println(Color.RED.name());
+      System.out.println(get(2).ordinal());
+      System.out.println(get(2).toString());
+      System.out.println(Color.values().length);
+      lastColor = get(1);
+      System.out.println(lastColor == Color.GREEN);
+      System.out.println(isRed(lastColor));
+      System.out.println(describe(lastColor));
+      System.out.println(describe(null));
+      System.out.println(EnumSet.of(Size.SMALL));
+    }
+
+    @NeverInline
+    static Color get(int ordinal) {
+      return Color.values()[ordinal];
+    }
+
+    @NeverInline
+    static boolean isRed(Color color) {
+      return color == Color.RED;
+    }
+
+    @NeverInline
+    static String describe(Color color) {
+      if (color == null) {
+        return "null";
+      }
+      switch (color) {
+        case RED:
+          return "red";
+        case GREEN:
+          return "green";
+        default:
+          return "blue";
+      }
+    }
+  }
+
+  enum Color {
+    RED,
+    GREEN,
+    BLUE
+  }
+
+  enum Size {
+    SMALL,
+    LARGE
+  }
+}
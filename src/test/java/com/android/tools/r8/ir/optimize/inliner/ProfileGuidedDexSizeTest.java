@@ -0,0 +1,147 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.inliner;
+
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.R8TestCompileResult;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.DescriptorUtils;
+import com.android.tools.r8.utils.FileUtils;
+import com.android.tools.r8.utils.StringUtils;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.file.Path;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Compares the size of the generated dex code with and without an execution profile in which only
+ * the main method is hot.
+ */
+@RunWith(Parameterized.class)
+public class ProfileGuidedDexSizeTest extends TestBase {
+
+  private static final String EXPECTED =
+      StringUtils.lines("35", "69", "99", "125", "155", "189", "220", "262");
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withDexRuntimes().build();
+  }
+
+  public ProfileGuidedDexSizeTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    String descriptor = DescriptorUtils.javaTypeToDescriptor(TestClass.class.getTypeName());
+    Path profile = temp.newFile("profile.txt").toPath();
+    FileUtils.writeTextFile(profile, descriptor + "->main([Ljava/lang/String;)V");
+
+    int sizeWithoutProfile = getDexSize(compile(null));
+    int sizeWithProfile = getDexSize(compile(profile));
+    assertTrue(
+        "Expected " + sizeWithProfile + " to be less than " + sizeWithoutProfile,
+        sizeWithProfile < sizeWithoutProfile);
+  }
+
+  private R8TestCompileResult compile(Path profile) throws Exception {
+    R8TestCompileResult compileResult =
+        testForR8(parameters.getBackend())
+            .addInnerClasses(ProfileGuidedDexSizeTest.class)
+            .addKeepMainRule(TestClass.class)
+            // Allow inlining of compute() at all call sites when there is no profile. With the
+            // profile, all the call sites are in cold methods and use the cold instruction limit.
+            .addOptionsModification(options -> options.inliningInstructionLimit = 20)
+            .apply(
+                builder -> {
+                  if (profile != null) {
+                    builder.setExecutionProfilePath(profile);
+                  }
+                })
+            .enableInliningAnnotations()
+            .setMinApi(parameters.getRuntime())
+            .compile();
+    compileResult.run(parameters.getRuntime(), TestClass.class).assertSuccessWithOutput(EXPECTED);
+    return compileResult;
+  }
+
+  private static int getDexSize(R8TestCompileResult compileResult) throws Exception {
+    int size = 0;
+    for (ProgramResource resource : compileResult.app.getDexProgramResourcesForTesting()) {
+      try (InputStream stream = resource.getByteStream()) {
+        size += ByteStreams.toByteArray(stream).length;
+      }
+    }
+    return size;
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(a(args.length + 1));
+      System.out.println(b(args.length + 2));
+      System.out.println(c(args.length + 3));
+      System.out.println(d(args.length + 4));
+      System.out.println(e(args.length + 5));
+      System.out.println(f(args.length + 6));
+      System.out.println(g(args.length + 7));
+      System.out.println(h(args.length + 8));
+    }
+
+    @NeverInline
+    static int a(int x) {
+      return compute(x);
+    }
+
+    @NeverInline
+    static int b(int x) {
+      return compute(x);
+    }
+
+    @NeverInline
+    static int c(int x) {
+      return compute(x);
+    }
+
+    @NeverInline
+    static int d(int x) {
+      return compute(x);
+    }
+
+    @NeverInline
+    static int e(int x) {
+      return compute(x);
+    }
+
+    @NeverInline
+    static int f(int x) {
+      return compute(x);
+    }
+
+    @NeverInline
+    static int g(int x) {
+      return compute(x);
+    }
+
+    @NeverInline
+    static int h(int x) {
+      return compute(x);
+    }
+
+    static int compute(int x) {
+      return x * 31 + x / 7 + (x ^ 5);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.inliner;
+
+import static com.android.tools.r8.utils.codeinspector.CodeMatchers.invokesMethod;
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsNot.not;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.DescriptorUtils;
+import com.android.tools.r8.utils.FileUtils;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import java.nio.file.Path;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class ProfileGuidedInliningTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public ProfileGuidedInliningTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    String descriptor = DescriptorUtils.javaTypeToDescriptor(TestClass.class.getTypeName());
+    Path profile = temp.newFile("profile.txt").toPath();
+    FileUtils.writeTextFile(
+        profile,
+        "# Hot methods and call sites.",
+        "HSP" + descriptor + "->hot([Ljava/lang/String;)V",
+        descriptor + "->coldWithHotCallSite([Ljava/lang/String;)V " + descriptor + "->compute(I)I",
+        // Entries that are only executed at startup or after startup are not hot.
+        "S" + descriptor + "->cold([Ljava/lang/String;)V",
+        "SP" + descriptor + "->cold([Ljava/lang/String;)V " + descriptor + "->compute(I)I",
+        // Class entries are ignored.
+        "H" + descriptor);
+
+    CodeInspector inspector =
+        testForR8(parameters.getBackend())
+            .addInnerClasses(ProfileGuidedInliningTest.class)
+            .addKeepMainRule(TestClass.class)
+            .addOptionsModification(options -> options.hotInliningInstructionLimit = 100)
+            .setExecutionProfilePath(profile)
+            .enableInliningAnnotations()
+            .setMinApi(parameters.getRuntime())
+            .run(parameters.getRuntime(), TestClass.class)
+            .assertSuccessWithOutput(StringUtils.lines("35", "69", "99"))
+            .inspector();
+
+    ClassSubject classSubject = inspector.clazz(TestClass.class);
+    assertThat(classSubject, isPresent());
+
+    MethodSubject computeMethod = classSubject.uniqueMethodWithName("compute");
+    assertThat(computeMethod, isPresent());
+
+    // The call site in the hot method and the hot call site are inlined.
+    assertThat(classSubject.uniqueMethodWithName("hot"), not(invokesMethod(computeMethod)));
+    assertThat(
+        classSubject.uniqueMethodWithName("coldWithHotCallSite"),
+        not(invokesMethod(computeMethod)));
+
+    // The call site in the cold method is not.
+    assertThat(classSubject.uniqueMethodWithName("cold"), invokesMethod(computeMethod));
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      hot(args);
+      coldWithHotCallSite(args);
+      cold(args);
+    }
+
+    @NeverInline
+    static void hot(String[] args) {
+      System.out.println(compute(args.length + 1));
+    }
+
+    @NeverInline
+    static void coldWithHotCallSite(String[] args) {
+      System.out.println(compute(args.length + 2));
+    }
+
+    @NeverInline
+    static void cold(String[] args) {
+      System.out.println(compute(args.length + 3));
+    }
+
+    static int compute(int x) {
+      return x * 31 + x / 7 + (x ^ 5);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.membervaluepropagation;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class ClassInitializerStaticFieldForwardingTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  // The string concatenation optimization is only enabled when generating DEX.
+  @Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withDexRuntimes().build();
+  }
+
+  public ClassInitializerStaticFieldForwardingTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    testForR8(parameters.getBackend())
+        .addInnerClasses(ClassInitializerStaticFieldForwardingTest.class)
+        .addKeepMainRule(TestClass.class)
+        .enableInliningAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines("https://example.com/api", "4")
+        .inspect(
+            inspector -> {
+              ClassSubject classSubject = inspector.clazz(Config.class);
+              assertThat(classSubject, isPresent());
+              // The values of API and NEXT_VERSION are computed at compile time, hence all
+              // static-put instructions are hoisted and the class initializer is removed.
+              assertThat(classSubject.clinit(), not(isPresent()));
+            });
+  }
+
+  static class TestClass {
+
+    public static void main(String... args) {
+      Config.print();
+    }
+  }
+
+  static class Config {
+
+    static String BASE = "https://example.com";
+    static String API = BASE + "/api";
+    static int VERSION = 3;
+    static int NEXT_VERSION = VERSION + 1;
+
+    @NeverInline
+    static void print() {
+      System.out.println(API);
+      System.out.println(NEXT_VERSION);
+    }
+  }
+}
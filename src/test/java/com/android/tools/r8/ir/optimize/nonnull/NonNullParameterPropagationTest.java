@@ -0,0 +1,238 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.nonnull;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class NonNullParameterPropagationTest extends TestBase {
+
+  private final Backend backend;
+
+  @Parameters(name = "Backend: {0}")
+  public static Backend[] data() {
+    return ToolHelper.getBackends();
+  }
+
+  public NonNullParameterPropagationTest(Backend backend) {
+    this.backend = backend;
+  }
+
+  @Test
+  public void test() throws Exception {
+    String expectedOutput = StringUtils.lines("3", "5", "0", "null");
+
+    if (backend == Backend.CF) {
+      testForJvm().addTestClasspath().run(TestClass.class).assertSuccessWithOutput(expectedOutput);
+    }
+
+    CodeInspector inspector =
+        testForR8(backend)
+            .addInnerClasses(NonNullParameterPropagationTest.class)
+            .addKeepMainRule(TestClass.class)
+            .enableInliningAnnotations()
+            .run(TestClass.class)
+            .assertSuccessWithOutput(expectedOutput)
+            .inspector();
+
+    ClassSubject classSubject = inspector.clazz(TestClass.class);
+    assertThat(classSubject, isPresent());
+
+    // The argument to length() is non-null at all call sites, so the null check is removed.
+    MethodSubject lengthSubject = classSubject.uniqueMethodWithName("length");
+    assertThat(lengthSubject, isPresent());
+    assertTrue(lengthSubject.streamInstructions().noneMatch(InstructionSubject::isIf));
+
+    // The argument to lengthOrZero() may be null, so the null check is retained.
+    MethodSubject lengthOrZeroSubject = classSubject.uniqueMethodWithName("lengthOrZero");
+    assertThat(lengthOrZeroSubject, isPresent());
+    assertTrue(lengthOrZeroSubject.streamInstructions().anyMatch(InstructionSubject::isIf));
+  }
+
+  @Test
+  public void testNullChecksAndVirtualCalls() throws Exception {
+    String expectedOutput =
+        StringUtils.lines("3", "circle", "shape", "null", "x", "-1", "2", "4");
+
+    if (backend == Backend.CF) {
+      testForJvm()
+          .addTestClasspath()
+          .run(NullCheckTestClass.class)
+          .assertSuccessWithOutput(expectedOutput);
+    }
+
+    CodeInspector inspector =
+        testForR8(backend)
+            .addInnerClasses(NonNullParameterPropagationTest.class)
+            .addKeepMainRule(NullCheckTestClass.class)
+            .addKeepRules(
+                "-keep class " + NullCheckTestClass.class.getTypeName() + " {",
+                "  int keptLength(java.lang.String);",
+                "}")
+            .enableInliningAnnotations()
+            .run(NullCheckTestClass.class)
+            .assertSuccessWithOutput(expectedOutput)
+            .inspector();
+
+    ClassSubject classSubject = inspector.clazz(NullCheckTestClass.class);
+    assertThat(classSubject, isPresent());
+
+    // The argument to checkedLength() is non-null at all call sites, so the call to getClass(),
+    // which only checks for null, is removed. This rewriting is only done when generating dex.
+    MethodSubject checkedLengthSubject = classSubject.uniqueMethodWithName("checkedLength");
+    assertThat(checkedLengthSubject, isPresent());
+    if (backend == Backend.DEX) {
+      assertEquals(0, countCall(checkedLengthSubject, "getClass"));
+    }
+
+    // All possible targets of shape.name() return a non-null value, so the null check of the
+    // result is removed.
+    MethodSubject printNameSubject = classSubject.uniqueMethodWithName("printName");
+    assertThat(printNameSubject, isPresent());
+    assertTrue(printNameSubject.streamInstructions().noneMatch(InstructionSubject::isIf));
+
+    // Circle.describe() may be called with null through a call to Shape.describe().
+    ClassSubject circleSubject = inspector.clazz(Circle.class);
+    assertThat(circleSubject, isPresent());
+    MethodSubject describeSubject = circleSubject.uniqueMethodWithName("describe");
+    assertThat(describeSubject, isPresent());
+    assertTrue(describeSubject.streamInstructions().anyMatch(InstructionSubject::isIf));
+
+    // lengthOrMinusOne() is called with null through a method reference.
+    MethodSubject lengthOrMinusOneSubject = classSubject.uniqueMethodWithName("lengthOrMinusOne");
+    assertThat(lengthOrMinusOneSubject, isPresent());
+    assertTrue(lengthOrMinusOneSubject.streamInstructions().anyMatch(InstructionSubject::isIf));
+
+    // keptLength() is kept, so it may have callers that pass null.
+    MethodSubject keptLengthSubject = classSubject.uniqueMethodWithName("keptLength");
+    assertThat(keptLengthSubject, isPresent());
+    assertTrue(keptLengthSubject.streamInstructions().anyMatch(InstructionSubject::isIf));
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(length("abc"));
+      System.out.println(length("hello"));
+      System.out.println(lengthOrZero(args.length > 0 ? args[0] : null));
+      System.out.println(args.length > 0 ? args[0] : null);
+    }
+
+    @NeverInline
+    static int length(String s) {
+      if (s == null) {
+        throw new NullPointerException();
+      }
+      return s.length();
+    }
+
+    @NeverInline
+    static int lengthOrZero(String s) {
+      if (s == null) {
+        return 0;
+      }
+      return s.length();
+    }
+  }
+
+  interface StringFunction {
+
+    int apply(String s);
+  }
+
+  static class Shape {
+
+    @NeverInline
+    String name() {
+      return "shape";
+    }
+
+    @NeverInline
+    String describe(String s) {
+      return "shape: " + s;
+    }
+  }
+
+  static class Circle extends Shape {
+
+    @NeverInline
+    @Override
+    String name() {
+      return "circle";
+    }
+
+    @NeverInline
+    @Override
+    String describe(String s) {
+      if (s == null) {
+        return "null";
+      }
+      return s;
+    }
+  }
+
+  static class NullCheckTestClass {
+
+    public static void main(String[] args) {
+      System.out.println(checkedLength("abc"));
+      printName(new Circle());
+      printName(new Shape());
+      Shape shape = args.length > 0 ? new Shape() : new Circle();
+      System.out.println(shape.describe(null));
+      System.out.println(new Circle().describe("x"));
+      StringFunction function = NullCheckTestClass::lengthOrMinusOne;
+      System.out.println(function.apply(null));
+      System.out.println(lengthOrMinusOne("ab"));
+      System.out.println(keptLength("abcd"));
+    }
+
+    @NeverInline
+    static int checkedLength(String s) {
+      s.getClass();
+      return s.length();
+    }
+
+    @NeverInline
+    static void printName(Shape shape) {
+      String name = shape.name();
+      if (name == null) {
+        System.out.println("no name");
+      } else {
+        System.out.println(name);
+      }
+    }
+
+    @NeverInline
+    static int lengthOrMinusOne(String s) {
+      if (s == null) {
+        return -1;
+      }
+      return s.length();
+    }
+
+    static int keptLength(String s) {
+      if (s == null) {
+        return 0;
+      }
+      return s.length();
+    }
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.outliner;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.IROrdering.NondeterministicIROrdering;
+import com.android.tools.r8.utils.InternalOptions.OutlineOptions;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.FoundMethodSubject;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class OutlinerDeterminismTest extends TestBase {
+
+  private static final int NUMBER_OF_RUNS = 5;
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public OutlinerDeterminismTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    String expected = null;
+    for (int i = 0; i < NUMBER_OF_RUNS; i++) {
+      CodeInspector inspector =
+          testForR8(parameters.getBackend())
+              .addInnerClasses(OutlinerDeterminismTest.class)
+              .addKeepMainRule(TestClass.class)
+              .addOptionsModification(
+                  options -> {
+                    // Process the methods in a random order on several threads, and select the
+                    // outlines using a task for each candidate.
+                    options.numberOfThreads = 4;
+                    options.testing.irOrdering = NondeterministicIROrdering.getInstance();
+                    options.outline.selectionChunkSize = 1;
+                    options.outline.threshold = 2;
+                    options.outline.minSize = 2;
+                  })
+              .enableInliningAnnotations()
+              .noMinification()
+              .setMinApi(parameters.getRuntime())
+              .compile()
+              .run(parameters.getRuntime(), TestClass.class)
+              .assertSuccessWithOutput(
+                  StringUtils.lines("ab", "cd", "e1", "f2", "g3", "h4", "itrue", "jfalse"))
+              .inspector();
+      String outlines = describeOutlines(inspector);
+      if (expected == null) {
+        expected = outlines;
+      } else {
+        assertEquals(expected, outlines);
+      }
+    }
+  }
+
+  /** Returns the outlines and the outlines used by each method in a canonical textual form. */
+  private static String describeOutlines(CodeInspector inspector) {
+    ClassSubject outlineClass = inspector.clazz(OutlineOptions.CLASS_NAME);
+    assertThat(outlineClass, isPresent());
+    assertTrue(outlineClass.allMethods().size() > 1);
+
+    StringBuilder builder = new StringBuilder();
+    ClassSubject testClass = inspector.clazz(TestClass.class);
+    for (ClassSubject classSubject : new ClassSubject[] {outlineClass, testClass}) {
+      for (FoundMethodSubject method :
+          classSubject.allMethods().stream()
+              .sorted(Comparator.comparing(subject -> subject.getFinalSignature().toString()))
+              .collect(Collectors.toList())) {
+        builder.append(method.getMethod().method.toSourceString()).append(System.lineSeparator());
+        method
+            .streamInstructions()
+            .forEach(
+                instruction ->
+                    builder.append("  ").append(instruction).append(System.lineSeparator()));
+      }
+    }
+    return builder.toString();
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(strings1("a", "b"));
+      System.out.println(strings2("c", "d"));
+      System.out.println(ints1("e", 1));
+      System.out.println(ints2("f", 2));
+      System.out.println(longs1("g", 3L));
+      System.out.println(longs2("h", 4L));
+      System.out.println(booleans1("i", true));
+      System.out.println(booleans2("j", false));
+    }
+
+    @NeverInline
+    static String strings1(String a, String b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+
+    @NeverInline
+    static String strings2(String a, String b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+
+    @NeverInline
+    static String ints1(String a, int b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+
+    @NeverInline
+    static String ints2(String a, int b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+
+    @NeverInline
+    static String longs1(String a, long b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+
+    @NeverInline
+    static String longs2(String a, long b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+
+    @NeverInline
+    static String booleans1(String a, boolean b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+
+    @NeverInline
+    static String booleans2(String a, boolean b) {
+      return new StringBuilder().append(a).append(b).toString();
+    }
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.outliner.profile;
+
+import static com.android.tools.r8.utils.codeinspector.CodeMatchers.invokesMethod;
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.NeverMerge;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.utils.AndroidApiLevel;
+import com.android.tools.r8.utils.Box;
+import com.android.tools.r8.utils.DescriptorUtils;
+import com.android.tools.r8.utils.FileUtils;
+import com.android.tools.r8.utils.InternalOptions.OutlineOptions;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Tests that the outline classes created from cold code are only added to the main dex list if
+ * they are used by a class in the main dex list.
+ */
+@RunWith(Parameterized.class)
+public class ProfileGuidedOutliningMainDexTest extends TestBase {
+
+  private static final String EXPECTED = StringUtils.lines("ab", "cd", "e1", "f2");
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withDexRuntimes().build();
+  }
+
+  public ProfileGuidedOutliningMainDexTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    Path profile = temp.newFile("profile.txt").toPath();
+    FileUtils.writeTextFile(
+        profile,
+        DescriptorUtils.javaTypeToDescriptor(TestClass.class.getTypeName())
+            + "->main([Ljava/lang/String;)V");
+
+    Box<String> mainDexList = new Box<>();
+    CodeInspector inspector = compile(profile, mainDexList);
+    Set<String> mainDexDescriptors = getMainDexDescriptors(mainDexList.get());
+
+    // Each outline is placed in a separate class.
+    ClassSubject mainDexOutlineClass = getOutlineClassUsedBy(inspector, MainDexClass.class);
+    ClassSubject secondaryOutlineClass = getOutlineClassUsedBy(inspector, SecondaryClass.class);
+    assertNotEquals(
+        mainDexOutlineClass.getFinalDescriptor(), secondaryOutlineClass.getFinalDescriptor());
+
+    assertTrue(mainDexDescriptors.contains(mainDexOutlineClass.getFinalDescriptor()));
+    assertFalse(mainDexDescriptors.contains(secondaryOutlineClass.getFinalDescriptor()));
+  }
+
+  @Test
+  public void testWithoutProfile() throws Exception {
+    Box<String> mainDexList = new Box<>();
+    CodeInspector inspector = compile(null, mainDexList);
+    Set<String> mainDexDescriptors = getMainDexDescriptors(mainDexList.get());
+
+    // Without a profile, all outlines are placed in a single class in the main dex list.
+    ClassSubject outlineClass = getOutlineClassUsedBy(inspector, MainDexClass.class);
+    assertEquals(
+        outlineClass.getFinalDescriptor(),
+        getOutlineClassUsedBy(inspector, SecondaryClass.class).getFinalDescriptor());
+    assertTrue(mainDexDescriptors.contains(outlineClass.getFinalDescriptor()));
+  }
+
+  private CodeInspector compile(Path profile, Box<String> mainDexList) throws Exception {
+    return testForR8(parameters.getBackend())
+        .addInnerClasses(ProfileGuidedOutliningMainDexTest.class)
+        .addKeepMainRule(TestClass.class)
+        .addMainDexListClasses(TestClass.class, MainDexClass.class)
+        .addOptionsModification(
+            options -> {
+              options.outline.threshold = 2;
+              options.outline.coldThreshold = 2;
+              options.outline.coldMaxOutlinesPerClass = 1;
+              options.outline.minSize = 2;
+            })
+        .apply(
+            builder -> {
+              if (profile != null) {
+                builder.setExecutionProfilePath(profile);
+              }
+            })
+        .enableInliningAnnotations()
+        .enableMergeAnnotations()
+        .noMinification()
+        .setMainDexListConsumer(ToolHelper.consumeString(mainDexList::set))
+        .setMinApi(AndroidApiLevel.B)
+        .compile()
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutput(EXPECTED)
+        .inspector();
+  }
+
+  private static Set<String> getMainDexDescriptors(String mainDexList) {
+    return StringUtils.splitLines(mainDexList).stream()
+        .map(
+            entry -> {
+              assertTrue(entry.endsWith(FileUtils.CLASS_EXTENSION));
+              return DescriptorUtils.getDescriptorFromClassBinaryName(
+                  entry.substring(0, entry.length() - FileUtils.CLASS_EXTENSION.length()));
+            })
+        .collect(Collectors.toSet());
+  }
+
+  private static ClassSubject getOutlineClassUsedBy(CodeInspector inspector, Class<?> clazz) {
+    ClassSubject classSubject = inspector.clazz(clazz);
+    assertThat(classSubject, isPresent());
+    MethodSubject methodSubject = classSubject.uniqueMethodWithName("cold1");
+    assertThat(methodSubject, isPresent());
+    List<ClassSubject> outlineClasses =
+        inspector.allClasses().stream()
+            .filter(
+                outlineClass ->
+                    outlineClass.getOriginalName().startsWith(OutlineOptions.CLASS_NAME)
+                        && outlineClass.allMethods().stream()
+                            .anyMatch(method -> invokesMethod(method).matches(methodSubject)))
+            .collect(Collectors.toList());
+    assertEquals(1, outlineClasses.size());
+    return outlineClasses.get(0);
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(MainDexClass.cold1("a", "b"));
+      System.out.println(MainDexClass.cold2("c", "d"));
+      System.out.println(SecondaryClass.cold1("e", 1));
+      System.out.println(SecondaryClass.cold2("f", 2));
+    }
+  }
+
+  @NeverMerge
+  static class MainDexClass {
+
+    @NeverInline
+    static String cold1(String a, String b) {
+      StringBuilder builder = new StringBuilder();
+      builder.append(a);
+      builder.append(b);
+      return builder.toString();
+    }
+
+    @NeverInline
+    static String cold2(String a, String b) {
+      StringBuilder builder = new StringBuilder();
+      builder.append(a);
+      builder.append(b);
+      return builder.toString();
+    }
+  }
+
+  @NeverMerge
+  static class SecondaryClass {
+
+    @NeverInline
+    static String cold1(String a, int b) {
+      StringBuffer buffer = new StringBuffer();
+      buffer.append(a);
+      buffer.append(b);
+      return buffer.toString();
+    }
+
+    @NeverInline
+    static String cold2(String a, int b) {
+      StringBuffer buffer = new StringBuffer();
+      buffer.append(a);
+      buffer.append(b);
+      return buffer.toString();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.outliner.profile;
+
+import static com.android.tools.r8.utils.codeinspector.CodeMatchers.invokesMethod;
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsNot.not;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.DescriptorUtils;
+import com.android.tools.r8.utils.FileUtils;
+import com.android.tools.r8.utils.InternalOptions.OutlineOptions;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import java.nio.file.Path;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class ProfileGuidedOutliningTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public ProfileGuidedOutliningTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    Path profile = temp.newFile("profile.txt").toPath();
+    FileUtils.writeTextFile(
+        profile,
+        DescriptorUtils.javaTypeToDescriptor(TestClass.class.getTypeName())
+            + "->hot(Ljava/lang/String;Ljava/lang/String;)Ljava/lang/String;");
+
+    testForR8(parameters.getBackend())
+        .addInnerClasses(ProfileGuidedOutliningTest.class)
+        .addKeepMainRule(TestClass.class)
+        .addOptionsModification(
+            options -> {
+              options.executionProfilePath = profile;
+              options.outline.coldThreshold = 2;
+              options.outline.minSize = 2;
+            })
+        .enableInliningAnnotations()
+        .noMinification()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .inspect(this::inspect)
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutput(StringUtils.lines("ab", "cd", "ef"));
+  }
+
+  private void inspect(CodeInspector inspector) {
+    ClassSubject outlineClass = inspector.clazz(OutlineOptions.CLASS_NAME);
+    assertThat(outlineClass, isPresent());
+
+    MethodSubject outlineMethod = outlineClass.uniqueMethodWithName("outline0");
+    assertThat(outlineMethod, isPresent());
+
+    // The code in the cold methods is outlined, but the code in the hot method is not.
+    ClassSubject classSubject = inspector.clazz(TestClass.class);
+    assertThat(classSubject.uniqueMethodWithName("cold1"), invokesMethod(outlineMethod));
+    assertThat(classSubject.uniqueMethodWithName("cold2"), invokesMethod(outlineMethod));
+    assertThat(classSubject.uniqueMethodWithName("hot"), not(invokesMethod(outlineMethod)));
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(cold1("a", "b"));
+      System.out.println(cold2("c", "d"));
+      System.out.println(hot("e", "f"));
+    }
+
+    @NeverInline
+    static String cold1(String a, String b) {
+      StringBuilder builder = new StringBuilder();
+      builder.append(a);
+      builder.append(b);
+      return builder.toString();
+    }
+
+    @NeverInline
+    static String cold2(String a, String b) {
+      StringBuilder builder = new StringBuilder();
+      builder.append(a);
+      builder.append(b);
+      return builder.toString();
+    }
+
+    @NeverInline
+    static String hot(String a, String b) {
+      StringBuilder builder = new StringBuilder();
+      builder.append(a);
+      builder.append(b);
+      return builder.toString();
+    }
+  }
+}
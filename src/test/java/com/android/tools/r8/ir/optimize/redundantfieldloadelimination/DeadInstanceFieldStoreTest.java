@@ -0,0 +1,136 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.redundantfieldloadelimination;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverClassInline;
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class DeadInstanceFieldStoreTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public DeadInstanceFieldStoreTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    testForR8(parameters.getBackend())
+        .addInnerClasses(DeadInstanceFieldStoreTest.class)
+        .addKeepMainRule(TestClass.class)
+        .enableClassInliningAnnotations()
+        .enableInliningAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .inspect(
+            inspector -> {
+              ClassSubject classSubject = inspector.clazz(TestClass.class);
+              assertThat(classSubject, isPresent());
+
+              // The object does not escape and the loaded field is replaced by the stored value,
+              // so none of the fields are read and both stores are removed.
+              MethodSubject computeSubject = classSubject.uniqueMethodWithName("compute");
+              assertThat(computeSubject, isPresent());
+              assertTrue(
+                  computeSubject.streamInstructions().noneMatch(InstructionSubject::isInstancePut));
+
+              // The object escapes to a method that reads the fields.
+              MethodSubject escapeSubject = classSubject.uniqueMethodWithName("escape");
+              assertThat(escapeSubject, isPresent());
+              assertEquals(
+                  2,
+                  escapeSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstancePut)
+                      .count());
+
+              // The constructor is not trivial, so it may read the field.
+              MethodSubject notTrivialSubject = classSubject.uniqueMethodWithName("notTrivial");
+              assertThat(notTrivialSubject, isPresent());
+              assertEquals(
+                  1,
+                  notTrivialSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstancePut)
+                      .count());
+            })
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines("1", "5", "created 0", "3");
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(compute(args.length + 1));
+      System.out.println(escape(args.length + 2));
+      System.out.println(notTrivial(args.length + 3));
+    }
+
+    @NeverInline
+    static int compute(int x) {
+      Pair pair = new Pair();
+      pair.first = x;
+      pair.second = x + 1;
+      return pair.first;
+    }
+
+    @NeverInline
+    static int escape(int x) {
+      Pair pair = new Pair();
+      pair.first = x;
+      pair.second = x + 1;
+      return sum(pair);
+    }
+
+    @NeverInline
+    static int sum(Pair pair) {
+      return pair.first + pair.second;
+    }
+
+    @NeverInline
+    static int notTrivial(int x) {
+      LoggingBox box = new LoggingBox();
+      box.value = x;
+      return x;
+    }
+  }
+
+  @NeverClassInline
+  static class Pair {
+
+    int first;
+    int second;
+  }
+
+  @NeverClassInline
+  static class LoggingBox {
+
+    int value;
+
+    LoggingBox() {
+      System.out.println("created " + value);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.redundantfieldloadelimination;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.NeverClassInline;
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class InstanceFieldLoadsInLoopTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public InstanceFieldLoadsInLoopTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    testForR8(parameters.getBackend())
+        .addInnerClasses(InstanceFieldLoadsInLoopTest.class)
+        .addKeepMainRule(TestClass.class)
+        .enableClassInliningAnnotations()
+        .enableInliningAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .inspect(
+            inspector -> {
+              ClassSubject classSubject = inspector.clazz(TestClass.class);
+              assertThat(classSubject, isPresent());
+
+              // The field is not written in the loop, so the load in the loop is replaced by the
+              // load before the loop, which is active on both the entry edge and the back edge.
+              MethodSubject sumSubject = classSubject.uniqueMethodWithName("sum");
+              assertThat(sumSubject, isPresent());
+              assertEquals(
+                  1,
+                  sumSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+
+              // The field is written in the loop, so the value on the back edge differs from the
+              // value loaded before the loop.
+              MethodSubject sumWithStoreSubject = classSubject.uniqueMethodWithName("sumWithStore");
+              assertThat(sumWithStoreSubject, isPresent());
+              assertEquals(
+                  2,
+                  sumWithStoreSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+            })
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines("8", "5");
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(sum(new Box(2), args.length + 3));
+      System.out.println(sumWithStore(new Box(2), args.length + 3));
+    }
+
+    @NeverInline
+    static int sum(Box box, int n) {
+      int sum = box.value;
+      for (int i = 0; i < n; i++) {
+        sum += box.value + i - 1;
+      }
+      return sum;
+    }
+
+    @NeverInline
+    static int sumWithStore(Box box, int n) {
+      int sum = box.value;
+      for (int i = 0; i < n; i++) {
+        sum += box.value;
+        box.value = i;
+      }
+      return sum;
+    }
+  }
+
+  @NeverClassInline
+  static class Box {
+
+    int value;
+
+    Box(int value) {
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.redundantfieldloadelimination;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.NeverClassInline;
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class InstanceFieldLoadsSeparatedByInvokeTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public InstanceFieldLoadsSeparatedByInvokeTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    testForR8(parameters.getBackend())
+        .addInnerClasses(InstanceFieldLoadsSeparatedByInvokeTest.class)
+        .addKeepMainRule(TestClass.class)
+        .enableClassInliningAnnotations()
+        .enableInliningAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .inspect(
+            inspector -> {
+              ClassSubject classSubject = inspector.clazz(TestClass.class);
+              assertThat(classSubject, isPresent());
+
+              // The invoked method does not have side effects, so the second load is redundant.
+              MethodSubject pureSubject = classSubject.uniqueMethodWithName("pure");
+              assertThat(pureSubject, isPresent());
+              assertEquals(
+                  1,
+                  pureSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+
+              // The invoked method writes a field, so the second load is needed.
+              MethodSubject impureSubject = classSubject.uniqueMethodWithName("impure");
+              assertThat(impureSubject, isPresent());
+              assertEquals(
+                  2,
+                  impureSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+            })
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines("7", "5", "1");
+  }
+
+  static class TestClass {
+
+    static int invocations = 0;
+
+    public static void main(String[] args) {
+      System.out.println(pure(new Box(args.length + 2)));
+      System.out.println(impure(new Box(args.length + 2)));
+      System.out.println(invocations);
+    }
+
+    @NeverInline
+    static int pure(Box box) {
+      int x = box.value;
+      int y = square(x);
+      return y + x - box.value + 3;
+    }
+
+    @NeverInline
+    static int impure(Box box) {
+      int x = box.value;
+      log();
+      return x + box.value + 1;
+    }
+
+    @NeverInline
+    static int square(int x) {
+      return x * x;
+    }
+
+    @NeverInline
+    static void log() {
+      invocations++;
+    }
+  }
+
+  @NeverClassInline
+  static class Box {
+
+    int value;
+
+    Box(int value) {
+      this.value = value;
+    }
+  }
+}
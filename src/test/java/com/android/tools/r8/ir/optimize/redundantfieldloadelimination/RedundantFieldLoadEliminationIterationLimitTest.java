@@ -0,0 +1,121 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.redundantfieldloadelimination;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.NeverClassInline;
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Tests that redundant field load elimination only propagates the active fields across edges to
+ * blocks with a single predecessor when the fixed-point computation does not stabilize within the
+ * iteration limit.
+ */
+@RunWith(Parameterized.class)
+public class RedundantFieldLoadEliminationIterationLimitTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public RedundantFieldLoadEliminationIterationLimitTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    testForR8(parameters.getBackend())
+        .addInnerClasses(RedundantFieldLoadEliminationIterationLimitTest.class)
+        .addKeepMainRule(TestClass.class)
+        .addOptionsModification(
+            options -> options.redundantFieldLoadEliminationMaxIterationsPerBlock = 0)
+        .enableClassInliningAnnotations()
+        .enableInliningAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .inspect(
+            inspector -> {
+              ClassSubject classSubject = inspector.clazz(TestClass.class);
+              assertThat(classSubject, isPresent());
+
+              // The active fields are not propagated to the join point.
+              MethodSubject joinSubject = classSubject.uniqueMethodWithName("join");
+              assertThat(joinSubject, isPresent());
+              assertEquals(
+                  2,
+                  joinSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+
+              // The active fields are still propagated to the successors of the branch.
+              MethodSubject branchSubject = classSubject.uniqueMethodWithName("branch");
+              assertThat(branchSubject, isPresent());
+              assertEquals(
+                  1,
+                  branchSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+            })
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines("83", "85", "0");
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(join(new Box(42), args.length > 0));
+      System.out.println(branch(new Box(42), args.length == 0));
+      System.out.println(branch(new Box(42), args.length > 0));
+    }
+
+    @NeverInline
+    static int join(Box box, boolean flag) {
+      int x = box.value;
+      int y;
+      if (flag) {
+        y = x + 1;
+      } else {
+        y = x - 1;
+      }
+      return y + box.value;
+    }
+
+    @NeverInline
+    static int branch(Box box, boolean flag) {
+      int x = box.value;
+      if (flag) {
+        return x + box.value + 1;
+      }
+      return 0;
+    }
+  }
+
+  @NeverClassInline
+  static class Box {
+
+    int value;
+
+    Box(int value) {
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.redundantfieldloadelimination;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.NeverClassInline;
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class RedundantInstanceFieldLoadAfterJoinTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public RedundantInstanceFieldLoadAfterJoinTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    testForR8(parameters.getBackend())
+        .addInnerClasses(RedundantInstanceFieldLoadAfterJoinTest.class)
+        .addKeepMainRule(TestClass.class)
+        .enableClassInliningAnnotations()
+        .enableInliningAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .inspect(
+            inspector -> {
+              ClassSubject classSubject = inspector.clazz(TestClass.class);
+              assertThat(classSubject, isPresent());
+
+              // The load of `value` after the join point is redundant, since the field is loaded
+              // before the branch and not written on any of the paths to the join point.
+              MethodSubject methodSubject = classSubject.uniqueMethodWithName("compute");
+              assertThat(methodSubject, isPresent());
+              assertEquals(
+                  1,
+                  methodSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+            })
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines("83");
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(compute(new Box(42), args.length > 0));
+    }
+
+    @NeverInline
+    static int compute(Box box, boolean flag) {
+      int x = box.value;
+      int y;
+      if (flag) {
+        y = x + 1;
+      } else {
+        y = x - 1;
+      }
+      return y + box.value;
+    }
+  }
+
+  @NeverClassInline
+  static class Box {
+
+    int value;
+
+    Box(int value) {
+      this.value = value;
+    }
+  }
+}
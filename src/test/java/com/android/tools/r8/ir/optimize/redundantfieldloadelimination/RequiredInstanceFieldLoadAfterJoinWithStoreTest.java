@@ -0,0 +1,92 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.android.tools.r8.ir.optimize.redundantfieldloadelimination;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.NeverClassInline;
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class RequiredInstanceFieldLoadAfterJoinWithStoreTest extends TestBase {
+
+  private final TestParameters parameters;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  public RequiredInstanceFieldLoadAfterJoinWithStoreTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    testForR8(parameters.getBackend())
+        .addInnerClasses(RequiredInstanceFieldLoadAfterJoinWithStoreTest.class)
+        .addKeepMainRule(TestClass.class)
+        .enableClassInliningAnnotations()
+        .enableInliningAnnotations()
+        .setMinApi(parameters.getRuntime())
+        .compile()
+        .inspect(
+            inspector -> {
+              ClassSubject classSubject = inspector.clazz(TestClass.class);
+              assertThat(classSubject, isPresent());
+
+              // The field is written on one of the paths to the join point, so the load after the
+              // join point is needed.
+              MethodSubject methodSubject = classSubject.uniqueMethodWithName("compute");
+              assertThat(methodSubject, isPresent());
+              assertEquals(
+                  2,
+                  methodSubject
+                      .streamInstructions()
+                      .filter(InstructionSubject::isInstanceGet)
+                      .count());
+            })
+        .run(parameters.getRuntime(), TestClass.class)
+        .assertSuccessWithOutputLines("84", "85");
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(compute(new Box(42), args.length > 0));
+      System.out.println(compute(new Box(42), args.length == 0));
+    }
+
+    @NeverInline
+    static int compute(Box box, boolean flag) {
+      int x = box.value;
+      if (flag) {
+        box.value = x + 1;
+      }
+      return x + box.value;
+    }
+  }
+
+  @NeverClassInline
+  static class Box {
+
+    int value;
+
+    Box(int value) {
+      this.value = value;
+    }
+  }
+}
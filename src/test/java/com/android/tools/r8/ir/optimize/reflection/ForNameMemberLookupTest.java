@@ -0,0 +1,90 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize.reflection;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+class ForNameMemberLookupTestMain {
+
+  static class Target {
+    int counter;
+
+    void increment() {
+      counter++;
+    }
+  }
+
+  public static void main(String[] args) {
+    try {
+      // Target does not have a class initializer, hence rewritten to const-class, even though the
+      // lookup is guarded by a handler for ClassNotFoundException.
+      Class<?> clazz =
+          Class.forName(
+              "com.android.tools.r8.ir.optimize.reflection.ForNameMemberLookupTestMain$Target");
+      // The members are looked up on the result of forName(), and should be kept and renamed
+      // consistently with the names used in the lookups.
+      System.out.println(clazz.getDeclaredField("counter").getType());
+      System.out.println(clazz.getDeclaredMethod("increment").getReturnType());
+    } catch (ReflectiveOperationException e) {
+      System.out.println("Unexpected: " + e);
+    }
+  }
+}
+
+@RunWith(Parameterized.class)
+public class ForNameMemberLookupTest extends ReflectionOptimizerTestBase {
+  private static final String JAVA_OUTPUT = StringUtils.lines("int", "void");
+  private static final Class<?> MAIN = ForNameMemberLookupTestMain.class;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  private final TestParameters parameters;
+
+  public ForNameMemberLookupTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void testJVMOutput() throws Exception {
+    assumeTrue("Only run JVM reference on CF runtimes", parameters.isCfRuntime());
+    testForJvm()
+        .addTestClasspath()
+        .run(parameters.getRuntime(), MAIN)
+        .assertSuccessWithOutput(JAVA_OUTPUT);
+  }
+
+  @Test
+  public void testR8() throws Exception {
+    CodeInspector inspector =
+        testForR8(parameters.getBackend())
+            .addProgramClassesAndInnerClasses(MAIN)
+            .addKeepMainRule(MAIN)
+            .setMinApi(parameters.getRuntime())
+            .run(parameters.getRuntime(), MAIN)
+            .assertSuccessWithOutput(JAVA_OUTPUT)
+            .inspector();
+
+    ClassSubject mainClass = inspector.clazz(MAIN);
+    MethodSubject mainMethod = mainClass.mainMethod();
+    assertThat(mainMethod, isPresent());
+    assertEquals(0, countForName(mainMethod));
+    assertEquals(1, countConstClass(mainMethod));
+  }
+}
@@ -0,0 +1,136 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize.string;
+
+import static com.android.tools.r8.utils.codeinspector.Matchers.isPresent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.NeverInline;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.TestParameters;
+import com.android.tools.r8.TestParametersCollection;
+import com.android.tools.r8.utils.StringUtils;
+import com.android.tools.r8.utils.codeinspector.ClassSubject;
+import com.android.tools.r8.utils.codeinspector.CodeInspector;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject;
+import com.android.tools.r8.utils.codeinspector.InstructionSubject.JumboStringMode;
+import com.android.tools.r8.utils.codeinspector.MethodSubject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class StringBuilderPresizingTest extends TestBase {
+
+  private static final String EXPECTED =
+      StringUtils.lines(
+          "The answer to the question is: 42!", "The value of the flag is: true", "x=1");
+
+  @Parameterized.Parameters(name = "{0}")
+  public static TestParametersCollection data() {
+    return getTestParameters().withAllRuntimes().build();
+  }
+
+  private final TestParameters parameters;
+
+  public StringBuilderPresizingTest(TestParameters parameters) {
+    this.parameters = parameters;
+  }
+
+  @Test
+  public void test() throws Exception {
+    CodeInspector inspector =
+        testForR8(parameters.getBackend())
+            .addInnerClasses(StringBuilderPresizingTest.class)
+            .addKeepMainRule(TestClass.class)
+            .enableInliningAnnotations()
+            .setMinApi(parameters.getRuntime())
+            .run(parameters.getRuntime(), TestClass.class, "42")
+            .assertSuccessWithOutput(EXPECTED)
+            .inspector();
+
+    // The builder optimizations are only enabled when generating DEX.
+    if (parameters.isCfRuntime()) {
+      return;
+    }
+
+    ClassSubject classSubject = inspector.clazz(TestClass.class);
+    assertThat(classSubject, isPresent());
+
+    // The result of answer() is at least 32 characters long, so the builder is presized.
+    MethodSubject answerSubject = classSubject.uniqueMethodWithName("answer");
+    assertThat(answerSubject, isPresent());
+    assertEquals(1, countCall(answerSubject, "StringBuilder", "<init>"));
+    assertTrue(
+        answerSubject
+            .streamInstructions()
+            .anyMatch(
+                instruction ->
+                    instruction.isInvoke()
+                        && instruction.getMethod().name.toString().equals("<init>")
+                        && instruction.getMethod().getArity() == 1));
+    // The adjacent constant appends are merged into a single append.
+    assertTrue(
+        answerSubject
+            .streamInstructions()
+            .anyMatch(
+                instruction ->
+                    instruction.isConstString(
+                        "The answer to the question is: ", JumboStringMode.ALLOW)));
+
+    // The argument to String#valueOf(boolean) is passed directly to append(boolean).
+    MethodSubject flagSubject = classSubject.uniqueMethodWithName("flag");
+    assertThat(flagSubject, isPresent());
+    assertEquals(0, countCall(flagSubject, "String", "valueOf"));
+
+    // The result of small() fits in the default capacity, so the builder is not presized.
+    MethodSubject smallSubject = classSubject.uniqueMethodWithName("small");
+    assertThat(smallSubject, isPresent());
+    assertTrue(
+        smallSubject
+            .streamInstructions()
+            .noneMatch(
+                instruction ->
+                    instruction.isInvoke()
+                        && instruction.getMethod().name.toString().equals("<init>")
+                        && instruction.getMethod().getArity() == 1));
+  }
+
+  static class TestClass {
+
+    public static void main(String[] args) {
+      System.out.println(answer(args[0]));
+      System.out.println(flag(args.length > 0));
+      System.out.println(small(args.length));
+    }
+
+    @NeverInline
+    static String answer(String value) {
+      StringBuilder builder = new StringBuilder();
+      builder.append("The answer to the question is");
+      builder.append(": ");
+      builder.append(value);
+      builder.append("!");
+      return builder.toString();
+    }
+
+    @NeverInline
+    static String flag(boolean value) {
+      StringBuilder builder = new StringBuilder();
+      builder.append("The value of the flag is: ");
+      builder.append(String.valueOf(value));
+      return builder.toString();
+    }
+
+    @NeverInline
+    static String small(int value) {
+      StringBuilder builder = new StringBuilder();
+      builder.append("x=");
+      builder.append(value);
+      return builder.toString();
+    }
+  }
+}
@@ -104,4 +104,29 @@ public class SimplifyIfNotNullKotlinTest extends AbstractR8KotlinTestBase {
     });
   }
 
+  @Test
+  public void test_example4() throws Exception {
+    final TestKotlinClass ex4 = new TestKotlinClass("non_null.Example4Kt");
+    final MethodSignature testMethodSignature =
+        new MethodSignature("describe", STRING, ImmutableList.of("non_null.Item", STRING));
+
+    final String mainClassName = ex4.getClassName();
+    final String extraRules =
+        "-neverinline class " + mainClassName + " {" + System.lineSeparator()
+            + testMethodSignature.toString() + ";" + System.lineSeparator()
+            + "}";
+    runTest(FOLDER, mainClassName, extraRules, app -> {
+      CodeInspector codeInspector = new CodeInspector(app);
+      ClassSubject clazz = checkClassIsKept(codeInspector, ex4.getClassName());
+
+      // The arguments are non-null at all call sites, and the result of String.valueOf() is
+      // non-null, so the parameter and expression checks are removed, whether inlined or not.
+      MethodSubject testMethod = checkMethodIsKept(clazz, testMethodSignature);
+      long ifzCount = Streams.stream(testMethod.iterateInstructions())
+          .filter(i -> i.isIfEqz() || i.isIfNez()).count();
+      assertEquals(0, ifzCount);
+      assertEquals(0, countCall(testMethod, "Intrinsics", "checkParameterIsNotNull"));
+      assertEquals(0, countCall(testMethod, "Intrinsics", "checkExpressionValueIsNotNull"));
+    });
+  }
 }
@@ -0,0 +1,126 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.DexIndexedConsumer.ArchiveConsumer;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ByteBufferPoolTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testReleasedBufferIsReused() {
+    ByteBufferPool pool = new ByteBufferPool();
+    ByteBuffer first = pool.acquireByteBuffer(100);
+    assertTrue(first.capacity() >= 100);
+    pool.releaseByteBuffer(first);
+    assertSame(first, pool.acquireByteBuffer(50));
+    // A request that does not fit the available buffers gets a new buffer.
+    assertNotSame(first, pool.acquireByteBuffer(200));
+  }
+
+  @Test
+  public void testRetainedBufferIsNotReused() {
+    ByteBufferPool pool = new ByteBufferPool();
+    ByteBuffer buffer = pool.acquireByteBuffer(100);
+    assertTrue(pool.retain(buffer.array()));
+    pool.releaseByteBuffer(buffer);
+    ByteBuffer other = pool.acquireByteBuffer(100);
+    assertNotSame(buffer, other);
+    pool.unretain(buffer.array());
+    assertSame(buffer, pool.acquireByteBuffer(100));
+    // Arrays that are not owned by the pool cannot be retained.
+    assertFalse(pool.retain(new byte[100]));
+  }
+
+  @Test
+  public void testReusedBufferIsZeroWithinLimit() {
+    ByteBufferPool pool = new ByteBufferPool();
+    ByteBuffer buffer = pool.acquireByteBuffer(100);
+    buffer.put(new byte[] {1, 2, 3, 4});
+    pool.releaseByteBuffer(buffer);
+    ByteBuffer reused = pool.acquireByteBuffer(2);
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+    assertEquals(2, reused.remaining());
+    assertEquals(0, reused.get(0));
+    assertEquals(0, reused.get(1));
+    pool.releaseByteBuffer(reused);
+    // Bytes that were outside the limit of the previous use are cleared when they are reused.
+    reused = pool.acquireByteBuffer(100);
+    assertSame(buffer, reused);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, reused.get(i));
+    }
+  }
+
+  @Test
+  public void testReleasedBuffersBeyondCapAreDropped() {
+    ByteBufferPool pool = new ByteBufferPool(1, 150);
+    ByteBuffer first = pool.acquireByteBuffer(100);
+    ByteBuffer second = pool.acquireByteBuffer(100);
+    pool.releaseByteBuffer(first);
+    // The pool is full, so the second buffer is dropped.
+    pool.releaseByteBuffer(second);
+    assertSame(first, pool.acquireByteBuffer(100));
+    assertNotSame(second, pool.acquireByteBuffer(100));
+    // Buffers that exceed the total number of bytes are never kept.
+    ByteBuffer large = pool.acquireByteBuffer(200);
+    pool.releaseByteBuffer(large);
+    assertNotSame(large, pool.acquireByteBuffer(200));
+  }
+
+  @Test
+  public void testArchiveConsumerWithOutOfOrderFiles() throws Exception {
+    Path archive = temp.getRoot().toPath().resolve("out.zip");
+    ArchiveConsumer consumer = new ArchiveConsumer(archive);
+    byte[] content0 = {0, 1, 2, 3};
+    byte[] content1 = {4, 5, 6};
+    // Write the second file before the first, such that the content of the second file must be
+    // retained until the first file has been written.
+    acceptAndRelease(consumer, 1, content1);
+    acceptAndRelease(consumer, 0, content0);
+    consumer.finished(new ThrowingDiagnosticHandler());
+    try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+      assertEquals(2, zipFile.size());
+      assertArrayEquals(content0, readEntry(zipFile, "classes.dex"));
+      assertArrayEquals(content1, readEntry(zipFile, "classes2.dex"));
+    }
+  }
+
+  private static void acceptAndRelease(ArchiveConsumer consumer, int fileIndex, byte[] content) {
+    ByteBuffer buffer = consumer.acquireByteBuffer(content.length);
+    buffer.put(content);
+    ByteDataView data = new ByteDataView(buffer.array(), buffer.arrayOffset(), content.length);
+    consumer.accept(fileIndex, data, ImmutableSet.of(), new ThrowingDiagnosticHandler());
+    data.invalidate();
+    consumer.releaseByteBuffer(buffer);
+    // Overwrite the released buffer to check that the retained content is not affected.
+    ByteBuffer reused = consumer.acquireByteBuffer(content.length);
+    reused.put(new byte[content.length]);
+    consumer.releaseByteBuffer(reused);
+  }
+
+  private static byte[] readEntry(ZipFile zipFile, String name) throws Exception {
+    ZipEntry entry = zipFile.getEntry(name);
+    return ByteStreams.toByteArray(zipFile.getInputStream(entry));
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.TraceGranularity;
+import com.android.tools.r8.graph.DexAnnotationSet;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.MethodAccessFlags;
+import com.android.tools.r8.graph.ParameterAnnotationsList;
+import com.android.tools.r8.utils.Tracer.SpanEvent;
+import com.android.tools.r8.utils.Tracer.ThreadEvents;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class TracerTest {
+
+  private final DexItemFactory factory = new DexItemFactory();
+
+  private DexEncodedMethod createMethod(String name) {
+    DexMethod method =
+        factory.createMethod(
+            factory.createType("LTest;"), factory.createProto(factory.voidType), name);
+    return new DexEncodedMethod(
+        method,
+        MethodAccessFlags.fromDexAccessFlags(0),
+        DexAnnotationSet.empty(),
+        ParameterAnnotationsList.empty(),
+        null);
+  }
+
+  private static List<SpanEvent> spans(Tracer tracer) {
+    List<SpanEvent> spans = new ArrayList<>();
+    for (ThreadEvents threadEvents : tracer.getThreadEvents()) {
+      spans.addAll(threadEvents.spans);
+    }
+    return spans;
+  }
+
+  @Test
+  public void testDisabledTracerRecordsNothing() {
+    Tracer tracer = Tracer.disabled();
+    tracer.begin("Phase").end();
+    tracer.begin(createMethod("m")).end();
+    tracer.incrementCounter("Counter", 1);
+    assertFalse(tracer.isEnabled());
+    assertTrue(spans(tracer).isEmpty());
+    assertTrue(tracer.getCounterEvents().isEmpty());
+  }
+
+  @Test
+  public void testSpansOnExecutorThreads() throws ExecutionException {
+    Tracer tracer = Tracer.create(TraceGranularity.METHOD, 1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Tracer.Span phase = tracer.begin("Phase");
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        DexEncodedMethod method = createMethod("m" + i);
+        futures.add(executor.submit(() -> tracer.begin(method).end()));
+      }
+      ThreadUtils.awaitFutures(futures);
+      phase.end();
+    } finally {
+      executor.shutdown();
+    }
+    List<SpanEvent> spans = spans(tracer);
+    assertEquals(101, spans.size());
+    Set<String> names = new HashSet<>();
+    for (SpanEvent span : spans) {
+      names.add(span.name);
+      assertTrue(span.duration >= 0);
+    }
+    assertTrue(names.contains("Phase"));
+    assertTrue(names.contains("void Test.m99()"));
+  }
+
+  @Test
+  public void testSampling() {
+    Tracer tracer = Tracer.create(TraceGranularity.METHOD, 10);
+    for (int i = 0; i < 100; i++) {
+      tracer.begin(createMethod("m" + i)).end();
+    }
+    assertEquals(10, spans(tracer).size());
+  }
+
+  @Test
+  public void testGranularity() {
+    Tracer tracer = Tracer.create(TraceGranularity.PHASE, 1);
+    tracer.begin("Phase").end();
+    tracer.begin(createMethod("m")).end();
+    List<SpanEvent> spans = spans(tracer);
+    assertEquals(1, spans.size());
+    assertEquals(TraceGranularity.PHASE, spans.get(0).granularity);
+  }
+
+  @Test
+  public void testTimingRecordsPhasesAndCounters() throws IOException {
+    Tracer tracer = Tracer.create(TraceGranularity.PHASE, 1);
+    Timing timing = new Timing("Test", false, tracer);
+    timing.begin("Outer \"phase\"");
+    timing.begin("Inner");
+    timing.addStatistic("Items", 2);
+    timing.end();
+    timing.addStatistic("Items", 3);
+    timing.end();
+
+    StringWriter writer = new StringWriter();
+    ChromeTraceWriter.write(tracer, writer);
+    JsonArray events =
+        new JsonParser().parse(writer.toString()).getAsJsonObject().getAsJsonArray("traceEvents");
+    List<String> spanNames = new ArrayList<>();
+    List<Long> counterValues = new ArrayList<>();
+    for (JsonElement element : events) {
+      JsonObject event = element.getAsJsonObject();
+      String phase = event.get("ph").getAsString();
+      if (phase.equals("X")) {
+        spanNames.add(event.get("name").getAsString());
+        assertEquals("phase", event.get("cat").getAsString());
+      } else if (phase.equals("C")) {
+        assertEquals("Items", event.get("name").getAsString());
+        counterValues.add(event.getAsJsonObject("args").get("value").getAsLong());
+      }
+    }
+    assertEquals(ImmutableList.of("Inner", "Outer \"phase\""), spanNames);
+    assertEquals(ImmutableList.of(2L, 5L), counterValues);
+  }
+}
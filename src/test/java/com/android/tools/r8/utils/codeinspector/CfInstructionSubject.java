@@ -7,6 +7,7 @@ package com.android.tools.r8.utils.codeinspector;
 
 import com.android.tools.r8.cf.code.CfArithmeticBinop;
 import com.android.tools.r8.cf.code.CfArrayLength;
+import com.android.tools.r8.cf.code.CfArrayLoad;
 import com.android.tools.r8.cf.code.CfArrayStore;
 import com.android.tools.r8.cf.code.CfCheckCast;
 import com.android.tools.r8.cf.code.CfConstClass;
@@ -325,6 +326,11 @@ public class CfInstructionSubject implements InstructionSubject {
     return instruction instanceof CfArrayLength;
   }
 
+  @Override
+  public boolean isArrayGet() {
+    return instruction instanceof CfArrayLoad;
+  }
+
   @Override
   public boolean isArrayPut() {
     return instruction instanceof CfArrayStore;
@@ -98,6 +98,8 @@ public interface InstructionSubject {
 
   boolean isArrayLength();
 
+  boolean isArrayGet();
+
   boolean isArrayPut();
 
   boolean isMonitorEnter();
@@ -0,0 +1,16 @@
+// Copyright (c) 2019, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package non_null
+
+class Item(val name: String)
+
+fun describe(item: Item, suffix: String): String {
+  val name: String = java.lang.String.valueOf(item.name as Any)
+  return name + suffix
+}
+
+fun main(args: Array<String>) {
+  println(describe(Item("item"), "!"))
+  println(describe(Item("other"), "?"))
+}